@@ -38,6 +38,7 @@ android {
 }
 
 dependencies {
+    implementation(project(":core"))
     implementation(libs.androidx.core)
     implementation(libs.appcompat)
     implementation(libs.material)
@@ -45,6 +46,7 @@ dependencies {
     implementation(libs.activity)
     implementation("com.github.PhilJay:MPAndroidChart:v3.1.0")
     implementation ("androidx.cardview:cardview:1.0.0")
+    implementation("androidx.recyclerview:recyclerview:1.3.2")
     implementation("androidx.appcompat:appcompat:1.7.0")
     implementation("androidx.core:core:1.15.0")
     implementation("androidx.annotation:annotation:1.8.2")
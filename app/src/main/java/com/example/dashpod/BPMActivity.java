@@ -1,15 +1,30 @@
 package com.example.dashpod;
 
-import android.Manifest;
-import android.bluetooth.*;
+import android.content.ComponentName;
+import android.content.ServiceConnection;
+import android.graphics.Color;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.IBinder;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.View;
 import android.widget.*;
-import androidx.annotation.RequiresPermission;
 import androidx.appcompat.app.AppCompatActivity;
+import com.example.dashpod.telemetry.BpmBatch;
+import com.example.dashpod.telemetry.BpmHistoryWriter;
+import com.example.dashpod.telemetry.BpmSessionSummary;
+import com.example.dashpod.telemetry.BpmStatistics;
+import com.example.dashpod.telemetry.BpmTelemetryDecoder;
+import com.example.dashpod.telemetry.NotificationFramer;
+import com.example.dashpod.telemetry.RunningStats;
+import com.example.dashpod.telemetry.SessionRecorder;
+import com.example.dashpod.telemetry.TelemetryPipeline;
+import com.example.dashpod.transport.LinkTuner;
+import com.example.dashpod.transport.MacroSender;
+import com.example.dashpod.transport.TelemetryLink;
+import com.example.dashpod.transport.Transport;
 import com.github.mikephil.charting.charts.LineChart;
 import com.github.mikephil.charting.components.Description;
 import com.github.mikephil.charting.components.XAxis;
@@ -19,9 +34,7 @@ import com.github.mikephil.charting.data.LineData;
 import com.github.mikephil.charting.data.LineDataSet;
 import com.github.mikephil.charting.formatter.ValueFormatter;
 
-import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 public class BPMActivity extends AppCompatActivity {
 
@@ -29,125 +42,112 @@ public class BPMActivity extends AppCompatActivity {
     private static final int DATA_POINT_INTERVAL = 10000; // 10 seconds between points
     private static final int TOTAL_DURATION = 120000; // 2 minutes (120 seconds)
     private static final int MAX_DATA_POINTS = 12; // 120s / 10s = 12 points
-
-    private BluetoothGatt bluetoothGatt;
-    private BluetoothGattCharacteristic rxCharacteristic;
+    private static final long AVERAGE_WINDOW = 60000; // Per-minute averages
+    private static final int AVERAGE_WINDOW_HISTORY = 2;
+    private static final int PIPELINE_CAPACITY = 64;
+    private static final int MAX_FRAME_LENGTH = 512; // Largest ATT attribute value
+    private static final int BATCH_CAPACITY = 64;
+    private static final long TUNE_INTERVAL = 1000;
+    private static final double STREAMING_RATE = 20; // Notifications per second; BPM summaries stay well below
+    private static final long LINK_HOLD_NANOS = 5_000_000_000L;
+    private static final long HISTORY_FLUSH_INTERVAL = 1000; // One transaction a second
+
+    private ConnectionService service;
+    private Transport transport;
+    private TelemetryLink link;
+    private MacroSender macroSender;
+    private LinkTuner linkTuner;
+    private boolean visible;
+    private final Runnable tuneTask = this::tuneLink;
     private EditText etMacroName, etMacroValue;
     private RadioGroup rgEditMode, rgAction;
     private Button btnExecute;
     private Spinner spMacros;
     private LineChart bpmChart;
-    private TextView tvTerminal, tvAverageBpm, tvMinute1Avg, tvMinute2Avg, tvBpmRanges;
-    private ScrollView svTerminal;
-    private SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss.SSS", Locale.getDefault());
+    private ChartRenderScheduler renderScheduler;
+    private TextView tvAverageBpm, tvMinute1Avg, tvMinute2Avg, tvBpmRanges;
+    private TerminalLog terminal;
     private final Handler uiHandler = new Handler(Looper.getMainLooper());
-    private final AtomicBoolean isConnected = new AtomicBoolean(false);
     private LineDataSet bpmDataSet;
     private LineData lineData;
     private List<Entry> bpmEntries = new ArrayList<>();
     private long startTime = 0;
     private boolean isBPMStarted = false;
     private int dataPointCount = 0;
-    private List<Float> allBpmValues = new ArrayList<>();
-    private List<Float> firstMinuteBpmValues = new ArrayList<>();
-    private List<Float> secondMinuteBpmValues = new ArrayList<>();
+    private SessionRecorder recorder;
+    private String deviceAddress;
+    private BpmHistoryWriter historyWriter;
+    private final BpmStatistics bpmStatistics = new BpmStatistics(AVERAGE_WINDOW, AVERAGE_WINDOW_HISTORY);
+    private final BpmTelemetryDecoder telemetryDecoder = new BpmTelemetryDecoder();
+    private final TelemetryPipeline<BpmBatch> pipeline = new TelemetryPipeline<>(
+            "BpmTelemetry", PIPELINE_CAPACITY, MAX_FRAME_LENGTH,
+            () -> new BpmBatch(BATCH_CAPACITY, BATCH_CAPACITY),
+            new NotificationFramer(MAX_FRAME_LENGTH),
+            telemetryDecoder,
+            () -> uiHandler.post(this::applySnapshot));
 
-    private final BluetoothGattCallback bluetoothGattCallback = new BluetoothGattCallback() {
-        @Override
-        public void onConnectionStateChange(BluetoothGatt gatt, int status, int newState) {
-            if (newState == BluetoothProfile.STATE_CONNECTED) {
-                appendToTerminal("Connected to GATT server");
-                gatt.discoverServices();
-                isConnected.set(true);
-            } else if (newState == BluetoothProfile.STATE_DISCONNECTED) {
-                appendToTerminal("Disconnected from GATT server");
-                isConnected.set(false);
-                isBPMStarted = false;
-                gatt.close();
-            }
-        }
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_bpm);
 
+        initializeUI();
+        initializeChart();
+        renderScheduler = new ChartRenderScheduler();
+        deviceAddress = getIntent().getStringExtra("device_address");
+        BpmHistoryDatabase history = BpmHistoryDatabase.get(this);
+        historyWriter = new BpmHistoryWriter(history, HISTORY_FLUSH_INTERVAL);
+        if (deviceAddress != null) history.loadSessionsAsync(deviceAddress, 0, 1, this::showLastSession);
+        pipeline.start();
+        ConnectionService.bind(this, serviceConnection);
+    }
+
+    // Joins the link the device screen already holds, so nothing is rediscovered
+    private final ServiceConnection serviceConnection = new ServiceConnection() {
         @Override
-        public void onServicesDiscovered(BluetoothGatt gatt, int status) {
-            if (status == BluetoothGatt.GATT_SUCCESS) {
-                appendToTerminal("Services discovered");
-                setupCharacteristics();
-            } else {
-                appendToTerminal("Service discovery failed");
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            if (transport != null) return;
+            if (deviceAddress == null) {
+                appendToTerminal("Device not found");
+                return;
             }
+            service = ((ConnectionService.LocalBinder) binder).getService();
+            transport = service.open();
+            recorder = service.openRecording("bpm", deviceAddress);
+            link = new TelemetryLink(transport, pipeline, recorder, BPMActivity.this::onTransportStateChanged);
+            macroSender = new MacroSender(transport);
+            linkTuner = new LinkTuner(transport, link::getNotifications, STREAMING_RATE, LINK_HOLD_NANOS);
+            tuneLink();
+            transport.connect(deviceAddress, link);
+            appendToTerminal("Connecting to device...");
         }
 
         @Override
-        public void onCharacteristicChanged(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic) {
-            byte[] data = characteristic.getValue();
-            if (data != null && data.length > 0) {
-                String received = new String(data).trim();
-                if (!received.isEmpty()) {
-                    appendToTerminal(received);
-                    if (isBPMStarted) {
-                        try {
-                            float bpm = parseBPMFromData(received);
-                            if (bpm >= 0) {
-                                long currentTime = System.currentTimeMillis();
-                                float secondsSinceStart = (currentTime - startTime) / 1000f;
-
-                                // Store all BPM values for average calculation
-                                allBpmValues.add(bpm);
-
-                                // Store values for minute averages
-                                if (secondsSinceStart <= 60) {
-                                    firstMinuteBpmValues.add(bpm);
-                                } else {
-                                    secondMinuteBpmValues.add(bpm);
-                                }
-
-                                updateAverageBpm();
-
-                                // Only plot at exact 10-second intervals starting from 10s (10, 20, ..., 120)
-                                if (secondsSinceStart >= (dataPointCount + 1) * 10 && dataPointCount < MAX_DATA_POINTS) {
-                                    synchronized (bpmEntries) {
-                                        bpmEntries.add(new Entry((dataPointCount + 1) * 10f, bpm));
-                                        dataPointCount++;
-
-                                        uiHandler.post(() -> updateChartDisplay());
-                                    }
-                                }
-
-                                if (secondsSinceStart >= TOTAL_DURATION / 1000f) {
-                                    isBPMStarted = false;
-                                    appendToTerminal("BPM data collection completed (2 minutes elapsed)");
-                                    calculateFinalAverages();
-                                }
-                            }
-                        } catch (NumberFormatException e) {
-                            Log.e(TAG, "Invalid data format: " + received, e);
-                        }
-                    }
-                }
-            }
+        public void onServiceDisconnected(ComponentName name) {
         }
     };
 
-    @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
     @Override
-    protected void onCreate(Bundle savedInstanceState) {
-        super.onCreate(savedInstanceState);
-        setContentView(R.layout.activity_bpm);
+    protected void onStart() {
+        super.onStart();
+        renderScheduler.setVisible(true);
+        visible = true;
+        if (linkTuner != null) linkTuner.setVisible(true, SystemClock.elapsedRealtimeNanos());
+    }
 
-        initializeUI();
-        initializeChart();
+    @Override
+    protected void onStop() {
+        super.onStop();
+        renderScheduler.setVisible(false);
+        visible = false;
+        if (linkTuner != null) linkTuner.setVisible(false, SystemClock.elapsedRealtimeNanos());
+    }
 
-        String deviceAddress = getIntent().getStringExtra("device_address");
-        if (deviceAddress != null) {
-            BluetoothAdapter bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
-            BluetoothDevice device = bluetoothAdapter.getRemoteDevice(deviceAddress);
-            if (device != null) {
-                bluetoothGatt = device.connectGatt(this, false, bluetoothGattCallback);
-                appendToTerminal("Connecting to device...");
-            } else {
-                appendToTerminal("Device not found");
-            }
-        }
+    // Keeps running while hidden, so the link drops to low power once the hold time has passed
+    private void tuneLink() {
+        uiHandler.removeCallbacks(tuneTask);
+        linkTuner.setVisible(visible, SystemClock.elapsedRealtimeNanos());
+        uiHandler.postDelayed(tuneTask, TUNE_INTERVAL);
     }
 
     private void initializeUI() {
@@ -158,8 +158,9 @@ public class BPMActivity extends AppCompatActivity {
         btnExecute = findViewById(R.id.btnExecute);
         spMacros = findViewById(R.id.spMacros);
         bpmChart = findViewById(R.id.eulerChart);
-        tvTerminal = findViewById(R.id.tvTerminal);
-        svTerminal = findViewById(R.id.svTerminal);
+        terminal = new TerminalLog(findViewById(R.id.rvTerminal), Color.BLACK);
+        CheckBox cbHideData = findViewById(R.id.cbHideData);
+        cbHideData.setOnCheckedChangeListener((button, checked) -> terminal.setHideData(checked));
         tvAverageBpm = findViewById(R.id.tvAverageBpm);
         tvMinute1Avg = findViewById(R.id.tvMinute1Avg);
         tvMinute2Avg = findViewById(R.id.tvMinute2Avg);
@@ -212,7 +213,7 @@ public class BPMActivity extends AppCompatActivity {
     }
 
     private void initializeChart() {
-        bpmDataSet = new LineDataSet(new ArrayList<>(), "Breathing Rate (BPM)");
+        bpmDataSet = new LineDataSet(bpmEntries, "Breathing Rate (BPM)");
         bpmDataSet.setColor(0xFFCD5C5C);
         bpmDataSet.setCircleColor(0xFF4682B4);
         bpmDataSet.setLineWidth(2f);
@@ -256,14 +257,50 @@ public class BPMActivity extends AppCompatActivity {
         bpmChart.invalidate();
     }
 
+    private void applySnapshot() {
+        BpmBatch batch = pipeline.acquireSnapshot();
+        if (batch == null) return;
+
+        for (int i = 0; i < batch.lineCount(); i++) {
+            terminal.appendData(batch.lineAt(i));
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            onBpmSample(batch.bpmAt(i), batch.timestampAt(i));
+        }
+        pipeline.releaseSnapshot(batch);
+    }
+
+    private void onBpmSample(float bpm, long currentTime) {
+        // Frames received before the session started may still be in flight
+        if (!isBPMStarted || currentTime < startTime) return;
+
+        float secondsSinceStart = (currentTime - startTime) / 1000f;
+
+        // The sample that ends the session still belongs to its last minute
+        bpmStatistics.add(Math.min(currentTime - startTime, TOTAL_DURATION - 1), bpm);
+        historyWriter.add(currentTime, bpm);
+        updateAverageBpm();
+
+        // Only plot at exact 10-second intervals starting from 10s (10, 20, ..., 120)
+        if (secondsSinceStart >= (dataPointCount + 1) * 10 && dataPointCount < MAX_DATA_POINTS) {
+            bpmEntries.add(new Entry((dataPointCount + 1) * 10f, bpm));
+            dataPointCount++;
+            renderScheduler.requestRender(bpmChart);
+        }
+
+        if (secondsSinceStart >= TOTAL_DURATION / 1000f) {
+            isBPMStarted = false;
+            appendToTerminal("BPM data collection completed (2 minutes elapsed)");
+            calculateFinalAverages();
+            finishHistorySession(currentTime);
+        }
+    }
+
     private void resetActivity() {
         // Clear all data collections
-        synchronized (bpmEntries) {
-            bpmEntries.clear();
-        }
-        allBpmValues.clear();
-        firstMinuteBpmValues.clear();
-        secondMinuteBpmValues.clear();
+        bpmEntries.clear();
+        bpmStatistics.reset();
         dataPointCount = 0;
         startTime = 0;
         isBPMStarted = false;
@@ -277,33 +314,18 @@ public class BPMActivity extends AppCompatActivity {
         initializeChart();
     }
 
-    private void updateChartDisplay() {
-        synchronized (bpmEntries) {
-            bpmDataSet.setValues(bpmEntries);
-            lineData.notifyDataChanged();
-            bpmChart.notifyDataSetChanged();
-            bpmChart.invalidate();
-        }
-    }
-
     private void updateAverageBpm() {
-        if (allBpmValues.isEmpty()) return;
+        RunningStats overall = bpmStatistics.getOverall();
+        if (overall.isEmpty()) return;
 
-        float sum = 0;
-        for (float bpm : allBpmValues) {
-            sum += bpm;
-        }
-        float average = sum / allBpmValues.size();
-
-        uiHandler.post(() -> {
-            tvAverageBpm.setText(String.format(Locale.getDefault(), "Current Avg BPM: %.1f", average));
-        });
+        double average = overall.getMean();
+        tvAverageBpm.setText(String.format(Locale.getDefault(), "Current Avg BPM: %.1f", average));
     }
 
     private void calculateFinalAverages() {
-        float minute1Avg = calculateAverage(firstMinuteBpmValues);
-        float minute2Avg = calculateAverage(secondMinuteBpmValues);
-        float overallAvg = calculateAverage(allBpmValues);
+        double minute1Avg = windowAverage(0);
+        double minute2Avg = windowAverage(1);
+        double overallAvg = bpmStatistics.getOverall().getMean();
 
         uiHandler.post(() -> {
             tvMinute1Avg.setText(String.format(Locale.getDefault(), "1st Min Avg: %.1f BPM", minute1Avg));
@@ -312,61 +334,45 @@ public class BPMActivity extends AppCompatActivity {
         });
     }
 
-    private float calculateAverage(List<Float> values) {
-        if (values == null || values.isEmpty()) return 0f;
-
-        float sum = 0;
-        for (float value : values) {
-            sum += value;
-        }
-        return sum / values.size();
+    // Stores the session's summary and window averages; nothing happens if no session is being stored
+    private void finishHistorySession(long endTime) {
+        historyWriter.finishSession(BpmSessionSummary.of(deviceAddress, startTime, endTime, bpmStatistics));
     }
 
-    @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
-    private void setupCharacteristics() {
-        if (bluetoothGatt != null) {
-            for (BluetoothGattService service : bluetoothGatt.getServices()) {
-                for (BluetoothGattCharacteristic characteristic : service.getCharacteristics()) {
-                    if ((characteristic.getProperties() & BluetoothGattCharacteristic.PROPERTY_WRITE_NO_RESPONSE) != 0) {
-                        rxCharacteristic = characteristic;
-                    }
-                    if ((characteristic.getProperties() & BluetoothGattCharacteristic.PROPERTY_NOTIFY) != 0) {
-                        bluetoothGatt.setCharacteristicNotification(characteristic, true);
-                        for (BluetoothGattDescriptor descriptor : characteristic.getDescriptors()) {
-                            descriptor.setValue(BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE);
-                            bluetoothGatt.writeDescriptor(descriptor);
-                        }
-                    }
-                }
-            }
-        }
+    private void showLastSession(List<BpmSessionSummary> sessions) {
+        if (sessions.isEmpty() || isFinishing()) return;
+        BpmSessionSummary last = sessions.get(0);
+        // Never finished, e.g. the app was killed mid-session
+        if (last.getEndTime() == 0) return;
+        appendToTerminal(String.format(Locale.getDefault(), "Last session %tF %<tR: %.1f BPM average over %d samples",
+                last.getStartTime(), last.getAverage(), last.getSampleCount()));
     }
 
-    private void appendToTerminal(String message) {
-        uiHandler.post(() -> {
-            tvTerminal.append(timeFormat.format(new Date()) + " " + message + "\n");
-            svTerminal.post(() -> svTerminal.fullScroll(View.FOCUS_DOWN));
-        });
+    private double windowAverage(long window) {
+        RunningStats stats = bpmStatistics.getWindow(window);
+        return stats != null ? stats.getMean() : 0;
     }
 
-    private float parseBPMFromData(String data) {
-        if (data.toLowerCase().contains("bpm")) {
-            String[] parts = data.split("bpm");
-            if (parts.length > 0) {
-                try {
-                    String bpmStr = parts[0].replaceAll("[^0-9.]", "").trim();
-                    return Float.parseFloat(bpmStr);
-                } catch (NumberFormatException e) {
-                    Log.e(TAG, "Invalid BPM format: " + data, e);
-                }
-            }
+    // Called on the binder thread
+    private void onTransportStateChanged(Transport.State state) {
+        if (state == Transport.State.READY) {
+            appendToTerminal("Connected to GATT server");
+            appendToTerminal("Services discovered");
+        } else if (state == Transport.State.DISCONNECTED) {
+            appendToTerminal("Disconnected from GATT server");
+            uiHandler.post(() -> {
+                isBPMStarted = false;
+                finishHistorySession(System.currentTimeMillis());
+            });
         }
-        return -1f;
     }
 
-    @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
+    private void appendToTerminal(String message) {
+        terminal.appendControl(message);
+    }
+
     private void executeMacro() {
-        if (!isConnected.get()) {
+        if (transport == null || transport.getState() != Transport.State.READY) {
             appendToTerminal("Not connected to device");
             return;
         }
@@ -382,11 +388,7 @@ public class BPMActivity extends AppCompatActivity {
         // Check if Send is selected (though it's the only option, kept for consistency)
         if (rgAction.getCheckedRadioButtonId() == R.id.rbSend) {
             try {
-                byte[] data = hexStringToByteArray(value.replaceAll(" ", ""));
-                if (rxCharacteristic != null) {
-                    rxCharacteristic.setValue(data);
-                    rxCharacteristic.setWriteType(BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE);
-                    bluetoothGatt.writeCharacteristic(rxCharacteristic);
+                if (macroSender.send(value, MacroSender.Encoding.HEX)) {
                     appendToTerminal("Sent: " + name + " (" + value + ")");
 
                     if (name.equalsIgnoreCase("BPM Start")) {
@@ -395,6 +397,7 @@ public class BPMActivity extends AppCompatActivity {
                             resetActivity();
                             isBPMStarted = true;
                             startTime = System.currentTimeMillis();
+                            historyWriter.startSession(deviceAddress, startTime);
                             appendToTerminal("BPM data collection started - plotting every 10 seconds");
                         }
                     } else if (name.equalsIgnoreCase("BPM Stop")) {
@@ -402,6 +405,7 @@ public class BPMActivity extends AppCompatActivity {
                         appendToTerminal("BPM data collection stopped");
                         // Calculate final averages to display current state
                         calculateFinalAverages();
+                        finishHistorySession(System.currentTimeMillis());
                         // Do not clear the graph or reset data (Case 2)
                     }
                 } else {
@@ -414,23 +418,33 @@ public class BPMActivity extends AppCompatActivity {
         }
     }
 
-    private static byte[] hexStringToByteArray(String s) {
-        int len = s.length();
-        byte[] data = new byte[(len + 1) / 2];
-        for (int i = 0; i < len; i += 2) {
-            data[i / 2] = (byte) ((Character.digit(s.charAt(i), 16) << 4) +
-                    (i + 1 < len ? Character.digit(s.charAt(i + 1), 16) : 0));
-        }
-        return data;
-    }
-
-    @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (bluetoothGatt != null) {
-            bluetoothGatt.disconnect();
-            bluetoothGatt.close();
+        if (transport != null) transport.disconnect();
+        // Kept open for a screen recreated right away
+        if (service != null) service.releaseRecording(recorder);
+        unbindService(serviceConnection);
+        pipeline.stop();
+        finishHistorySession(System.currentTimeMillis());
+        // The last writes finish on the writer's thread rather than holding up the main thread
+        BpmHistoryWriter writer = historyWriter;
+        writer.closeAsync(() -> {
+            Log.i(TAG, "History: " + writer.getWrittenSamples() + " samples in "
+                    + writer.getTransactions() + " transactions, " + writer.getDroppedSamples() + " dropped");
+            if (writer.getFailure() != null) {
+                Log.w(TAG, "History writes failed", writer.getFailure());
+            }
+        });
+        renderScheduler.release();
+        terminal.release();
+        Log.i(TAG, "Invalid BPM lines: " + telemetryDecoder.getInvalidLines());
+        if (link != null) {
+            Log.i(TAG, "Notifications: " + link.getNotifications() + " received, "
+                    + link.getDroppedNotifications() + " dropped by a full pipeline");
+        }
+        if (linkTuner != null) {
+            Log.i(TAG, "Link profile changes: " + linkTuner.getChanges() + ", last " + linkTuner.getProfile());
         }
         uiHandler.removeCallbacksAndMessages(null);
     }
@@ -0,0 +1,219 @@
+package com.example.dashpod;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.dashpod.telemetry.BpmHistoryWriter;
+import com.example.dashpod.telemetry.BpmSessionSummary;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Breathing rate history in SQLite: one row per session, one per window
+ * aggregate and one per raw sample. Writes come from a
+ * {@link BpmHistoryWriter}, which batches samples into a transaction about
+ * once a second on its own thread.
+ *
+ * The database runs in write-ahead logging mode, so history queries read
+ * alongside those writes without waiting for them. Sessions are indexed on
+ * device address and start time, which is how the history is listed, so
+ * loading the latest sessions of months of use reads only the rows shown.
+ */
+public final class BpmHistoryDatabase extends SQLiteOpenHelper implements BpmHistoryWriter.Store {
+
+    private static final String NAME = "bpm_history.db";
+    private static final int VERSION = 1;
+
+    private static final String SESSIONS = "sessions";
+    private static final String WINDOWS = "windows";
+    private static final String SAMPLES = "samples";
+
+    private static final String[] SESSION_COLUMNS = {
+            "_id", "device_address", "start_time", "end_time", "sample_count", "average", "minimum", "maximum"};
+
+    private static BpmHistoryDatabase instance;
+
+    private final ExecutorService reader = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "BpmHistoryReader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public static synchronized BpmHistoryDatabase get(Context context) {
+        if (instance == null) {
+            instance = new BpmHistoryDatabase(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private BpmHistoryDatabase(Context context) {
+        super(context, NAME, null, VERSION);
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        db.enableWriteAheadLogging();
+        db.setForeignKeyConstraintsEnabled(true);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + SESSIONS + " ("
+                + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "device_address TEXT NOT NULL, "
+                + "start_time INTEGER NOT NULL, "
+                + "end_time INTEGER, "
+                + "sample_count INTEGER NOT NULL DEFAULT 0, "
+                + "average REAL, minimum REAL, maximum REAL)");
+        db.execSQL("CREATE INDEX sessions_device_start ON " + SESSIONS + " (device_address, start_time)");
+        db.execSQL("CREATE INDEX sessions_start ON " + SESSIONS + " (start_time)");
+        db.execSQL("CREATE TABLE " + WINDOWS + " ("
+                + "session_id INTEGER NOT NULL REFERENCES " + SESSIONS + " (_id) ON DELETE CASCADE, "
+                + "window_index INTEGER NOT NULL, "
+                + "sample_count INTEGER NOT NULL, "
+                + "average REAL, minimum REAL, maximum REAL, "
+                + "PRIMARY KEY (session_id, window_index))");
+        db.execSQL("CREATE TABLE " + SAMPLES + " ("
+                + "session_id INTEGER NOT NULL REFERENCES " + SESSIONS + " (_id) ON DELETE CASCADE, "
+                + "time INTEGER NOT NULL, "
+                + "bpm REAL NOT NULL)");
+        db.execSQL("CREATE INDEX samples_session_time ON " + SAMPLES + " (session_id, time)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // No schema changes yet
+    }
+
+    // BpmHistoryWriter.Store, called on the writer's thread
+
+    @Override
+    public long insertSession(String deviceAddress, long startTime) {
+        ContentValues values = new ContentValues();
+        values.put("device_address", deviceAddress);
+        values.put("start_time", startTime);
+        return getWritableDatabase().insertOrThrow(SESSIONS, null, values);
+    }
+
+    @Override
+    public void insertSamples(long sessionId, long[] times, float[] bpm, int count) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransactionNonExclusive();
+        // Compiled per call, as the writers of a screen and its recreated successor may overlap;
+        // next to a second's samples the compile is negligible
+        try (SQLiteStatement insertSample = db.compileStatement(
+                "INSERT INTO " + SAMPLES + " (session_id, time, bpm) VALUES (?, ?, ?)")) {
+            for (int i = 0; i < count; i++) {
+                insertSample.bindLong(1, sessionId);
+                insertSample.bindLong(2, times[i]);
+                insertSample.bindDouble(3, bpm[i]);
+                insertSample.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @Override
+    public void finishSession(long sessionId, BpmSessionSummary summary) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransactionNonExclusive();
+        try {
+            ContentValues values = new ContentValues();
+            values.put("end_time", summary.getEndTime());
+            values.put("sample_count", summary.getSampleCount());
+            putStatistics(values, summary.getAverage(), summary.getMin(), summary.getMax());
+            db.update(SESSIONS, values, "_id = ?", new String[]{Long.toString(sessionId)});
+            for (BpmSessionSummary.Window window : summary.getWindows()) {
+                values.clear();
+                values.put("session_id", sessionId);
+                values.put("window_index", window.getIndex());
+                values.put("sample_count", window.getSampleCount());
+                putStatistics(values, window.getAverage(), window.getMin(), window.getMax());
+                db.insertWithOnConflict(WINDOWS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // History queries
+
+    /**
+     * Sessions started at or after {@code since}, newest first, without their
+     * windows. Pass a null address for every device. Blocks; call off the
+     * main thread or use {@link #loadSessionsAsync}.
+     */
+    public List<BpmSessionSummary> loadSessions(String deviceAddress, long since, int limit) {
+        String selection = deviceAddress != null ? "device_address = ? AND start_time >= ?" : "start_time >= ?";
+        String[] arguments = deviceAddress != null
+                ? new String[]{deviceAddress, Long.toString(since)}
+                : new String[]{Long.toString(since)};
+        List<BpmSessionSummary> sessions = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(SESSIONS, SESSION_COLUMNS, selection, arguments,
+                null, null, "start_time DESC", Integer.toString(limit))) {
+            while (cursor.moveToNext()) {
+                sessions.add(new BpmSessionSummary(cursor.getLong(0), cursor.getString(1), cursor.getLong(2),
+                        cursor.isNull(3) ? 0 : cursor.getLong(3), cursor.getLong(4),
+                        cursor.isNull(5) ? 0 : cursor.getDouble(5), nullableDouble(cursor, 6),
+                        nullableDouble(cursor, 7), Collections.emptyList()));
+            }
+        }
+        return sessions;
+    }
+
+    /** Loads sessions on a background thread and passes them to the callback on the main thread. */
+    public void loadSessionsAsync(String deviceAddress, long since, int limit, Consumer<List<BpmSessionSummary>> callback) {
+        reader.execute(() -> {
+            List<BpmSessionSummary> sessions = loadSessions(deviceAddress, since, limit);
+            mainHandler.post(() -> callback.accept(sessions));
+        });
+    }
+
+    /** Window aggregates of a session, in order. Blocks. */
+    public List<BpmSessionSummary.Window> loadWindows(long sessionId) {
+        List<BpmSessionSummary.Window> windows = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(WINDOWS,
+                new String[]{"window_index", "sample_count", "average", "minimum", "maximum"},
+                "session_id = ?", new String[]{Long.toString(sessionId)}, null, null, "window_index")) {
+            while (cursor.moveToNext()) {
+                windows.add(new BpmSessionSummary.Window(cursor.getInt(0), cursor.getLong(1),
+                        cursor.getDouble(2), nullableDouble(cursor, 3), nullableDouble(cursor, 4)));
+            }
+        }
+        return windows;
+    }
+
+    // SQLite stores NaN as NULL; map it back
+    private static double nullableDouble(Cursor cursor, int column) {
+        return cursor.isNull(column) ? Double.NaN : cursor.getDouble(column);
+    }
+
+    private static void putStatistics(ContentValues values, double average, double min, double max) {
+        values.put("average", average);
+        putNullable(values, "minimum", min);
+        putNullable(values, "maximum", max);
+    }
+
+    private static void putNullable(ContentValues values, String key, double value) {
+        if (Double.isNaN(value)) {
+            values.putNull(key);
+        } else {
+            values.put(key, value);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.dashpod;
+
+import android.view.Choreographer;
+
+import com.github.mikephil.charting.charts.Chart;
+import com.github.mikephil.charting.data.ChartData;
+import com.github.mikephil.charting.interfaces.datasets.IDataSet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Coalesces chart refreshes to the display frame rate.
+ *
+ * Callers mark a chart dirty with {@link #requestRender} as often as samples
+ * arrive; the scheduler refreshes every dirty chart at most once per vsync via
+ * Choreographer. While the screen is hidden no frames are scheduled, and any
+ * pending refresh is done once when it becomes visible again. A chart may
+ * have a preparation step, e.g. picking the points to plot for its current
+ * zoom, which runs in the frame right before the chart is refreshed.
+ *
+ * Must be created and used on the main thread.
+ */
+public class ChartRenderScheduler implements Choreographer.FrameCallback {
+
+    private final Choreographer choreographer = Choreographer.getInstance();
+    private final List<Slot> slots = new ArrayList<>();
+    private boolean frameScheduled;
+    private boolean visible;
+    private long requestedRenders;
+    private long performedRenders;
+
+    public void requestRender(Chart<?> chart) {
+        requestedRenders++;
+        slotFor(chart).dirty = true;
+        scheduleFrame();
+    }
+
+    /** Runs {@code prepare} before every refresh of {@code chart}, or no longer if null. */
+    public void setPreparation(Chart<?> chart, Runnable prepare) {
+        slotFor(chart).prepare = prepare;
+    }
+
+    public void setVisible(boolean visible) {
+        this.visible = visible;
+        if (visible) {
+            scheduleFrame();
+        } else if (frameScheduled) {
+            choreographer.removeFrameCallback(this);
+            frameScheduled = false;
+        }
+    }
+
+    /** Drops pending refreshes and forgets all charts. */
+    public void release() {
+        setVisible(false);
+        slots.clear();
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        if (!visible) return;
+        for (int i = 0; i < slots.size(); i++) {
+            Slot slot = slots.get(i);
+            if (slot.dirty) {
+                slot.dirty = false;
+                if (slot.prepare != null) slot.prepare.run();
+                render(slot.chart);
+                performedRenders++;
+            }
+        }
+    }
+
+    public long getRequestedRenders() {
+        return requestedRenders;
+    }
+
+    public long getPerformedRenders() {
+        return performedRenders;
+    }
+
+    /** Refresh requests that were merged into another frame or dropped while hidden. */
+    public long getSavedRenders() {
+        return requestedRenders - performedRenders;
+    }
+
+    private void scheduleFrame() {
+        if (!visible || frameScheduled || !hasDirtyChart()) return;
+        frameScheduled = true;
+        choreographer.postFrameCallback(this);
+    }
+
+    private boolean hasDirtyChart() {
+        for (int i = 0; i < slots.size(); i++) {
+            if (slots.get(i).dirty) return true;
+        }
+        return false;
+    }
+
+    // A screen has a handful of charts, so a linear scan beats hashing
+    private Slot slotFor(Chart<?> chart) {
+        for (int i = 0; i < slots.size(); i++) {
+            Slot slot = slots.get(i);
+            if (slot.chart == chart) return slot;
+        }
+        Slot slot = new Slot(chart);
+        slots.add(slot);
+        return slot;
+    }
+
+    private static void render(Chart<?> chart) {
+        ChartData<?> data = chart.getData();
+        if (data != null) {
+            for (IDataSet<?> set : data.getDataSets()) {
+                set.calcMinMax();
+            }
+            data.notifyDataChanged();
+        }
+        chart.notifyDataSetChanged();
+        chart.invalidate();
+    }
+
+    private static final class Slot {
+        final Chart<?> chart;
+        Runnable prepare;
+        boolean dirty;
+
+        Slot(Chart<?> chart) {
+            this.chart = chart;
+        }
+    }
+}
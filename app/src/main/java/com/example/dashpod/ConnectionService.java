@@ -0,0 +1,158 @@
+package com.example.dashpod;
+
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.Binder;
+import android.os.IBinder;
+import android.util.Log;
+
+import com.example.dashpod.telemetry.SessionRecorder;
+import com.example.dashpod.transport.ConnectionRegistry;
+import com.example.dashpod.transport.Transport;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Owns the GATT connection to each device so screens can share it. Screens
+ * bind, open a {@link Transport} lease and connect it to an address; the first
+ * lease connects, later ones join the running link, so moving from the device
+ * screen to the BPM screen costs no reconnect and no service discovery.
+ *
+ * The service keeps itself started while any link is open, so links outlive a
+ * screen that is being recreated, and stops once the last link has closed.
+ * Session recordings linger in the same way, so a rotated screen goes on
+ * recording into the session it started.
+ */
+public class ConnectionService extends Service {
+
+    private static final String TAG = "ConnectionService";
+    private static final long LINGER_MILLIS = 5000; // Covers a rotation or a quick back-and-forth
+
+    public class LocalBinder extends Binder {
+        public ConnectionService getService() {
+            return ConnectionService.this;
+        }
+    }
+
+    /** A screen's recording of one device, shared by the instances of the screen. */
+    private static final class Recording {
+        final SessionRecorder recorder;
+        int users;
+        ScheduledFuture<?> closing;
+
+        Recording(SessionRecorder recorder) {
+            this.recorder = recorder;
+        }
+    }
+
+    private final IBinder binder = new LocalBinder();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ConnectionLinger");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ConnectionRegistry registry;
+    // Keyed by prefix and address; guarded by itself
+    private final Map<String, Recording> recordings = new HashMap<>();
+
+    /** Binds {@code context} to the service; the binder is a {@link LocalBinder}. */
+    public static void bind(Context context, ServiceConnection connection) {
+        context.bindService(new Intent(context, ConnectionService.class), connection, Context.BIND_AUTO_CREATE);
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        registry = new ConnectionRegistry(address -> new GattTransport(this), timer, LINGER_MILLIS, this::stopSelf);
+        KnownDeviceStore knownDevices = KnownDeviceStore.get(this);
+        registry.setStateObserver((address, state) -> {
+            if (state == Transport.State.READY) knownDevices.onConnected(address);
+        });
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return binder;
+    }
+
+    /** Returns a new lease on the shared links; connect it to the device's address. */
+    public Transport open() {
+        startService(new Intent(this, ConnectionService.class));
+        return registry.open();
+    }
+
+    /**
+     * Returns the recorder of a screen for a device, or null if recording
+     * fails. A recorder released less than the linger time ago, e.g. by the
+     * screen before a rotation, is handed back rather than a new session
+     * started.
+     */
+    public SessionRecorder openRecording(String prefix, String address) {
+        String key = prefix + " " + address;
+        synchronized (recordings) {
+            Recording recording = recordings.get(key);
+            if (recording == null) {
+                SessionRecorder recorder = SessionRecordings.open(this, prefix);
+                if (recorder == null) return null;
+                recording = new Recording(recorder);
+                recordings.put(key, recording);
+            } else if (recording.closing != null) {
+                recording.closing.cancel(false);
+                recording.closing = null;
+            }
+            recording.users++;
+            return recording.recorder;
+        }
+    }
+
+    /** Gives back a recorder from {@link #openRecording}; it is closed once unused for the linger time. */
+    public void releaseRecording(SessionRecorder recorder) {
+        if (recorder == null) return;
+        synchronized (recordings) {
+            for (Map.Entry<String, Recording> entry : recordings.entrySet()) {
+                Recording recording = entry.getValue();
+                if (recording.recorder != recorder) continue;
+                if (--recording.users == 0) {
+                    String key = entry.getKey();
+                    recording.closing = timer.schedule(() -> closeRecording(key, recording),
+                            LINGER_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                return;
+            }
+        }
+    }
+
+    // Runs on the timer; a screen may have taken the recording back meanwhile
+    private void closeRecording(String key, Recording recording) {
+        synchronized (recordings) {
+            if (recording.users > 0 || recordings.get(key) != recording) return;
+            recordings.remove(key);
+        }
+        SessionRecordings.close(recording.recorder);
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        registry.closeAll();
+        timer.shutdownNow();
+        List<Recording> open;
+        synchronized (recordings) {
+            open = new ArrayList<>(recordings.values());
+            recordings.clear();
+        }
+        for (Recording recording : open) {
+            SessionRecordings.close(recording.recorder);
+        }
+        Log.i(TAG, "Links: " + registry.getLinksOpened() + " opened, " + registry.getLinksReused() + " reused");
+    }
+}
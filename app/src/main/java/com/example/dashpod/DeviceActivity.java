@@ -1,39 +1,64 @@
 package com.example.dashpod;
 
 import android.Manifest;
-import android.bluetooth.*;
+import android.content.ComponentName;
 import android.content.Intent;
+import android.content.ServiceConnection;
+import android.graphics.Color;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.IBinder;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
+import android.view.MotionEvent;
 import android.view.View;
 import android.widget.*;
 
 import androidx.annotation.RequiresPermission;
 import androidx.appcompat.app.AppCompatActivity;
+import com.example.dashpod.telemetry.BinaryFrameDecoder;
+import com.example.dashpod.telemetry.NotificationFramer;
+import com.example.dashpod.telemetry.OrientationBatch;
+import com.example.dashpod.telemetry.OrientationFrameDecoder;
+import com.example.dashpod.telemetry.OrientationTelemetryDecoder;
+import com.example.dashpod.telemetry.SeriesDecimator;
+import com.example.dashpod.telemetry.SeriesHistory;
+import com.example.dashpod.telemetry.SessionRecorder;
+import com.example.dashpod.telemetry.TelemetryPipeline;
+import com.example.dashpod.transport.LinkTuner;
+import com.example.dashpod.transport.MacroSender;
+import com.example.dashpod.transport.TelemetryLink;
+import com.example.dashpod.transport.Transport;
 import com.github.mikephil.charting.charts.LineChart;
 import com.github.mikephil.charting.components.*;
 import com.github.mikephil.charting.data.*;
 import com.github.mikephil.charting.formatter.ValueFormatter;
+import com.github.mikephil.charting.listener.ChartTouchListener;
+import com.github.mikephil.charting.listener.OnChartGestureListener;
 import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class DeviceActivity extends AppCompatActivity {
 
     private static final String TAG = "DeviceActivity";
-    private static final UUID UART_SERVICE_UUID = UUID.fromString("6e400001-b5a3-f393-e0a9-e50e24dcca9e");
-    private static final UUID TX_CHARACTERISTIC_UUID = UUID.fromString("6e400003-b5a3-f393-e0a9-e50e24dcca9e");
-    private static final UUID RX_CHARACTERISTIC_UUID = UUID.fromString("6e400002-b5a3-f393-e0a9-e50e24dcca9e");
-    private static final UUID CCCD_UUID = UUID.fromString("00002902-0000-1000-8000-00805f9b34fb");
-
-    private BluetoothGatt bluetoothGatt;
-    private BluetoothGattCharacteristic rxCharacteristic;
-    private TextView tvTerminal;
-    private ScrollView svTerminal;
+    private static final int PIPELINE_CAPACITY = 256;
+    private static final int MAX_FRAME_LENGTH = 512; // Largest ATT attribute value
+    private static final int BATCH_CAPACITY = 256;
+    private static final int CHART_WINDOW = 4096; // Rows kept raw per chart, about 40 s at 100 Hz
+    private static final int MAX_CHART_POINTS = 2048; // Points per line across the visible range, at most one per pixel
+    private static final long TUNE_INTERVAL = 1000;
+    private static final double STREAMING_RATE = 20; // Notifications per second; BPM summaries stay well below
+    private static final long LINK_HOLD_NANOS = 5_000_000_000L;
+
+    private ConnectionService service;
+    private Transport transport;
+    private TelemetryLink link;
+    private MacroSender macroSender;
+    private LinkTuner linkTuner;
+    private boolean visible;
+    private final Runnable tuneTask = this::tuneLink;
+    private TerminalLog terminal;
     private EditText etMacroName, etMacroValue;
     private RadioGroup rgEditMode, rgAction;
     private Button btnExecute, btnBPM;
@@ -43,18 +68,20 @@ public class DeviceActivity extends AppCompatActivity {
     private LineData eulerLineData, quaternionLineData;
     private SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss.SSS", Locale.getDefault());
     private final Handler uiHandler = new Handler(Looper.getMainLooper());
-    private final AtomicBoolean isConnected = new AtomicBoolean(false);
-    private List<Float> yawValues = new ArrayList<>();
-    private List<Float> pitchValues = new ArrayList<>();
-    private List<Float> rollValues = new ArrayList<>();
-    private List<Float> qwValues = new ArrayList<>();
-    private List<Float> qxValues = new ArrayList<>();
-    private List<Float> qyValues = new ArrayList<>();
-    private List<Float> qzValues = new ArrayList<>();
-    private List<String> timestamps = new ArrayList<>();
-    private int dataPointCounter = 0;
+    private final OrientationTelemetryDecoder telemetryDecoder = new OrientationTelemetryDecoder();
+    private final TelemetryPipeline<OrientationBatch> pipeline = new TelemetryPipeline<>(
+            "DeviceTelemetry", PIPELINE_CAPACITY, MAX_FRAME_LENGTH,
+            () -> new OrientationBatch(BATCH_CAPACITY, BATCH_CAPACITY),
+            new NotificationFramer(MAX_FRAME_LENGTH),
+            telemetryDecoder,
+            () -> uiHandler.post(this::applySnapshot));
+    private ChartRenderScheduler renderScheduler;
+    private SessionRecorder recorder;
+    // The whole session: the chart window raw, older rows compressed at a few MB an hour
+    private final SeriesHistory eulerSeries = new SeriesHistory(3, CHART_WINDOW);
+    private final SeriesHistory quaternionSeries = new SeriesHistory(4, CHART_WINDOW);
+    private SeriesEntryList[] eulerLines, quaternionLines;
 
-    @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -62,12 +89,62 @@ public class DeviceActivity extends AppCompatActivity {
 
         initializeUI();
         initializeCharts();
-        connectToDevice(getIntent().getStringExtra("device_address"));
+        renderScheduler = new ChartRenderScheduler();
+        renderScheduler.setPreparation(eulerChart, () -> prepareChart(eulerChart, eulerLines));
+        renderScheduler.setPreparation(quaternionChart, () -> prepareChart(quaternionChart, quaternionLines));
+        pipeline.start();
+        ConnectionService.bind(this, serviceConnection);
+    }
+
+    private final ServiceConnection serviceConnection = new ServiceConnection() {
+        @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            if (transport != null) return;
+            String deviceAddress = getIntent().getStringExtra("device_address");
+            service = ((ConnectionService.LocalBinder) binder).getService();
+            transport = service.open();
+            recorder = service.openRecording("orientation", deviceAddress);
+            link = new TelemetryLink(transport, pipeline, recorder, DeviceActivity.this::onTransportStateChanged);
+            macroSender = new MacroSender(transport);
+            linkTuner = new LinkTuner(transport, link::getNotifications, STREAMING_RATE, LINK_HOLD_NANOS);
+            tuneLink();
+            connectToDevice(deviceAddress);
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+        }
+    };
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        renderScheduler.setVisible(true);
+        visible = true;
+        if (linkTuner != null) linkTuner.setVisible(true, SystemClock.elapsedRealtimeNanos());
+        if (link != null) link.setPaused(false);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        renderScheduler.setVisible(false);
+        visible = false;
+        if (linkTuner != null) linkTuner.setVisible(false, SystemClock.elapsedRealtimeNanos());
+    }
+
+    // Keeps running while hidden, so the link drops to low power once the hold time has passed
+    private void tuneLink() {
+        uiHandler.removeCallbacks(tuneTask);
+        linkTuner.setVisible(visible, SystemClock.elapsedRealtimeNanos());
+        uiHandler.postDelayed(tuneTask, TUNE_INTERVAL);
     }
 
     private void initializeUI() {
-        tvTerminal = findViewById(R.id.tvTerminal);
-        svTerminal = findViewById(R.id.svTerminal);
+        terminal = new TerminalLog(findViewById(R.id.rvTerminal), Color.WHITE);
+        CheckBox cbHideData = findViewById(R.id.cbHideData);
+        cbHideData.setOnCheckedChangeListener((button, checked) -> terminal.setHideData(checked));
         etMacroName = findViewById(R.id.etMacroName);
         etMacroValue = findViewById(R.id.etMacroValue);
         rgEditMode = findViewById(R.id.rgEditMode);
@@ -96,6 +173,10 @@ public class DeviceActivity extends AppCompatActivity {
                         etMacroName.setText("BNO Set up Cal");
                         etMacroValue.setText("01 04 00");
                         break;
+                    case "BNO Binary":
+                        etMacroName.setText("BNO Binary");
+                        etMacroValue.setText(BinaryFrameDecoder.ENABLE_MACRO);
+                        break;
                 }
             }
 
@@ -109,9 +190,10 @@ public class DeviceActivity extends AppCompatActivity {
 
     private void initializeCharts() {
         // Euler Angles Chart
-        List<Entry> yawEntries = new ArrayList<>();
-        List<Entry> pitchEntries = new ArrayList<>();
-        List<Entry> rollEntries = new ArrayList<>();
+        eulerLines = lines(eulerSeries);
+        List<Entry> yawEntries = eulerLines[0];
+        List<Entry> pitchEntries = eulerLines[1];
+        List<Entry> rollEntries = eulerLines[2];
 
         yawDataSet = new LineDataSet(yawEntries, "Yaw");
         yawDataSet.setColor(0xFF2196F3); // Blue
@@ -133,13 +215,7 @@ public class DeviceActivity extends AppCompatActivity {
 
         eulerChart.getDescription().setText("BNO055 Euler Angles");
         XAxis eulerXAxis = eulerChart.getXAxis();
-        eulerXAxis.setValueFormatter(new ValueFormatter() {
-            @Override
-            public String getFormattedValue(float value) {
-                int index = (int) value;
-                return (index >= 0 && index < timestamps.size()) ? timestamps.get(index) : "";
-            }
-        });
+        eulerXAxis.setValueFormatter(new SeriesTimeFormatter(eulerSeries));
         eulerXAxis.setLabelRotationAngle(45f);
         eulerXAxis.setLabelCount(5);
         eulerXAxis.setPosition(XAxis.XAxisPosition.BOTTOM);
@@ -151,13 +227,15 @@ public class DeviceActivity extends AppCompatActivity {
         eulerChart.getLegend().setEnabled(true);
         eulerChart.setTouchEnabled(true);
         eulerChart.setPinchZoom(true);
+        eulerChart.setOnChartGestureListener(new ZoomListener(eulerChart));
         eulerChart.invalidate();
 
         // Quaternion Chart
-        List<Entry> qwEntries = new ArrayList<>();
-        List<Entry> qxEntries = new ArrayList<>();
-        List<Entry> qyEntries = new ArrayList<>();
-        List<Entry> qzEntries = new ArrayList<>();
+        quaternionLines = lines(quaternionSeries);
+        List<Entry> qwEntries = quaternionLines[0];
+        List<Entry> qxEntries = quaternionLines[1];
+        List<Entry> qyEntries = quaternionLines[2];
+        List<Entry> qzEntries = quaternionLines[3];
 
         qwDataSet = new LineDataSet(qwEntries, "W");
         qwDataSet.setColor(0xFF2196F3); // Blue
@@ -184,13 +262,7 @@ public class DeviceActivity extends AppCompatActivity {
 
         quaternionChart.getDescription().setText("BNO055 Quaternions");
         XAxis quatXAxis = quaternionChart.getXAxis();
-        quatXAxis.setValueFormatter(new ValueFormatter() {
-            @Override
-            public String getFormattedValue(float value) {
-                int index = (int) value;
-                return (index >= 0 && index < timestamps.size()) ? timestamps.get(index) : "";
-            }
-        });
+        quatXAxis.setValueFormatter(new SeriesTimeFormatter(quaternionSeries));
         quatXAxis.setLabelRotationAngle(45f);
         quatXAxis.setLabelCount(5);
         quatXAxis.setPosition(XAxis.XAxisPosition.BOTTOM);
@@ -202,191 +274,134 @@ public class DeviceActivity extends AppCompatActivity {
         quaternionChart.getLegend().setEnabled(true);
         quaternionChart.setTouchEnabled(true);
         quaternionChart.setPinchZoom(true);
+        quaternionChart.setOnChartGestureListener(new ZoomListener(quaternionChart));
         quaternionChart.invalidate();
     }
 
     @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
     private void connectToDevice(String deviceAddress) {
-        BluetoothAdapter adapter = BluetoothAdapter.getDefaultAdapter();
-        BluetoothDevice device = adapter.getRemoteDevice(deviceAddress);
-        appendToTerminal(timeFormat.format(new Date()) + " Connecting to " + device.getName() + "...");
+        appendToTerminal(timeFormat.format(new Date()) + " Connecting to " + deviceAddress + "...");
+        transport.connect(deviceAddress, link);
+    }
 
-        bluetoothGatt = device.connectGatt(this, false, new BluetoothGattCallback() {
-            @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
-            @Override
-            public void onConnectionStateChange(BluetoothGatt gatt, int status, int newState) {
-                if (newState == BluetoothProfile.STATE_CONNECTED) {
-                    isConnected.set(true);
-                    appendToTerminal(timeFormat.format(new Date()) + " Connected");
-                    gatt.discoverServices();
-                    gatt.requestMtu(247);
-                } else if (newState == BluetoothProfile.STATE_DISCONNECTED) {
-                    isConnected.set(false);
-                    appendToTerminal(timeFormat.format(new Date()) + " Disconnected");
-                }
-            }
+    // Called on the binder thread; the terminal is thread-safe
+    private void onTransportStateChanged(Transport.State state) {
+        if (state == Transport.State.READY) {
+            appendToTerminal(timeFormat.format(new Date()) + " Connected");
+            appendToTerminal("Ready for communication");
+        } else if (state == Transport.State.DISCONNECTED) {
+            appendToTerminal(timeFormat.format(new Date()) + " Disconnected");
+        }
+    }
 
-            @Override
-            public void onServicesDiscovered(BluetoothGatt gatt, int status) {
-                if (status == BluetoothGatt.GATT_SUCCESS) {
-                    BluetoothGattService uartService = gatt.getService(UART_SERVICE_UUID);
-                    if (uartService != null) {
-                        setupCharacteristics(uartService);
-                    } else {
-                        appendToTerminal("UART service not found");
-                    }
-                }
-            }
+    private void appendToTerminal(String message) {
+        terminal.appendControl(message);
+    }
 
-            @Override
-            public void onCharacteristicChanged(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic) {
-                byte[] data = characteristic.getValue();
-                if (data != null && data.length > 0) {
-                    String received = new String(data).trim();
-                    Log.d(TAG, "Raw data received: " + received);
-                    if (!received.isEmpty()) {
-                        appendToTerminal(received);
-                    }
-                }
-            }
-        });
+    private void applySnapshot() {
+        OrientationBatch batch = pipeline.acquireSnapshot();
+        if (batch == null) return;
+
+        for (int i = 0; i < batch.lineCount(); i++) {
+            terminal.appendData(batch.lineAt(i));
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            plotOrientation(batch.recordsAt(i), batch.timestampAt(i),
+                    batch.yawAt(i), batch.pitchAt(i), batch.rollAt(i),
+                    batch.qwAt(i), batch.qxAt(i), batch.qyAt(i), batch.qzAt(i));
+        }
+        if (batch.getOverwritten() > 0) {
+            Log.w(TAG, "UI fell behind, skipped " + batch.getOverwritten() + " samples");
+        }
+        pipeline.releaseSnapshot(batch);
     }
 
-    @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
-    private void setupCharacteristics(BluetoothGattService uartService) {
-        rxCharacteristic = uartService.getCharacteristic(RX_CHARACTERISTIC_UUID);
-        BluetoothGattCharacteristic txCharacteristic = uartService.getCharacteristic(TX_CHARACTERISTIC_UUID);
-
-        if (txCharacteristic != null) {
-            bluetoothGatt.setCharacteristicNotification(txCharacteristic, true);
-            BluetoothGattDescriptor descriptor = txCharacteristic.getDescriptor(CCCD_UUID);
-            if (descriptor != null) {
-                descriptor.setValue(BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE);
-                bluetoothGatt.writeDescriptor(descriptor);
-            }
+    private void plotOrientation(int found, long timestamp, float yaw, float pitch, float roll,
+                                 float qw, float qx, float qy, float qz) {
+        if ((found & OrientationFrameDecoder.EULER) != 0) {
+            eulerSeries.append(timestamp, yaw, pitch, roll);
+            renderScheduler.requestRender(eulerChart);
+        }
+        if ((found & OrientationFrameDecoder.QUATERNION) != 0) {
+            quaternionSeries.append(timestamp, qw, qx, qy, qz);
+            renderScheduler.requestRender(quaternionChart);
         }
-        appendToTerminal("Ready for communication");
     }
 
-    private void appendToTerminal(String message) {
-        uiHandler.post(() -> {
-            tvTerminal.append(timeFormat.format(new Date()) + " " + message + "\n");
-            svTerminal.fullScroll(View.FOCUS_DOWN);
-
-            if (!message.startsWith("Sent:") && !message.contains("Connecting") && !message.contains("Connected") &&
-                    !message.contains("Disconnected") && !message.contains("UART") && !message.contains("Ready") &&
-                    !message.startsWith("^")) {
-                try {
-                    boolean dataFound = false;
-
-                    // More robust regex for Euler Angles
-                    Pattern eulerPattern = Pattern.compile("\\{\"EX\"\\s*:\\s*([-]?\\d*\\.?\\d+),\\s*\"EY\"\\s*:\\s*([-]?\\d*\\.?\\d+),\\s*\"EZ\"\\s*:\\s*([-]?\\d*\\.?\\d+)\\}");
-                    Matcher eulerMatcher = eulerPattern.matcher(message);
-
-                    if (eulerMatcher.find()) {
-                        dataFound = true;
-                        float yaw = Float.parseFloat(eulerMatcher.group(1));
-                        float pitch = Float.parseFloat(eulerMatcher.group(2));
-                        float roll = Float.parseFloat(eulerMatcher.group(3));
-
-                        Log.d(TAG, "Parsed Euler: yaw=" + yaw + ", pitch=" + pitch + ", roll=" + roll);
-
-                        yawValues.add(yaw);
-                        pitchValues.add(pitch);
-                        rollValues.add(roll);
-                        timestamps.add(timeFormat.format(new Date()));
-
-                        yawDataSet.addEntry(new Entry(dataPointCounter, yaw));
-                        pitchDataSet.addEntry(new Entry(dataPointCounter, pitch));
-                        rollDataSet.addEntry(new Entry(dataPointCounter, roll));
-
-                        if (yawDataSet.getEntryCount() > 50) {
-                            yawDataSet.removeFirst();
-                            pitchDataSet.removeFirst();
-                            rollDataSet.removeFirst();
-                            yawValues.remove(0);
-                            pitchValues.remove(0);
-                            rollValues.remove(0);
-                            timestamps.remove(0);
-
-                            for (int i = 0; i < yawDataSet.getEntryCount(); i++) {
-                                yawDataSet.getEntryForIndex(i).setX(i);
-                                pitchDataSet.getEntryForIndex(i).setX(i);
-                                rollDataSet.getEntryForIndex(i).setX(i);
-                            }
-                        }
-
-                        eulerLineData.notifyDataChanged();
-                        eulerChart.notifyDataSetChanged();
-                        eulerChart.invalidate();
-                    }
-
-                    // More robust regex for Quaternions
-                    Pattern quatPattern = Pattern.compile("\\{\"QW\"\\s*:\\s*([-]?\\d*\\.?\\d+),\\s*\"QX\"\\s*:\\s*([-]?\\d*\\.?\\d+),\\s*\"QY\"\\s*:\\s*([-]?\\d*\\.?\\d+),\\s*\"QZ\"\\s*:\\s*([-]?\\d*\\.?\\d+)\\}");
-                    Matcher quatMatcher = quatPattern.matcher(message);
-
-                    if (quatMatcher.find()) {
-                        dataFound = true;
-                        float qw = Float.parseFloat(quatMatcher.group(1));
-                        float qx = Float.parseFloat(quatMatcher.group(2));
-                        float qy = Float.parseFloat(quatMatcher.group(3));
-                        float qz = Float.parseFloat(quatMatcher.group(4));
-
-                        Log.d(TAG, "Parsed Quaternion: qw=" + qw + ", qx=" + qx + ", qy=" + qy + ", qz=" + qz);
-
-                        qwValues.add(qw);
-                        qxValues.add(qx);
-                        qyValues.add(qy);
-                        qzValues.add(qz);
-                        if (!timestamps.contains(timeFormat.format(new Date()))) {
-                            timestamps.add(timeFormat.format(new Date()));
-                        }
-
-                        qwDataSet.addEntry(new Entry(dataPointCounter, qw));
-                        qxDataSet.addEntry(new Entry(dataPointCounter, qx));
-                        qyDataSet.addEntry(new Entry(dataPointCounter, qy));
-                        qzDataSet.addEntry(new Entry(dataPointCounter, qz));
-
-                        if (qwDataSet.getEntryCount() > 50) {
-                            qwDataSet.removeFirst();
-                            qxDataSet.removeFirst();
-                            qyDataSet.removeFirst();
-                            qzDataSet.removeFirst();
-                            qwValues.remove(0);
-                            qxValues.remove(0);
-                            qyValues.remove(0);
-                            qzValues.remove(0);
-                            timestamps.remove(0);
-
-                            for (int i = 0; i < qwDataSet.getEntryCount(); i++) {
-                                qwDataSet.getEntryForIndex(i).setX(i);
-                                qxDataSet.getEntryForIndex(i).setX(i);
-                                qyDataSet.getEntryForIndex(i).setX(i);
-                                qzDataSet.getEntryForIndex(i).setX(i);
-                            }
-                        }
-
-                        quaternionLineData.notifyDataChanged();
-                        quaternionChart.notifyDataSetChanged();
-                        quaternionChart.invalidate();
-                    }
-
-                    if (dataFound) {
-                        dataPointCounter++;
-                    } else {
-                        Log.d(TAG, "No Euler or Quaternion data found in message: " + message);
-                    }
-
-                } catch (NumberFormatException e) {
-                    Log.e(TAG, "Invalid data format: " + message, e);
-                }
-            }
-        });
+    private static SeriesEntryList[] lines(SeriesHistory series) {
+        SeriesEntryList[] lines = new SeriesEntryList[series.channels()];
+        for (int channel = 0; channel < lines.length; channel++) {
+            lines[channel] = new SeriesEntryList(series, channel, SeriesDecimator.Mode.LTTB, MAX_CHART_POINTS);
+        }
+        return lines;
+    }
+
+    // Picks each line's points for the chart's current zoom, about one per pixel of the visible range
+    private static void prepareChart(LineChart chart, SeriesEntryList[] lines) {
+        int width = (int) chart.getViewPortHandler().contentWidth();
+        float lowest = chart.getLowestVisibleX();
+        float highest = chart.getHighestVisibleX();
+        for (SeriesEntryList line : lines) {
+            line.update(lowest, highest, width > 0 ? width : MAX_CHART_POINTS);
+        }
+    }
+
+    // Re-picks the points as the user zooms and scrolls; the scheduler folds the requests into frames
+    private class ZoomListener implements OnChartGestureListener {
+        private final LineChart chart;
+
+        ZoomListener(LineChart chart) {
+            this.chart = chart;
+        }
+
+        @Override
+        public void onChartScale(MotionEvent me, float scaleX, float scaleY) {
+            renderScheduler.requestRender(chart);
+        }
+
+        @Override
+        public void onChartTranslate(MotionEvent me, float dX, float dY) {
+            renderScheduler.requestRender(chart);
+        }
+
+        @Override
+        public void onChartGestureEnd(MotionEvent me, ChartTouchListener.ChartGesture lastPerformedGesture) {
+            renderScheduler.requestRender(chart);
+        }
+
+        @Override
+        public void onChartGestureStart(MotionEvent me, ChartTouchListener.ChartGesture lastPerformedGesture) {}
+
+        @Override
+        public void onChartLongPressed(MotionEvent me) {}
+
+        @Override
+        public void onChartDoubleTapped(MotionEvent me) {}
+
+        @Override
+        public void onChartSingleTapped(MotionEvent me) {}
+
+        @Override
+        public void onChartFling(MotionEvent me1, MotionEvent me2, float velocityX, float velocityY) {}
+    }
+
+    private class SeriesTimeFormatter extends ValueFormatter {
+        private final SeriesHistory series;
+
+        SeriesTimeFormatter(SeriesHistory series) {
+            this.series = series;
+        }
+
+        @Override
+        public String getFormattedValue(float value) {
+            long index = (long) value;
+            return (index >= 0 && index < series.size()) ? timeFormat.format(new Date(series.timeAt(index))) : "";
+        }
     }
 
-    @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
     private void executeMacro() {
-        if (!isConnected.get()) {
+        if (transport == null || transport.getState() != Transport.State.READY) {
             appendToTerminal("Not connected to device");
             return;
         }
@@ -401,31 +416,24 @@ public class DeviceActivity extends AppCompatActivity {
 
         boolean isHexMode = rgEditMode.getCheckedRadioButtonId() == R.id.rbHex;
         try {
-            byte[] data = isHexMode ? hexStringToByteArray(value.replaceAll(" ", "")) : value.getBytes();
-            rxCharacteristic.setValue(data);
-            rxCharacteristic.setWriteType(BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE);
-            bluetoothGatt.writeCharacteristic(rxCharacteristic);
-            appendToTerminal("Sent: " + name + " (" + value + ")");
+            if (macroSender.send(value, isHexMode ? MacroSender.Encoding.HEX : MacroSender.Encoding.TEXT)) {
+                appendToTerminal("Sent: " + name + " (" + value + ")");
+            } else {
+                appendToTerminal("Error sending macro: write failed");
+            }
         } catch (Exception e) {
             appendToTerminal("Error sending macro: " + e.getMessage());
             Log.e(TAG, "Macro send error", e);
         }
     }
 
-    private static byte[] hexStringToByteArray(String s) {
-        int len = s.length();
-        byte[] data = new byte[(len + 1) / 2];
-        for (int i = 0; i < len; i += 2) {
-            data[i / 2] = (byte) ((Character.digit(s.charAt(i), 16) << 4) +
-                    (i + 1 < len ? Character.digit(s.charAt(i + 1), 16) : 0));
-        }
-        return data;
-    }
-
+    // The BPM screen joins this screen's link through the connection service and records
+    // and decodes the stream itself; this screen leaves it alone until it is shown again
     public void goToBPMActivity(View view) {
-        if (bluetoothGatt != null && bluetoothGatt.getDevice() != null) {
+        if (transport != null && transport.getState() == Transport.State.READY) {
+            link.setPaused(true);
             Intent intent = new Intent(this, BPMActivity.class);
-            intent.putExtra("device_address", bluetoothGatt.getDevice().getAddress());
+            intent.putExtra("device_address", transport.getAddress());
             startActivity(intent);
             appendToTerminal(timeFormat.format(new Date()) + " Navigating to BPM Activity");
         } else {
@@ -433,13 +441,31 @@ public class DeviceActivity extends AppCompatActivity {
         }
     }
 
-    @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (bluetoothGatt != null) {
-            bluetoothGatt.disconnect();
-            bluetoothGatt.close();
+        if (transport != null) transport.disconnect();
+        // Kept open for a screen recreated right away
+        if (service != null) service.releaseRecording(recorder);
+        unbindService(serviceConnection);
+        pipeline.stop();
+        renderScheduler.release();
+        terminal.release();
+        Log.i(TAG, "Chart renders: " + renderScheduler.getPerformedRenders() + " performed, "
+                + renderScheduler.getSavedRenders() + " saved");
+        BinaryFrameDecoder binaryDecoder = telemetryDecoder.getBinaryDecoder();
+        Log.i(TAG, "Binary samples: " + binaryDecoder.getDecodedSamples() + " decoded, "
+                + binaryDecoder.getLostSamples() + " lost, " + binaryDecoder.getMalformedFrames() + " malformed");
+        Log.i(TAG, "Text lines without orientation data: " + telemetryDecoder.getUnrecognisedLines());
+        Log.i(TAG, "Euler angles derived from quaternions: " + telemetryDecoder.getDerivedSamples());
+        Log.i(TAG, "Session history: " + (eulerSeries.size() + quaternionSeries.size()) + " rows in "
+                + (eulerSeries.store().getCompressedBytes() + quaternionSeries.store().getCompressedBytes()) + " bytes");
+        if (link != null) {
+            Log.i(TAG, "Notifications: " + link.getNotifications() + " received, "
+                    + link.getDroppedNotifications() + " dropped by a full pipeline");
+        }
+        if (linkTuner != null) {
+            Log.i(TAG, "Link profile changes: " + linkTuner.getChanges() + ", last " + linkTuner.getProfile());
         }
         uiHandler.removeCallbacksAndMessages(null);
     }
@@ -1,54 +1,84 @@
 package com.example.dashpod;
 
-import android.annotation.SuppressLint;
-import android.bluetooth.BluetoothDevice;
-import android.content.Context;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.BaseAdapter;
 import android.widget.TextView;
-import java.util.List;
 
-public class DeviceAdapter extends BaseAdapter {
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
 
-    private final Context context;
-    private final List<BluetoothDevice> devices;
+import com.example.dashpod.transport.DeviceTable;
+import com.example.dashpod.transport.KnownDevices;
 
-    public DeviceAdapter(Context context, List<BluetoothDevice> devices) {
-        this.context = context;
-        this.devices = devices;
-    }
+/**
+ * Scan results list. Rows are keyed by MAC address and lists are diffed on a
+ * background thread, so a new batch of results only rebinds the rows whose
+ * name or RSSI changed. Rows show snapshots, never the BluetoothDevice, so
+ * binding makes no binder calls.
+ */
+public class DeviceAdapter extends ListAdapter<DeviceTable.Snapshot, DeviceAdapter.DeviceHolder> {
 
-    @Override
-    public int getCount() {
-        return devices.size();
+    public interface OnDeviceClickListener {
+        void onDeviceClick(DeviceTable.Snapshot device);
     }
 
-    @Override
-    public Object getItem(int position) {
-        return devices.get(position);
+    private static final DiffUtil.ItemCallback<DeviceTable.Snapshot> DIFF = new DiffUtil.ItemCallback<DeviceTable.Snapshot>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull DeviceTable.Snapshot oldItem, @NonNull DeviceTable.Snapshot newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull DeviceTable.Snapshot oldItem, @NonNull DeviceTable.Snapshot newItem) {
+            return oldItem.equals(newItem);
+        }
+    };
+
+    private final OnDeviceClickListener clickListener;
+
+    public DeviceAdapter(OnDeviceClickListener clickListener) {
+        super(DIFF);
+        this.clickListener = clickListener;
+        setHasStableIds(true);
     }
 
     @Override
     public long getItemId(int position) {
-        return position;
+        return getItem(position).getId();
     }
 
-    @SuppressLint("MissingPermission")
+    @NonNull
     @Override
-    public View getView(int position, View convertView, ViewGroup parent) {
-        BluetoothDevice device = devices.get(position);
-        if (convertView == null) {
-            convertView = LayoutInflater.from(context).inflate(R.layout.device_item, parent, false);
-        }
+    public DeviceHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.device_item, parent, false);
+        DeviceHolder holder = new DeviceHolder(view);
+        view.setOnClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (position != RecyclerView.NO_POSITION) {
+                clickListener.onDeviceClick(getItem(position));
+            }
+        });
+        return holder;
+    }
 
-        TextView name = convertView.findViewById(R.id.deviceName);
-        TextView address = convertView.findViewById(R.id.deviceAddress);
+    @Override
+    public void onBindViewHolder(@NonNull DeviceHolder holder, int position) {
+        DeviceTable.Snapshot device = getItem(position);
+        holder.name.setText(device.getName() != null ? device.getName() : "Unknown");
+        holder.address.setText(device.getRssi() != KnownDevices.RSSI_UNKNOWN
+                ? device.getAddress() + "  " + device.getRssi() + " dBm" : device.getAddress());
+    }
 
-        name.setText(device.getName() != null ? device.getName() : "Unknown");
-        address.setText(device.getAddress());
+    static class DeviceHolder extends RecyclerView.ViewHolder {
+        final TextView name, address;
 
-        return convertView;
+        DeviceHolder(View view) {
+            super(view);
+            name = view.findViewById(R.id.deviceName);
+            address = view.findViewById(R.id.deviceAddress);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,127 @@
+package com.example.dashpod;
+
+import android.content.ComponentName;
+import android.content.ServiceConnection;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.widget.Button;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.dashpod.transport.FleetMonitor;
+import com.example.dashpod.transport.MacroSender;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Live breathing rate and orientation of several devices at once, one tile
+ * per device. Each device decodes on its own worker (see {@link FleetMonitor});
+ * this screen only samples the latest values a few times per second.
+ */
+public class FleetActivity extends AppCompatActivity {
+
+    private static final String TAG = "FleetActivity";
+    private static final long REFRESH_INTERVAL = 250;
+    private static final int COLUMNS = 2;
+
+    private final Handler uiHandler = new Handler(Looper.getMainLooper());
+    private final FleetAdapter adapter = new FleetAdapter();
+    private final Runnable refreshTask = this::refresh;
+    private FleetMonitor fleet;
+    private TextView tvSummary;
+    private boolean visible;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_fleet);
+
+        tvSummary = findViewById(R.id.tvFleetSummary);
+        RecyclerView rvFleet = findViewById(R.id.rvFleet);
+        rvFleet.setLayoutManager(new GridLayoutManager(this, COLUMNS));
+        rvFleet.setAdapter(adapter);
+        // Tiles are rebound in place; skip the change animation on every refresh
+        rvFleet.setItemAnimator(null);
+
+        Button btnStartAll = findViewById(R.id.btnStartAll);
+        Button btnStopAll = findViewById(R.id.btnStopAll);
+        btnStartAll.setOnClickListener(v -> broadcast("01 0A"));
+        btnStopAll.setOnClickListener(v -> broadcast("03"));
+
+        ConnectionService.bind(this, serviceConnection);
+    }
+
+    private final ServiceConnection serviceConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            if (fleet != null) return;
+            ConnectionService service = ((ConnectionService.LocalBinder) binder).getService();
+            fleet = new FleetMonitor(service::open);
+            String[] addresses = getIntent().getStringArrayExtra("device_addresses");
+            if (addresses != null) {
+                for (String address : addresses) {
+                    fleet.add(address);
+                }
+            }
+            refresh();
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+        }
+    };
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        visible = true;
+        refresh();
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        visible = false;
+        uiHandler.removeCallbacks(refreshTask);
+    }
+
+    private void refresh() {
+        uiHandler.removeCallbacks(refreshTask);
+        if (fleet == null || !visible) return;
+        List<FleetMonitor.DeviceStatus> statuses = fleet.sample(SystemClock.elapsedRealtimeNanos());
+        adapter.update(statuses);
+        tvSummary.setText(String.format(Locale.getDefault(), "%d devices, %.0f packets/s",
+                statuses.size(), fleet.getPacketsPerSecond()));
+        uiHandler.postDelayed(refreshTask, REFRESH_INTERVAL);
+    }
+
+    private void broadcast(String macro) {
+        if (fleet == null) return;
+        int written = fleet.broadcast(MacroSender.encode(macro, MacroSender.Encoding.HEX));
+        Toast.makeText(this, "Sent to " + written + " of " + fleet.size() + " devices", Toast.LENGTH_SHORT).show();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        uiHandler.removeCallbacksAndMessages(null);
+        if (fleet != null) {
+            List<FleetMonitor.DeviceStatus> statuses = fleet.sample(SystemClock.elapsedRealtimeNanos());
+            for (FleetMonitor.DeviceStatus status : statuses) {
+                Log.i(TAG, status.getAddress() + ": " + status.getNotifications() + " notifications, "
+                        + status.getDroppedNotifications() + " dropped by a full pipeline");
+            }
+            fleet.close();
+        }
+        unbindService(serviceConnection);
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.dashpod;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.dashpod.transport.FleetMonitor;
+import com.example.dashpod.transport.Transport;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * One tile per device on the fleet dashboard. The statuses are updated in
+ * place by {@link FleetMonitor#sample}, so a refresh only rebinds the tiles.
+ */
+public class FleetAdapter extends RecyclerView.Adapter<FleetAdapter.TileHolder> {
+
+    private List<FleetMonitor.DeviceStatus> statuses = Collections.emptyList();
+
+    public void update(List<FleetMonitor.DeviceStatus> statuses) {
+        if (statuses.size() != this.statuses.size()) {
+            this.statuses = statuses;
+            notifyDataSetChanged();
+        } else {
+            this.statuses = statuses;
+            notifyItemRangeChanged(0, statuses.size());
+        }
+    }
+
+    @NonNull
+    @Override
+    public TileHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.fleet_tile, parent, false);
+        return new TileHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull TileHolder holder, int position) {
+        FleetMonitor.DeviceStatus status = statuses.get(position);
+        holder.address.setText(status.getAddress());
+        holder.state.setText(status.getState() == Transport.State.READY ? "Streaming" : status.getState().toString());
+        holder.bpm.setText(Float.isNaN(status.getBpm()) ? "-- BPM"
+                : String.format(Locale.getDefault(), "%.1f BPM", status.getBpm()));
+        holder.orientation.setText(status.hasOrientation()
+                ? String.format(Locale.getDefault(), "Y %.1f  P %.1f  R %.1f",
+                        status.getYaw(), status.getPitch(), status.getRoll())
+                : "Y --  P --  R --");
+        holder.rate.setText(String.format(Locale.getDefault(), "%.0f packets/s, %d dropped",
+                status.getPacketsPerSecond(), status.getDroppedNotifications()));
+    }
+
+    @Override
+    public int getItemCount() {
+        return statuses.size();
+    }
+
+    static class TileHolder extends RecyclerView.ViewHolder {
+        final TextView address, state, bpm, orientation, rate;
+
+        TileHolder(View view) {
+            super(view);
+            address = view.findViewById(R.id.tvTileAddress);
+            state = view.findViewById(R.id.tvTileState);
+            bpm = view.findViewById(R.id.tvTileBpm);
+            orientation = view.findViewById(R.id.tvTileOrientation);
+            rate = view.findViewById(R.id.tvTileRate);
+        }
+    }
+}
@@ -0,0 +1,384 @@
+package com.example.dashpod;
+
+import android.Manifest;
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCallback;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.bluetooth.BluetoothGattService;
+import android.bluetooth.BluetoothProfile;
+import android.content.Context;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.RequiresPermission;
+
+import com.example.dashpod.telemetry.RunningStats;
+import com.example.dashpod.transport.GattOperationQueue;
+import com.example.dashpod.transport.NordicUart;
+import com.example.dashpod.transport.Transport;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link Transport} over a GATT connection to the Nordic UART Service.
+ *
+ * If a device does not expose the service, the first characteristic that can
+ * be written without response is used for writes and every notifying
+ * characteristic is subscribed, as the BPM screen always did.
+ *
+ * Every GATT request goes through a {@link GattOperationQueue}, so setup steps
+ * and macro writes never collide: the MTU request, service discovery and each
+ * descriptor write run one after the other, and the transport only becomes
+ * ready once the last descriptor write has been acknowledged.
+ *
+ * Connecting needs only the address, so devices connected to before are
+ * reached without a scan. The first attempt is a direct LE connection, which
+ * is the fastest when the device is advertising; if it fails, e.g. because the
+ * device is out of range, the transport keeps waiting for it with an
+ * auto-connect request, which the controller completes when it reappears.
+ *
+ * The {@link Transport.LinkProfile} maps to a connection priority and, where
+ * the phone supports it, the LE 2M PHY for high throughput. The intervals and
+ * PHYs the controller settles on are logged, so the cost of each profile can
+ * be read from the log.
+ */
+public class GattTransport implements Transport {
+
+    private static final String TAG = "GattTransport";
+    private static final int MTU = 247;
+    private static final long DISCOVERY_TIMEOUT = 10000;
+    private static final long OPERATION_TIMEOUT = 2000;
+    // Android's stack refuses a write while its buffer is full; the queue retries those
+    private static final int WRITE_WINDOW = 4;
+
+    // Shared by every connection; it only fires timeouts
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "GattTimeouts");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Context context;
+    private final GattOperationQueue operations = new GattOperationQueue(TIMER, WRITE_WINDOW);
+    // Descriptor writes still to be acknowledged before the link is ready, plus one while the setup pass
+    // enqueues them; completions report from binder and timer threads, so only the decrement to 0 goes ready
+    private final AtomicInteger pendingSetup = new AtomicInteger();
+    private volatile Listener listener;
+    private volatile State state = State.DISCONNECTED;
+    private volatile String address;
+    private volatile BluetoothGatt gatt;
+    private volatile BluetoothGattCharacteristic rxCharacteristic;
+    private volatile boolean autoConnect;
+    private volatile int maxWriteLength = DEFAULT_MAX_WRITE_LENGTH;
+    private volatile LinkProfile linkProfile;
+
+    public GattTransport(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
+    @Override
+    public void connect(String address, Listener listener) {
+        this.address = address;
+        this.listener = listener;
+        BluetoothDevice device = BluetoothAdapter.getDefaultAdapter().getRemoteDevice(address);
+        pendingSetup.set(0);
+        autoConnect = false;
+        maxWriteLength = DEFAULT_MAX_WRITE_LENGTH;
+        setState(State.CONNECTING);
+        gatt = device.connectGatt(context, false, callback, BluetoothDevice.TRANSPORT_LE);
+    }
+
+    @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
+    @Override
+    public boolean write(byte[] data) {
+        return write(data, 0, data.length, null);
+    }
+
+    // Completes once the stack had room for the payload; a refused write is retried by the queue
+    @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
+    @Override
+    public boolean write(byte[] data, int offset, int length, WriteCallback callback) {
+        BluetoothGatt current = gatt;
+        BluetoothGattCharacteristic characteristic = rxCharacteristic;
+        if (state != State.READY || current == null || characteristic == null) return false;
+        byte[] payload = Arrays.copyOfRange(data, offset, offset + length);
+        operations.enqueue(new GattOperationQueue.Operation(
+                GattOperationQueue.Type.WRITE_WITHOUT_RESPONSE, OPERATION_TIMEOUT) {
+            @Override
+            protected boolean start() {
+                characteristic.setValue(payload);
+                characteristic.setWriteType(BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE);
+                return current.writeCharacteristic(characteristic);
+            }
+
+            @Override
+            protected void onFinished(boolean success) {
+                if (callback != null) callback.onWritten(success);
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public int getMaxWriteLength() {
+        return maxWriteLength;
+    }
+
+    @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
+    @Override
+    public void setLinkProfile(LinkProfile profile) {
+        if (profile == linkProfile) return;
+        linkProfile = profile;
+        BluetoothGatt current = gatt;
+        if (state == State.READY && current != null) {
+            applyLinkProfile(current);
+        }
+    }
+
+    @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
+    @Override
+    public void disconnect() {
+        BluetoothGatt current = gatt;
+        gatt = null;
+        operations.clear();
+        if (current != null) {
+            current.disconnect();
+            current.close();
+        }
+        setState(State.DISCONNECTED);
+        RunningStats latency = operations.getLatency();
+        Log.i(TAG, String.format(Locale.US,
+                "GATT operations: %d completed, %d failed, %d timed out, latency %.1f ms mean, %.1f ms max",
+                operations.getCompleted(), operations.getFailed(), operations.getTimedOut(),
+                latency.getMean(), latency.isEmpty() ? 0 : latency.getMax()));
+    }
+
+    @Override
+    public State getState() {
+        return state;
+    }
+
+    @Override
+    public String getAddress() {
+        return address;
+    }
+
+    /** Name of the connected device, or null. */
+    @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
+    public String getDeviceName() {
+        BluetoothGatt current = gatt;
+        return current != null ? current.getDevice().getName() : null;
+    }
+
+    private void setState(State newState) {
+        if (state == newState) return;
+        state = newState;
+        Listener current = listener;
+        if (current != null) current.onStateChanged(newState);
+    }
+
+    @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
+    private void startSetup(BluetoothGatt gatt) {
+        operations.enqueue(new GattOperationQueue.Operation(GattOperationQueue.Type.REQUEST_MTU, OPERATION_TIMEOUT) {
+            @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
+            @Override
+            protected boolean start() {
+                return gatt.requestMtu(MTU);
+            }
+        });
+        operations.enqueue(new GattOperationQueue.Operation(
+                GattOperationQueue.Type.DISCOVER_SERVICES, DISCOVERY_TIMEOUT) {
+            @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
+            @Override
+            protected boolean start() {
+                return gatt.discoverServices();
+            }
+
+            @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
+            @Override
+            protected void onFinished(boolean success) {
+                if (success) {
+                    setupCharacteristics(gatt);
+                } else {
+                    Log.w(TAG, "Service discovery failed");
+                }
+            }
+        });
+    }
+
+    @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
+    private void setupCharacteristics(BluetoothGatt gatt) {
+        pendingSetup.set(1);
+        BluetoothGattService uartService = gatt.getService(NordicUart.SERVICE);
+        if (uartService != null) {
+            rxCharacteristic = uartService.getCharacteristic(NordicUart.RX_CHARACTERISTIC);
+            BluetoothGattCharacteristic txCharacteristic = uartService.getCharacteristic(NordicUart.TX_CHARACTERISTIC);
+            if (txCharacteristic != null) {
+                enableNotifications(gatt, txCharacteristic);
+            }
+        } else {
+            Log.w(TAG, "UART service not found, using characteristic properties");
+            for (BluetoothGattService service : gatt.getServices()) {
+                for (BluetoothGattCharacteristic characteristic : service.getCharacteristics()) {
+                    int properties = characteristic.getProperties();
+                    if (rxCharacteristic == null
+                            && (properties & BluetoothGattCharacteristic.PROPERTY_WRITE_NO_RESPONSE) != 0) {
+                        rxCharacteristic = characteristic;
+                    }
+                    if ((properties & BluetoothGattCharacteristic.PROPERTY_NOTIFY) != 0) {
+                        enableNotifications(gatt, characteristic);
+                    }
+                }
+            }
+        }
+        setupStepDone(gatt);
+    }
+
+    @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
+    private void enableNotifications(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic) {
+        gatt.setCharacteristicNotification(characteristic, true);
+        BluetoothGattDescriptor descriptor = characteristic.getDescriptor(NordicUart.CLIENT_CONFIG_DESCRIPTOR);
+        if (descriptor == null) return;
+        pendingSetup.incrementAndGet();
+        operations.enqueue(new GattOperationQueue.Operation(
+                GattOperationQueue.Type.WRITE_DESCRIPTOR, OPERATION_TIMEOUT) {
+            @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
+            @Override
+            protected boolean start() {
+                descriptor.setValue(BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE);
+                return gatt.writeDescriptor(descriptor);
+            }
+
+            @Override
+            protected void onFinished(boolean success) {
+                if (!success) {
+                    Log.w(TAG, "Enabling notifications failed for " + characteristic.getUuid());
+                }
+                // Data still flows through the characteristics that did succeed
+                setupStepDone(gatt);
+            }
+        });
+    }
+
+    @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
+    private void setupStepDone(BluetoothGatt gatt) {
+        if (pendingSetup.decrementAndGet() == 0 && state == State.CONNECTING && gatt == this.gatt) {
+            onReady(gatt);
+        }
+    }
+
+    @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
+    private void onReady(BluetoothGatt gatt) {
+        setState(State.READY);
+        applyLinkProfile(gatt);
+    }
+
+    @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
+    private void applyLinkProfile(BluetoothGatt gatt) {
+        LinkProfile profile = linkProfile;
+        if (profile == null) return;
+        int priority;
+        int phy = BluetoothDevice.PHY_LE_1M_MASK;
+        switch (profile) {
+            case HIGH_THROUGHPUT:
+                priority = BluetoothGatt.CONNECTION_PRIORITY_HIGH;
+                phy = BluetoothDevice.PHY_LE_2M_MASK;
+                break;
+            case LOW_POWER:
+                priority = BluetoothGatt.CONNECTION_PRIORITY_LOW_POWER;
+                break;
+            default:
+                priority = BluetoothGatt.CONNECTION_PRIORITY_BALANCED;
+                break;
+        }
+        if (!gatt.requestConnectionPriority(priority)) {
+            Log.w(TAG, "Connection priority for " + profile + " refused");
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && BluetoothAdapter.getDefaultAdapter().isLe2MPhySupported()) {
+            gatt.setPreferredPhy(phy, phy, BluetoothDevice.PHY_OPTION_NO_PREFERRED);
+        }
+        Log.i(TAG, "Link profile " + profile);
+    }
+
+    private final BluetoothGattCallback callback = new BluetoothGattCallback() {
+        @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
+        @Override
+        public void onConnectionStateChange(BluetoothGatt gatt, int status, int newState) {
+            if (newState == BluetoothProfile.STATE_CONNECTED) {
+                startSetup(gatt);
+            } else if (newState == BluetoothProfile.STATE_DISCONNECTED) {
+                if (state == State.CONNECTING && !autoConnect && gatt == GattTransport.this.gatt) {
+                    Log.i(TAG, "Direct connection failed (" + status + "), waiting for the device");
+                    autoConnect = true;
+                    gatt.close();
+                    GattTransport.this.gatt = gatt.getDevice().connectGatt(context, true, callback,
+                            BluetoothDevice.TRANSPORT_LE);
+                    return;
+                }
+                rxCharacteristic = null;
+                setState(State.DISCONNECTED);
+                operations.clear();
+            }
+        }
+
+        @Override
+        public void onMtuChanged(BluetoothGatt gatt, int mtu, int status) {
+            if (status == BluetoothGatt.GATT_SUCCESS) {
+                maxWriteLength = mtu - 3; // ATT write header
+            }
+            operations.complete(GattOperationQueue.Type.REQUEST_MTU, status == BluetoothGatt.GATT_SUCCESS);
+        }
+
+        @Override
+        public void onPhyUpdate(BluetoothGatt gatt, int txPhy, int rxPhy, int status) {
+            if (status == BluetoothGatt.GATT_SUCCESS) {
+                Log.i(TAG, "PHY tx " + txPhy + ", rx " + rxPhy + " (" + linkProfile + ")");
+            } else {
+                Log.w(TAG, "PHY update failed (" + status + ")");
+            }
+        }
+
+        // Hidden in the SDK but called by the stack on every connection parameter update
+        public void onConnectionUpdated(BluetoothGatt gatt, int interval, int latency, int timeout, int status) {
+            if (status == BluetoothGatt.GATT_SUCCESS) {
+                Log.i(TAG, String.format(Locale.US, "Connection interval %.2f ms, latency %d, timeout %d ms (%s)",
+                        interval * 1.25, latency, timeout * 10, linkProfile));
+            }
+        }
+
+        @Override
+        public void onServicesDiscovered(BluetoothGatt gatt, int status) {
+            operations.complete(GattOperationQueue.Type.DISCOVER_SERVICES, status == BluetoothGatt.GATT_SUCCESS);
+        }
+
+        @Override
+        public void onDescriptorWrite(BluetoothGatt gatt, BluetoothGattDescriptor descriptor, int status) {
+            operations.complete(GattOperationQueue.Type.WRITE_DESCRIPTOR, status == BluetoothGatt.GATT_SUCCESS);
+        }
+
+        @Override
+        public void onCharacteristicWrite(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
+            GattOperationQueue.Type type = characteristic.getWriteType() == BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE
+                    ? GattOperationQueue.Type.WRITE_WITHOUT_RESPONSE : GattOperationQueue.Type.WRITE;
+            operations.complete(type, status == BluetoothGatt.GATT_SUCCESS);
+        }
+
+        @Override
+        public void onCharacteristicChanged(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic) {
+            byte[] data = characteristic.getValue();
+            Listener current = listener;
+            if (data != null && data.length > 0 && current != null) {
+                current.onNotification(data, 0, data.length, SystemClock.elapsedRealtimeNanos());
+            }
+        }
+    };
+}
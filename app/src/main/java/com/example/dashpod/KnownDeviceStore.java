@@ -0,0 +1,100 @@
+package com.example.dashpod;
+
+import android.content.Context;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import com.example.dashpod.transport.DeviceTable;
+import com.example.dashpod.transport.KnownDevices;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The app's {@link KnownDevices}, kept in the internal files directory. The
+ * cache is loaded once per process; every change is written back on a
+ * background thread through an {@link AtomicFile}, so a crash mid-write keeps
+ * the previous file.
+ *
+ * A device only becomes known once a connection to it is ready. The scan
+ * screen notes the name and RSSI of the device the user picked, and they are
+ * stored with the connection.
+ */
+public final class KnownDeviceStore {
+
+    private static final String TAG = "KnownDeviceStore";
+    private static final String FILE_NAME = "known_devices";
+    private static final int CAPACITY = 16;
+    private static final long TTL = TimeUnit.DAYS.toMillis(30);
+
+    private static KnownDeviceStore instance;
+
+    private final AtomicFile file;
+    private final KnownDevices devices = new KnownDevices(CAPACITY, TTL);
+    private final Map<String, DeviceTable.Snapshot> sightings = new ConcurrentHashMap<>();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "KnownDeviceWriter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public static synchronized KnownDeviceStore get(Context context) {
+        if (instance == null) {
+            instance = new KnownDeviceStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private KnownDeviceStore(Context context) {
+        file = new AtomicFile(new File(context.getFilesDir(), FILE_NAME));
+        try (FileInputStream in = file.openRead()) {
+            devices.load(in, System.currentTimeMillis());
+        } catch (FileNotFoundException e) {
+            // Nothing connected yet
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot read known devices, starting empty", e);
+        }
+    }
+
+    /** Known devices, most recently connected first. */
+    public List<KnownDevices.Device> list() {
+        return devices.list(System.currentTimeMillis());
+    }
+
+    /** Keeps what the scan showed for a device about to be connected to. */
+    public void noteSighting(DeviceTable.Snapshot device) {
+        sightings.put(device.getAddress(), device);
+    }
+
+    /** Records a ready connection now. May be called on any thread. */
+    public void onConnected(String address) {
+        DeviceTable.Snapshot sighting = sightings.remove(address);
+        if (sighting != null) {
+            devices.remember(address, sighting.getName(), sighting.getRssi(), System.currentTimeMillis());
+        } else {
+            devices.remember(address, null, KnownDevices.RSSI_UNKNOWN, System.currentTimeMillis());
+        }
+        writer.execute(this::save);
+    }
+
+    private void save() {
+        FileOutputStream out = null;
+        try {
+            out = file.startWrite();
+            devices.save(out);
+            file.finishWrite(out);
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot save known devices", e);
+            if (out != null) file.failWrite(out);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.dashpod;
+
+/**
+ * Fixed-capacity circular buffer of terminal lines. Once full, each new line
+ * replaces the oldest one, so memory stays flat however long a session runs.
+ * Every line gets a sequence number that stays with it, usable as a stable id.
+ */
+public class LogRingBuffer {
+
+    private final String[] texts;
+    private final long[] times;
+    private final long[] sequences;
+    private int start, size;
+    private long nextSequence;
+
+    public LogRingBuffer(int capacity) {
+        texts = new String[capacity];
+        times = new long[capacity];
+        sequences = new long[capacity];
+    }
+
+    /** Adds a line and returns true if the oldest line was evicted to make room. */
+    public boolean add(long time, String text) {
+        int capacity = texts.length;
+        int slot = (start + size) % capacity;
+        boolean evicted = size == capacity;
+        if (evicted) {
+            start = (start + 1) % capacity;
+        } else {
+            size++;
+        }
+        texts[slot] = text;
+        times[slot] = time;
+        sequences[slot] = nextSequence++;
+        return evicted;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return texts.length;
+    }
+
+    public String textAt(int index) {
+        return texts[slot(index)];
+    }
+
+    public long timeAt(int index) {
+        return times[slot(index)];
+    }
+
+    public long sequenceAt(int index) {
+        return sequences[slot(index)];
+    }
+
+    public void clear() {
+        for (int i = 0; i < texts.length; i++) {
+            texts[i] = null;
+        }
+        start = 0;
+        size = 0;
+    }
+
+    private int slot(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+        return (start + index) % texts.length;
+    }
+}
@@ -7,7 +7,9 @@ import android.bluetooth.BluetoothDevice;
 import android.bluetooth.BluetoothManager;
 import android.bluetooth.le.BluetoothLeScanner;
 import android.bluetooth.le.ScanCallback;
+import android.bluetooth.le.ScanFilter;
 import android.bluetooth.le.ScanResult;
+import android.bluetooth.le.ScanSettings;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
@@ -17,29 +19,50 @@ import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.ParcelUuid;
+import android.os.SystemClock;
+import android.util.Log;
 import android.widget.Button;
-import android.widget.ListView;
 import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.annotation.RequiresPermission;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
+import androidx.recyclerview.widget.DividerItemDecoration;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import com.example.dashpod.transport.DeviceTable;
+import com.example.dashpod.transport.KnownDevices;
+import com.example.dashpod.transport.NordicUart;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class MainActivity extends AppCompatActivity {
 
     private static final int REQUEST_ENABLE_BT = 1;
     private static final int REQUEST_BLUETOOTH_PERMISSIONS = 2;
     private static final long SCAN_PERIOD = 10000;
+    private static final String TAG = "MainActivity";
+    private static final String DEVICE_NAME = "DashPod";
+    private static final int EXPORT_THREADS = 2; // Exports are disk-bound; more threads only contend
+    private static final long REPORT_DELAY = 500; // Batch results where the controller can
 
     private BluetoothAdapter bluetoothAdapter;
     private BluetoothLeScanner bluetoothLeScanner;
-    private Button btnToggleBluetooth, btnScan;
-    private ListView listDevices;
+    private Button btnToggleBluetooth, btnScan, btnFleet, btnExport;
+    private RecyclerView listDevices;
     private com.example.dashpod.DeviceAdapter deviceAdapter;
-    private ArrayList<BluetoothDevice> deviceList = new ArrayList<>();
+    private final DeviceTable<BluetoothDevice> deviceTable = new DeviceTable<>();
+    private KnownDeviceStore knownDevices;
     private final Handler handler = new Handler(Looper.getMainLooper());
+    private final ExecutorService exportExecutor = Executors.newFixedThreadPool(EXPORT_THREADS);
     private boolean hasPromptedPermissions = false;
+    // Filtered by default; falls back to a software-filtered scan if the filters matched nothing
+    private boolean filteredScan = true;
+    private int scanMatches;
 
     private final BroadcastReceiver bluetoothStateReceiver = new BroadcastReceiver() {
         @Override
@@ -48,8 +71,8 @@ public class MainActivity extends AppCompatActivity {
             if (BluetoothAdapter.ACTION_STATE_CHANGED.equals(action)) {
                 updateToggleButtonText();
                 if (intent.getIntExtra(BluetoothAdapter.EXTRA_STATE, BluetoothAdapter.ERROR) == BluetoothAdapter.STATE_OFF) {
-                    deviceList.clear();
-                    deviceAdapter.notifyDataSetChanged();
+                    deviceTable.clear();
+                    deviceAdapter.submitList(deviceTable.snapshot());
                 }
             }
         }
@@ -62,6 +85,8 @@ public class MainActivity extends AppCompatActivity {
 
         btnToggleBluetooth = findViewById(R.id.btnToggleBluetooth);
         btnScan = findViewById(R.id.btnScan);
+        btnFleet = findViewById(R.id.btnFleet);
+        btnExport = findViewById(R.id.btnExport);
         listDevices = findViewById(R.id.listDevices);
 
         BluetoothManager bluetoothManager = getSystemService(BluetoothManager.class);
@@ -75,16 +100,20 @@ public class MainActivity extends AppCompatActivity {
 
         btnToggleBluetooth.setOnClickListener(v -> checkPermissionsAndToggleBluetooth());
         btnScan.setOnClickListener(v -> checkPermissionsAndStartScan());
+        btnFleet.setOnClickListener(v -> openFleetDashboard());
+        btnExport.setOnClickListener(v -> exportSessions());
 
-        deviceAdapter = new DeviceAdapter(this, deviceList);
-        listDevices.setAdapter(deviceAdapter);
-
-        listDevices.setOnItemClickListener((parent, view, position, id) -> {
-            BluetoothDevice device = deviceList.get(position);
+        knownDevices = KnownDeviceStore.get(this);
+        deviceAdapter = new DeviceAdapter(device -> {
+            knownDevices.noteSighting(device);
             Intent intent = new Intent(MainActivity.this, DeviceActivity.class);
             intent.putExtra("device_address", device.getAddress());
             startActivity(intent);
         });
+        listDevices.setLayoutManager(new LinearLayoutManager(this));
+        listDevices.addItemDecoration(new DividerItemDecoration(this, DividerItemDecoration.VERTICAL));
+        listDevices.setAdapter(deviceAdapter);
+        showKnownDevices();
 
         btnToggleBluetooth.setText("Turn Bluetooth ON/OFF");
 
@@ -92,6 +121,49 @@ public class MainActivity extends AppCompatActivity {
         registerReceiver(bluetoothStateReceiver, filter);
     }
 
+    // Devices connected to before are listed at once; connecting needs only their address, no scan
+    private void showKnownDevices() {
+        for (KnownDevices.Device known : knownDevices.list()) {
+            // Not seen yet in this session, hence no sighting time
+            deviceTable.update(known.getAddress(), bluetoothAdapter.getRemoteDevice(known.getAddress()),
+                    known.getName(), known.getRssi(), 0);
+        }
+        deviceAdapter.submitList(deviceTable.snapshot());
+    }
+
+    // Writes every recorded session to CSV and the columnar format, several at once off the UI thread
+    private void exportSessions() {
+        int started = SessionRecordings.exportAll(this, exportExecutor, (exported, failed) -> handler.post(() -> {
+            btnExport.setEnabled(true);
+            Toast.makeText(getApplicationContext(), failed == 0
+                    ? "Exported " + exported + " files to " + SessionRecordings.exportDirectory(this)
+                    : "Exported " + exported + " files, " + failed + " failed", Toast.LENGTH_LONG).show();
+        }));
+        if (started == 0) {
+            Toast.makeText(this, "No new sessions to export", Toast.LENGTH_SHORT).show();
+        } else {
+            // Until these finish, a second export would write the same files
+            btnExport.setEnabled(false);
+        }
+    }
+
+    // Streams from every listed device at once
+    private void openFleetDashboard() {
+        if (deviceTable.isEmpty()) {
+            Toast.makeText(this, "Scan for devices first", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        List<DeviceTable.Snapshot> devices = deviceTable.snapshot();
+        String[] addresses = new String[devices.size()];
+        for (int i = 0; i < addresses.length; i++) {
+            knownDevices.noteSighting(devices.get(i));
+            addresses[i] = devices.get(i).getAddress();
+        }
+        Intent intent = new Intent(this, FleetActivity.class);
+        intent.putExtra("device_addresses", addresses);
+        startActivity(intent);
+    }
+
     private void checkPermissionsAndToggleBluetooth() {
         if (hasPromptedPermissions) {
             if (hasBluetoothConnectPermission()) {
@@ -193,53 +265,106 @@ public class MainActivity extends AppCompatActivity {
             return;
         }
         bluetoothLeScanner = bluetoothAdapter.getBluetoothLeScanner();
-        deviceList.clear();
-        deviceAdapter.notifyDataSetChanged();
+        deviceTable.clear();
+        showKnownDevices();
+        scanMatches = 0;
 
         handler.postDelayed(() -> {
             if (bluetoothLeScanner != null) {
                 bluetoothLeScanner.stopScan(scanCallback);
                 Toast.makeText(MainActivity.this, "Scan stopped", Toast.LENGTH_SHORT).show();
+                if (filteredScan && scanMatches == 0) {
+                    // Firmware that neither advertises the UART service nor the exact name
+                    Log.i(TAG, "No device matched the scan filters, scanning unfiltered next time");
+                    filteredScan = false;
+                }
             }
         }, SCAN_PERIOD);
 
         if (bluetoothLeScanner != null) {
-            bluetoothLeScanner.startScan(scanCallback);
+            bluetoothLeScanner.startScan(filteredScan ? scanFilters() : null, scanSettings(), scanCallback);
             Toast.makeText(this, "Scanning...", Toast.LENGTH_SHORT).show();
         } else {
             Toast.makeText(this, "Cannot start scan", Toast.LENGTH_SHORT).show();
         }
     }
 
+    // The controller drops everything else before it reaches the app; filters are ORed
+    private List<ScanFilter> scanFilters() {
+        List<ScanFilter> filters = new ArrayList<>();
+        filters.add(new ScanFilter.Builder().setServiceUuid(new ParcelUuid(NordicUart.SERVICE)).build());
+        filters.add(new ScanFilter.Builder().setDeviceName(DEVICE_NAME).build());
+        return filters;
+    }
+
+    private ScanSettings scanSettings() {
+        ScanSettings.Builder builder = new ScanSettings.Builder()
+                .setScanMode(ScanSettings.SCAN_MODE_BALANCED);
+        if (bluetoothAdapter.isOffloadedScanBatchingSupported()) {
+            builder.setReportDelay(REPORT_DELAY);
+        }
+        return builder.build();
+    }
+
     private final ScanCallback scanCallback = new ScanCallback() {
         @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
         @Override
         public void onScanResult(int callbackType, ScanResult result) {
-            BluetoothDevice device = result.getDevice();
-            if (device != null && device.getAddress() != null) {
-                String deviceName = device.getName();
-                if (deviceName != null && deviceName.toLowerCase().startsWith("dashpod")) {
-                    boolean isDuplicate = false;
-                    for (BluetoothDevice d : deviceList) {
-                        if (d.getAddress().equals(device.getAddress())) {
-                            isDuplicate = true;
-                            break;
-                        }
-                    }
-                    if (!isDuplicate) {
-                        deviceList.add(device);
-                        deviceAdapter.notifyDataSetChanged();
-                    }
-                }
+            if (addScanResult(result)) {
+                deviceAdapter.submitList(deviceTable.snapshot());
+            }
+        }
+
+        @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
+        @Override
+        public void onBatchScanResults(List<ScanResult> results) {
+            boolean changed = false;
+            for (ScanResult result : results) {
+                changed |= addScanResult(result);
+            }
+            if (changed) {
+                deviceAdapter.submitList(deviceTable.snapshot());
             }
         }
+
+        @Override
+        public void onScanFailed(int errorCode) {
+            Log.w(TAG, "Scan failed: " + errorCode);
+            Toast.makeText(MainActivity.this, "Scan failed", Toast.LENGTH_SHORT).show();
+        }
     };
 
+    // Returns true if the list needs redrawing
+    @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
+    private boolean addScanResult(ScanResult result) {
+        BluetoothDevice device = result.getDevice();
+        if (device == null || device.getAddress() == null) return false;
+        String deviceName = result.getScanRecord() != null ? result.getScanRecord().getDeviceName() : null;
+        if (deviceName == null) deviceName = device.getName();
+        // Devices advertising the UART service match whatever they are called
+        DeviceTable.Entry<BluetoothDevice> listed = deviceTable.find(device.getAddress());
+        if (listed == null && !advertisesUart(result)
+                && (deviceName == null || !deviceName.toLowerCase(Locale.ROOT).startsWith("dashpod"))) {
+            return false;
+        }
+        scanMatches++;
+        return deviceTable.update(device.getAddress(), device, deviceName, result.getRssi(),
+                SystemClock.elapsedRealtime());
+    }
+
+    private static boolean advertisesUart(ScanResult result) {
+        if (result.getScanRecord() == null) return false;
+        List<ParcelUuid> uuids = result.getScanRecord().getServiceUuids();
+        return uuids != null && uuids.contains(new ParcelUuid(NordicUart.SERVICE));
+    }
+
     @RequiresPermission(Manifest.permission.BLUETOOTH_SCAN)
     @Override
     protected void onDestroy() {
         super.onDestroy();
         unregisterReceiver(bluetoothStateReceiver);
+        // Exports already queued still finish
+        exportExecutor.shutdown();
         if (bluetoothLeScanner != null) {
             bluetoothLeScanner.stopScan(scanCallback);
         }
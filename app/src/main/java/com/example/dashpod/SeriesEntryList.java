@@ -0,0 +1,106 @@
+package com.example.dashpod;
+
+import com.example.dashpod.telemetry.SeriesDecimator;
+import com.example.dashpod.telemetry.SeriesHistory;
+import com.github.mikephil.charting.data.Entry;
+
+import java.util.AbstractList;
+
+/**
+ * Read-only List&lt;Entry&gt; over one channel of a {@link SeriesHistory}, so a
+ * LineDataSet can plot the session without copying it. The x value of an
+ * entry is its row index since the session started, which keeps the x axis in
+ * step with {@link SeriesHistory#timeAt(long)} without re-indexing on every
+ * sample.
+ *
+ * The list holds only the points picked by the last {@link #update}: the
+ * visible range decimated to the chart's width, and the history on either
+ * side at the density of the fully zoomed-out chart, so the axis still spans
+ * the whole session and scrolling shows data before the next update.
+ * MPAndroidChart thereby draws about two points per pixel however long the
+ * session is. Past {@link #LTTB_ROWS_PER_POINT} rows per point the visible
+ * range is decimated by min/max as well, which is several times cheaper than
+ * LTTB and at that density draws the same envelope. Rows older than the live
+ * window are always drawn as a min/max envelope from the compressed history.
+ *
+ * Entries are pooled per list position and refreshed when read.
+ */
+public class SeriesEntryList extends AbstractList<Entry> {
+
+    static final int LTTB_ROWS_PER_POINT = 32;
+    private static final int MIN_POINTS = 4;
+
+    private final SeriesHistory series;
+    private final int channel;
+    private final SeriesDecimator.Mode mode;
+    private final int maxPoints;
+    private final float[] xs;
+    private final float[] ys;
+    private final Entry[] entries;
+    private int count;
+    private long plottedSize;
+
+    /** @param maxPoints most points picked for the visible range; the list holds up to about twice that */
+    public SeriesEntryList(SeriesHistory series, int channel, SeriesDecimator.Mode mode, int maxPoints) {
+        this.series = series;
+        this.channel = channel;
+        this.mode = mode;
+        this.maxPoints = Math.max(MIN_POINTS, maxPoints);
+        // Room for the visible points and the history either side, each part at least MIN_POINTS
+        int capacity = 2 * this.maxPoints + 2 * MIN_POINTS;
+        this.xs = new float[capacity];
+        this.ys = new float[capacity];
+        this.entries = new Entry[capacity];
+    }
+
+    /**
+     * Picks the points to plot for a chart showing [lowestVisibleX,
+     * highestVisibleX] over {@code points} pixels. Call before the chart
+     * recalculates its data.
+     */
+    public void update(float lowestVisibleX, float highestVisibleX, int points) {
+        long size = series.size();
+        points = Math.max(MIN_POINTS, Math.min(points, maxPoints));
+        long from = clamp((long) Math.floor(lowestVisibleX), size);
+        long to = clamp((long) Math.ceil(highestVisibleX) + 1, size);
+        if (to <= from) {
+            from = 0;
+            to = size;
+        }
+        // A view reaching the newest row keeps doing so; the chart's axis only learns of new rows after this update
+        if (to >= plottedSize) to = size;
+        plottedSize = size;
+        // Outside the view the budget follows the zoomed-out density, so the list stays bounded at any zoom
+        int before = Math.max(MIN_POINTS, (int) (points * from / Math.max(1, size)));
+        int after = Math.max(MIN_POINTS, (int) (points * (size - to) / Math.max(1, size)));
+        count = 0;
+        count += series.decimate(channel, 0, from, before, SeriesDecimator.Mode.MIN_MAX, xs, ys, count);
+        SeriesDecimator.Mode visibleMode = to - from > (long) points * LTTB_ROWS_PER_POINT
+                ? SeriesDecimator.Mode.MIN_MAX : mode;
+        count += series.decimate(channel, from, to, points, visibleMode, xs, ys, count);
+        count += series.decimate(channel, to, size, after, SeriesDecimator.Mode.MIN_MAX, xs, ys, count);
+    }
+
+    @Override
+    public Entry get(int index) {
+        if (index >= count) throw new IndexOutOfBoundsException("Index " + index + ", size " + count);
+        Entry entry = entries[index];
+        if (entry == null) {
+            entry = new Entry(xs[index], ys[index]);
+            entries[index] = entry;
+        } else {
+            entry.setX(xs[index]);
+            entry.setY(ys[index]);
+        }
+        return entry;
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    private static long clamp(long value, long size) {
+        return Math.max(0, Math.min(value, size));
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.dashpod;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.dashpod.telemetry.SessionExporter;
+import com.example.dashpod.telemetry.SessionRecorder;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opens and closes the raw {@link SessionRecorder} of a screen. Sessions are
+ * stored in the app's external files directory under "sessions", so they can
+ * be pulled off the phone without root. Exports of them go to "exports"
+ * next to it. Only the newest sessions of each screen are kept.
+ */
+public final class SessionRecordings {
+
+    private static final String TAG = "SessionRecordings";
+    private static final String DIRECTORY = "sessions";
+    private static final String EXPORT_DIRECTORY = "exports";
+    private static final long FLUSH_INTERVAL = 1000; // At most one second lost on a crash
+    private static final int MAX_FRAME_LENGTH = 512; // As the screens' pipelines
+    private static final String FIRST_SEGMENT = "-0000" + SessionRecorder.SEGMENT_SUFFIX;
+    private static final int MAX_SESSIONS = 50; // Per screen; the oldest are deleted as new ones start
+
+    public interface ExportListener {
+        /** Called on an executor thread once every export has finished. */
+        void onExportsFinished(int exported, int failed);
+    }
+
+    private SessionRecordings() {
+    }
+
+    public static File directory(Context context) {
+        File directory = context.getExternalFilesDir(DIRECTORY);
+        return directory != null ? directory : new File(context.getFilesDir(), DIRECTORY);
+    }
+
+    public static File exportDirectory(Context context) {
+        File directory = context.getExternalFilesDir(EXPORT_DIRECTORY);
+        return directory != null ? directory : new File(context.getFilesDir(), EXPORT_DIRECTORY);
+    }
+
+    /** Names of the recorded sessions, oldest first. */
+    public static List<String> list(Context context) {
+        List<String> names = new ArrayList<>();
+        String[] files = directory(context).list();
+        if (files == null) return names;
+        Arrays.sort(files);
+        for (String file : files) {
+            if (file.endsWith(FIRST_SEGMENT)) {
+                names.add(file.substring(0, file.length() - FIRST_SEGMENT.length()));
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Exports every session not exported yet to CSV and the columnar format,
+     * one export per task on the executor. An export is redone once a segment
+     * of its session is newer than it, as when it was made while the session
+     * was still being recorded. Returns the number of exports started; the
+     * listener is only called if that is not 0.
+     */
+    public static int exportAll(Context context, Executor executor, ExportListener listener) {
+        File directory = directory(context);
+        File target = exportDirectory(context);
+        if (!target.isDirectory() && !target.mkdirs()) {
+            Log.w(TAG, "Cannot create " + target);
+            return 0;
+        }
+        List<Runnable> exports = new ArrayList<>();
+        AtomicInteger remaining = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        for (String name : list(context)) {
+            SessionExporter<?> exporter = exporter(name);
+            if (exporter == null) continue;
+            long recorded = lastModified(directory, name);
+            for (SessionExporter.Format format : SessionExporter.Format.values()) {
+                // Closing a session truncates its last segment, so an export of an open one goes stale
+                File exported = new File(target, name + format.getSuffix());
+                if (exported.exists() && exported.lastModified() >= recorded) continue;
+                exports.add(() -> {
+                    try {
+                        SessionExporter.Result result = exporter.export(directory, name, format, target);
+                        Log.i(TAG, "Exported " + name + format.getSuffix() + ": " + result);
+                        // Stamped with the segments it was made from, so a later write to them still shows
+                        if (!exported.setLastModified(recorded)) Log.w(TAG, "Cannot stamp " + exported);
+                    } catch (IOException | RuntimeException e) {
+                        Log.w(TAG, "Cannot export " + name + format.getSuffix(), e);
+                        failed.incrementAndGet();
+                    }
+                    if (remaining.decrementAndGet() == 0) {
+                        listener.onExportsFinished(exports.size() - failed.get(), failed.get());
+                    }
+                });
+            }
+        }
+        remaining.set(exports.size());
+        for (Runnable export : exports) {
+            executor.execute(export);
+        }
+        return exports.size();
+    }
+
+    // Newest modification time of the session's segments
+    private static long lastModified(File directory, String name) {
+        long newest = 0;
+        for (int index = 0; ; index++) {
+            File segment = SessionRecorder.segmentFile(directory, name, index);
+            if (!segment.exists()) return newest;
+            newest = Math.max(newest, segment.lastModified());
+        }
+    }
+
+    // Sessions are named after the screen that recorded them
+    private static SessionExporter<?> exporter(String name) {
+        if (name.startsWith("bpm-")) return SessionExporter.bpm(MAX_FRAME_LENGTH);
+        if (name.startsWith("orientation-")) return SessionExporter.orientation(MAX_FRAME_LENGTH);
+        return null;
+    }
+
+    /**
+     * Starts a recording named after the prefix and the current time, or
+     * returns null if that fails. Deletes the oldest sessions of the prefix
+     * beyond the retention limit first.
+     */
+    public static SessionRecorder open(Context context, String prefix) {
+        File directory = directory(context);
+        deleteOldSessions(context, prefix, MAX_SESSIONS - 1);
+        String stamp = prefix + "-" + new SimpleDateFormat("yyyyMMdd-HHmmss-SSS", Locale.US).format(new Date());
+        String name = stamp;
+        for (int i = 2; SessionRecorder.segmentFile(directory, name, 0).exists(); i++) {
+            name = stamp + "-" + i;
+        }
+        try {
+            return new SessionRecorder(directory, name, SessionRecorder.DEFAULT_SEGMENT_SIZE,
+                    SystemClock.elapsedRealtimeNanos(), FLUSH_INTERVAL);
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot record session " + name, e);
+            return null;
+        }
+    }
+
+    // Names sort by start time within a prefix, so the oldest come first
+    private static void deleteOldSessions(Context context, String prefix, int keep) {
+        File directory = directory(context);
+        List<String> sessions = new ArrayList<>();
+        for (String name : list(context)) {
+            if (name.startsWith(prefix + "-")) sessions.add(name);
+        }
+        for (int i = 0; i < sessions.size() - keep; i++) {
+            String name = sessions.get(i);
+            for (int index = 0; ; index++) {
+                File segment = SessionRecorder.segmentFile(directory, name, index);
+                if (!segment.exists()) break;
+                if (!segment.delete()) Log.w(TAG, "Cannot delete " + segment);
+            }
+            Log.i(TAG, "Deleted old session " + name);
+        }
+    }
+
+    public static void close(SessionRecorder recorder) {
+        if (recorder == null) return;
+        try {
+            recorder.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot close session " + recorder.getName(), e);
+        }
+        if (recorder.getFailure() != null) {
+            Log.w(TAG, "Session " + recorder.getName() + " stopped early", recorder.getFailure());
+        }
+        Log.i(TAG, "Session " + recorder.getName() + ": " + recorder.getRecordedFrames() + " frames, "
+                + recorder.getRecordedBytes() + " bytes, " + recorder.getDroppedFrames() + " dropped");
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.dashpod;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Terminal backed by a bounded {@link LogRingBuffer} and shown through a
+ * RecyclerView, so only the visible rows exist as views and memory stays flat.
+ *
+ * Lines may be appended from any thread. They are queued and applied to the
+ * list once per display frame. Data lines (everything received from the
+ * device) can be hidden with {@link #setHideData} while control messages stay
+ * visible; the two kinds are kept in separate rings so filtering is O(1).
+ */
+public class TerminalLog implements Choreographer.FrameCallback {
+
+    private static final int CAPACITY = 500;
+
+    private final RecyclerView recyclerView;
+    private final int textColor;
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss.SSS", Locale.getDefault());
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable scheduleFrame = () -> Choreographer.getInstance().postFrameCallback(this);
+    private final LogRingBuffer allLines = new LogRingBuffer(CAPACITY);
+    private final LogRingBuffer controlLines = new LogRingBuffer(CAPACITY);
+    private final LineAdapter adapter = new LineAdapter();
+
+    // Guarded by itself; drained on the main thread once per frame
+    private final List<PendingLine> pending = new ArrayList<>();
+    private boolean flushScheduled;
+    private boolean hideData;
+
+    public TerminalLog(RecyclerView recyclerView, int textColor) {
+        this.recyclerView = recyclerView;
+        this.textColor = textColor;
+        recyclerView.setLayoutManager(new LinearLayoutManager(recyclerView.getContext()));
+        recyclerView.setItemAnimator(null);
+        recyclerView.setAdapter(adapter);
+    }
+
+    /** A message generated by the app, such as connection state or a sent macro. */
+    public void appendControl(String text) {
+        enqueue(text, false);
+    }
+
+    /** A line received from the device. */
+    public void appendData(String text) {
+        enqueue(text, true);
+    }
+
+    /** Must be called on the main thread. */
+    public void setHideData(boolean hideData) {
+        if (this.hideData == hideData) return;
+        this.hideData = hideData;
+        adapter.notifyDataSetChanged();
+        scrollToEnd();
+    }
+
+    public void release() {
+        Choreographer.getInstance().removeFrameCallback(this);
+        mainHandler.removeCallbacks(scheduleFrame);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        List<PendingLine> lines;
+        synchronized (pending) {
+            flushScheduled = false;
+            if (pending.isEmpty()) return;
+            lines = new ArrayList<>(pending);
+            pending.clear();
+        }
+
+        boolean atEnd = !recyclerView.canScrollVertically(1);
+        LogRingBuffer visible = visibleLines();
+        int before = visible.size();
+        int evicted = 0;
+        int added = 0;
+        for (PendingLine line : lines) {
+            allLines.add(line.time, line.text);
+            if (!line.data) {
+                controlLines.add(line.time, line.text);
+            }
+            if (!line.data || !hideData) {
+                added++;
+                if (before + added - evicted > visible.capacity()) evicted++;
+            }
+        }
+
+        if (added == 0) return;
+        if (evicted >= before) {
+            adapter.notifyDataSetChanged();
+        } else {
+            if (evicted > 0) adapter.notifyItemRangeRemoved(0, evicted);
+            adapter.notifyItemRangeInserted(before - evicted, added);
+        }
+        if (atEnd) scrollToEnd();
+    }
+
+    private void enqueue(String text, boolean data) {
+        PendingLine line = new PendingLine(System.currentTimeMillis(), text, data);
+        synchronized (pending) {
+            pending.add(line);
+            // Keep the queue bounded too if the main thread is stalled
+            if (pending.size() > CAPACITY) {
+                pending.remove(0);
+            }
+            if (flushScheduled) return;
+            flushScheduled = true;
+        }
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            scheduleFrame.run();
+        } else {
+            mainHandler.post(scheduleFrame);
+        }
+    }
+
+    private LogRingBuffer visibleLines() {
+        return hideData ? controlLines : allLines;
+    }
+
+    private void scrollToEnd() {
+        int count = adapter.getItemCount();
+        if (count > 0) recyclerView.scrollToPosition(count - 1);
+    }
+
+    private static final class PendingLine {
+        final long time;
+        final String text;
+        final boolean data;
+
+        PendingLine(long time, String text, boolean data) {
+            this.time = time;
+            this.text = text;
+            this.data = data;
+        }
+    }
+
+    private static final class LineHolder extends RecyclerView.ViewHolder {
+        final TextView text;
+
+        LineHolder(View itemView) {
+            super(itemView);
+            text = (TextView) itemView;
+        }
+    }
+
+    private final class LineAdapter extends RecyclerView.Adapter<LineHolder> {
+
+        LineAdapter() {
+            setHasStableIds(true);
+        }
+
+        @NonNull
+        @Override
+        public LineHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.terminal_item, parent, false);
+            LineHolder holder = new LineHolder(view);
+            holder.text.setTextColor(textColor);
+            return holder;
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull LineHolder holder, int position) {
+            LogRingBuffer lines = visibleLines();
+            holder.text.setText(timeFormat.format(new Date(lines.timeAt(position))) + " " + lines.textAt(position));
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return visibleLines().sequenceAt(position);
+        }
+
+        @Override
+        public int getItemCount() {
+            return visibleLines().size();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.dashpod.benchmarks;
+
+import com.example.dashpod.telemetry.BpmBatch;
+import com.example.dashpod.telemetry.BpmParser;
+import com.example.dashpod.telemetry.BpmTelemetryDecoder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/** Parsing a breathing rate line, formerly BPMActivity.parseBPMFromData. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BpmParsingBenchmark {
+
+    private final String line = "14.5 bpm";
+    private final byte[] notification = "14.5 bpm\n".getBytes(StandardCharsets.US_ASCII);
+    private final BpmTelemetryDecoder decoder = new BpmTelemetryDecoder();
+    private final BpmBatch batch = new BpmBatch(16, 16);
+
+    @Benchmark
+    public float parse() {
+        return BpmParser.parse(line);
+    }
+
+    /** Worker path: bytes to line, line kept for the terminal, value added to the batch. */
+    @Benchmark
+    public int decode() {
+        batch.clear();
+        decoder.decode(notification, 0, notification.length - 1, 0L, batch);
+        return batch.size();
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.dashpod.benchmarks;
+
+import com.example.dashpod.telemetry.BinaryFrameDecoder;
+import com.example.dashpod.telemetry.NotificationFramer;
+import com.example.dashpod.telemetry.OrientationBatch;
+import com.example.dashpod.telemetry.OrientationFrameDecoder;
+import com.example.dashpod.telemetry.OrientationTelemetryDecoder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/** Decoding one orientation notification, old regexes against the byte-level decoders. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FrameParsingBenchmark {
+
+    private final byte[] euler = "{\"EX\":359.9375,\"EY\":-12.5,\"EZ\":0.0625}".getBytes(StandardCharsets.US_ASCII);
+    private final byte[] quaternion = "{\"QW\":0.7071,\"QX\":0.0,\"QY\":-0.7071,\"QZ\":0.0012}".getBytes(StandardCharsets.US_ASCII);
+    private final byte[] coalesced = ("{\"EX\":1.5,\"EY\":2.5,\"EZ\":3.5}\n{\"QW\":1,\"QX\":0,\"QY\":0,\"QZ\":0}\n"
+            + "{\"EX\":1.5,\"EY\":2.5,\"EZ\":3.5}\n{\"QW\":1,\"QX\":0,\"QY\":0,\"QZ\":0}\n").getBytes(StandardCharsets.US_ASCII);
+    private byte[] binary;
+
+    private final OrientationFrameDecoder frameDecoder = new OrientationFrameDecoder();
+    private final BinaryFrameDecoder binaryDecoder = new BinaryFrameDecoder();
+    private final OrientationTelemetryDecoder telemetryDecoder = new OrientationTelemetryDecoder();
+    private final NotificationFramer framer = new NotificationFramer(512);
+    private final OrientationBatch batch = new OrientationBatch(64, 64);
+    private int framedBytes;
+    private final NotificationFramer.FrameSink countingSink = (data, offset, length, timestamp) -> framedBytes += length;
+
+    @Setup
+    public void setUp() {
+        // 14 combined records, what one 247 byte MTU notification carries
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int length = BinaryFrameDecoder.recordLength(BinaryFrameDecoder.TYPE_EULER_QUATERNION);
+        for (int i = 0; i < 14; i++) {
+            byte[] record = new byte[length];
+            record[0] = (byte) BinaryFrameDecoder.TYPE_EULER_QUATERNION;
+            record[1] = (byte) i;
+            for (int j = 3; j < length; j++) record[j] = (byte) (i * j);
+            out.write(record, 0, length);
+        }
+        binary = out.toByteArray();
+    }
+
+    @Benchmark
+    public float legacyRegexEuler() {
+        return LegacyDataPath.parseEuler(euler);
+    }
+
+    @Benchmark
+    public float legacyRegexQuaternion() {
+        return LegacyDataPath.parseQuaternion(quaternion);
+    }
+
+    @Benchmark
+    public float decoderEuler() {
+        frameDecoder.decode(euler, 0, euler.length);
+        return frameDecoder.getYaw() + frameDecoder.getPitch() + frameDecoder.getRoll();
+    }
+
+    @Benchmark
+    public float decoderQuaternion() {
+        frameDecoder.decode(quaternion, 0, quaternion.length);
+        return frameDecoder.getQw() + frameDecoder.getQx() + frameDecoder.getQy() + frameDecoder.getQz();
+    }
+
+    /** Full worker path for a text frame, including the line kept for the terminal. */
+    @Benchmark
+    public int telemetryDecoderEuler() {
+        batch.clear();
+        telemetryDecoder.decode(euler, 0, euler.length, 0L, batch);
+        return batch.size();
+    }
+
+    /** 14 samples per operation. */
+    @Benchmark
+    public int binaryNotification() {
+        batch.clear();
+        return binaryDecoder.decode(binary, 0, binary.length, 0L, batch);
+    }
+
+    /** Splitting a notification that carries four lines. */
+    @Benchmark
+    public int framerCoalesced() {
+        framer.push(coalesced, 0, coalesced.length, 0L, countingSink);
+        return framedBytes;
+    }
+}
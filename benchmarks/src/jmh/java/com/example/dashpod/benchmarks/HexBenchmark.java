@@ -0,0 +1,34 @@
+package com.example.dashpod.benchmarks;
+
+import com.example.dashpod.telemetry.Hex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/** Macro payload decoding, formerly hexStringToByteArray in both activities. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class HexBenchmark {
+
+    private final String macro = "01 04 02";
+    private final String payload = "00112233445566778899AABBCCDDEEFF00112233";
+
+    /** As the macro editor calls it, including removing the spaces. */
+    @Benchmark
+    public byte[] macro() {
+        return Hex.decode(macro.replaceAll(" ", ""));
+    }
+
+    /** A full 20 byte write. */
+    @Benchmark
+    public byte[] payload() {
+        return Hex.decode(payload);
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.dashpod.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The data path as it was before the telemetry package, copied from the
+ * original activities with the Android types replaced by plain Java ones.
+ * Kept only as a baseline for the benchmarks.
+ */
+final class LegacyDataPath {
+
+    private LegacyDataPath() {
+    }
+
+    /** DeviceActivity compiled both patterns for every notification. */
+    static float parseEuler(byte[] data) {
+        String message = new String(data).trim();
+        Pattern eulerPattern = Pattern.compile("\\{\"EX\"\\s*:\\s*([-]?\\d*\\.?\\d+),\\s*\"EY\"\\s*:\\s*([-]?\\d*\\.?\\d+),\\s*\"EZ\"\\s*:\\s*([-]?\\d*\\.?\\d+)\\}");
+        Matcher eulerMatcher = eulerPattern.matcher(message);
+        if (eulerMatcher.find()) {
+            float yaw = Float.parseFloat(eulerMatcher.group(1));
+            float pitch = Float.parseFloat(eulerMatcher.group(2));
+            float roll = Float.parseFloat(eulerMatcher.group(3));
+            return yaw + pitch + roll;
+        }
+        return 0f;
+    }
+
+    static float parseQuaternion(byte[] data) {
+        String message = new String(data).trim();
+        Pattern quatPattern = Pattern.compile("\\{\"QW\"\\s*:\\s*([-]?\\d*\\.?\\d+),\\s*\"QX\"\\s*:\\s*([-]?\\d*\\.?\\d+),\\s*\"QY\"\\s*:\\s*([-]?\\d*\\.?\\d+),\\s*\"QZ\"\\s*:\\s*([-]?\\d*\\.?\\d+)\\}");
+        Matcher quatMatcher = quatPattern.matcher(message);
+        if (quatMatcher.find()) {
+            float qw = Float.parseFloat(quatMatcher.group(1));
+            float qx = Float.parseFloat(quatMatcher.group(2));
+            float qy = Float.parseFloat(quatMatcher.group(3));
+            float qz = Float.parseFloat(quatMatcher.group(4));
+            return qw + qx + qy + qz;
+        }
+        return 0f;
+    }
+
+    /** BPMActivity kept every sample and re-summed the list for each new one. */
+    static final class BpmAverages {
+        final List<Float> allBpmValues = new ArrayList<>();
+
+        float add(float bpm) {
+            allBpmValues.add(bpm);
+            float sum = 0;
+            for (float value : allBpmValues) {
+                sum += value;
+            }
+            return sum / allBpmValues.size();
+        }
+    }
+
+    /** Stand-in for MPAndroidChart's Entry. */
+    static final class Point {
+        float x;
+        final float y;
+
+        Point(float x, float y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    /** DeviceActivity's Euler chart: one entry per sample, trimmed and re-indexed past the window. */
+    static final class EulerSeries {
+        final int window;
+        final List<Point> yaw = new ArrayList<>();
+        final List<Point> pitch = new ArrayList<>();
+        final List<Point> roll = new ArrayList<>();
+        int dataPointCounter;
+
+        EulerSeries(int window) {
+            this.window = window;
+        }
+
+        void add(float y, float p, float r) {
+            yaw.add(new Point(dataPointCounter, y));
+            pitch.add(new Point(dataPointCounter, p));
+            roll.add(new Point(dataPointCounter, r));
+            dataPointCounter++;
+            if (yaw.size() > window) {
+                yaw.remove(0);
+                pitch.remove(0);
+                roll.remove(0);
+                for (int i = 0; i < yaw.size(); i++) {
+                    yaw.get(i).x = i;
+                    pitch.get(i).x = i;
+                    roll.get(i).x = i;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.dashpod.benchmarks;
+
+import com.example.dashpod.telemetry.CompressedSeriesStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/** Appending to and reading back an hour of 100 Hz quaternions from the compressed store. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SeriesCompressionBenchmark {
+
+    private static final int ROWS = 360_000;
+    private static final long START = 1_700_000_000_000L;
+
+    private CompressedSeriesStore store;
+    private CompressedSeriesStore appendTarget;
+    private long time;
+    private int row;
+
+    @Setup
+    public void setUp() {
+        store = new CompressedSeriesStore(4);
+        for (int i = 0; i < ROWS; i++) {
+            appendRow(store, START + i * 10L, i);
+        }
+        appendTarget = new CompressedSeriesStore(4);
+        time = START;
+    }
+
+    @Benchmark
+    public void append() {
+        if (appendTarget.size() == ROWS) appendTarget.clear();
+        appendRow(appendTarget, time += 10, row++);
+    }
+
+    /** Ten seconds from the middle of the hour, the span of a zoomed-in chart. */
+    @Benchmark
+    public int queryTenSeconds(Blackhole blackhole) {
+        long from = START + ROWS * 5L;
+        return store.query(from, from + 10_000, (t, values) -> blackhole.consume(values[0]));
+    }
+
+    @Benchmark
+    public int queryHour(Blackhole blackhole) {
+        return store.queryAll((t, values) -> blackhole.consume(values[0]));
+    }
+
+    private static void appendRow(CompressedSeriesStore store, long time, int i) {
+        double angle = i / 3000.0;
+        store.append(time, quantize(Math.cos(angle)), quantize(0.1 * Math.sin(angle * 3)),
+                quantize(0.05 * Math.cos(angle * 2)), quantize(Math.sin(angle)));
+    }
+
+    // BNO055 quaternion resolution
+    private static float quantize(double value) {
+        return Math.round(value * 16384) / 16384f;
+    }
+}
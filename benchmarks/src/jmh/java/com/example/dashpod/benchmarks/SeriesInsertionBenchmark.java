@@ -0,0 +1,55 @@
+package com.example.dashpod.benchmarks;
+
+import com.example.dashpod.telemetry.FloatSeriesBuffer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/** Appending one Euler sample to a full chart window. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SeriesInsertionBenchmark {
+
+    /** The old chart kept 50 samples; the current one keeps 10 s at 100 Hz. */
+    @Param({"50", "1000"})
+    public int window;
+
+    private LegacyDataPath.EulerSeries legacy;
+    private FloatSeriesBuffer series;
+    private long time;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        legacy = new LegacyDataPath.EulerSeries(window);
+        series = new FloatSeriesBuffer(3, window);
+        for (int i = 0; i < window; i++) {
+            legacy.add(i, -i, i * 0.5f);
+            series.append(i, i, -i, i * 0.5f);
+        }
+        time = window;
+    }
+
+    @Benchmark
+    public int legacyEntryLists() {
+        legacy.add(time, -time, time * 0.5f);
+        time++;
+        return legacy.yaw.size();
+    }
+
+    @Benchmark
+    public int floatSeriesBuffer() {
+        series.append(time, time, -time, time * 0.5f);
+        time++;
+        return series.size();
+    }
+}
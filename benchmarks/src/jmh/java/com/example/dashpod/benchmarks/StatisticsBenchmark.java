@@ -0,0 +1,63 @@
+package com.example.dashpod.benchmarks;
+
+import com.example.dashpod.telemetry.BpmStatistics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adding one breathing rate sample and reading the session average, with the
+ * session already holding the given number of samples.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class StatisticsBenchmark {
+
+    /** Two minutes at 1 Hz, and one hour at about 2 Hz. */
+    @Param({"120", "7200"})
+    public int sessionSamples;
+
+    private LegacyDataPath.BpmAverages legacy;
+    private BpmStatistics statistics;
+    private long elapsed;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        legacy = new LegacyDataPath.BpmAverages();
+        statistics = new BpmStatistics(60000, 2);
+        for (int i = 0; i < sessionSamples; i++) {
+            legacy.add(sample(i));
+            statistics.add(i * 500L, sample(i));
+        }
+        elapsed = sessionSamples * 500L;
+    }
+
+    @Benchmark
+    public float legacyListAverage() {
+        float average = legacy.add(sample(legacy.allBpmValues.size()));
+        // Stay at the configured session length
+        legacy.allBpmValues.remove(legacy.allBpmValues.size() - 1);
+        return average;
+    }
+
+    @Benchmark
+    public double runningStatistics() {
+        elapsed += 500;
+        statistics.add(elapsed, sample((int) (elapsed / 500)));
+        return statistics.getOverall().getMean();
+    }
+
+    private static float sample(int i) {
+        return 12f + (i % 7) * 0.5f;
+    }
+}
@@ -0,0 +1,14 @@
+// Plain Java telemetry and protocol code, shared by the app and the benchmarks
+// and testable on any JVM.
+plugins {
+    `java-library`
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    testImplementation(libs.junit)
+}
@@ -0,0 +1,154 @@
+package com.example.dashpod.telemetry;
+
+/**
+ * Decodes the compact binary orientation stream, enabled on the firmware with
+ * the {@link #ENABLE_MACRO} macro.
+ *
+ * A notification carries one or more records back to back. Each record is a
+ * type byte, a little-endian uint16 sequence number and little-endian int16
+ * values in the BNO055's native fixed-point units:
+ * <pre>
+ *   0xE1  seq  yaw pitch roll                     9 bytes
+ *   0xE2  seq  qw qx qy qz                       11 bytes
+ *   0xE3  seq  yaw pitch roll qw qx qy qz        17 bytes
+ * </pre>
+ * Euler angles are in 1/16 degree and quaternion components in 1/16384, so a
+ * 247-byte MTU fits 14 combined samples against one JSON sample of ~70 bytes.
+ * Type bytes have the high bit set, which never starts an ASCII JSON frame, so
+ * {@link #isBinary} tells the two apart and older firmware keeps working.
+ */
+public final class BinaryFrameDecoder {
+
+    public static final int TYPE_EULER = 0xE1;
+    public static final int TYPE_QUATERNION = 0xE2;
+    public static final int TYPE_EULER_QUATERNION = 0xE3;
+
+    /** Macro that switches the firmware from JSON to binary orientation frames. */
+    public static final String ENABLE_MACRO = "01 04 02";
+
+    public static final float EULER_SCALE = 1f / 16f;
+    public static final float QUATERNION_SCALE = 1f / 16384f;
+
+    private static final int HEADER_LENGTH = 3;
+
+    private int lastSequence = -1;
+    private long decodedSamples;
+    private long lostSamples;
+    private long lateRecords;
+    private long malformedFrames;
+
+    public static boolean isBinary(byte[] data, int offset, int length) {
+        return length > 0 && recordLength(data[offset] & 0xFF) > 0;
+    }
+
+    /** Length of a record starting with the given type byte, or 0 if it is not a record type. */
+    public static int recordLength(int type) {
+        switch (type) {
+            case TYPE_EULER:
+                return HEADER_LENGTH + 3 * 2;
+            case TYPE_QUATERNION:
+                return HEADER_LENGTH + 4 * 2;
+            case TYPE_EULER_QUATERNION:
+                return HEADER_LENGTH + 7 * 2;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Decodes every record in data[offset, offset + length) into the batch,
+     * stamping each with the notification's timestamp.
+     *
+     * @return the number of samples added
+     */
+    public int decode(byte[] data, int offset, int length, long timestamp, OrientationBatch batch) {
+        int end = offset + length;
+        int pos = offset;
+        int added = 0;
+        while (pos < end) {
+            int type = data[pos] & 0xFF;
+            int recordLength = recordLength(type);
+            if (recordLength == 0 || pos + recordLength > end) {
+                malformedFrames++;
+                break;
+            }
+            trackSequence(readUInt16(data, pos + 1));
+            int values = pos + HEADER_LENGTH;
+            switch (type) {
+                case TYPE_EULER:
+                    batch.add(timestamp, OrientationFrameDecoder.EULER,
+                            euler(data, values), euler(data, values + 2), euler(data, values + 4),
+                            0f, 0f, 0f, 0f);
+                    break;
+                case TYPE_QUATERNION:
+                    batch.add(timestamp, OrientationFrameDecoder.QUATERNION,
+                            0f, 0f, 0f,
+                            quaternion(data, values), quaternion(data, values + 2),
+                            quaternion(data, values + 4), quaternion(data, values + 6));
+                    break;
+                default:
+                    batch.add(timestamp, OrientationFrameDecoder.EULER | OrientationFrameDecoder.QUATERNION,
+                            euler(data, values), euler(data, values + 2), euler(data, values + 4),
+                            quaternion(data, values + 6), quaternion(data, values + 8),
+                            quaternion(data, values + 10), quaternion(data, values + 12));
+                    break;
+            }
+            added++;
+            pos += recordLength;
+        }
+        decodedSamples += added;
+        return added;
+    }
+
+    public long getDecodedSamples() {
+        return decodedSamples;
+    }
+
+    /** Samples skipped by the firmware's sequence numbers, e.g. notifications lost on air. */
+    public long getLostSamples() {
+        return lostSamples;
+    }
+
+    /** Records repeating or older than the last sequence number, e.g. duplicates or reordered notifications. */
+    public long getLateRecords() {
+        return lateRecords;
+    }
+
+    public long getMalformedFrames() {
+        return malformedFrames;
+    }
+
+    /** Forgets the last sequence number, e.g. after reconnecting. */
+    public void reset() {
+        lastSequence = -1;
+    }
+
+    private void trackSequence(int sequence) {
+        if (lastSequence >= 0) {
+            int gap = (sequence - lastSequence - 1) & 0xFFFF;
+            // A step back wraps to a gap of half the range or more: a repeat, not loss
+            if (gap >= 0x8000) {
+                lateRecords++;
+                return;
+            }
+            lostSamples += gap;
+        }
+        lastSequence = sequence;
+    }
+
+    private static float euler(byte[] data, int pos) {
+        return readInt16(data, pos) * EULER_SCALE;
+    }
+
+    private static float quaternion(byte[] data, int pos) {
+        return readInt16(data, pos) * QUATERNION_SCALE;
+    }
+
+    private static int readUInt16(byte[] data, int pos) {
+        return (data[pos] & 0xFF) | (data[pos + 1] & 0xFF) << 8;
+    }
+
+    private static short readInt16(byte[] data, int pos) {
+        return (short) readUInt16(data, pos);
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.dashpod.telemetry;
+
+import java.nio.ByteBuffer;
+
+/** Reads bit fields written by {@link BitWriter}, using absolute gets so read-only buffers can be shared. */
+final class BitReader {
+
+    private ByteBuffer data;
+    private long position;
+
+    void reset(ByteBuffer data) {
+        this.data = data;
+        position = 0;
+    }
+
+    boolean readBit() {
+        int b = data.get((int) (position >>> 3));
+        int bit = (b >>> (7 - (int) (position & 7))) & 1;
+        position++;
+        return bit != 0;
+    }
+
+    /** Reads {@code count} bits, 1 to 64, as an unsigned value. */
+    long read(int count) {
+        long value = 0;
+        while (count > 0) {
+            int offset = (int) (position & 7);
+            int available = 8 - offset;
+            int take = Math.min(available, count);
+            int b = data.get((int) (position >>> 3)) & 0xFF;
+            value = (value << take) | ((b >>> (available - take)) & ((1 << take) - 1));
+            position += take;
+            count -= take;
+        }
+        return value;
+    }
+}
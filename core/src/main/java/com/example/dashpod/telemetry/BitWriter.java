@@ -0,0 +1,56 @@
+package com.example.dashpod.telemetry;
+
+import java.util.Arrays;
+
+/**
+ * Appends bit fields, most significant bit first, to a growable byte array.
+ * The partly filled last byte is kept in the array too, so a {@link BitReader}
+ * can read everything written so far without the writer being flushed.
+ */
+final class BitWriter {
+
+    private byte[] bytes;
+    private int length; // Complete bytes
+    private long pending;
+    private int pendingBits;
+
+    BitWriter(int initialCapacity) {
+        bytes = new byte[Math.max(16, initialCapacity)];
+    }
+
+    /** Writes the low {@code count} bits of value, 1 to 64. */
+    void write(long value, int count) {
+        if (count > 32) {
+            write(value >>> 32, count - 32);
+            count = 32;
+        }
+        pending = (pending << count) | (value & ((1L << count) - 1));
+        pendingBits += count;
+        if (length + 6 > bytes.length) bytes = Arrays.copyOf(bytes, bytes.length * 2);
+        while (pendingBits >= 8) {
+            pendingBits -= 8;
+            bytes[length++] = (byte) (pending >>> pendingBits);
+        }
+        if (pendingBits > 0) bytes[length] = (byte) (pending << (8 - pendingBits));
+    }
+
+    long bitLength() {
+        return length * 8L + pendingBits;
+    }
+
+    /** Bytes holding every bit written, the last one padded with zeros. */
+    int byteLength() {
+        return pendingBits > 0 ? length + 1 : length;
+    }
+
+    /** The backing array; valid up to {@link #byteLength()} until the next write. */
+    byte[] array() {
+        return bytes;
+    }
+
+    void reset() {
+        length = 0;
+        pending = 0;
+        pendingBits = 0;
+    }
+}
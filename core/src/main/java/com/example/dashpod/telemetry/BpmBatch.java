@@ -0,0 +1,22 @@
+package com.example.dashpod.telemetry;
+
+/**
+ * Breathing rate samples decoded by {@link BpmParser}.
+ */
+public final class BpmBatch extends TelemetryBatch {
+
+    private final float[] bpm;
+
+    public BpmBatch(int capacity, int lineCapacity) {
+        super(capacity, lineCapacity);
+        bpm = new float[capacity];
+    }
+
+    public void add(long timestamp, float value) {
+        bpm[append(timestamp)] = value;
+    }
+
+    public float bpmAt(int i) {
+        return bpm[slot(i)];
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.dashpod.telemetry;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes breathing rate sessions to a {@link Store} off the streaming thread.
+ *
+ * Samples are only appended to an array under a short lock; a background
+ * thread takes whatever has collected once per flush interval and writes it
+ * in a single call, which the store runs as one transaction. A database
+ * thereby commits about once a second rather than once per sample, and the
+ * thread delivering samples never waits for storage.
+ *
+ * Sessions, their samples and their summaries reach the store in the order
+ * they were given. A store error drops the batch it occurred in and is kept
+ * in {@link #getFailure()}; later batches are still attempted. Samples of a
+ * session whose insert failed are dropped.
+ */
+public final class BpmHistoryWriter implements Closeable {
+
+    public interface Store {
+        /** Stores a new session and returns its id. */
+        long insertSession(String deviceAddress, long startTime);
+
+        /** Stores times[0..count) and bpm[0..count) of a session, in one transaction. */
+        void insertSamples(long sessionId, long[] times, float[] bpm, int count);
+
+        /** Stores the session's end time, statistics and window aggregates. */
+        void finishSession(long sessionId, BpmSessionSummary summary);
+    }
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final long CLOSE_TIMEOUT_MILLIS = 1000;
+
+    /** Id holder, set on the writer thread once the session is stored. */
+    private static final class Session {
+        volatile long id = -1;
+        volatile boolean inserted;
+    }
+
+    private final Store store;
+    private final ScheduledExecutorService executor;
+
+    // Guarded by this
+    private Session session;
+    private long[] times = new long[INITIAL_CAPACITY];
+    private float[] values = new float[INITIAL_CAPACITY];
+    private int pending;
+    private boolean closed;
+
+    private volatile long writtenSamples;
+    private volatile long droppedSamples;
+    private volatile long transactions;
+    private volatile RuntimeException failure;
+
+    /** @param flushIntervalMillis how often collected samples are written */
+    public BpmHistoryWriter(Store store, long flushIntervalMillis) {
+        if (flushIntervalMillis <= 0) throw new IllegalArgumentException("flushIntervalMillis must be positive");
+        this.store = store;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "BpmHistoryWriter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** Starts a session; samples added from now on belong to it. Finishes nothing still open. */
+    public synchronized void startSession(String deviceAddress, long startTime) {
+        if (closed) return;
+        submitPending();
+        Session started = new Session();
+        session = started;
+        submit(() -> {
+            try {
+                started.id = store.insertSession(deviceAddress, startTime);
+            } finally {
+                started.inserted = true;
+            }
+        });
+    }
+
+    /** Adds a sample to the current session. Returns false if there is none. Never blocks on storage. */
+    public synchronized boolean add(long time, float bpm) {
+        if (session == null || closed) return false;
+        if (pending == times.length) {
+            times = Arrays.copyOf(times, pending * 2);
+            values = Arrays.copyOf(values, pending * 2);
+        }
+        times[pending] = time;
+        values[pending] = bpm;
+        pending++;
+        return true;
+    }
+
+    public synchronized boolean isSessionActive() {
+        return session != null;
+    }
+
+    /** Writes the remaining samples and the summary of the current session, if any, and ends it. */
+    public synchronized void finishSession(BpmSessionSummary summary) {
+        if (session == null || closed) return;
+        submitPending();
+        Session finished = session;
+        session = null;
+        submit(() -> {
+            if (finished.id >= 0) store.finishSession(finished.id, summary);
+        });
+    }
+
+    /**
+     * Writes what has been collected and stops the writer thread, waiting
+     * for it for a bounded time. A session still open stays unfinished.
+     */
+    @Override
+    public void close() {
+        closeAsync(null);
+        try {
+            executor.awaitTermination(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Like {@link #close()} but returns at once, e.g. on the main thread.
+     * The writes already queued still run; {@code onClosed}, if not null,
+     * runs on the writer thread after the last of them.
+     */
+    public void closeAsync(Runnable onClosed) {
+        synchronized (this) {
+            if (closed) return;
+            submitPending();
+            closed = true;
+            session = null;
+            if (onClosed != null) submit(onClosed);
+        }
+        executor.shutdown();
+    }
+
+    public long getWrittenSamples() {
+        return writtenSamples;
+    }
+
+    /** Samples lost to store errors. */
+    public long getDroppedSamples() {
+        return droppedSamples;
+    }
+
+    /** Calls to {@link Store#insertSamples}, each one transaction. */
+    public long getTransactions() {
+        return transactions;
+    }
+
+    /** The last store error, or null. */
+    public RuntimeException getFailure() {
+        return failure;
+    }
+
+    // Runs on the writer thread
+    private void flush() {
+        Runnable write;
+        synchronized (this) {
+            // A flush that fell due before the session's insert ran waits for the next one
+            if (session != null && !session.inserted) return;
+            write = takePending();
+        }
+        if (write != null) write.run();
+    }
+
+    // Called with the lock held; queues the pending samples behind earlier tasks
+    private void submitPending() {
+        Runnable write = takePending();
+        if (write != null) submit(write);
+    }
+
+    // Called with the lock held
+    private Runnable takePending() {
+        if (pending == 0) return null;
+        Session owner = session;
+        long[] batchTimes = Arrays.copyOf(times, pending);
+        float[] batchValues = Arrays.copyOf(values, pending);
+        int count = pending;
+        pending = 0;
+        return () -> {
+            if (owner.id < 0) {
+                droppedSamples += count;
+                return;
+            }
+            try {
+                store.insertSamples(owner.id, batchTimes, batchValues, count);
+                transactions++;
+                writtenSamples += count;
+            } catch (RuntimeException e) {
+                failure = e;
+                droppedSamples += count;
+            }
+        };
+    }
+
+    private void submit(Runnable task) {
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    failure = e;
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Only after close, which takes the lock first
+        }
+    }
+}
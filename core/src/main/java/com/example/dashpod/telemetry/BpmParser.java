@@ -0,0 +1,26 @@
+package com.example.dashpod.telemetry;
+
+/**
+ * Parses the breathing rate lines sent by the DashPod firmware, e.g. "14.5 bpm".
+ */
+public final class BpmParser {
+
+    private BpmParser() {
+    }
+
+    /**
+     * Returns the value before the "bpm" marker, or -1 if the line has no marker.
+     *
+     * @throws NumberFormatException if the line has a marker but no valid number
+     */
+    public static float parse(String data) {
+        if (data.toLowerCase().contains("bpm")) {
+            String[] parts = data.split("bpm");
+            if (parts.length > 0) {
+                String bpmStr = parts[0].replaceAll("[^0-9.]", "").trim();
+                return Float.parseFloat(bpmStr);
+            }
+        }
+        return -1f;
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.dashpod.telemetry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What a finished breathing rate session comes down to: when and from which
+ * device it was taken, its overall statistics and those of each tumbling
+ * window. Immutable, so it can be handed to the history writer's thread.
+ */
+public final class BpmSessionSummary {
+
+    /** Statistics of one {@link BpmStatistics} window. */
+    public static final class Window {
+        private final int index;
+        private final long sampleCount;
+        private final double average;
+        private final double min;
+        private final double max;
+
+        public Window(int index, long sampleCount, double average, double min, double max) {
+            this.index = index;
+            this.sampleCount = sampleCount;
+            this.average = average;
+            this.min = min;
+            this.max = max;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public long getSampleCount() {
+            return sampleCount;
+        }
+
+        public double getAverage() {
+            return average;
+        }
+
+        public double getMin() {
+            return min;
+        }
+
+        public double getMax() {
+            return max;
+        }
+    }
+
+    private final long id;
+    private final String deviceAddress;
+    private final long startTime;
+    private final long endTime;
+    private final long sampleCount;
+    private final double average;
+    private final double min;
+    private final double max;
+    private final List<Window> windows;
+
+    /** @param id the stored session's id, or -1 for one not stored yet */
+    public BpmSessionSummary(long id, String deviceAddress, long startTime, long endTime, long sampleCount,
+                             double average, double min, double max, List<Window> windows) {
+        this.id = id;
+        this.deviceAddress = deviceAddress;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.sampleCount = sampleCount;
+        this.average = average;
+        this.min = min;
+        this.max = max;
+        this.windows = Collections.unmodifiableList(new ArrayList<>(windows));
+    }
+
+    /** Summarises a session from its statistics; windows that dropped out of their history are left out. */
+    public static BpmSessionSummary of(String deviceAddress, long startTime, long endTime, BpmStatistics statistics) {
+        List<Window> windows = new ArrayList<>();
+        for (long w = 0; w <= statistics.getCurrentWindow(); w++) {
+            RunningStats stats = statistics.getWindow(w);
+            if (stats == null || stats.isEmpty()) continue;
+            windows.add(new Window((int) w, stats.getCount(), stats.getMean(), stats.getMin(), stats.getMax()));
+        }
+        RunningStats overall = statistics.getOverall();
+        return new BpmSessionSummary(-1, deviceAddress, startTime, endTime, overall.getCount(),
+                overall.getMean(), overall.getMin(), overall.getMax(), windows);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getDeviceAddress() {
+        return deviceAddress;
+    }
+
+    /** Wall-clock millis. */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /** Wall-clock millis. */
+    public long getEndTime() {
+        return endTime;
+    }
+
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    /** Mean of all samples; 0 without samples. */
+    public double getAverage() {
+        return average;
+    }
+
+    /** NaN without samples. */
+    public double getMin() {
+        return min;
+    }
+
+    /** NaN without samples. */
+    public double getMax() {
+        return max;
+    }
+
+    /** Windows with samples, in order; empty when loaded without them. */
+    public List<Window> getWindows() {
+        return windows;
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.dashpod.telemetry;
+
+/**
+ * Session statistics for breathing rate samples: running totals for the whole
+ * session plus tumbling windows of a fixed length (window 0 covers the first
+ * windowMillis of the session, window 1 the next, and so on).
+ *
+ * Only the most recent windows are kept, in a fixed ring, so memory and the
+ * cost of each sample do not depend on how long the session runs.
+ */
+public final class BpmStatistics {
+
+    private final long windowMillis;
+    private final RunningStats overall = new RunningStats();
+    private final RunningStats[] windows;
+    private long currentWindow = -1;
+
+    /**
+     * @param windowMillis  length of each tumbling window
+     * @param windowHistory number of windows, including the current one, that stay queryable
+     */
+    public BpmStatistics(long windowMillis, int windowHistory) {
+        if (windowMillis <= 0 || windowHistory <= 0) {
+            throw new IllegalArgumentException("windowMillis and windowHistory must be positive");
+        }
+        this.windowMillis = windowMillis;
+        this.windows = new RunningStats[windowHistory];
+        for (int i = 0; i < windowHistory; i++) {
+            windows[i] = new RunningStats();
+        }
+    }
+
+    /** Adds a sample taken elapsedMillis after the session started. Samples must not go back in time. */
+    public void add(long elapsedMillis, float bpm) {
+        long window = Math.max(0, elapsedMillis) / windowMillis;
+        if (window < currentWindow) {
+            throw new IllegalArgumentException("Sample at " + elapsedMillis + " ms is before the current window");
+        }
+        if (window > currentWindow) {
+            // Windows without samples in between are cleared, bounded by the history length
+            long from = Math.max(currentWindow + 1, window - windows.length + 1);
+            for (long w = from; w <= window; w++) {
+                windows[slot(w)].reset();
+            }
+            currentWindow = window;
+        }
+        windows[slot(window)].add(bpm);
+        overall.add(bpm);
+    }
+
+    public RunningStats getOverall() {
+        return overall;
+    }
+
+    /** Index of the window the last sample fell into, or -1 before the first sample. */
+    public long getCurrentWindow() {
+        return currentWindow;
+    }
+
+    /**
+     * Statistics of the given window, or null if it has not started yet or has
+     * dropped out of the history. The returned object is reused; do not keep it.
+     */
+    public RunningStats getWindow(long window) {
+        if (window < 0 || window > currentWindow || window <= currentWindow - windows.length) {
+            return null;
+        }
+        return windows[slot(window)];
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    public void reset() {
+        overall.reset();
+        for (RunningStats stats : windows) {
+            stats.reset();
+        }
+        currentWindow = -1;
+    }
+
+    private int slot(long window) {
+        return (int) (window % windows.length);
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.dashpod.telemetry;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Pipeline decoder for the breathing rate screen: every text line is kept for
+ * the terminal and lines carrying a "bpm" value become samples.
+ */
+public final class BpmTelemetryDecoder implements TelemetryPipeline.Decoder<BpmBatch> {
+
+    private long invalidLines;
+
+    @Override
+    public void decode(byte[] data, int offset, int length, long timestamp, BpmBatch batch) {
+        String received = new String(data, offset, length, StandardCharsets.UTF_8).trim();
+        if (received.isEmpty()) return;
+        batch.addLine(received);
+        try {
+            float bpm = BpmParser.parse(received);
+            if (bpm >= 0) {
+                batch.add(timestamp, bpm);
+            }
+        } catch (NumberFormatException e) {
+            invalidLines++;
+        }
+    }
+
+    /** Lines with a "bpm" marker but no valid number. Only read from the worker or after the pipeline stopped. */
+    public long getInvalidLines() {
+        return invalidLines;
+    }
+}
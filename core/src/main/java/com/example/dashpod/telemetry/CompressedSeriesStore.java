@@ -0,0 +1,355 @@
+package com.example.dashpod.telemetry;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Append-only store of float samples sharing a time column, compressed so a
+ * whole session fits in memory: an hour of 7 channels at 100 Hz takes a few MB
+ * rather than the 10 MB of raw floats or the hundreds of boxed ones.
+ *
+ * Rows are encoded as in Facebook's Gorilla: a timestamp as the difference
+ * between consecutive deltas, which is a single bit at a steady rate, and
+ * each value as the XOR with the channel's previous value, of which only the
+ * meaningful bits are kept. Rows go into chunks of a fixed row count; a full
+ * chunk is sealed into a read-only buffer and never touched again, so an
+ * encoder only ever holds one chunk's state.
+ *
+ * {@link #query} finds the chunks overlapping a time range by binary search
+ * and decodes only those; {@link #queryRows} finds them by row index, as every
+ * sealed chunk holds the same number of rows. Timestamps must not decrease; an earlier timestamp,
+ * e.g. after the wall clock was set back, is stored as the latest one.
+ *
+ * Not thread-safe; owned by the thread that appends.
+ */
+public final class CompressedSeriesStore {
+
+    public static final int DEFAULT_CHUNK_ROWS = 4096;
+
+    public interface RowSink {
+        /** Receives one row; values are only valid during the call. */
+        void onRow(long time, float[] values);
+    }
+
+    private static final class Chunk {
+        final long firstTime;
+        final long lastTime;
+        final int rows;
+        final ByteBuffer data;
+
+        Chunk(long firstTime, long lastTime, int rows, ByteBuffer data) {
+            this.firstTime = firstTime;
+            this.lastTime = lastTime;
+            this.rows = rows;
+            this.data = data;
+        }
+    }
+
+    private final int channels;
+    private final int chunkRows;
+    private final List<Chunk> sealed = new ArrayList<>();
+    private final BitWriter writer;
+    private final BitReader reader = new BitReader();
+    private final float[] row;
+    private long sealedBytes;
+    private long size;
+
+    // Encoder state of the open chunk
+    private int openRows;
+    private long openFirstTime;
+    private long lastTime;
+    private long lastDelta;
+    private final int[] lastBits;
+    private final int[] lastLeading;
+    private final int[] lastTrailing;
+
+    // Decoder state; a query decodes one chunk at a time
+    private final float[] decoded;
+    private final int[] decodedBits;
+    private final int[] decodedLeading;
+    private final int[] decodedTrailing;
+    private ByteBuffer openView;
+
+    public CompressedSeriesStore(int channels) {
+        this(channels, DEFAULT_CHUNK_ROWS);
+    }
+
+    public CompressedSeriesStore(int channels, int chunkRows) {
+        if (channels <= 0 || chunkRows <= 1) {
+            throw new IllegalArgumentException("channels must be positive and chunkRows above 1");
+        }
+        this.channels = channels;
+        this.chunkRows = chunkRows;
+        // Two bytes per value is typical of sensor data; the writer grows if not
+        this.writer = new BitWriter(chunkRows * channels * 2);
+        this.row = new float[channels];
+        this.lastBits = new int[channels];
+        this.lastLeading = new int[channels];
+        this.lastTrailing = new int[channels];
+        this.decoded = new float[channels];
+        this.decodedBits = new int[channels];
+        this.decodedLeading = new int[channels];
+        this.decodedTrailing = new int[channels];
+    }
+
+    public void append(long time, float v0, float v1, float v2) {
+        checkChannels(3);
+        row[0] = v0;
+        row[1] = v1;
+        row[2] = v2;
+        appendRow(time, row);
+    }
+
+    public void append(long time, float v0, float v1, float v2, float v3) {
+        checkChannels(4);
+        row[0] = v0;
+        row[1] = v1;
+        row[2] = v2;
+        row[3] = v3;
+        appendRow(time, row);
+    }
+
+    /** Appends one row from values[0..channels). */
+    public void append(long time, float[] values) {
+        checkChannels(values.length);
+        appendRow(time, values);
+    }
+
+    /**
+     * Passes the rows with a timestamp in [fromTime, toTime) to the sink in
+     * order. Returns the number of rows passed.
+     */
+    public int query(long fromTime, long toTime, RowSink sink) {
+        int passed = 0;
+        for (int i = firstChunkEndingAtOrAfter(fromTime); i < sealed.size(); i++) {
+            Chunk chunk = sealed.get(i);
+            if (chunk.firstTime >= toTime) return passed;
+            passed += decode(chunk.data, 0, chunk.rows, fromTime, toTime, sink);
+        }
+        if (openRows > 0 && openFirstTime < toTime && lastTime >= fromTime) {
+            passed += decode(openData(), 0, openRows, fromTime, toTime, sink);
+        }
+        return passed;
+    }
+
+    /**
+     * Passes rows [fromRow, toRow), counted from the first row appended, to
+     * the sink in order. Returns the number of rows passed.
+     */
+    public int queryRows(long fromRow, long toRow, RowSink sink) {
+        fromRow = Math.max(fromRow, 0);
+        toRow = Math.min(toRow, size);
+        int passed = 0;
+        for (long chunkStart = fromRow - fromRow % chunkRows; chunkStart < toRow; chunkStart += chunkRows) {
+            int index = (int) (chunkStart / chunkRows);
+            int first = (int) Math.max(fromRow - chunkStart, 0);
+            int end = (int) Math.min(toRow - chunkStart, chunkRows);
+            ByteBuffer data = index < sealed.size() ? sealed.get(index).data : openData();
+            passed += decode(data, first, end, Long.MIN_VALUE, Long.MAX_VALUE, sink);
+        }
+        return passed;
+    }
+
+    /** Passes every row to the sink in order. */
+    public int queryAll(RowSink sink) {
+        return query(Long.MIN_VALUE, Long.MAX_VALUE, sink);
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public int channels() {
+        return channels;
+    }
+
+    /** Timestamp of the first row; undefined when empty. */
+    public long firstTime() {
+        return sealed.isEmpty() ? openFirstTime : sealed.get(0).firstTime;
+    }
+
+    /** Timestamp of the last row; undefined when empty. */
+    public long lastTime() {
+        return lastTime;
+    }
+
+    public int getSealedChunks() {
+        return sealed.size();
+    }
+
+    /** The encoded rows of a sealed chunk, as a read-only buffer. */
+    public ByteBuffer chunkData(int index) {
+        return sealed.get(index).data.duplicate();
+    }
+
+    /** Bytes held by encoded rows, sealed and open. */
+    public long getCompressedBytes() {
+        return sealedBytes + writer.byteLength();
+    }
+
+    public void clear() {
+        sealed.clear();
+        sealedBytes = 0;
+        size = 0;
+        openRows = 0;
+        writer.reset();
+    }
+
+    private void appendRow(long time, float[] values) {
+        if (openRows == 0) {
+            // Later chunks must not start before the previous one ended
+            if (size > 0 && time < lastTime) time = lastTime;
+            openFirstTime = time;
+            writer.write(time, 64);
+            for (int c = 0; c < channels; c++) {
+                int bits = Float.floatToRawIntBits(values[c]);
+                writer.write(bits, 32);
+                lastBits[c] = bits;
+                lastLeading[c] = -1;
+            }
+            lastDelta = 0;
+        } else {
+            if (time < lastTime) time = lastTime;
+            long delta = time - lastTime;
+            writeDeltaOfDelta(delta - lastDelta);
+            lastDelta = delta;
+            for (int c = 0; c < channels; c++) {
+                writeValue(c, Float.floatToRawIntBits(values[c]));
+            }
+        }
+        lastTime = time;
+        openRows++;
+        size++;
+        if (openRows == chunkRows) seal();
+    }
+
+    // Delta-of-delta buckets sized for millisecond timestamps: jitter fits the first, gaps the last
+    private void writeDeltaOfDelta(long dod) {
+        if (dod == 0) {
+            writer.write(0, 1);
+        } else if (dod >= -64 && dod < 64) {
+            writer.write(0b10, 2);
+            writer.write(dod, 7);
+        } else if (dod >= -256 && dod < 256) {
+            writer.write(0b110, 3);
+            writer.write(dod, 9);
+        } else if (dod >= -2048 && dod < 2048) {
+            writer.write(0b1110, 4);
+            writer.write(dod, 12);
+        } else {
+            writer.write(0b1111, 4);
+            writer.write(dod, 64);
+        }
+    }
+
+    private void writeValue(int channel, int bits) {
+        int xor = bits ^ lastBits[channel];
+        lastBits[channel] = bits;
+        if (xor == 0) {
+            writer.write(0, 1);
+            return;
+        }
+        int leading = Integer.numberOfLeadingZeros(xor);
+        int trailing = Integer.numberOfTrailingZeros(xor);
+        int previousLeading = lastLeading[channel];
+        if (previousLeading >= 0 && leading >= previousLeading && trailing >= lastTrailing[channel]) {
+            // Fits the previous value's window: reuse its position
+            writer.write(0b10, 2);
+            writer.write((xor & 0xFFFFFFFFL) >>> lastTrailing[channel], 32 - previousLeading - lastTrailing[channel]);
+        } else {
+            int length = 32 - leading - trailing;
+            writer.write(0b11, 2);
+            writer.write(leading, 5);
+            writer.write(length - 1, 5);
+            writer.write((xor & 0xFFFFFFFFL) >>> trailing, length);
+            lastLeading[channel] = leading;
+            lastTrailing[channel] = trailing;
+        }
+    }
+
+    private void seal() {
+        byte[] bytes = Arrays.copyOf(writer.array(), writer.byteLength());
+        sealed.add(new Chunk(openFirstTime, lastTime, openRows, ByteBuffer.wrap(bytes).asReadOnlyBuffer()));
+        sealedBytes += bytes.length;
+        writer.reset();
+        openRows = 0;
+    }
+
+    private ByteBuffer openData() {
+        byte[] bytes = writer.array();
+        if (openView == null || openView.array() != bytes) openView = ByteBuffer.wrap(bytes);
+        return openView;
+    }
+
+    // Decodes rows [0, endRow) of a chunk and passes those from firstRow on whose time is in range
+    private int decode(ByteBuffer data, int firstRow, int endRow, long fromTime, long toTime, RowSink sink) {
+        reader.reset(data);
+        long time = reader.read(64);
+        for (int c = 0; c < channels; c++) {
+            decodedBits[c] = (int) reader.read(32);
+            decoded[c] = Float.intBitsToFloat(decodedBits[c]);
+        }
+        long delta = 0;
+        int passed = 0;
+        for (int i = 0; ; ) {
+            if (time >= toTime) break;
+            if (time >= fromTime && i >= firstRow) {
+                sink.onRow(time, decoded);
+                passed++;
+            }
+            if (++i == endRow) break;
+            delta += readDeltaOfDelta();
+            time += delta;
+            for (int c = 0; c < channels; c++) {
+                decoded[c] = Float.intBitsToFloat(readValue(c));
+            }
+        }
+        return passed;
+    }
+
+    private long readDeltaOfDelta() {
+        if (!reader.readBit()) return 0;
+        if (!reader.readBit()) return signExtend(reader.read(7), 7);
+        if (!reader.readBit()) return signExtend(reader.read(9), 9);
+        if (!reader.readBit()) return signExtend(reader.read(12), 12);
+        return reader.read(64);
+    }
+
+    private int readValue(int channel) {
+        if (reader.readBit()) {
+            if (reader.readBit()) {
+                decodedLeading[channel] = (int) reader.read(5);
+                int length = (int) reader.read(5) + 1;
+                decodedTrailing[channel] = 32 - decodedLeading[channel] - length;
+            }
+            int length = 32 - decodedLeading[channel] - decodedTrailing[channel];
+            decodedBits[channel] ^= (int) (reader.read(length) << decodedTrailing[channel]);
+        }
+        return decodedBits[channel];
+    }
+
+    private int firstChunkEndingAtOrAfter(long time) {
+        int low = 0, high = sealed.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sealed.get(mid).lastTime < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static long signExtend(long value, int bits) {
+        return (value << (64 - bits)) >> (64 - bits);
+    }
+
+    private void checkChannels(int count) {
+        if (count != channels) {
+            throw new IllegalArgumentException("Expected " + channels + " channels, got " + count);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.dashpod.telemetry;
+
+/**
+ * Samples for the fleet dashboard: breathing rate or Euler angles, whichever
+ * the device sends. Each sample carries a record mask built from
+ * {@link OrientationFrameDecoder#EULER}, {@link OrientationFrameDecoder#QUATERNION}
+ * and {@link #BPM}; columns of records that were not present hold stale values.
+ * The dashboard has no terminal, so no text lines are kept.
+ */
+public final class FleetBatch extends TelemetryBatch {
+
+    public static final int BPM = 1 << 2;
+
+    private final int[] records;
+    private final float[] bpm;
+    private final float[] yaw, pitch, roll;
+
+    public FleetBatch(int capacity) {
+        super(capacity, 1);
+        records = new int[capacity];
+        bpm = new float[capacity];
+        yaw = new float[capacity];
+        pitch = new float[capacity];
+        roll = new float[capacity];
+    }
+
+    public void addBpm(long timestamp, float value) {
+        int index = append(timestamp);
+        records[index] = BPM;
+        bpm[index] = value;
+    }
+
+    public void addOrientation(long timestamp, int found, float yaw, float pitch, float roll) {
+        int index = append(timestamp);
+        records[index] = found;
+        this.yaw[index] = yaw;
+        this.pitch[index] = pitch;
+        this.roll[index] = roll;
+    }
+
+    public int recordsAt(int i) {
+        return records[slot(i)];
+    }
+
+    public float bpmAt(int i) {
+        return bpm[slot(i)];
+    }
+
+    public float yawAt(int i) {
+        return yaw[slot(i)];
+    }
+
+    public float pitchAt(int i) {
+        return pitch[slot(i)];
+    }
+
+    public float rollAt(int i) {
+        return roll[slot(i)];
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.dashpod.telemetry;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Pipeline decoder for the fleet dashboard, which does not know up front
+ * whether a device streams breathing rate or orientation: binary records and
+ * JSON orientation lines become orientation samples, "bpm" lines become
+ * breathing rate samples. Euler angles are derived for quaternion-only records.
+ */
+public final class FleetTelemetryDecoder implements TelemetryPipeline.Decoder<FleetBatch> {
+
+    // A 512-byte notification holds at most 56 of the shortest binary records
+    private static final int MAX_RECORDS = 64;
+
+    private final OrientationFrameDecoder textDecoder = new OrientationFrameDecoder();
+    private final BinaryFrameDecoder binaryDecoder = new BinaryFrameDecoder();
+    private final OrientationBatch binarySamples = new OrientationBatch(MAX_RECORDS, 1);
+    private final float[] euler = new float[3];
+    private long unrecognisedLines;
+
+    @Override
+    public void decode(byte[] data, int offset, int length, long timestamp, FleetBatch batch) {
+        if (BinaryFrameDecoder.isBinary(data, offset, length)) {
+            binaryDecoder.decode(data, offset, length, timestamp, binarySamples);
+            for (int i = 0; i < binarySamples.size(); i++) {
+                addOrientation(batch, binarySamples.timestampAt(i), binarySamples.recordsAt(i),
+                        binarySamples.yawAt(i), binarySamples.pitchAt(i), binarySamples.rollAt(i),
+                        binarySamples.qwAt(i), binarySamples.qxAt(i), binarySamples.qyAt(i), binarySamples.qzAt(i));
+            }
+            binarySamples.clear();
+            return;
+        }
+
+        int found = textDecoder.decode(data, offset, length);
+        if (found != OrientationFrameDecoder.NONE) {
+            addOrientation(batch, timestamp, found, textDecoder.getYaw(), textDecoder.getPitch(), textDecoder.getRoll(),
+                    textDecoder.getQw(), textDecoder.getQx(), textDecoder.getQy(), textDecoder.getQz());
+            return;
+        }
+
+        String received = new String(data, offset, length, StandardCharsets.UTF_8).trim();
+        if (received.isEmpty()) return;
+        try {
+            float bpm = BpmParser.parse(received);
+            if (bpm >= 0) {
+                batch.addBpm(timestamp, bpm);
+                return;
+            }
+        } catch (NumberFormatException e) {
+            // Counted below with the other lines that carry nothing to show
+        }
+        unrecognisedLines++;
+    }
+
+    private void addOrientation(FleetBatch batch, long timestamp, int found, float yaw, float pitch, float roll,
+                                float qw, float qx, float qy, float qz) {
+        if ((found & OrientationFrameDecoder.EULER) == 0 && (found & OrientationFrameDecoder.QUATERNION) != 0
+                && Quaternions.toEuler(qw, qx, qy, qz, euler)) {
+            found |= OrientationFrameDecoder.EULER;
+            yaw = euler[0];
+            pitch = euler[1];
+            roll = euler[2];
+        }
+        batch.addOrientation(timestamp, found, yaw, pitch, roll);
+    }
+
+    @Override
+    public void reset() {
+        binaryDecoder.reset();
+    }
+
+    public BinaryFrameDecoder getBinaryDecoder() {
+        return binaryDecoder;
+    }
+
+    /** Lines with neither orientation nor breathing rate data. Only read from the worker or after the pipeline stopped. */
+    public long getUnrecognisedLines() {
+        return unrecognisedLines;
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.dashpod.telemetry;
+
+/**
+ * Fixed-capacity ring buffer of float samples stored column by column, with
+ * one shared time column. Appending overwrites the oldest row once the buffer
+ * is full, so every append is O(1) and nothing is boxed or shifted.
+ *
+ * Rows are addressed by logical index, 0 being the oldest retained sample.
+ * Not thread-safe; owned by the thread that draws the chart.
+ */
+public final class FloatSeriesBuffer {
+
+    private final float[][] columns;
+    private final long[] times;
+    private final int capacity;
+    private int start, size;
+    private long totalAppended;
+
+    public FloatSeriesBuffer(int channels, int capacity) {
+        if (channels <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("channels and capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.columns = new float[channels][capacity];
+        this.times = new long[capacity];
+    }
+
+    public void append(long time, float v0, float v1, float v2) {
+        checkChannels(3);
+        int slot = nextSlot(time);
+        columns[0][slot] = v0;
+        columns[1][slot] = v1;
+        columns[2][slot] = v2;
+    }
+
+    public void append(long time, float v0, float v1, float v2, float v3) {
+        checkChannels(4);
+        int slot = nextSlot(time);
+        columns[0][slot] = v0;
+        columns[1][slot] = v1;
+        columns[2][slot] = v2;
+        columns[3][slot] = v3;
+    }
+
+    /** Appends one row from values[0..channels). */
+    public void append(long time, float[] values) {
+        checkChannels(values.length);
+        int slot = nextSlot(time);
+        for (int c = 0; c < columns.length; c++) {
+            columns[c][slot] = values[c];
+        }
+    }
+
+    public float get(int channel, int index) {
+        return columns[channel][slot(index)];
+    }
+
+    public long timeAt(int index) {
+        return times[slot(index)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int channels() {
+        return columns.length;
+    }
+
+    /** Number of rows appended since creation or the last {@link #clear()}, including overwritten ones. */
+    public long getTotalAppended() {
+        return totalAppended;
+    }
+
+    public void clear() {
+        start = 0;
+        size = 0;
+        totalAppended = 0;
+    }
+
+    private int nextSlot(long time) {
+        int slot = start + size;
+        if (slot >= capacity) slot -= capacity;
+        if (size == capacity) {
+            start = start + 1 == capacity ? 0 : start + 1;
+        } else {
+            size++;
+        }
+        times[slot] = time;
+        totalAppended++;
+        return slot;
+    }
+
+    // Raw column access for SeriesDecimator, which walks long ranges and checks them once
+
+    float[] column(int channel) {
+        return columns[channel];
+    }
+
+    /** Column index of logical row 0; row i is at (start + i) mod capacity. */
+    int startSlot() {
+        return start;
+    }
+
+    private int slot(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+        int slot = start + index;
+        return slot >= capacity ? slot - capacity : slot;
+    }
+
+    private void checkChannels(int count) {
+        if (count != columns.length) {
+            throw new IllegalArgumentException("Expected " + columns.length + " channels, got " + count);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.dashpod.telemetry;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded single-producer/single-consumer queue of raw notification payloads.
+ *
+ * Every slot owns a preallocated byte array, so offering a frame is a copy and
+ * never allocates. When the consumer falls behind the newest frame is dropped
+ * and counted rather than blocking the producer. GATT callbacks for one
+ * connection are delivered serially, which makes them a valid single producer.
+ */
+public final class FrameRingBuffer {
+
+    public interface FrameConsumer {
+        /** The array is reused after this returns; copy anything that must outlive the call. */
+        void accept(byte[] data, int length, long timestamp);
+    }
+
+    private final byte[][] frames;
+    private final int[] lengths;
+    private final long[] timestamps;
+    private final long[] offeredNanos;
+    private final int capacity;
+    private final int mask;
+    private final int maxFrameLength;
+
+    // head is only written by the consumer, tail only by the producer
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private long cachedHead;
+    private long drainingOfferedNanos;
+
+    public FrameRingBuffer(int capacity, int maxFrameLength) {
+        this(capacity, maxFrameLength, false);
+    }
+
+    /** @param timed record when each frame was offered, see {@link #offeredNanos()} */
+    public FrameRingBuffer(int capacity, int maxFrameLength, boolean timed) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.maxFrameLength = maxFrameLength;
+        this.frames = new byte[capacity][maxFrameLength];
+        this.lengths = new int[capacity];
+        this.timestamps = new long[capacity];
+        this.offeredNanos = timed ? new long[capacity] : null;
+    }
+
+    /** Producer side. Returns false if the frame was dropped because the buffer is full or the frame too long. */
+    public boolean offer(byte[] data, int offset, int length, long timestamp) {
+        if (length > maxFrameLength) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        long t = tail.get();
+        if (t - cachedHead >= capacity) {
+            cachedHead = head.get();
+            if (t - cachedHead >= capacity) {
+                dropped.incrementAndGet();
+                return false;
+            }
+        }
+        int index = (int) t & mask;
+        System.arraycopy(data, offset, frames[index], 0, length);
+        lengths[index] = length;
+        timestamps[index] = timestamp;
+        if (offeredNanos != null) offeredNanos[index] = System.nanoTime();
+        tail.set(t + 1);
+        return true;
+    }
+
+    /** Consumer side. Hands up to limit frames to the consumer in arrival order and returns how many. */
+    public int drain(FrameConsumer consumer, int limit) {
+        long h = head.get();
+        int count = (int) Math.min(tail.get() - h, limit);
+        for (int i = 0; i < count; i++) {
+            int index = (int) (h + i) & mask;
+            if (offeredNanos != null) drainingOfferedNanos = offeredNanos[index];
+            consumer.accept(frames[index], lengths[index], timestamps[index]);
+        }
+        head.lazySet(h + count);
+        return count;
+    }
+
+    /**
+     * Consumer side. {@link System#nanoTime()} at which the frame currently
+     * being passed to the consumer was offered, or 0 if the buffer is not timed.
+     * Only meaningful inside {@link FrameConsumer#accept}.
+     */
+    public long offeredNanos() {
+        return drainingOfferedNanos;
+    }
+
+    public boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public long getDroppedFrames() {
+        return dropped.get();
+    }
+}
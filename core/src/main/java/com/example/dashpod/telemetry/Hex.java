@@ -0,0 +1,24 @@
+package com.example.dashpod.telemetry;
+
+/**
+ * Hex helpers for the macro editor, where payloads are typed as e.g. "01 04 02".
+ */
+public final class Hex {
+
+    private Hex() {
+    }
+
+    /**
+     * Decodes pairs of hex digits without separators. An odd trailing digit
+     * becomes the high nibble of the last byte.
+     */
+    public static byte[] decode(String s) {
+        int len = s.length();
+        byte[] data = new byte[(len + 1) / 2];
+        for (int i = 0; i < len; i += 2) {
+            data[i / 2] = (byte) ((Character.digit(s.charAt(i), 16) << 4) +
+                    (i + 1 < len ? Character.digit(s.charAt(i + 1), 16) : 0));
+        }
+        return data;
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.dashpod.telemetry;
+
+import java.util.Locale;
+
+/**
+ * Bluetooth MAC addresses packed into the low 48 bits of a long, as session
+ * records store them and device lists key their rows.
+ */
+public final class MacAddress {
+
+    private MacAddress() {
+    }
+
+    /** Packs an address like "AA:BB:CC:DD:EE:FF"; separators are ignored. */
+    public static long parse(String address) {
+        long value = 0;
+        int digits = 0;
+        for (int i = 0; i < address.length(); i++) {
+            int digit = Character.digit(address.charAt(i), 16);
+            if (digit < 0) continue;
+            value = (value << 4) | digit;
+            digits++;
+        }
+        if (digits != 12) {
+            throw new IllegalArgumentException("Not a MAC address: " + address);
+        }
+        return value;
+    }
+
+    public static String format(long address) {
+        StringBuilder text = new StringBuilder(17);
+        for (int shift = 40; shift >= 0; shift -= 8) {
+            if (text.length() > 0) text.append(':');
+            text.append(String.format(Locale.US, "%02X", (address >>> shift) & 0xFF));
+        }
+        return text.toString();
+    }
+}
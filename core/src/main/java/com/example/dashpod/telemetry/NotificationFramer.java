@@ -0,0 +1,159 @@
+package com.example.dashpod.telemetry;
+
+/**
+ * Reassembles frames from a stream of BLE notifications.
+ *
+ * Notifications do not have to line up with frames: one frame may be split
+ * across several notifications, and one notification may carry several frames.
+ * Two kinds of frame are recognised at a frame boundary:
+ * <ul>
+ *   <li>binary records, whose type byte implies their length (see {@link BinaryFrameDecoder});</li>
+ *   <li>text lines terminated by '\n', with surrounding whitespace trimmed.</li>
+ * </ul>
+ * Until the first newline is seen in text the stream is assumed to come from firmware
+ * that sends one unterminated message per notification, and each notification
+ * is passed on as a single text frame.
+ *
+ * Complete frames inside a notification are emitted straight from its array;
+ * only the tail of a split frame is copied. Not thread-safe.
+ */
+public final class NotificationFramer {
+
+    public interface FrameSink {
+        /** The array is reused after this returns; copy anything that must outlive the call. */
+        void onFrame(byte[] data, int offset, int length, long timestamp);
+    }
+
+    private final byte[] pending;
+    private int pendingLength;
+    // Length of the binary record being reassembled, or 0 when pending holds text
+    private int pendingRecordLength;
+    private boolean discardingLine;
+    private boolean newlineDelimited;
+    private long frames;
+    private long discardedBytes;
+
+    public NotificationFramer(int maxFrameLength) {
+        pending = new byte[maxFrameLength];
+    }
+
+    public void push(byte[] data, int offset, int length, long timestamp, FrameSink sink) {
+        int end = offset + length;
+        int pos = offset;
+        while (pos < end) {
+            if (pendingRecordLength > 0) {
+                pos = continueRecord(data, pos, end, timestamp, sink);
+            } else if (pendingLength > 0 || discardingLine) {
+                pos = continueLine(data, pos, end, timestamp, sink);
+            } else if (BinaryFrameDecoder.recordLength(data[pos] & 0xFF) > 0) {
+                pos = startRecord(data, pos, end, timestamp, sink);
+            } else {
+                int newline = indexOfNewline(data, pos, end);
+                if (newline >= 0) {
+                    // Only a newline in text switches modes; binary values may contain 0x0A
+                    newlineDelimited = true;
+                    emitText(data, pos, newline, timestamp, sink);
+                    pos = newline + 1;
+                } else if (!newlineDelimited) {
+                    emitText(data, pos, end, timestamp, sink);
+                    pos = end;
+                } else {
+                    appendPending(data, pos, end);
+                    pos = end;
+                }
+            }
+        }
+    }
+
+    /** Drops any partial frame, e.g. after a reconnect. */
+    public void reset() {
+        pendingLength = 0;
+        pendingRecordLength = 0;
+        discardingLine = false;
+        newlineDelimited = false;
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    /** Bytes thrown away because a line grew past the maximum frame length. */
+    public long getDiscardedBytes() {
+        return discardedBytes;
+    }
+
+    private int startRecord(byte[] data, int pos, int end, long timestamp, FrameSink sink) {
+        int recordLength = BinaryFrameDecoder.recordLength(data[pos] & 0xFF);
+        if (pos + recordLength <= end) {
+            emit(data, pos, recordLength, timestamp, sink);
+            return pos + recordLength;
+        }
+        pendingRecordLength = recordLength;
+        appendPending(data, pos, end);
+        return end;
+    }
+
+    private int continueRecord(byte[] data, int pos, int end, long timestamp, FrameSink sink) {
+        int count = Math.min(pendingRecordLength - pendingLength, end - pos);
+        System.arraycopy(data, pos, pending, pendingLength, count);
+        pendingLength += count;
+        if (pendingLength == pendingRecordLength) {
+            emit(pending, 0, pendingLength, timestamp, sink);
+            pendingLength = 0;
+            pendingRecordLength = 0;
+        }
+        return pos + count;
+    }
+
+    private int continueLine(byte[] data, int pos, int end, long timestamp, FrameSink sink) {
+        int newline = indexOfNewline(data, pos, end);
+        int stop = newline < 0 ? end : newline;
+        if (discardingLine) {
+            discardedBytes += stop - pos;
+        } else {
+            appendPending(data, pos, stop);
+        }
+        if (newline < 0) return end;
+
+        if (!discardingLine) {
+            emitText(pending, 0, pendingLength, timestamp, sink);
+        }
+        pendingLength = 0;
+        discardingLine = false;
+        return newline + 1;
+    }
+
+    private void appendPending(byte[] data, int from, int to) {
+        int count = to - from;
+        if (pendingLength + count > pending.length) {
+            // Oversized line: drop it and resynchronise on the next newline
+            discardedBytes += pendingLength + count;
+            pendingLength = 0;
+            pendingRecordLength = 0;
+            discardingLine = true;
+            return;
+        }
+        System.arraycopy(data, from, pending, pendingLength, count);
+        pendingLength += count;
+    }
+
+    private void emitText(byte[] data, int from, int to, long timestamp, FrameSink sink) {
+        while (from < to && data[from] <= ' ' && data[from] >= 0) from++;
+        while (to > from && data[to - 1] <= ' ' && data[to - 1] >= 0) to--;
+        if (to > from) {
+            emit(data, from, to - from, timestamp, sink);
+        }
+    }
+
+    private void emit(byte[] data, int offset, int length, long timestamp, FrameSink sink) {
+        frames++;
+        sink.onFrame(data, offset, length, timestamp);
+    }
+
+    private static int indexOfNewline(byte[] data, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (data[i] == '\n') return i;
+        }
+        return -1;
+    }
+}
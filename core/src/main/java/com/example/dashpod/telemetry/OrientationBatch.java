@@ -0,0 +1,75 @@
+package com.example.dashpod.telemetry;
+
+/**
+ * Euler and quaternion samples decoded by {@link OrientationFrameDecoder}.
+ * Each sample carries the decoder's record mask; columns of records that were
+ * not present in the frame hold stale values and should be ignored.
+ */
+public final class OrientationBatch extends TelemetryBatch {
+
+    private final int[] records;
+    private final float[] yaw, pitch, roll;
+    private final float[] qw, qx, qy, qz;
+
+    public OrientationBatch(int capacity, int lineCapacity) {
+        super(capacity, lineCapacity);
+        records = new int[capacity];
+        yaw = new float[capacity];
+        pitch = new float[capacity];
+        roll = new float[capacity];
+        qw = new float[capacity];
+        qx = new float[capacity];
+        qy = new float[capacity];
+        qz = new float[capacity];
+    }
+
+    public void add(long timestamp, int found, OrientationFrameDecoder decoder) {
+        add(timestamp, found, decoder.getYaw(), decoder.getPitch(), decoder.getRoll(),
+                decoder.getQw(), decoder.getQx(), decoder.getQy(), decoder.getQz());
+    }
+
+    public void add(long timestamp, int found, float yaw, float pitch, float roll,
+                    float qw, float qx, float qy, float qz) {
+        int index = append(timestamp);
+        records[index] = found;
+        this.yaw[index] = yaw;
+        this.pitch[index] = pitch;
+        this.roll[index] = roll;
+        this.qw[index] = qw;
+        this.qx[index] = qx;
+        this.qy[index] = qy;
+        this.qz[index] = qz;
+    }
+
+    public int recordsAt(int i) {
+        return records[slot(i)];
+    }
+
+    public float yawAt(int i) {
+        return yaw[slot(i)];
+    }
+
+    public float pitchAt(int i) {
+        return pitch[slot(i)];
+    }
+
+    public float rollAt(int i) {
+        return roll[slot(i)];
+    }
+
+    public float qwAt(int i) {
+        return qw[slot(i)];
+    }
+
+    public float qxAt(int i) {
+        return qx[slot(i)];
+    }
+
+    public float qyAt(int i) {
+        return qy[slot(i)];
+    }
+
+    public float qzAt(int i) {
+        return qz[slot(i)];
+    }
+}
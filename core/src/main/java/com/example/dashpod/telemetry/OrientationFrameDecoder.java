@@ -0,0 +1,192 @@
+package com.example.dashpod.telemetry;
+
+/**
+ * Decodes the BNO055 orientation records sent by the DashPod firmware,
+ * {"EX":..,"EY":..,"EZ":..} and {"QW":..,"QX":..,"QY":..,"QZ":..}, straight
+ * from a notification payload into primitive fields.
+ *
+ * Accepts exactly what the old regexes in DeviceActivity accepted, and does not
+ * allocate unless a number has more digits than a float can represent exactly.
+ * One instance per thread; the fields are overwritten by every call to decode.
+ */
+public final class OrientationFrameDecoder {
+
+    public static final int NONE = 0;
+    public static final int EULER = 1;
+    public static final int QUATERNION = 1 << 1;
+
+    private static final byte[] EULER_KEYS = {'E', 'X', 'E', 'Y', 'E', 'Z'};
+    private static final byte[] QUATERNION_KEYS = {'Q', 'W', 'Q', 'X', 'Q', 'Y', 'Q', 'Z'};
+
+    // Every power up to 10^10 is exact as a float, so m / 10^e rounds correctly in double precision
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10
+    };
+    private static final long MAX_EXACT_MANTISSA = 1L << 24;
+
+    private final float[] values = new float[4];
+    private float yaw, pitch, roll;
+    private float qw, qx, qy, qz;
+
+    // Set by parseNumber: index just past the number, or -1 if there is no valid number
+    private int numberEnd;
+    private float number;
+
+    /**
+     * Decodes the records found in data[offset, offset + length).
+     *
+     * @return a mask of {@link #EULER} and {@link #QUATERNION}; only the
+     * fields of the records that were found are updated
+     */
+    public int decode(byte[] data, int offset, int length) {
+        int end = offset + length;
+        int found = NONE;
+        if (findRecord(data, offset, end, EULER_KEYS)) {
+            yaw = values[0];
+            pitch = values[1];
+            roll = values[2];
+            found |= EULER;
+        }
+        if (findRecord(data, offset, end, QUATERNION_KEYS)) {
+            qw = values[0];
+            qx = values[1];
+            qy = values[2];
+            qz = values[3];
+            found |= QUATERNION;
+        }
+        return found;
+    }
+
+    public float getYaw() {
+        return yaw;
+    }
+
+    public float getPitch() {
+        return pitch;
+    }
+
+    public float getRoll() {
+        return roll;
+    }
+
+    public float getQw() {
+        return qw;
+    }
+
+    public float getQx() {
+        return qx;
+    }
+
+    public float getQy() {
+        return qy;
+    }
+
+    public float getQz() {
+        return qz;
+    }
+
+    // Leftmost match wins, like Matcher.find()
+    private boolean findRecord(byte[] data, int start, int end, byte[] keys) {
+        for (int i = start; i < end; i++) {
+            if (data[i] == '{' && matchRecord(data, i + 1, end, keys)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean matchRecord(byte[] data, int pos, int end, byte[] keys) {
+        int fields = keys.length / 2;
+        for (int field = 0; field < fields; field++) {
+            if (field > 0) {
+                if (pos >= end || data[pos] != ',') return false;
+                pos = skipWhitespace(data, pos + 1, end);
+            }
+            if (pos + 4 > end
+                    || data[pos] != '"'
+                    || data[pos + 1] != keys[field * 2]
+                    || data[pos + 2] != keys[field * 2 + 1]
+                    || data[pos + 3] != '"') {
+                return false;
+            }
+            pos = skipWhitespace(data, pos + 4, end);
+            if (pos >= end || data[pos] != ':') return false;
+            pos = skipWhitespace(data, pos + 1, end);
+
+            parseNumber(data, pos, end);
+            if (numberEnd < 0) return false;
+            values[field] = number;
+            pos = numberEnd;
+        }
+        return pos < end && data[pos] == '}';
+    }
+
+    /**
+     * Parses [-]?\d*\.?\d+ starting at pos. Since the grammar only allows ',' or
+     * '}' after a number, the token is the full run of digits and dots.
+     */
+    private void parseNumber(byte[] data, int pos, int end) {
+        numberEnd = -1;
+        int start = pos;
+        boolean negative = false;
+        if (pos < end && data[pos] == '-') {
+            negative = true;
+            pos++;
+        }
+
+        long mantissa = 0;
+        int significantDigits = 0;
+        int fractionDigits = 0;
+        int digitsAfterDot = 0;
+        boolean seenDot = false;
+        boolean anyDigit = false;
+        for (; pos < end; pos++) {
+            byte b = data[pos];
+            if (b >= '0' && b <= '9') {
+                anyDigit = true;
+                if (seenDot) digitsAfterDot++;
+                if (mantissa != 0 || b != '0') {
+                    significantDigits++;
+                }
+                if (significantDigits <= 18) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (seenDot) fractionDigits++;
+                }
+            } else if (b == '.') {
+                if (seenDot) return;
+                seenDot = true;
+            } else {
+                break;
+            }
+        }
+        if (!anyDigit || (seenDot && digitsAfterDot == 0)) return;
+
+        numberEnd = pos;
+        if (mantissa < MAX_EXACT_MANTISSA && significantDigits <= 18 && fractionDigits < POWERS_OF_TEN.length) {
+            float value = (float) (mantissa / POWERS_OF_TEN[fractionDigits]);
+            number = negative ? -value : value;
+        } else {
+            number = parseSlow(data, start, pos);
+        }
+    }
+
+    private static float parseSlow(byte[] data, int start, int end) {
+        char[] chars = new char[end - start];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) data[start + i];
+        }
+        return Float.parseFloat(new String(chars));
+    }
+
+    private static int skipWhitespace(byte[] data, int pos, int end) {
+        while (pos < end && isWhitespace(data[pos])) {
+            pos++;
+        }
+        return pos;
+    }
+
+    // Same set as the regex \s
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == 0x0B || b == '\f' || b == '\r';
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.dashpod.telemetry;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Pipeline decoder for the orientation screen: binary records go to a
+ * {@link BinaryFrameDecoder}, anything else is treated as a JSON text line,
+ * kept for the terminal and scanned for Euler angles and quaternions.
+ *
+ * Euler angles are derived from the quaternion when a record carries only
+ * the quaternion, so the firmware can stream quaternions alone. With a
+ * {@link QuaternionResampler} every quaternion is smoothed and resampled
+ * first and the Euler angles are always derived, keeping both charts
+ * consistent; records with Euler angles alone pass through unchanged.
+ */
+public final class OrientationTelemetryDecoder implements TelemetryPipeline.Decoder<OrientationBatch> {
+
+    // A 512-byte notification holds at most 56 of the shortest binary records
+    private static final int MAX_RECORDS = 64;
+
+    private final OrientationFrameDecoder textDecoder = new OrientationFrameDecoder();
+    private final BinaryFrameDecoder binaryDecoder = new BinaryFrameDecoder();
+    private final OrientationBatch binarySamples = new OrientationBatch(MAX_RECORDS, 1);
+    private final QuaternionResampler resampler;
+    private final float[] euler = new float[3];
+    private final QuaternionResampler.Sink derivedSink = this::addResampled;
+    private OrientationBatch filling;
+    private long unrecognisedLines;
+    private long derivedSamples;
+
+    public OrientationTelemetryDecoder() {
+        this(null);
+    }
+
+    /** @param resampler applied to the quaternion stream, or null to keep samples as received */
+    public OrientationTelemetryDecoder(QuaternionResampler resampler) {
+        this.resampler = resampler;
+    }
+
+    @Override
+    public void decode(byte[] data, int offset, int length, long timestamp, OrientationBatch batch) {
+        if (BinaryFrameDecoder.isBinary(data, offset, length)) {
+            binaryDecoder.decode(data, offset, length, timestamp, binarySamples);
+            for (int i = 0; i < binarySamples.size(); i++) {
+                add(batch, binarySamples.timestampAt(i), binarySamples.recordsAt(i),
+                        binarySamples.yawAt(i), binarySamples.pitchAt(i), binarySamples.rollAt(i),
+                        binarySamples.qwAt(i), binarySamples.qxAt(i), binarySamples.qyAt(i), binarySamples.qzAt(i));
+            }
+            binarySamples.clear();
+            return;
+        }
+
+        // Firmware without binary support keeps sending JSON text
+        String received = new String(data, offset, length, StandardCharsets.UTF_8).trim();
+        if (received.isEmpty()) return;
+        batch.addLine(received);
+
+        int found = textDecoder.decode(data, offset, length);
+        if (found == OrientationFrameDecoder.NONE) {
+            unrecognisedLines++;
+            return;
+        }
+        add(batch, timestamp, found, textDecoder.getYaw(), textDecoder.getPitch(), textDecoder.getRoll(),
+                textDecoder.getQw(), textDecoder.getQx(), textDecoder.getQy(), textDecoder.getQz());
+    }
+
+    private void add(OrientationBatch batch, long timestamp, int found, float yaw, float pitch, float roll,
+                     float qw, float qx, float qy, float qz) {
+        if ((found & OrientationFrameDecoder.QUATERNION) == 0) {
+            batch.add(timestamp, found, yaw, pitch, roll, qw, qx, qy, qz);
+        } else if (resampler != null) {
+            filling = batch;
+            resampler.push(timestamp, qw, qx, qy, qz, derivedSink);
+        } else if ((found & OrientationFrameDecoder.EULER) == 0 && Quaternions.toEuler(qw, qx, qy, qz, euler)) {
+            addDerived(batch, timestamp, qw, qx, qy, qz);
+        } else {
+            batch.add(timestamp, found, yaw, pitch, roll, qw, qx, qy, qz);
+        }
+    }
+
+    private void addResampled(long timestamp, float qw, float qx, float qy, float qz) {
+        Quaternions.toEuler(qw, qx, qy, qz, euler); // The resampler only emits unit quaternions
+        addDerived(filling, timestamp, qw, qx, qy, qz);
+    }
+
+    // The Euler angles were just derived into euler
+    private void addDerived(OrientationBatch batch, long timestamp, float qw, float qx, float qy, float qz) {
+        batch.add(timestamp, OrientationFrameDecoder.EULER | OrientationFrameDecoder.QUATERNION,
+                euler[0], euler[1], euler[2], qw, qx, qy, qz);
+        derivedSamples++;
+    }
+
+    @Override
+    public void reset() {
+        binaryDecoder.reset();
+    }
+
+    public BinaryFrameDecoder getBinaryDecoder() {
+        return binaryDecoder;
+    }
+
+    /** Samples whose Euler angles were derived from the quaternion. Only read from the worker or after the pipeline stopped. */
+    public long getDerivedSamples() {
+        return derivedSamples;
+    }
+
+    /** Text lines without Euler or quaternion data. Only read from the worker or after the pipeline stopped. */
+    public long getUnrecognisedLines() {
+        return unrecognisedLines;
+    }
+}
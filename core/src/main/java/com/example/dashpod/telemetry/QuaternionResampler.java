@@ -0,0 +1,119 @@
+package com.example.dashpod.telemetry;
+
+/**
+ * Smooths a quaternion stream and puts it on a fixed time grid, so Euler
+ * angles derived from it can be charted at a steady rate whatever rate the
+ * firmware streams at.
+ *
+ * Smoothing blends each sample into the running orientation by spherical
+ * linear interpolation, which unlike averaging the components stays a valid
+ * rotation. Resampling interpolates between consecutive smoothed samples at
+ * every multiple of the interval: a slow stream is upsampled, a fast one
+ * downsampled. Samples that share a timestamp, as the records of one binary
+ * notification do, are all blended in before the span ending at them is
+ * emitted. A gap longer than {@link #MAX_FILL} intervals, e.g. a dropped
+ * connection, is not filled in. Zero quaternions, sent before the sensor's
+ * fusion has an orientation, are skipped.
+ *
+ * One instance per thread. Does not allocate.
+ */
+public final class QuaternionResampler {
+
+    public static final int MAX_FILL = 64;
+
+    public interface Sink {
+        void onSample(long timestamp, float qw, float qx, float qy, float qz);
+    }
+
+    private final long interval;
+    private final float smoothing;
+    private final float[] sample = new float[4];
+    private final float[] smoothed = new float[4];
+    private final float[] previous = new float[4];
+    private final float[] out = new float[4];
+    private boolean started;
+    private boolean hasPrevious;
+    private long previousTimestamp;
+    private long smoothedTimestamp;
+    private long next;
+
+    /**
+     * @param interval  time between output samples, in the unit of the input timestamps;
+     *                  0 to emit one sample per distinct input timestamp
+     * @param smoothing weight of the newest sample, from just above 0 to 1 for no smoothing
+     */
+    public QuaternionResampler(long interval, float smoothing) {
+        if (interval < 0) throw new IllegalArgumentException("interval must not be negative");
+        if (!(smoothing > 0 && smoothing <= 1)) throw new IllegalArgumentException("smoothing must be in (0, 1]");
+        this.interval = interval;
+        this.smoothing = smoothing;
+    }
+
+    /**
+     * Takes a sample and passes the samples that became due to the sink.
+     * Output runs one input timestamp behind, since a timestamp is complete
+     * only once a later one arrives. Timestamps must not decrease. Returns the
+     * number of samples emitted.
+     */
+    public int push(long timestamp, float qw, float qx, float qy, float qz, Sink sink) {
+        if (qw == 0 && qx == 0 && qy == 0 && qz == 0) return 0;
+        sample[0] = qw;
+        sample[1] = qx;
+        sample[2] = qy;
+        sample[3] = qz;
+        Quaternions.normalize(sample);
+
+        if (!started) {
+            started = true;
+            hasPrevious = false;
+            System.arraycopy(sample, 0, smoothed, 0, 4);
+            smoothedTimestamp = timestamp;
+            return 0;
+        }
+        int emitted = 0;
+        if (timestamp != smoothedTimestamp) {
+            emitted = flush(sink);
+            System.arraycopy(smoothed, 0, previous, 0, 4);
+            previousTimestamp = smoothedTimestamp;
+            smoothedTimestamp = timestamp;
+            hasPrevious = true;
+        }
+        Quaternions.slerp(smoothed, sample, smoothing, smoothed);
+        return emitted;
+    }
+
+    /** Forgets the stream, e.g. after reconnecting. */
+    public void reset() {
+        started = false;
+    }
+
+    // Emits the grid points in the span ending at the last complete timestamp
+    private int flush(Sink sink) {
+        if (!hasPrevious || interval == 0) {
+            next = smoothedTimestamp + interval;
+            emit(smoothedTimestamp, smoothed, sink);
+            return 1;
+        }
+        if (next > smoothedTimestamp) return 0;
+        if (smoothedTimestamp - next >= MAX_FILL * interval) {
+            // Skip the gap and restart the grid from here
+            next = smoothedTimestamp + interval;
+            emit(smoothedTimestamp, smoothed, sink);
+            return 1;
+        }
+        int emitted = 0;
+        long span = smoothedTimestamp - previousTimestamp;
+        while (next <= smoothedTimestamp) {
+            float t = (float) (next - previousTimestamp) / span;
+            Quaternions.slerp(previous, smoothed, t, out);
+            emit(next, out, sink);
+            next += interval;
+            emitted++;
+        }
+        return emitted;
+    }
+
+    private static void emit(long timestamp, float[] q, Sink sink) {
+        sink.onSample(timestamp, q[0], q[1], q[2], q[3]);
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.dashpod.telemetry;
+
+/**
+ * Orientation math on unit quaternions held as {w, x, y, z} float arrays, or
+ * passed as four floats, so the telemetry worker can derive Euler angles from
+ * a quaternion-only stream without allocating.
+ */
+public final class Quaternions {
+
+    // Below this angle between two orientations, linear interpolation is exact to float precision
+    private static final double SLERP_LINEAR_THRESHOLD = 1e-3;
+    private static final double DEGREES = 180 / Math.PI;
+
+    private Quaternions() {
+    }
+
+    /**
+     * Converts a quaternion to Z-Y-X (yaw, pitch, roll) Euler angles in
+     * degrees, written to out[0..2]. Yaw is a heading in [0, 360), pitch in
+     * [-90, 90] and roll in (-180, 180]. The quaternion need not be normalised.
+     * At +-90 degree pitch yaw and roll are not unique; roll is then reported as 0.
+     *
+     * @return false, leaving out unchanged, for the zero quaternion, which the
+     * BNO055 reports until its fusion has an orientation
+     */
+    public static boolean toEuler(float qw, float qx, float qy, float qz, float[] out) {
+        double norm = qw * (double) qw + qx * (double) qx + qy * (double) qy + qz * (double) qz;
+        if (norm == 0) return false;
+        double length = Math.sqrt(norm);
+        double w = qw / length, x = qx / length, y = qy / length, z = qz / length;
+        double sinPitch = 2 * (w * y - z * x);
+        double yaw, pitch, roll;
+        if (sinPitch >= 1 - 1e-9 || sinPitch <= -1 + 1e-9) {
+            // Gimbal lock: fold the whole rotation about the vertical into yaw
+            pitch = Math.copySign(Math.PI / 2, sinPitch);
+            yaw = -2 * Math.signum(sinPitch) * Math.atan2(x, w);
+            roll = 0;
+        } else {
+            pitch = Math.asin(sinPitch);
+            yaw = Math.atan2(2 * (w * z + x * y), 1 - 2 * (y * y + z * z));
+            roll = Math.atan2(2 * (w * x + y * z), 1 - 2 * (x * x + y * y));
+        }
+        double heading = yaw * DEGREES % 360;
+        if (heading < 0) heading += 360;
+        float headingDegrees = (float) heading;
+        out[0] = headingDegrees >= 360f ? 0f : headingDegrees;
+        out[1] = (float) (pitch * DEGREES);
+        out[2] = (float) (roll * DEGREES);
+        return true;
+    }
+
+    /** Scales q to unit length in place; a zero quaternion becomes the identity. */
+    public static void normalize(float[] q) {
+        double norm = Math.sqrt(q[0] * (double) q[0] + q[1] * (double) q[1] + q[2] * (double) q[2] + q[3] * (double) q[3]);
+        if (norm == 0) {
+            q[0] = 1f;
+            q[1] = q[2] = q[3] = 0f;
+            return;
+        }
+        for (int i = 0; i < 4; i++) {
+            q[i] = (float) (q[i] / norm);
+        }
+    }
+
+    /**
+     * Spherical linear interpolation between unit quaternions, along the
+     * shorter arc: t = 0 gives {@code from}, t = 1 gives {@code to}. The
+     * result is written to out, which may be either input.
+     */
+    public static void slerp(float[] from, float[] to, float t, float[] out) {
+        double dot = from[0] * (double) to[0] + from[1] * (double) to[1]
+                + from[2] * (double) to[2] + from[3] * (double) to[3];
+        // q and -q are the same orientation; flipping one keeps to the shorter arc
+        double sign = 1;
+        if (dot < 0) {
+            dot = -dot;
+            sign = -1;
+        }
+        double fromWeight, toWeight;
+        double angle = Math.acos(Math.min(dot, 1));
+        if (angle < SLERP_LINEAR_THRESHOLD) {
+            fromWeight = 1 - t;
+            toWeight = t;
+        } else {
+            double sin = Math.sin(angle);
+            fromWeight = Math.sin((1 - t) * angle) / sin;
+            toWeight = Math.sin(t * angle) / sin;
+        }
+        toWeight *= sign;
+        for (int i = 0; i < 4; i++) {
+            out[i] = (float) (fromWeight * from[i] + toWeight * to[i]);
+        }
+        if (angle < SLERP_LINEAR_THRESHOLD) normalize(out);
+    }
+}
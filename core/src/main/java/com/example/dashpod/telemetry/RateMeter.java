@@ -0,0 +1,48 @@
+package com.example.dashpod.telemetry;
+
+/**
+ * Turns an ever-growing counter, such as received notifications, into a
+ * per-second rate. The counter is sampled at whatever times suit the caller;
+ * each interval's rate is blended into the reported one so a single late
+ * refresh does not make the figure jump.
+ */
+public final class RateMeter {
+
+    private final double smoothing;
+    private long lastCount = -1;
+    private long lastNanos;
+    private double rate;
+    private boolean hasRate;
+
+    /** @param smoothing weight of the newest interval, from just above 0 to 1 for no smoothing */
+    public RateMeter(double smoothing) {
+        if (!(smoothing > 0 && smoothing <= 1)) throw new IllegalArgumentException("smoothing must be in (0, 1]");
+        this.smoothing = smoothing;
+    }
+
+    /** Takes a counter reading at a monotonic time and returns the updated rate per second. */
+    public double update(long count, long nowNanos) {
+        if (lastCount >= 0 && nowNanos > lastNanos) {
+            double instant = (count - lastCount) * 1e9 / (nowNanos - lastNanos);
+            rate = hasRate ? rate + smoothing * (instant - rate) : instant;
+            hasRate = true;
+        }
+        if (lastCount < 0 || nowNanos > lastNanos) {
+            lastCount = count;
+            lastNanos = nowNanos;
+        }
+        return rate;
+    }
+
+    /** Rate per second, 0 until two readings have been taken. */
+    public double getRate() {
+        return rate;
+    }
+
+    public void reset() {
+        lastCount = -1;
+        lastNanos = 0;
+        rate = 0;
+        hasRate = false;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.dashpod.telemetry;
+
+/**
+ * Count, mean, variance, min and max of a stream of values, updated in O(1)
+ * per value with Welford's algorithm and no stored samples.
+ */
+public final class RunningStats {
+
+    private long count;
+    private double mean;
+    private double m2;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+
+    public void add(double value) {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        if (count == 1) {
+            min = value;
+            max = value;
+        } else {
+            if (value < min) min = value;
+            if (value > max) max = value;
+        }
+    }
+
+    /** Adds all values summarised by another instance, as if they had been added one by one. */
+    public void merge(RunningStats other) {
+        if (other.count == 0) return;
+        if (count == 0) {
+            count = other.count;
+            mean = other.mean;
+            m2 = other.m2;
+            min = other.min;
+            max = other.max;
+            return;
+        }
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / total;
+        m2 += other.m2 + delta * delta * count * other.count / total;
+        count = total;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /** Mean of the values added so far, or 0 if there are none. */
+    public double getMean() {
+        return mean;
+    }
+
+    /** Population variance, or 0 with fewer than two values. */
+    public double getVariance() {
+        return count > 1 ? m2 / count : 0;
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    /** Smallest value added, or NaN if there are none. */
+    public double getMin() {
+        return min;
+    }
+
+    /** Largest value added, or NaN if there are none. */
+    public double getMax() {
+        return max;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public void reset() {
+        count = 0;
+        mean = 0;
+        m2 = 0;
+        min = Double.NaN;
+        max = Double.NaN;
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.dashpod.telemetry;
+
+/**
+ * Picks the rows of one {@link FloatSeriesBuffer} channel worth drawing, so a
+ * chart over any length of history plots about as many points as it has
+ * pixels. Rows are written to an int array as logical indices in ascending
+ * order; the first and last row of the range are always kept so the line
+ * spans it.
+ *
+ * {@link Mode#LTTB} (Largest-Triangle-Three-Buckets) keeps the row in each
+ * bucket that spans the largest triangle with its neighbours, which preserves
+ * the shape of the line. {@link Mode#MIN_MAX} keeps the lowest and highest
+ * row of each bucket, which guarantees no peak is lost.
+ *
+ * Both run in one pass over the range and do not allocate.
+ */
+public final class SeriesDecimator {
+
+    public enum Mode {
+        LTTB,
+        MIN_MAX
+    }
+
+    private SeriesDecimator() {
+    }
+
+    /**
+     * Selects at most {@code points} rows of [from, to) into out[offset..].
+     * A range of no more than {@code points} rows is copied whole.
+     *
+     * @param points at least 2, or 3 for {@link Mode#LTTB}
+     * @return the number of rows written
+     */
+    public static int decimate(FloatSeriesBuffer series, int channel, int from, int to, int points, Mode mode,
+                               int[] out, int offset) {
+        if (from < 0 || to > series.size() || from > to) {
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + "), size " + series.size());
+        }
+        int length = to - from;
+        if (length <= points) {
+            for (int i = 0; i < length; i++) {
+                out[offset + i] = from + i;
+            }
+            return length;
+        }
+        return mode == Mode.LTTB
+                ? largestTriangleThreeBuckets(series, channel, from, to, points, out, offset)
+                : minMax(series, channel, from, to, points, out, offset);
+    }
+
+    private static int largestTriangleThreeBuckets(FloatSeriesBuffer series, int channel, int from, int to,
+                                                   int points, int[] out, int offset) {
+        if (points < 3) throw new IllegalArgumentException("LTTB needs at least 3 points");
+        int length = to - from;
+        float[] values = series.column(channel);
+        int start0 = series.startSlot();
+        int capacity = series.capacity();
+        // The first and last row are fixed; the rows between are split into points - 2 buckets
+        double bucketSize = (double) (length - 2) / (points - 2);
+        int written = 0;
+        int selected = from;
+        out[offset + written++] = selected;
+
+        for (int bucket = 0; bucket < points - 2; bucket++) {
+            // Average of the next bucket, or the last row after the final bucket
+            int nextStart = from + (int) ((bucket + 1) * bucketSize) + 1;
+            int nextEnd = Math.min(from + (int) ((bucket + 2) * bucketSize) + 1, to);
+            double averageY = 0;
+            int slot = wrap(start0 + nextStart, capacity);
+            for (int row = nextStart; row < nextEnd; row++) {
+                averageY += values[slot];
+                if (++slot == capacity) slot = 0;
+            }
+            int nextCount = nextEnd - nextStart;
+            double averageX = (nextStart + nextEnd - 1) / 2.0;
+            averageY /= nextCount;
+
+            int start = from + (int) (bucket * bucketSize) + 1;
+            int end = from + (int) ((bucket + 1) * bucketSize) + 1;
+            double selectedX = selected;
+            double selectedY = values[wrap(start0 + selected, capacity)];
+            double largestArea = -1;
+            int largest = start;
+            slot = wrap(start0 + start, capacity);
+            for (int row = start; row < end; row++) {
+                // Twice the triangle's area; only the comparison matters
+                double area = Math.abs((selectedX - averageX) * (values[slot] - selectedY)
+                        - (selectedX - row) * (averageY - selectedY));
+                if (area > largestArea) {
+                    largestArea = area;
+                    largest = row;
+                }
+                if (++slot == capacity) slot = 0;
+            }
+            selected = largest;
+            out[offset + written++] = selected;
+        }
+        out[offset + written++] = to - 1;
+        return written;
+    }
+
+    private static int minMax(FloatSeriesBuffer series, int channel, int from, int to, int points,
+                              int[] out, int offset) {
+        if (points < 2) throw new IllegalArgumentException("Min/max needs at least 2 points");
+        float[] values = series.column(channel);
+        int start0 = series.startSlot();
+        int capacity = series.capacity();
+        int written = 0;
+        out[offset + written++] = from;
+        int buckets = (points - 2) / 2;
+        int interiorFrom = from + 1;
+        int interior = to - 1 - interiorFrom;
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            int start = interiorFrom + (int) ((long) bucket * interior / buckets);
+            int end = interiorFrom + (int) ((long) (bucket + 1) * interior / buckets);
+            if (start == end) continue;
+            int min = start, max = start;
+            int slot = wrap(start0 + start, capacity);
+            float minValue = values[slot], maxValue = minValue;
+            for (int row = start + 1; row < end; row++) {
+                if (++slot == capacity) slot = 0;
+                float value = values[slot];
+                if (value < minValue) {
+                    minValue = value;
+                    min = row;
+                } else if (value > maxValue) {
+                    maxValue = value;
+                    max = row;
+                }
+            }
+            out[offset + written++] = Math.min(min, max);
+            if (min != max) out[offset + written++] = Math.max(min, max);
+        }
+        out[offset + written++] = to - 1;
+        return written;
+    }
+
+    private static int wrap(int slot, int capacity) {
+        return slot >= capacity ? slot - capacity : slot;
+    }
+}
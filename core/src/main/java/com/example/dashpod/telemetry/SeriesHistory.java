@@ -0,0 +1,277 @@
+package com.example.dashpod.telemetry;
+
+import java.util.Arrays;
+
+/**
+ * Every row of a session for charting, without holding the session raw: the
+ * newest rows in a {@link FloatSeriesBuffer}, all rows in a
+ * {@link CompressedSeriesStore}, and the lowest and highest value of each
+ * channel per {@link #BUCKET_ROWS} rows.
+ *
+ * Rows are addressed by their index since the first append. {@link #decimate}
+ * picks about a point per pixel for any range: rows still in the live window
+ * as {@link SeriesDecimator} does, older rows as a min/max envelope, decoded
+ * from the store where the range is short and taken from the bucket extremes
+ * where it is long, so even the whole session is drawn without decoding it.
+ *
+ * Not thread-safe; owned by the thread that draws the chart.
+ */
+public final class SeriesHistory {
+
+    public static final int BUCKET_ROWS = 32;
+    // Older ranges of up to this many rows per point are decoded rather than read from the buckets
+    static final int DECODED_ROWS_PER_POINT = 4;
+
+    private static final int INITIAL_BUCKETS = 1024;
+
+    private final int channels;
+    private final FloatSeriesBuffer live;
+    private final CompressedSeriesStore store;
+    // [channel][bucket]
+    private final float[][] bucketMin;
+    private final float[][] bucketMax;
+    private int[] liveRows = new int[0];
+    private final float[] row;
+    private final EnvelopeSink envelope = new EnvelopeSink();
+    private final TimeSink timeSink = new TimeSink();
+
+    /** @param liveRows newest rows kept raw, and decimated like any {@link FloatSeriesBuffer} */
+    public SeriesHistory(int channels, int liveRows) {
+        this.channels = channels;
+        this.live = new FloatSeriesBuffer(channels, liveRows);
+        this.store = new CompressedSeriesStore(channels);
+        this.bucketMin = new float[channels][INITIAL_BUCKETS];
+        this.bucketMax = new float[channels][INITIAL_BUCKETS];
+        this.row = new float[channels];
+    }
+
+    public void append(long time, float v0, float v1, float v2) {
+        live.append(time, v0, v1, v2);
+        row[0] = v0;
+        row[1] = v1;
+        row[2] = v2;
+        appendRow(time);
+    }
+
+    public void append(long time, float v0, float v1, float v2, float v3) {
+        live.append(time, v0, v1, v2, v3);
+        row[0] = v0;
+        row[1] = v1;
+        row[2] = v2;
+        row[3] = v3;
+        appendRow(time);
+    }
+
+    /** Rows appended since creation or the last {@link #clear()}. */
+    public long size() {
+        return store.size();
+    }
+
+    public int channels() {
+        return channels;
+    }
+
+    /** Index of the oldest row still held raw. */
+    public long liveStart() {
+        return store.size() - live.size();
+    }
+
+    public FloatSeriesBuffer live() {
+        return live;
+    }
+
+    public CompressedSeriesStore store() {
+        return store;
+    }
+
+    /** Timestamp of a row; rows older than the live window are decoded from the store. */
+    public long timeAt(long index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size());
+        }
+        long liveStart = liveStart();
+        if (index >= liveStart) return live.timeAt((int) (index - liveStart));
+        store.queryRows(index, index + 1, timeSink);
+        return timeSink.time;
+    }
+
+    /**
+     * Picks at most {@code points} rows of [from, to) of a channel, writing
+     * their indices to xs and values to ys from {@code offset}, in ascending
+     * order. Rows still in the live window are picked in the given mode.
+     *
+     * @param points at least 4
+     * @return the number of points written
+     */
+    public int decimate(int channel, long from, long to, int points, SeriesDecimator.Mode mode,
+                       float[] xs, float[] ys, int offset) {
+        long size = size();
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + "), size " + size);
+        }
+        if (points < 4) throw new IllegalArgumentException("points must be at least 4");
+        long liveStart = liveStart();
+        long split = Math.max(from, Math.min(to, liveStart));
+        long older = split - from;
+        long newer = to - split;
+        if (older + newer == 0) return 0;
+        // Points are shared by rows, at least two each
+        int olderPoints = older == 0 ? 0 : newer == 0 ? points
+                : (int) Math.max(2, Math.min(points - 2, points * older / (older + newer)));
+        int newerPoints = points - olderPoints;
+
+        int written = 0;
+        if (older > 0) {
+            written += older <= (long) olderPoints * DECODED_ROWS_PER_POINT
+                    ? decodedEnvelope(channel, from, split, olderPoints, xs, ys, offset)
+                    : bucketEnvelope(channel, from, split, olderPoints, xs, ys, offset);
+        }
+        if (newer > 0) {
+            if (liveRows.length < newerPoints) liveRows = new int[newerPoints];
+            SeriesDecimator.Mode liveMode = newerPoints < 3 ? SeriesDecimator.Mode.MIN_MAX : mode;
+            int picked = SeriesDecimator.decimate(live, channel, (int) (split - liveStart), (int) (to - liveStart),
+                    newerPoints, liveMode, liveRows, 0);
+            for (int i = 0; i < picked; i++) {
+                xs[offset + written] = liveStart + liveRows[i];
+                ys[offset + written] = live.get(channel, liveRows[i]);
+                written++;
+            }
+        }
+        return written;
+    }
+
+    public void clear() {
+        live.clear();
+        store.clear();
+    }
+
+    private void appendRow(long time) {
+        long index = store.size();
+        store.append(time, row);
+        int bucket = (int) (index / BUCKET_ROWS);
+        boolean first = index % BUCKET_ROWS == 0;
+        if (bucket == bucketMin[0].length) {
+            for (int c = 0; c < channels; c++) {
+                bucketMin[c] = Arrays.copyOf(bucketMin[c], bucket * 2);
+                bucketMax[c] = Arrays.copyOf(bucketMax[c], bucket * 2);
+            }
+        }
+        for (int c = 0; c < channels; c++) {
+            float value = row[c];
+            if (first || value < bucketMin[c][bucket]) bucketMin[c][bucket] = value;
+            if (first || value > bucketMax[c][bucket]) bucketMax[c][bucket] = value;
+        }
+    }
+
+    // Groups of whole buckets; each group's extremes are placed at its start and middle
+    private int bucketEnvelope(int channel, long from, long to, int points, float[] xs, float[] ys, int offset) {
+        int firstBucket = (int) (from / BUCKET_ROWS);
+        int endBucket = (int) ((to - 1) / BUCKET_ROWS) + 1;
+        int groups = points / 2;
+        int perGroup = (endBucket - firstBucket + groups - 1) / groups;
+        float[] mins = bucketMin[channel];
+        float[] maxs = bucketMax[channel];
+        int written = 0;
+        for (int start = firstBucket; start < endBucket; start += perGroup) {
+            int end = Math.min(start + perGroup, endBucket);
+            int minBucket = start, maxBucket = start;
+            for (int b = start + 1; b < end; b++) {
+                if (mins[b] < mins[minBucket]) minBucket = b;
+                if (maxs[b] > maxs[maxBucket]) maxBucket = b;
+            }
+            long firstRow = Math.max(from, (long) start * BUCKET_ROWS);
+            long lastRow = Math.min(to, (long) end * BUCKET_ROWS) - 1;
+            long middleRow = (firstRow + lastRow) / 2;
+            boolean minFirst = minBucket <= maxBucket;
+            xs[offset + written] = firstRow;
+            ys[offset + written++] = minFirst ? mins[minBucket] : maxs[maxBucket];
+            xs[offset + written] = middleRow;
+            ys[offset + written++] = minFirst ? maxs[maxBucket] : mins[minBucket];
+        }
+        return written;
+    }
+
+    private int decodedEnvelope(int channel, long from, long to, int points, float[] xs, float[] ys, int offset) {
+        long rows = to - from;
+        envelope.start(channel, rows <= points ? 1 : (int) ((rows + points / 2 - 1) / (points / 2)),
+                from, xs, ys, offset);
+        store.queryRows(from, to, envelope);
+        return envelope.finish();
+    }
+
+    /** Writes every row, or the lowest and highest of each group of rows, in row order. */
+    private static final class EnvelopeSink implements CompressedSeriesStore.RowSink {
+        private int channel;
+        private int groupRows;
+        private long row;
+        private float[] xs, ys;
+        private int offset, written;
+        private int inGroup;
+        private long minRow, maxRow;
+        private float min, max;
+
+        void start(int channel, int groupRows, long firstRow, float[] xs, float[] ys, int offset) {
+            this.channel = channel;
+            this.groupRows = groupRows;
+            this.row = firstRow;
+            this.xs = xs;
+            this.ys = ys;
+            this.offset = offset;
+            this.written = 0;
+            this.inGroup = 0;
+        }
+
+        @Override
+        public void onRow(long time, float[] values) {
+            float value = values[channel];
+            if (groupRows == 1) {
+                write(row++, value);
+                return;
+            }
+            if (inGroup == 0 || value < min) {
+                min = value;
+                minRow = row;
+            }
+            if (inGroup == 0 || value > max) {
+                max = value;
+                maxRow = row;
+            }
+            row++;
+            if (++inGroup == groupRows) flushGroup();
+        }
+
+        int finish() {
+            if (inGroup > 0) flushGroup();
+            xs = ys = null;
+            return written;
+        }
+
+        private void flushGroup() {
+            if (minRow == maxRow) {
+                write(minRow, min);
+            } else if (minRow < maxRow) {
+                write(minRow, min);
+                write(maxRow, max);
+            } else {
+                write(maxRow, max);
+                write(minRow, min);
+            }
+            inGroup = 0;
+        }
+
+        private void write(long x, float y) {
+            xs[offset + written] = x;
+            ys[offset + written] = y;
+            written++;
+        }
+    }
+
+    private static final class TimeSink implements CompressedSeriesStore.RowSink {
+        long time;
+
+        @Override
+        public void onRow(long time, float[] values) {
+            this.time = time;
+        }
+    }
+}
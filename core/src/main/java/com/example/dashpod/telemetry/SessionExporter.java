@@ -0,0 +1,370 @@
+package com.example.dashpod.telemetry;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Converts sessions written by a {@link SessionRecorder} into files other
+ * tools can read. Every record is framed and decoded exactly as the live
+ * pipeline does it, so an export holds the samples that were charted, with
+ * their time since the start of the session in milliseconds, as in
+ * {@link SessionReplay}.
+ *
+ * Memory use does not depend on the length of the session: records are read
+ * one at a time from the mapped segments, and rows go through one batch and
+ * one output buffer that is written to the channel whenever it fills.
+ *
+ * {@link Format#CSV} writes a header line and one line per row; values a row
+ * does not have are left empty. {@link Format#COLUMNAR} is little-endian:
+ * <pre>
+ *   header  int magic, short version, short column count,
+ *           per column: short name length, ASCII name
+ *   block   int row count (1 to BLOCK_ROWS), long[rows] times,
+ *           per column: float[rows] values (NaN where missing)
+ *   end     int 0
+ * </pre>
+ * A reader can thereby load one column of a block without parsing the others.
+ *
+ * An exporter keeps no state between exports, so one instance can run
+ * several at once, e.g. through {@link #exportAll}.
+ */
+public final class SessionExporter<B extends TelemetryBatch> {
+
+    public enum Format {
+        CSV(".csv"),
+        COLUMNAR(".dpcx");
+
+        private final String suffix;
+
+        Format(String suffix) {
+            this.suffix = suffix;
+        }
+
+        public String getSuffix() {
+            return suffix;
+        }
+    }
+
+    /** The values of a decoded row, in a fixed set of named columns. */
+    public interface Columns<B> {
+        int count();
+
+        String name(int column);
+
+        /** Value of a column for the batch's i-th sample, or NaN if the sample lacks it. */
+        float value(B batch, int i, int column);
+    }
+
+    public static final int MAGIC = 0x58435044; // "DPCX"
+    public static final short VERSION = 1;
+    public static final int BLOCK_ROWS = 4096;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String PARTIAL_SUFFIX = ".part";
+    // Longest CSV row: the time and, per column, a comma and the longest Float.toString
+    private static final int MAX_TIME_LENGTH = 20;
+    private static final int MAX_VALUE_LENGTH = 16;
+
+    private final Supplier<NotificationFramer> framers;
+    private final Supplier<? extends TelemetryPipeline.Decoder<B>> decoders;
+    private final Supplier<B> batches;
+    private final Columns<B> columns;
+
+    /**
+     * @param framers  a new framer per export, as the pipeline uses, or null to decode every record as one frame
+     * @param decoders a new decoder per export
+     * @param batches  a new batch per export, large enough for the samples of one frame
+     */
+    public SessionExporter(Supplier<NotificationFramer> framers, Supplier<? extends TelemetryPipeline.Decoder<B>> decoders,
+                           Supplier<B> batches, Columns<B> columns) {
+        this.framers = framers;
+        this.decoders = decoders;
+        this.batches = batches;
+        this.columns = columns;
+    }
+
+    /** Exporter for breathing rate sessions: one "bpm" column. */
+    public static SessionExporter<BpmBatch> bpm(int maxFrameLength) {
+        return new SessionExporter<>(() -> new NotificationFramer(maxFrameLength), BpmTelemetryDecoder::new,
+                () -> new BpmBatch(BLOCK_ROWS, 1), new Columns<BpmBatch>() {
+            @Override
+            public int count() {
+                return 1;
+            }
+
+            @Override
+            public String name(int column) {
+                return "bpm";
+            }
+
+            @Override
+            public float value(BpmBatch batch, int i, int column) {
+                return batch.bpmAt(i);
+            }
+        });
+    }
+
+    /** Exporter for orientation sessions: Euler angles and quaternion, each empty where the frame lacked it. */
+    public static SessionExporter<OrientationBatch> orientation(int maxFrameLength) {
+        String[] names = {"yaw", "pitch", "roll", "qw", "qx", "qy", "qz"};
+        return new SessionExporter<>(() -> new NotificationFramer(maxFrameLength), OrientationTelemetryDecoder::new,
+                () -> new OrientationBatch(BLOCK_ROWS, 1), new Columns<OrientationBatch>() {
+            @Override
+            public int count() {
+                return names.length;
+            }
+
+            @Override
+            public String name(int column) {
+                return names[column];
+            }
+
+            @Override
+            public float value(OrientationBatch batch, int i, int column) {
+                int records = batch.recordsAt(i);
+                if (column < 3 && (records & OrientationFrameDecoder.EULER) == 0) return Float.NaN;
+                if (column >= 3 && (records & OrientationFrameDecoder.QUATERNION) == 0) return Float.NaN;
+                switch (column) {
+                    case 0: return batch.yawAt(i);
+                    case 1: return batch.pitchAt(i);
+                    case 2: return batch.rollAt(i);
+                    case 3: return batch.qwAt(i);
+                    case 4: return batch.qxAt(i);
+                    case 5: return batch.qyAt(i);
+                    default: return batch.qzAt(i);
+                }
+            }
+        });
+    }
+
+    /**
+     * Exports a session to {@code <name><suffix>} in the target directory. The
+     * file is written under a temporary name and renamed when complete, so a
+     * failed export never leaves a truncated file behind.
+     */
+    public Result export(File directory, String name, Format format, File targetDirectory) throws IOException {
+        File target = new File(targetDirectory, name + format.getSuffix());
+        File partial = new File(targetDirectory, target.getName() + PARTIAL_SUFFIX);
+        Result result;
+        try (SessionReader reader = new SessionReader(directory, name);
+             FileOutputStream output = new FileOutputStream(partial);
+             FileChannel channel = output.getChannel()) {
+            result = export(reader, format, channel);
+            channel.force(false);
+        } catch (IOException | RuntimeException e) {
+            partial.delete();
+            throw e;
+        }
+        if (!partial.renameTo(target)) {
+            partial.delete();
+            throw new IOException("Cannot rename " + partial + " to " + target);
+        }
+        return result;
+    }
+
+    /** Exports the remaining records of the reader to the channel. */
+    public Result export(SessionReader reader, Format format, WritableByteChannel out) throws IOException {
+        return new Export(format, out).run(reader);
+    }
+
+    /**
+     * Submits one export per session to the executor, which runs as many at
+     * once as it has threads. Each future fails with the export's IOException.
+     */
+    public List<Future<Result>> exportAll(File directory, List<String> names, Format format, File targetDirectory,
+                                          ExecutorService executor) {
+        List<Future<Result>> exports = new ArrayList<>(names.size());
+        for (String name : names) {
+            exports.add(executor.submit(() -> export(directory, name, format, targetDirectory)));
+        }
+        return exports;
+    }
+
+    /** Per-export state, so exports can run in parallel. */
+    private final class Export implements NotificationFramer.FrameSink {
+        private final Format format;
+        private final WritableByteChannel out;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private final NotificationFramer framer = framers != null ? framers.get() : null;
+        private final TelemetryPipeline.Decoder<B> decoder = decoders.get();
+        private final B batch = batches.get();
+        private final int columnCount = columns.count();
+        // The block being collected for the columnar format
+        private final long[] blockTimes;
+        private final float[][] blockValues;
+        private int blockRows;
+        private final Result result = new Result();
+
+        Export(Format format, WritableByteChannel out) {
+            this.format = format;
+            this.out = out;
+            boolean columnar = format == Format.COLUMNAR;
+            blockTimes = new long[columnar ? BLOCK_ROWS : 0];
+            blockValues = new float[columnCount][columnar ? BLOCK_ROWS : 0];
+        }
+
+        Result run(SessionReader reader) throws IOException {
+            long started = System.nanoTime();
+            writeHeader();
+            long sessionStart = reader.getSessionStartNanos();
+            while (reader.next()) {
+                long timestamp = TimeUnit.NANOSECONDS.toMillis(reader.getTimestampNanos() - sessionStart);
+                if (framer != null) {
+                    framer.push(reader.getPayload(), 0, reader.getPayloadLength(), timestamp, this);
+                } else {
+                    onFrame(reader.getPayload(), 0, reader.getPayloadLength(), timestamp);
+                }
+                result.records++;
+                writeRows();
+            }
+            if (format == Format.COLUMNAR) {
+                writeBlock();
+                ensure(4);
+                buffer.putInt(0);
+            }
+            flush();
+            result.elapsedNanos = System.nanoTime() - started;
+            return result;
+        }
+
+        @Override
+        public void onFrame(byte[] data, int offset, int length, long timestamp) {
+            decoder.decode(data, offset, length, timestamp, batch);
+        }
+
+        private void writeHeader() throws IOException {
+            if (format == Format.CSV) {
+                StringBuilder header = new StringBuilder("time_ms");
+                for (int c = 0; c < columnCount; c++) {
+                    header.append(',').append(columns.name(c));
+                }
+                header.append('\n');
+                byte[] bytes = header.toString().getBytes(StandardCharsets.US_ASCII);
+                ensure(bytes.length);
+                buffer.put(bytes);
+            } else {
+                ensure(8);
+                buffer.putInt(MAGIC).putShort(VERSION).putShort((short) columnCount);
+                for (int c = 0; c < columnCount; c++) {
+                    byte[] name = columns.name(c).getBytes(StandardCharsets.US_ASCII);
+                    ensure(2 + name.length);
+                    buffer.putShort((short) name.length).put(name);
+                }
+            }
+        }
+
+        private void writeRows() throws IOException {
+            result.lostRows += batch.getOverwritten();
+            for (int i = 0; i < batch.size(); i++) {
+                long time = batch.timestampAt(i);
+                if (format == Format.CSV) {
+                    ensure(MAX_TIME_LENGTH + columnCount * (1 + MAX_VALUE_LENGTH) + 1);
+                    putAscii(Long.toString(time));
+                    for (int c = 0; c < columnCount; c++) {
+                        buffer.put((byte) ',');
+                        float value = columns.value(batch, i, c);
+                        if (!Float.isNaN(value)) putAscii(Float.toString(value));
+                    }
+                    buffer.put((byte) '\n');
+                } else {
+                    blockTimes[blockRows] = time;
+                    for (int c = 0; c < columnCount; c++) {
+                        blockValues[c][blockRows] = columns.value(batch, i, c);
+                    }
+                    if (++blockRows == BLOCK_ROWS) writeBlock();
+                }
+                result.rows++;
+            }
+            batch.clear();
+        }
+
+        private void writeBlock() throws IOException {
+            if (blockRows == 0) return;
+            ensure(4);
+            buffer.putInt(blockRows);
+            for (int i = 0; i < blockRows; i++) {
+                ensure(8);
+                buffer.putLong(blockTimes[i]);
+            }
+            for (int c = 0; c < columnCount; c++) {
+                float[] values = blockValues[c];
+                for (int i = 0; i < blockRows; i++) {
+                    ensure(4);
+                    buffer.putFloat(values[i]);
+                }
+            }
+            blockRows = 0;
+        }
+
+        private void putAscii(String text) {
+            for (int i = 0; i < text.length(); i++) {
+                buffer.put((byte) text.charAt(i));
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) flush();
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                result.bytes += out.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /** What one export wrote. */
+    public static final class Result {
+        private long records;
+        private long rows;
+        private long lostRows;
+        private long bytes;
+        private long elapsedNanos;
+
+        /** Notifications read from the session. */
+        public long getRecords() {
+            return records;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        /** Samples dropped because one frame decoded to more rows than a batch holds. */
+        public long getLostRows() {
+            return lostRows;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getRowsPerSecond() {
+            return elapsedNanos > 0 ? rows * 1e9 / elapsedNanos : 0;
+        }
+
+        @Override
+        public String toString() {
+            return rows + " rows from " + records + " records, " + bytes + " bytes in "
+                    + TimeUnit.NANOSECONDS.toMillis(elapsedNanos) + " ms";
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.dashpod.telemetry;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads back the segments written by a {@link SessionRecorder}, one record at
+ * a time and in recording order. The payload array is reused between records.
+ */
+public final class SessionReader implements Closeable {
+
+    private final File directory;
+    private final String name;
+    private final byte[] payload = new byte[0xFFFF];
+
+    private MappedByteBuffer buffer;
+    private int segmentIndex = -1;
+    private long sessionStartNanos;
+    private boolean finished;
+
+    private long timestampNanos;
+    private long address;
+    private long characteristicMsb;
+    private long characteristicLsb;
+    private int payloadLength;
+
+    public SessionReader(File directory, String name) throws IOException {
+        this.directory = directory;
+        this.name = name;
+        if (!openSegment(0)) {
+            throw new FileNotFoundException(SessionRecorder.segmentFile(directory, name, 0).getPath());
+        }
+    }
+
+    /** Advances to the next record; returns false at the end of the session. */
+    public boolean next() throws IOException {
+        while (!finished) {
+            if (buffer.remaining() >= SessionRecorder.RECORD_HEADER_LENGTH
+                    && buffer.get(buffer.position()) == SessionRecorder.TAG_RECORD) {
+                int position = buffer.position();
+                payloadLength = buffer.getShort(position + 2) & 0xFFFF;
+                if (buffer.remaining() < SessionRecorder.RECORD_HEADER_LENGTH + payloadLength) {
+                    throw new IOException("Truncated record in segment " + segmentIndex + " at " + position);
+                }
+                timestampNanos = buffer.getLong(position + 4);
+                address = buffer.getLong(position + 12);
+                characteristicMsb = buffer.getLong(position + 20);
+                characteristicLsb = buffer.getLong(position + 28);
+                buffer.position(position + SessionRecorder.RECORD_HEADER_LENGTH);
+                buffer.get(payload, 0, payloadLength);
+                return true;
+            }
+            if (!openSegment(segmentIndex + 1)) {
+                finished = true;
+                buffer = null;
+            }
+        }
+        return false;
+    }
+
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    public long getAddress() {
+        return address;
+    }
+
+    public long getCharacteristicMsb() {
+        return characteristicMsb;
+    }
+
+    public long getCharacteristicLsb() {
+        return characteristicLsb;
+    }
+
+    /** Payload of the current record; valid until the next call to {@link #next()}. */
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public int getPayloadLength() {
+        return payloadLength;
+    }
+
+    /** Monotonic session start stored by the recorder. */
+    public long getSessionStartNanos() {
+        return sessionStartNanos;
+    }
+
+    public int getSegmentIndex() {
+        return segmentIndex;
+    }
+
+    @Override
+    public void close() {
+        buffer = null;
+        finished = true;
+    }
+
+    private boolean openSegment(int index) throws IOException {
+        File segment = SessionRecorder.segmentFile(directory, name, index);
+        if (!segment.isFile()) return false;
+        try (RandomAccessFile file = new RandomAccessFile(segment, "r")) {
+            FileChannel channel = file.getChannel();
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < SessionRecorder.SEGMENT_HEADER_LENGTH
+                || buffer.getInt(0) != SessionRecorder.MAGIC
+                || buffer.getShort(4) != SessionRecorder.VERSION) {
+            throw new IOException("Not a session segment: " + segment);
+        }
+        sessionStartNanos = buffer.getLong(20);
+        buffer.position(buffer.getShort(6));
+        segmentIndex = index;
+        return true;
+    }
+}
@@ -0,0 +1,262 @@
+package com.example.dashpod.telemetry;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only recorder of raw BLE notifications.
+ *
+ * Records go into fixed-size segment files ({@code <name>-0000.dprs},
+ * {@code <name>-0001.dprs}, ...) that are memory-mapped, so writing a record
+ * is a copy into the page cache and never allocates or calls into the kernel.
+ * A background thread forces dirty pages to disk every flush interval; a crash
+ * loses at most that much data.
+ *
+ * Segment layout, little-endian:
+ * <pre>
+ *   header  int magic, short version, short header length, int segment index,
+ *           long wall-clock millis, long session start nanos, int reserved
+ *   record  byte tag, byte reserved, ushort payload length, long timestamp nanos,
+ *           long device address, long characteristic msb, long characteristic lsb,
+ *           payload
+ * </pre>
+ * A record's tag is written last, so a zero tag marks the end of the data even
+ * if the process died half-way through a record.
+ */
+public final class SessionRecorder implements Closeable {
+
+    public static final int MAGIC = 0x53525044; // "DPRS"
+    public static final short VERSION = 1;
+    public static final int SEGMENT_HEADER_LENGTH = 32;
+    public static final int RECORD_HEADER_LENGTH = 36;
+    public static final byte TAG_RECORD = 0x52;
+    public static final String SEGMENT_SUFFIX = ".dprs";
+    public static final int DEFAULT_SEGMENT_SIZE = 8 * 1024 * 1024;
+
+    private final File directory;
+    private final String name;
+    private final int segmentSize;
+    private final long sessionStartNanos;
+    private final ScheduledExecutorService flusher;
+
+    // Guarded by this
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    // Full segments not forced yet; several if segments roll faster than the flush interval
+    private List<MappedByteBuffer> retired = new ArrayList<>();
+    private int segmentIndex = -1;
+    private boolean closed;
+    private IOException failure;
+
+    private volatile long recordedFrames;
+    private volatile long recordedBytes;
+    private volatile long droppedFrames;
+
+    /**
+     * @param sessionStartNanos   monotonic time the session started, stored in every segment header
+     * @param flushIntervalMillis how often mapped pages are forced to disk, or 0 to only flush on close
+     */
+    public SessionRecorder(File directory, String name, int segmentSize,
+                           long sessionStartNanos, long flushIntervalMillis) throws IOException {
+        if (segmentSize < SEGMENT_HEADER_LENGTH + RECORD_HEADER_LENGTH) {
+            throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        this.directory = directory;
+        this.name = name;
+        this.segmentSize = segmentSize;
+        this.sessionStartNanos = sessionStartNanos;
+        openSegment();
+
+        if (flushIntervalMillis > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name + "-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    /**
+     * Appends one notification. Safe to call from the GATT callback thread.
+     * Returns false if the record was dropped because the recorder is closed,
+     * failed, or the payload does not fit in a segment.
+     */
+    public synchronized boolean record(long timestampNanos, long address,
+                                       long characteristicMsb, long characteristicLsb,
+                                       byte[] data, int offset, int length) {
+        int recordLength = RECORD_HEADER_LENGTH + length;
+        if (closed || failure != null || length > 0xFFFF
+                || SEGMENT_HEADER_LENGTH + recordLength > segmentSize) {
+            droppedFrames++;
+            return false;
+        }
+        if (buffer.remaining() < recordLength) {
+            try {
+                rollSegment();
+            } catch (IOException e) {
+                failure = e;
+                droppedFrames++;
+                return false;
+            }
+        }
+
+        int position = buffer.position();
+        buffer.putShort(position + 2, (short) length);
+        buffer.putLong(position + 4, timestampNanos);
+        buffer.putLong(position + 12, address);
+        buffer.putLong(position + 20, characteristicMsb);
+        buffer.putLong(position + 28, characteristicLsb);
+        buffer.position(position + RECORD_HEADER_LENGTH);
+        buffer.put(data, offset, length);
+        buffer.put(position, TAG_RECORD);
+
+        recordedFrames++;
+        recordedBytes += recordLength;
+        return true;
+    }
+
+    /** Convenience overload; neither argument conversion allocates. */
+    public boolean record(long timestampNanos, String address, UUID characteristic,
+                          byte[] data, int offset, int length) {
+        return record(timestampNanos, MacAddress.parse(address),
+                characteristic.getMostSignificantBits(), characteristic.getLeastSignificantBits(),
+                data, offset, length);
+    }
+
+    /** Forces written records to disk. Called periodically by the flush thread. */
+    public void flush() {
+        MappedByteBuffer current;
+        List<MappedByteBuffer> previous;
+        synchronized (this) {
+            current = buffer;
+            if (retired.isEmpty()) {
+                previous = null;
+            } else {
+                previous = retired;
+                retired = new ArrayList<>();
+            }
+        }
+        // Outside the lock so writers are never held up by disk I/O
+        if (previous != null) {
+            for (MappedByteBuffer segment : previous) segment.force();
+        }
+        if (current != null) current.force();
+    }
+
+    /** Flushes, trims the last segment to the data written and closes it. */
+    @Override
+    public void close() throws IOException {
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            for (MappedByteBuffer segment : retired) segment.force();
+            retired.clear();
+            if (buffer == null) return;
+            try {
+                buffer.force();
+                channel.truncate(buffer.position());
+            } finally {
+                file.close();
+                buffer = null;
+                channel = null;
+                file = null;
+            }
+        }
+    }
+
+    public long getRecordedFrames() {
+        return recordedFrames;
+    }
+
+    /** Bytes of records written, excluding segment headers. */
+    public long getRecordedBytes() {
+        return recordedBytes;
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    public synchronized int getSegmentCount() {
+        return segmentIndex + 1;
+    }
+
+    /** The error that stopped recording, or null. */
+    public synchronized IOException getFailure() {
+        return failure;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static File segmentFile(File directory, String name, int index) {
+        return new File(directory, String.format(Locale.US, "%s-%04d%s", name, index, SEGMENT_SUFFIX));
+    }
+
+    private void rollSegment() throws IOException {
+        // The mapping stays valid after the channel is closed; the flush thread forces
+        // it. Full segments keep their zeroed tail, which readers treat as the end.
+        retired.add(buffer);
+        buffer = null;
+        channel = null;
+        file.close();
+        file = null;
+        openSegment();
+    }
+
+    private void openSegment() throws IOException {
+        segmentIndex++;
+        File segment = segmentFile(directory, name, segmentIndex);
+        file = new RandomAccessFile(segment, "rw");
+        try {
+            channel = file.getChannel();
+            channel.truncate(0);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        } catch (IOException e) {
+            file.close();
+            file = null;
+            channel = null;
+            throw e;
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putShort((short) SEGMENT_HEADER_LENGTH);
+        buffer.putInt(segmentIndex);
+        buffer.putLong(System.currentTimeMillis());
+        buffer.putLong(sessionStartNanos);
+        buffer.putInt(0);
+    }
+}
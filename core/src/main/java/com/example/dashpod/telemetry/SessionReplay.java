@@ -0,0 +1,179 @@
+package com.example.dashpod.telemetry;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Feeds a recorded session back into the receive path, exactly as
+ * onCharacteristicChanged does on a device: every record is handed to a
+ * {@link Target}, normally {@link TelemetryPipeline#offer}.
+ *
+ * The speed is a multiple of real time, or {@link #AS_FAST_AS_POSSIBLE}. At
+ * full speed a refused offer is retried until the pipeline has room, so every
+ * run over the same recording produces the same frames in the same order. When
+ * paced, a refused offer is dropped and counted, as it would be on a phone.
+ *
+ * Frames are offered with their time since the start of the session in
+ * milliseconds, so decoded samples do not depend on when the replay ran.
+ */
+public final class SessionReplay {
+
+    public interface Target {
+        /** Returns false if the frame could not be accepted. */
+        boolean offer(byte[] data, int offset, int length, long timestamp);
+    }
+
+    public static final double REAL_TIME = 1.0;
+    public static final double AS_FAST_AS_POSSIBLE = 0.0;
+
+    private static final long RETRY_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long SPIN_THRESHOLD_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    private final double speed;
+
+    /** @param speed multiple of real time, e.g. {@link #REAL_TIME} or 10, or {@link #AS_FAST_AS_POSSIBLE} */
+    public SessionReplay(double speed) {
+        if (speed < 0 || Double.isNaN(speed)) {
+            throw new IllegalArgumentException("Invalid speed: " + speed);
+        }
+        this.speed = speed;
+    }
+
+    /** Replays every remaining record of the reader into the target. */
+    public Report run(SessionReader reader, Target target) throws IOException {
+        Report report = new Report(speed);
+        boolean paced = speed > 0 && !Double.isInfinite(speed);
+        long sessionStart = reader.getSessionStartNanos();
+        long firstRecord = 0;
+        long started = System.nanoTime();
+
+        while (true) {
+            long readStart = System.nanoTime();
+            if (!reader.next()) break;
+            long readEnd = System.nanoTime();
+            report.readTime.add(readEnd - readStart);
+
+            long recorded = reader.getTimestampNanos();
+            if (report.frames == 0) firstRecord = recorded;
+            if (paced) {
+                long due = started + (long) ((recorded - firstRecord) / speed);
+                waitUntil(due);
+                report.schedulingLag.add(Math.max(0, System.nanoTime() - due));
+            }
+
+            byte[] payload = reader.getPayload();
+            int length = reader.getPayloadLength();
+            long timestamp = TimeUnit.NANOSECONDS.toMillis(recorded - sessionStart);
+            long offerStart = System.nanoTime();
+            boolean accepted = target.offer(payload, 0, length, timestamp);
+            if (!accepted && !paced) {
+                long giveUp = offerStart + RETRY_TIMEOUT_NANOS;
+                while (!accepted && System.nanoTime() < giveUp) {
+                    Thread.yield();
+                    accepted = target.offer(payload, 0, length, timestamp);
+                }
+            }
+            report.offerTime.add(System.nanoTime() - offerStart);
+
+            report.frames++;
+            report.bytes += length;
+            if (!accepted) report.droppedFrames++;
+            report.recordedNanos = recorded - firstRecord;
+        }
+        report.elapsedNanos = System.nanoTime() - started;
+        return report;
+    }
+
+    private static void waitUntil(long due) {
+        long remaining;
+        while ((remaining = due - System.nanoTime()) > 0) {
+            if (remaining > SPIN_THRESHOLD_NANOS) {
+                LockSupport.parkNanos(remaining - SPIN_THRESHOLD_NANOS);
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    /** Throughput and per-stage timings of one run. All times are in nanoseconds. */
+    public static final class Report {
+
+        private final double speed;
+        private final RunningStats readTime = new RunningStats();
+        private final RunningStats offerTime = new RunningStats();
+        private final RunningStats schedulingLag = new RunningStats();
+        private long frames;
+        private long bytes;
+        private long droppedFrames;
+        private long elapsedNanos;
+        private long recordedNanos;
+
+        Report(double speed) {
+            this.speed = speed;
+        }
+
+        public long getFrames() {
+            return frames;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        /** Frames the target refused. Always 0 at full speed unless the pipeline stalled. */
+        public long getDroppedFrames() {
+            return droppedFrames;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /** Time between the first and the last replayed record as recorded. */
+        public long getRecordedNanos() {
+            return recordedNanos;
+        }
+
+        public double getFramesPerSecond() {
+            return elapsedNanos > 0 ? frames * 1e9 / elapsedNanos : 0;
+        }
+
+        public double getBytesPerSecond() {
+            return elapsedNanos > 0 ? bytes * 1e9 / elapsedNanos : 0;
+        }
+
+        /** Time to read each record from the recording. */
+        public RunningStats getReadTime() {
+            return readTime;
+        }
+
+        /** Time spent in {@link Target#offer}, including retries. */
+        public RunningStats getOfferTime() {
+            return offerTime;
+        }
+
+        /** How late each paced frame was offered. Empty at full speed. */
+        public RunningStats getSchedulingLag() {
+            return schedulingLag;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "%d frames, %d bytes in %.1f ms at %s (%.0f frames/s, %.2f MB/s), %d dropped; "
+                            + "read %s, offer %s, lag %s",
+                    frames, bytes, elapsedNanos / 1e6,
+                    speed > 0 ? speed + "x" : "full speed",
+                    getFramesPerSecond(), getBytesPerSecond() / 1e6, droppedFrames,
+                    describe(readTime), describe(offerTime), describe(schedulingLag));
+        }
+
+        /** Mean and max of a nanosecond statistic, in microseconds. */
+        public static String describe(RunningStats stats) {
+            if (stats.isEmpty()) return "-";
+            return String.format(Locale.US, "%.1f/%.1f us", stats.getMean() / 1e3, stats.getMax() / 1e3);
+        }
+    }
+}
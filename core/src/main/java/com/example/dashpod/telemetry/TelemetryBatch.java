@@ -0,0 +1,88 @@
+package com.example.dashpod.telemetry;
+
+/**
+ * Decoded data handed from the telemetry worker to the UI in one piece.
+ *
+ * Samples are kept in preallocated columns. If the UI does not pick a batch up
+ * before it fills, the oldest samples are overwritten so the batch always holds
+ * the most recent data. Received text lines are kept the same way for the terminal.
+ */
+public abstract class TelemetryBatch {
+
+    private final String[] lines;
+    private int lineStart, lineCount;
+    private final int capacity;
+    private final long[] timestamps;
+    private int start, size;
+    private int overwritten;
+
+    protected TelemetryBatch(int capacity, int lineCapacity) {
+        this.capacity = capacity;
+        this.timestamps = new long[capacity];
+        this.lines = new String[lineCapacity];
+    }
+
+    public void addLine(String line) {
+        int index = (lineStart + lineCount) % lines.length;
+        lines[index] = line;
+        if (lineCount == lines.length) {
+            lineStart = (lineStart + 1) % lines.length;
+        } else {
+            lineCount++;
+        }
+    }
+
+    public int lineCount() {
+        return lineCount;
+    }
+
+    public String lineAt(int i) {
+        return lines[(lineStart + i) % lines.length];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long timestampAt(int i) {
+        return timestamps[slot(i)];
+    }
+
+    /** Samples lost because the batch filled up before the UI took it. */
+    public int getOverwritten() {
+        return overwritten;
+    }
+
+    public boolean isEmpty() {
+        return size == 0 && lineCount == 0;
+    }
+
+    public void clear() {
+        for (int i = 0; i < lineCount; i++) {
+            lines[(lineStart + i) % lines.length] = null;
+        }
+        lineStart = 0;
+        lineCount = 0;
+        start = 0;
+        size = 0;
+        overwritten = 0;
+    }
+
+    /** Reserves the slot for a new sample, stamps it and returns its column index. */
+    protected int append(long timestamp) {
+        int index = (start + size) % capacity;
+        if (size == capacity) {
+            start = (start + 1) % capacity;
+            overwritten++;
+        } else {
+            size++;
+        }
+        timestamps[index] = timestamp;
+        return index;
+    }
+
+    /** Maps a logical sample index, oldest first, to its column index. */
+    protected int slot(int i) {
+        return (start + i) % capacity;
+    }
+}
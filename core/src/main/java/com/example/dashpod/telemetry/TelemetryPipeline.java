@@ -0,0 +1,246 @@
+package com.example.dashpod.telemetry;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Moves decoding of BLE notifications off the main thread.
+ *
+ * GATT callbacks {@link #offer} raw payloads into a {@link FrameRingBuffer}. A
+ * dedicated worker drains the ring, optionally reassembles the payloads into
+ * frames with a {@link NotificationFramer}, decodes every frame into a batch and
+ * publishes the batch once the UI has returned the previous one. While the UI
+ * is busy the worker keeps decoding into its current batch, so a slow frame on
+ * the main thread never backs up intake.
+ *
+ * Two batches are swapped between the threads; nothing is allocated per frame
+ * by the pipeline itself.
+ *
+ * With {@link #setStageTimingEnabled} the pipeline also measures, in
+ * nanoseconds, how long frames wait in the ring, how long decoding takes and
+ * how long a published batch waits for the UI. The statistics are updated
+ * without locking; read them after {@link #stop()}.
+ */
+public final class TelemetryPipeline<B extends TelemetryBatch> {
+
+    public interface Decoder<B> {
+        /** Called on the worker thread. The data array is reused after this returns. */
+        void decode(byte[] data, int offset, int length, long timestamp, B batch);
+
+        /** Called on the worker thread before the first frame of a new connection; forgets per-link state. */
+        default void reset() {
+        }
+    }
+
+    public interface Listener {
+        /** Called on the worker thread when {@link #acquireSnapshot()} has a batch ready. */
+        void onSnapshotReady();
+    }
+
+    private static final int DRAIN_LIMIT = 64;
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final String name;
+    private final int maxFrameLength;
+    // Only replaced before start, by setStageTimingEnabled; volatile for the offering thread
+    private volatile FrameRingBuffer ring;
+    private final Decoder<B> decoder;
+    private final Listener listener;
+    private final NotificationFramer framer;
+    private final AtomicReference<B> published = new AtomicReference<>();
+    private final AtomicReference<B> spare = new AtomicReference<>();
+    private final AtomicLong decodedFrames = new AtomicLong();
+    private final AtomicLong publishedSnapshots = new AtomicLong();
+    private final RunningStats queueLatency = new RunningStats();
+    private final RunningStats decodeTime = new RunningStats();
+    private final RunningStats deliveryLatency = new RunningStats();
+    private final FrameRingBuffer.FrameConsumer frameConsumer = this::onNotification;
+    private final NotificationFramer.FrameSink frameSink = this::decodeFrame;
+    private B filling;
+
+    private volatile boolean timed;
+    private volatile long publishedAtNanos;
+    private volatile boolean running;
+    private volatile boolean waiting;
+    private volatile boolean resetPending;
+    private volatile Thread worker;
+
+    public TelemetryPipeline(String name, int capacity, int maxFrameLength,
+                             Supplier<B> batchFactory, Decoder<B> decoder, Listener listener) {
+        this(name, capacity, maxFrameLength, batchFactory, null, decoder, listener);
+    }
+
+    /**
+     * @param framer splits notifications into frames before decoding, or null
+     *               to decode every notification as one frame
+     */
+    public TelemetryPipeline(String name, int capacity, int maxFrameLength,
+                             Supplier<B> batchFactory, NotificationFramer framer,
+                             Decoder<B> decoder, Listener listener) {
+        this.name = name;
+        this.maxFrameLength = maxFrameLength;
+        this.ring = new FrameRingBuffer(capacity, maxFrameLength);
+        this.framer = framer;
+        this.decoder = decoder;
+        this.listener = listener;
+        this.filling = batchFactory.get();
+        this.spare.set(batchFactory.get());
+    }
+
+    public synchronized void start() {
+        if (worker != null) return;
+        running = true;
+        Thread thread = new Thread(this::runLoop, name);
+        thread.setDaemon(true);
+        worker = thread;
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        Thread thread = worker;
+        if (thread == null) return;
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        worker = null;
+    }
+
+    /**
+     * Queues a raw payload for decoding. Safe to call from the GATT callback
+     * thread; copies the data and returns without waiting for the worker.
+     */
+    public boolean offer(byte[] data, int offset, int length, long timestamp) {
+        boolean accepted = ring.offer(data, offset, length, timestamp);
+        if (accepted && waiting) {
+            Thread thread = worker;
+            if (thread != null) LockSupport.unpark(thread);
+        }
+        return accepted;
+    }
+
+    /**
+     * Takes the published batch, or null if there is none. The caller owns the
+     * batch until it is handed back through {@link #releaseSnapshot}.
+     */
+    public B acquireSnapshot() {
+        B batch = published.getAndSet(null);
+        if (batch != null && timed) {
+            deliveryLatency.add(System.nanoTime() - publishedAtNanos);
+        }
+        return batch;
+    }
+
+    public void releaseSnapshot(B batch) {
+        batch.clear();
+        spare.set(batch);
+        Thread thread = worker;
+        if (thread != null) LockSupport.unpark(thread);
+    }
+
+    /**
+     * Makes the worker reset the framer and decoder before the next frame it
+     * takes, so a partial frame or other state of a previous connection does not carry over to the next. Safe to
+     * call from any thread, e.g. when a link becomes ready; by then the worker
+     * has long handled what the previous connection delivered.
+     */
+    public void reset() {
+        resetPending = true;
+    }
+
+    public long getDecodedFrames() {
+        return decodedFrames.get();
+    }
+
+    public long getDroppedFrames() {
+        return ring.getDroppedFrames();
+    }
+
+    public long getPublishedSnapshots() {
+        return publishedSnapshots.get();
+    }
+
+    /**
+     * Set before {@link #start()} and before anything is offered; timing
+     * costs a few clock reads per frame. Without it the ring does not read
+     * the clock either.
+     */
+    public synchronized void setStageTimingEnabled(boolean enabled) {
+        if (worker != null || !ring.isEmpty()) {
+            throw new IllegalStateException("Stage timing must be set before the pipeline runs");
+        }
+        if (enabled != timed) ring = new FrameRingBuffer(ring.capacity(), maxFrameLength, enabled);
+        timed = enabled;
+    }
+
+    /** Time from {@link #offer} until the worker picks the notification up. */
+    public RunningStats getQueueLatency() {
+        return queueLatency;
+    }
+
+    /** Time the worker spends framing and decoding one notification. */
+    public RunningStats getDecodeTime() {
+        return decodeTime;
+    }
+
+    /** Time from publishing a batch until the UI acquires it. */
+    public RunningStats getDeliveryLatency() {
+        return deliveryLatency;
+    }
+
+    private void runLoop() {
+        while (running) {
+            if (ring.drain(frameConsumer, DRAIN_LIMIT) > 0) {
+                publishIfPossible();
+                continue;
+            }
+            publishIfPossible();
+            waiting = true;
+            if (ring.isEmpty() && running) {
+                LockSupport.parkNanos(this, PARK_NANOS);
+            }
+            waiting = false;
+        }
+    }
+
+    private void onNotification(byte[] data, int length, long timestamp) {
+        if (resetPending) {
+            resetPending = false;
+            if (framer != null) framer.reset();
+            decoder.reset();
+        }
+        boolean timing = timed;
+        long started = timing ? System.nanoTime() : 0;
+        if (framer != null) {
+            framer.push(data, 0, length, timestamp, frameSink);
+        } else {
+            decodeFrame(data, 0, length, timestamp);
+        }
+        if (timing) {
+            queueLatency.add(started - ring.offeredNanos());
+            decodeTime.add(System.nanoTime() - started);
+        }
+    }
+
+    private void decodeFrame(byte[] data, int offset, int length, long timestamp) {
+        decoder.decode(data, offset, length, timestamp, filling);
+        decodedFrames.incrementAndGet();
+    }
+
+    private void publishIfPossible() {
+        if (filling.isEmpty() || published.get() != null) return;
+        B next = spare.getAndSet(null);
+        if (next == null) return;
+        if (timed) publishedAtNanos = System.nanoTime();
+        published.set(filling);
+        filling = next;
+        publishedSnapshots.incrementAndGet();
+        listener.onSnapshotReady();
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.dashpod.transport;
+
+/**
+ * Sends large blobs, such as configuration tables or calibration profiles,
+ * to the device's receive characteristic.
+ *
+ * The blob is split into chunks of the connection's maximum write length,
+ * i.e. the negotiated MTU less the ATT header, and written without response.
+ * Flow control is credit based: at most {@code credits} chunks are handed to
+ * the transport at a time and a credit returns when the transport reports a
+ * chunk written, so the stack's buffer stays full without the writer queueing
+ * the whole blob in memory. A chunk that fails ends the transfer.
+ *
+ * One transfer at a time; methods are thread-safe.
+ */
+public final class BulkWriter {
+
+    public interface Listener {
+        /** Called as chunks are written, on the thread reporting the write. */
+        void onProgress(long written, long total);
+
+        /** Called once, when the last chunk was written or the transfer failed. */
+        void onFinished(Result result);
+    }
+
+    public static final class Result {
+        private final boolean success;
+        private final long bytes;
+        private final int chunks;
+        private final int chunkLength;
+        private final long elapsedNanos;
+
+        Result(boolean success, long bytes, int chunks, int chunkLength, long elapsedNanos) {
+            this.success = success;
+            this.bytes = bytes;
+            this.chunks = chunks;
+            this.chunkLength = chunkLength;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public boolean isSuccess() {
+            return success;
+        }
+
+        /** Bytes the transport reported written. */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /** Chunks the transport reported written. */
+        public int getChunks() {
+            return chunks;
+        }
+
+        public int getChunkLength() {
+            return chunkLength;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getBytesPerSecond() {
+            return elapsedNanos > 0 ? bytes * 1e9 / elapsedNanos : 0;
+        }
+    }
+
+    private final Transport transport;
+    private final int credits;
+    private final Transport.WriteCallback chunkCallback = this::onChunkWritten;
+    private byte[] data;
+    private Listener listener;
+    private int chunkLength;
+    private int sent;
+    private long written;
+    private int writtenChunks;
+    private int inFlight;
+    private long startedNanos;
+    private boolean failed;
+    private boolean pumping;
+
+    /** @param credits chunks handed to the transport before the first is written */
+    public BulkWriter(Transport transport, int credits) {
+        if (credits < 1) throw new IllegalArgumentException("credits must be positive");
+        this.transport = transport;
+        this.credits = credits;
+    }
+
+    /**
+     * Starts sending a blob. Returns false if a transfer is running or the
+     * transport is not ready. The blob must not change until the transfer
+     * finishes.
+     */
+    public boolean start(byte[] blob, Listener listener) {
+        synchronized (this) {
+            if (data != null || transport.getState() != Transport.State.READY) return false;
+            data = blob;
+            this.listener = listener;
+            chunkLength = Math.max(1, transport.getMaxWriteLength());
+            sent = 0;
+            written = 0;
+            writtenChunks = 0;
+            inFlight = 0;
+            failed = false;
+            startedNanos = System.nanoTime();
+        }
+        pump();
+        return true;
+    }
+
+    public synchronized boolean isRunning() {
+        return data != null;
+    }
+
+    /** Stops handing out chunks; chunks already in flight still go out. The listener is told of the failure. */
+    public void cancel() {
+        synchronized (this) {
+            if (data == null || failed) return;
+            failed = true;
+        }
+        finishIfDone();
+    }
+
+    private void pump() {
+        synchronized (this) {
+            // Called back from inside transport.write below: the running loop uses the returned credit
+            if (pumping) return;
+            pumping = true;
+        }
+        while (true) {
+            int offset, length;
+            synchronized (this) {
+                if (data == null || failed || inFlight >= credits || sent >= data.length) {
+                    pumping = false;
+                    break;
+                }
+                offset = sent;
+                length = Math.min(chunkLength, data.length - offset);
+                sent += length;
+                inFlight++;
+            }
+            // The transport may complete the write, and call back, before returning
+            boolean accepted;
+            try {
+                accepted = transport.write(data, offset, length, chunkCallback);
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    inFlight--;
+                    failed = true;
+                    pumping = false;
+                }
+                throw e;
+            }
+            if (!accepted) {
+                synchronized (this) {
+                    inFlight--;
+                    failed = true;
+                    pumping = false;
+                }
+                break;
+            }
+        }
+        finishIfDone();
+    }
+
+    private void onChunkWritten(boolean success) {
+        long progress, total;
+        Listener current;
+        synchronized (this) {
+            inFlight--;
+            if (!success) {
+                failed = true;
+            } else {
+                // Writes complete in order, so the oldest outstanding chunk is the one written
+                written += Math.min(chunkLength, data.length - written);
+                writtenChunks++;
+            }
+            progress = written;
+            total = data.length;
+            current = listener;
+        }
+        if (success) current.onProgress(progress, total);
+        pump();
+    }
+
+    private void finishIfDone() {
+        Listener current;
+        Result result;
+        synchronized (this) {
+            if (data == null || inFlight > 0) return;
+            if (!failed && written < data.length) return;
+            result = new Result(!failed, written, writtenChunks, chunkLength, System.nanoTime() - startedNanos);
+            current = listener;
+            data = null;
+            listener = null;
+        }
+        current.onFinished(result);
+    }
+}
@@ -0,0 +1,272 @@
+package com.example.dashpod.transport;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Keeps one {@link Transport} per device address and shares it between
+ * screens. Each screen opens a lease, itself a {@link Transport}: connecting
+ * the lease subscribes to the shared link, connecting it only if it is not
+ * connected yet, and disconnecting the lease just unsubscribes. Every
+ * subscriber gets every notification and state change.
+ *
+ * The link is closed once its last lease is gone for the linger time, so a
+ * screen that is recreated, e.g. on rotation, picks the link up again without
+ * reconnecting. A link the device dropped is replaced by a new transport when
+ * a lease connects again; subscribers stay attached.
+ *
+ * Each lease may ask for a {@link Transport.LinkProfile}; the link is tuned
+ * for the most demanding one among its leases, so a hidden screen asking for
+ * low power does not slow down the visible one streaming on the same link.
+ */
+public final class ConnectionRegistry {
+
+    public interface StateObserver {
+        /** May be called on any thread. */
+        void onStateChanged(String address, Transport.State state);
+    }
+
+    private final Function<String, Transport> factory;
+    private final ScheduledExecutorService timer;
+    private final long lingerMillis;
+    private final Runnable idleListener;
+    private final Map<String, Connection> connections = new HashMap<>();
+    private volatile StateObserver stateObserver;
+    private long linksOpened;
+    private long linksReused;
+
+    /**
+     * @param factory      creates an unconnected transport for an address
+     * @param timer        closes links after the linger time
+     * @param lingerMillis how long a link without leases stays connected, 0 to close it at once
+     * @param idleListener called once the last link is closed, or null
+     */
+    public ConnectionRegistry(Function<String, Transport> factory, ScheduledExecutorService timer,
+                              long lingerMillis, Runnable idleListener) {
+        this.factory = factory;
+        this.timer = timer;
+        this.lingerMillis = lingerMillis;
+        this.idleListener = idleListener;
+    }
+
+    /** Sees the state changes of every link, whoever holds a lease on it. */
+    public void setStateObserver(StateObserver observer) {
+        stateObserver = observer;
+    }
+
+    /** Returns a new lease; nothing is connected until {@link Transport#connect} is called on it. */
+    public Transport open() {
+        return new Lease();
+    }
+
+    /** Links currently held open, with or without leases. */
+    public synchronized int size() {
+        return connections.size();
+    }
+
+    /** Transports created so far, including replacements for dropped links. */
+    public synchronized long getLinksOpened() {
+        return linksOpened;
+    }
+
+    /** Lease connections served by a link that was already open. */
+    public synchronized long getLinksReused() {
+        return linksReused;
+    }
+
+    /** Disconnects every link; leases still open report DISCONNECTED. */
+    public void closeAll() {
+        Connection[] closing;
+        synchronized (this) {
+            closing = connections.values().toArray(new Connection[0]);
+            connections.clear();
+        }
+        for (Connection connection : closing) {
+            connection.close();
+        }
+        if (closing.length > 0 && idleListener != null) idleListener.run();
+    }
+
+    private synchronized Connection subscribe(String address, Transport.Listener listener) {
+        Connection connection = connections.get(address);
+        if (connection == null) {
+            connection = new Connection(address);
+            connections.put(address, connection);
+        } else if (connection.transport.getState() != Transport.State.DISCONNECTED) {
+            linksReused++;
+        }
+        connection.cancelLinger();
+        connection.subscribers.add(listener);
+        if (connection.transport.getState() == Transport.State.DISCONNECTED) {
+            connection.reconnect();
+        } else {
+            listener.onStateChanged(connection.transport.getState());
+        }
+        return connection;
+    }
+
+    private synchronized void requestProfile(Connection connection, Lease lease, Transport.LinkProfile profile) {
+        connection.profiles.put(lease, profile);
+        connection.applyProfile();
+    }
+
+    private void unsubscribe(Connection connection, Lease lease, Transport.Listener listener) {
+        synchronized (this) {
+            connection.subscribers.remove(listener);
+            if (connection.profiles.remove(lease) != null) connection.applyProfile();
+            if (!connection.subscribers.isEmpty() || connections.get(connection.address) != connection) return;
+            if (lingerMillis > 0) {
+                connection.linger = timer.schedule(() -> closeIfUnused(connection), lingerMillis, TimeUnit.MILLISECONDS);
+                return;
+            }
+        }
+        closeIfUnused(connection);
+    }
+
+    private void closeIfUnused(Connection connection) {
+        boolean idle;
+        synchronized (this) {
+            if (!connection.subscribers.isEmpty() || connections.get(connection.address) != connection) return;
+            connections.remove(connection.address);
+            idle = connections.isEmpty();
+        }
+        connection.close();
+        if (idle && idleListener != null) idleListener.run();
+    }
+
+    /** One link and the leases subscribed to it. Guarded by the registry, apart from delivery. */
+    private final class Connection implements Transport.Listener {
+        final String address;
+        final CopyOnWriteArrayList<Transport.Listener> subscribers = new CopyOnWriteArrayList<>();
+        final Map<Lease, Transport.LinkProfile> profiles = new HashMap<>();
+        volatile Transport transport;
+        Transport.LinkProfile appliedProfile;
+        ScheduledFuture<?> linger;
+
+        Connection(String address) {
+            this.address = address;
+            this.transport = factory.apply(address);
+        }
+
+        void reconnect() {
+            if (transport.getAddress() != null) {
+                // A dropped transport cannot be reused
+                transport.disconnect();
+                transport = factory.apply(address);
+                appliedProfile = null;
+            }
+            linksOpened++;
+            applyProfile();
+            transport.connect(address, this);
+        }
+
+        void applyProfile() {
+            Transport.LinkProfile wanted = null;
+            for (Transport.LinkProfile profile : profiles.values()) {
+                if (wanted == null || profile.compareTo(wanted) > 0) wanted = profile;
+            }
+            // A link nobody asks anything of keeps its last profile until it closes
+            if (wanted != null && wanted != appliedProfile) {
+                appliedProfile = wanted;
+                transport.setLinkProfile(wanted);
+            }
+        }
+
+        void cancelLinger() {
+            if (linger != null) {
+                linger.cancel(false);
+                linger = null;
+            }
+        }
+
+        void close() {
+            cancelLinger();
+            transport.disconnect();
+        }
+
+        @Override
+        public void onStateChanged(Transport.State state) {
+            for (Transport.Listener subscriber : subscribers) {
+                subscriber.onStateChanged(state);
+            }
+            StateObserver observer = stateObserver;
+            if (observer != null) observer.onStateChanged(address, state);
+        }
+
+        @Override
+        public void onNotification(byte[] data, int offset, int length, long timestampNanos) {
+            for (Transport.Listener subscriber : subscribers) {
+                subscriber.onNotification(data, offset, length, timestampNanos);
+            }
+        }
+    }
+
+    private final class Lease implements Transport {
+        private volatile Connection connection;
+        private volatile Listener listener;
+        private volatile LinkProfile linkProfile;
+        private volatile boolean released;
+
+        @Override
+        public void connect(String address, Listener listener) {
+            if (released) throw new IllegalStateException("Transport was disconnected");
+            if (connection != null) throw new IllegalStateException("Already connected to " + connection.address);
+            this.listener = listener;
+            connection = subscribe(address, listener);
+            LinkProfile profile = linkProfile;
+            if (profile != null) requestProfile(connection, this, profile);
+        }
+
+        @Override
+        public boolean write(byte[] data) {
+            Connection current = connection;
+            return !released && current != null && current.transport.write(data);
+        }
+
+        @Override
+        public boolean write(byte[] data, int offset, int length, WriteCallback callback) {
+            Connection current = connection;
+            return !released && current != null && current.transport.write(data, offset, length, callback);
+        }
+
+        @Override
+        public int getMaxWriteLength() {
+            Connection current = connection;
+            return current != null ? current.transport.getMaxWriteLength() : DEFAULT_MAX_WRITE_LENGTH;
+        }
+
+        @Override
+        public void setLinkProfile(LinkProfile profile) {
+            linkProfile = profile;
+            Connection current = connection;
+            if (!released && current != null) requestProfile(current, this, profile);
+        }
+
+        @Override
+        public void disconnect() {
+            if (released) return;
+            released = true;
+            Connection current = connection;
+            if (current == null) return;
+            unsubscribe(current, this, listener);
+            listener.onStateChanged(State.DISCONNECTED);
+        }
+
+        @Override
+        public State getState() {
+            Connection current = connection;
+            return released || current == null ? State.DISCONNECTED : current.transport.getState();
+        }
+
+        @Override
+        public String getAddress() {
+            Connection current = connection;
+            return current != null ? current.address : null;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.dashpod.transport;
+
+import com.example.dashpod.telemetry.MacAddress;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Devices seen while scanning, in the order they were first seen. Sightings
+ * are looked up by address through a hash index, so a scan result costs the
+ * same however many devices are listed, and each entry keeps the latest name,
+ * RSSI and time it was seen.
+ *
+ * {@link #snapshot()} hands a list adapter immutable copies to diff on a
+ * background thread. Unchanged entries keep their snapshot object, so a diff
+ * compares them by reference.
+ *
+ * Not thread-safe; scan results arrive on the main thread.
+ *
+ * @param <D> the platform's device handle, e.g. a BluetoothDevice
+ */
+public final class DeviceTable<D> {
+
+    /** What a list row shows for a device. Immutable. */
+    public static final class Snapshot {
+        private final long id;
+        private final String address;
+        private final String name;
+        private final int rssi;
+
+        Snapshot(String address, String name, int rssi) {
+            this.id = MacAddress.parse(address);
+            this.address = address;
+            this.name = name;
+            this.rssi = rssi;
+        }
+
+        /** The MAC address as a number; stable for the device and unique in a table. */
+        public long getId() {
+            return id;
+        }
+
+        public String getAddress() {
+            return address;
+        }
+
+        /** Advertised name, or null if the device never sent one. */
+        public String getName() {
+            return name;
+        }
+
+        public int getRssi() {
+            return rssi;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Snapshot)) return false;
+            Snapshot other = (Snapshot) o;
+            return rssi == other.rssi && address.equals(other.address) && Objects.equals(name, other.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(address, name, rssi);
+        }
+    }
+
+    public static final class Entry<D> {
+        private final String address;
+        private D device;
+        private String name;
+        private int rssi;
+        private long lastSeen;
+        private int sightings;
+        private Snapshot snapshot;
+
+        Entry(String address) {
+            this.address = address;
+        }
+
+        public String getAddress() {
+            return address;
+        }
+
+        public D getDevice() {
+            return device;
+        }
+
+        /** Latest advertised name, or null if the device never sent one. */
+        public String getName() {
+            return name;
+        }
+
+        /** Signal strength of the latest sighting, in dBm. */
+        public int getRssi() {
+            return rssi;
+        }
+
+        /** Time of the latest sighting, in the caller's clock. */
+        public long getLastSeen() {
+            return lastSeen;
+        }
+
+        public int getSightings() {
+            return sightings;
+        }
+
+        public Snapshot snapshot() {
+            if (snapshot == null) snapshot = new Snapshot(address, name, rssi);
+            return snapshot;
+        }
+    }
+
+    private final List<Entry<D>> entries = new ArrayList<>();
+    private final Map<String, Entry<D>> index = new HashMap<>();
+
+    /**
+     * Records a sighting. Returns true if the device is new or what is shown
+     * for it changed, i.e. its name or RSSI; a sighting that only refreshes
+     * the time returns false.
+     */
+    public boolean update(String address, D device, String name, int rssi, long now) {
+        Entry<D> entry = index.get(address);
+        boolean changed = false;
+        if (entry == null) {
+            entry = new Entry<>(address);
+            entries.add(entry);
+            index.put(address, entry);
+            changed = true;
+        }
+        if (name != null && !name.equals(entry.name)) {
+            entry.name = name;
+            changed = true;
+        }
+        if (rssi != entry.rssi) {
+            entry.rssi = rssi;
+            changed = true;
+        }
+        if (changed) entry.snapshot = null;
+        entry.device = device;
+        entry.lastSeen = now;
+        entry.sightings++;
+        return changed;
+    }
+
+    /** Immutable copy of the table in discovery order, for a list adapter. */
+    public List<Snapshot> snapshot() {
+        List<Snapshot> snapshots = new ArrayList<>(entries.size());
+        for (Entry<D> entry : entries) {
+            snapshots.add(entry.snapshot());
+        }
+        return Collections.unmodifiableList(snapshots);
+    }
+
+    public Entry<D> get(int position) {
+        return entries.get(position);
+    }
+
+    /** The entry for an address, or null if it has not been seen. */
+    public Entry<D> find(String address) {
+        return index.get(address);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public void clear() {
+        entries.clear();
+        index.clear();
+    }
+}
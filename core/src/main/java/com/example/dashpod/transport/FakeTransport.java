@@ -0,0 +1,170 @@
+package com.example.dashpod.transport;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * In-memory {@link Transport} for tests, replays and load generation.
+ *
+ * Connecting succeeds immediately. Writes are kept and handed to an optional
+ * {@link Device}, which plays the firmware and may answer with
+ * {@link #notify(byte[], int, int)}. Notifications are delivered on the calling
+ * thread, so a test fully controls timing; only one thread may notify at a
+ * time, as with a real GATT connection.
+ *
+ * Writes complete at once unless {@link #setManualWriteCompletion} is on, in
+ * which case they stay pending until {@link #completeWrites}, like writes
+ * waiting for room in a real stack's buffer.
+ */
+public final class FakeTransport implements Transport {
+
+    public interface Device {
+        /** Called for every write while the transport is ready. */
+        void onWrite(byte[] data, FakeTransport transport);
+    }
+
+    private final Device device;
+    private final List<byte[]> writes = new ArrayList<>();
+    private final ArrayDeque<WriteCallback> pendingWrites = new ArrayDeque<>();
+    private volatile boolean manualWriteCompletion;
+    private volatile int maxWriteLength = DEFAULT_MAX_WRITE_LENGTH;
+    private volatile LinkProfile linkProfile;
+    private volatile Listener listener;
+    private volatile State state = State.DISCONNECTED;
+    private volatile String address;
+    private volatile boolean released;
+
+    public FakeTransport() {
+        this(null);
+    }
+
+    public FakeTransport(Device device) {
+        this.device = device;
+    }
+
+    @Override
+    public void connect(String address, Listener listener) {
+        if (released) throw new IllegalStateException("Transport was disconnected");
+        this.address = address;
+        this.listener = listener;
+        setState(State.CONNECTING);
+        setState(State.READY);
+    }
+
+    @Override
+    public boolean write(byte[] data) {
+        return write(data, 0, data.length, null);
+    }
+
+    @Override
+    public boolean write(byte[] data, int offset, int length, WriteCallback callback) {
+        if (state != State.READY) return false;
+        byte[] copy = Arrays.copyOfRange(data, offset, offset + length);
+        boolean completeNow;
+        synchronized (writes) {
+            writes.add(copy);
+            completeNow = !manualWriteCompletion;
+            if (!completeNow) pendingWrites.add(callback != null ? callback : success -> { });
+        }
+        if (device != null) {
+            device.onWrite(copy, this);
+        }
+        if (completeNow && callback != null) callback.onWritten(true);
+        return true;
+    }
+
+    @Override
+    public int getMaxWriteLength() {
+        return maxWriteLength;
+    }
+
+    /** Simulates a negotiated MTU. */
+    public void setMaxWriteLength(int maxWriteLength) {
+        this.maxWriteLength = maxWriteLength;
+    }
+
+    /** Holds write callbacks until {@link #completeWrites} releases them. */
+    public void setManualWriteCompletion(boolean manual) {
+        manualWriteCompletion = manual;
+    }
+
+    /** Completes up to {@code count} pending writes, oldest first. Returns how many were completed. */
+    public int completeWrites(int count, boolean success) {
+        int completed = 0;
+        while (completed < count) {
+            WriteCallback callback;
+            synchronized (writes) {
+                callback = pendingWrites.poll();
+            }
+            if (callback == null) break;
+            callback.onWritten(success);
+            completed++;
+        }
+        return completed;
+    }
+
+    public int getPendingWrites() {
+        synchronized (writes) {
+            return pendingWrites.size();
+        }
+    }
+
+    @Override
+    public void setLinkProfile(LinkProfile profile) {
+        linkProfile = profile;
+    }
+
+    /** The last profile asked for, or null. */
+    public LinkProfile getLinkProfile() {
+        return linkProfile;
+    }
+
+    @Override
+    public void disconnect() {
+        released = true;
+        setState(State.DISCONNECTED);
+    }
+
+    /** Simulates the device going out of range; unlike {@link #disconnect()} the transport can reconnect. */
+    public void dropConnection() {
+        setState(State.DISCONNECTED);
+    }
+
+    /** Delivers a notification from the device, time-stamped now. Returns false if not ready. */
+    public boolean notify(byte[] data, int offset, int length) {
+        return notify(data, offset, length, System.nanoTime());
+    }
+
+    public boolean notify(byte[] data, int offset, int length, long timestampNanos) {
+        Listener current = listener;
+        if (state != State.READY || current == null) return false;
+        current.onNotification(data, offset, length, timestampNanos);
+        return true;
+    }
+
+    /** Copies of every payload written so far, in order. */
+    public List<byte[]> getWrites() {
+        synchronized (writes) {
+            return new ArrayList<>(writes);
+        }
+    }
+
+    @Override
+    public State getState() {
+        return state;
+    }
+
+    @Override
+    public String getAddress() {
+        return address;
+    }
+
+    private void setState(State newState) {
+        if (state == newState) return;
+        state = newState;
+        Listener current = listener;
+        if (current != null) current.onStateChanged(newState);
+    }
+}
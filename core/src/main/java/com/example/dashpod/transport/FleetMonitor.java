@@ -0,0 +1,247 @@
+package com.example.dashpod.transport;
+
+import com.example.dashpod.telemetry.FleetBatch;
+import com.example.dashpod.telemetry.FleetTelemetryDecoder;
+import com.example.dashpod.telemetry.NotificationFramer;
+import com.example.dashpod.telemetry.OrientationFrameDecoder;
+import com.example.dashpod.telemetry.RateMeter;
+import com.example.dashpod.telemetry.TelemetryPipeline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Streams from several devices at once for the fleet dashboard.
+ *
+ * Every device gets its own transport, {@link TelemetryLink} and
+ * {@link TelemetryPipeline}, so decoding runs on one worker per device and
+ * scales across cores. The workers fold their batches into the device's
+ * latest values themselves; the UI only calls {@link #sample} at its refresh
+ * rate, so the main thread does the same small amount of work however many
+ * devices stream and however fast.
+ */
+public final class FleetMonitor {
+
+    private static final int PIPELINE_CAPACITY = 256;
+    private static final int MAX_FRAME_LENGTH = 512; // Largest ATT attribute value
+    private static final int BATCH_CAPACITY = 256;
+    private static final double RATE_SMOOTHING = 0.5;
+
+    /** What the dashboard shows for one device. Updated in place by {@link #sample}. */
+    public static final class DeviceStatus {
+        private final String address;
+        private Transport.State state = Transport.State.DISCONNECTED;
+        private float bpm = Float.NaN;
+        private boolean hasOrientation;
+        private float yaw, pitch, roll;
+        private long lastSampleTime;
+        private long notifications;
+        private long droppedNotifications;
+        private double packetsPerSecond;
+
+        DeviceStatus(String address) {
+            this.address = address;
+        }
+
+        public String getAddress() {
+            return address;
+        }
+
+        public Transport.State getState() {
+            return state;
+        }
+
+        /** Latest breathing rate, or NaN if the device has sent none. */
+        public float getBpm() {
+            return bpm;
+        }
+
+        public boolean hasOrientation() {
+            return hasOrientation;
+        }
+
+        public float getYaw() {
+            return yaw;
+        }
+
+        public float getPitch() {
+            return pitch;
+        }
+
+        public float getRoll() {
+            return roll;
+        }
+
+        /** Wall-clock millis of the latest sample, 0 if none. */
+        public long getLastSampleTime() {
+            return lastSampleTime;
+        }
+
+        public long getNotifications() {
+            return notifications;
+        }
+
+        public long getDroppedNotifications() {
+            return droppedNotifications;
+        }
+
+        public double getPacketsPerSecond() {
+            return packetsPerSecond;
+        }
+    }
+
+    private final Supplier<Transport> transports;
+    private final List<Member> members = new ArrayList<>();
+    private final List<DeviceStatus> statuses = new ArrayList<>();
+
+    /** @param transports creates an unconnected transport for each added device */
+    public FleetMonitor(Supplier<Transport> transports) {
+        this.transports = transports;
+    }
+
+    /** Starts streaming from a device. Returns false if it is already part of the fleet. */
+    public synchronized boolean add(String address) {
+        if (indexOf(address) >= 0) return false;
+        Member member = new Member(address, transports.get());
+        members.add(member);
+        statuses.add(member.status);
+        member.start();
+        return true;
+    }
+
+    public synchronized boolean remove(String address) {
+        int index = indexOf(address);
+        if (index < 0) return false;
+        members.remove(index).close();
+        statuses.remove(index);
+        return true;
+    }
+
+    public synchronized int size() {
+        return members.size();
+    }
+
+    /**
+     * Writes the payload to every ready device, e.g. to start the BPM stream
+     * on all of them. Returns how many writes were started.
+     */
+    public synchronized int broadcast(byte[] data) {
+        int written = 0;
+        for (Member member : members) {
+            if (member.transport.write(data)) written++;
+        }
+        return written;
+    }
+
+    /**
+     * Refreshes and returns every device's status, in the order they were
+     * added. Call from one thread only, e.g. the UI's refresh tick; the list
+     * and its statuses are updated in place by the next call.
+     *
+     * @param nowNanos monotonic time, used for packet rates
+     */
+    public synchronized List<DeviceStatus> sample(long nowNanos) {
+        for (Member member : members) {
+            member.sample(nowNanos);
+        }
+        return Collections.unmodifiableList(statuses);
+    }
+
+    /** Sum of the packet rates as of the last {@link #sample}. */
+    public synchronized double getPacketsPerSecond() {
+        double total = 0;
+        for (DeviceStatus status : statuses) {
+            total += status.packetsPerSecond;
+        }
+        return total;
+    }
+
+    /** Disconnects every device and stops its pipeline. */
+    public synchronized void close() {
+        for (Member member : members) {
+            member.close();
+        }
+        members.clear();
+        statuses.clear();
+    }
+
+    private int indexOf(String address) {
+        for (int i = 0; i < members.size(); i++) {
+            if (members.get(i).status.address.equals(address)) return i;
+        }
+        return -1;
+    }
+
+    private static final class Member {
+        final DeviceStatus status;
+        final Transport transport;
+        final FleetTelemetryDecoder decoder = new FleetTelemetryDecoder();
+        final TelemetryPipeline<FleetBatch> pipeline;
+        final TelemetryLink link;
+        final RateMeter rate = new RateMeter(RATE_SMOOTHING);
+        volatile Transport.State state = Transport.State.DISCONNECTED;
+        // Latest values, written by the worker and read by sample(); guarded by this
+        float bpm = Float.NaN;
+        boolean hasOrientation;
+        float yaw, pitch, roll;
+        long lastSampleTime;
+
+        Member(String address, Transport transport) {
+            this.status = new DeviceStatus(address);
+            this.transport = transport;
+            this.pipeline = new TelemetryPipeline<>("Fleet-" + address, PIPELINE_CAPACITY, MAX_FRAME_LENGTH,
+                    () -> new FleetBatch(BATCH_CAPACITY), new NotificationFramer(MAX_FRAME_LENGTH),
+                    decoder, this::drain);
+            this.link = new TelemetryLink(transport, pipeline, null, newState -> state = newState);
+        }
+
+        void start() {
+            pipeline.start();
+            transport.connect(status.address, link);
+        }
+
+        void close() {
+            transport.disconnect();
+            pipeline.stop();
+        }
+
+        // Runs on the pipeline worker; only the newest value of each kind is shown
+        private void drain() {
+            FleetBatch batch = pipeline.acquireSnapshot();
+            if (batch == null) return;
+            synchronized (this) {
+                for (int i = 0; i < batch.size(); i++) {
+                    int records = batch.recordsAt(i);
+                    if ((records & FleetBatch.BPM) != 0) {
+                        bpm = batch.bpmAt(i);
+                    }
+                    if ((records & OrientationFrameDecoder.EULER) != 0) {
+                        hasOrientation = true;
+                        yaw = batch.yawAt(i);
+                        pitch = batch.pitchAt(i);
+                        roll = batch.rollAt(i);
+                    }
+                    lastSampleTime = Math.max(lastSampleTime, batch.timestampAt(i));
+                }
+            }
+            pipeline.releaseSnapshot(batch);
+        }
+
+        void sample(long nowNanos) {
+            synchronized (this) {
+                status.bpm = bpm;
+                status.hasOrientation = hasOrientation;
+                status.yaw = yaw;
+                status.pitch = pitch;
+                status.roll = roll;
+                status.lastSampleTime = lastSampleTime;
+            }
+            status.state = state;
+            status.notifications = link.getNotifications();
+            status.droppedNotifications = link.getDroppedNotifications();
+            status.packetsPerSecond = rate.update(status.notifications, nowNanos);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.dashpod.transport;
+
+import com.example.dashpod.telemetry.RunningStats;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializes GATT requests. Android allows one outstanding operation per
+ * connection and silently refuses the rest, so every request goes through
+ * this queue: an operation is started once the previous one has completed,
+ * its completion is reported from the matching GATT callback through
+ * {@link #complete}, and an operation whose callback never arrives fails after
+ * its timeout so the queue keeps moving.
+ *
+ * Writes without response are pipelined: up to a window of them may be in
+ * flight together, and a write the stack refuses while others are in flight
+ * waits for the next completion instead of failing. Other operations always
+ * run alone.
+ *
+ * All methods are thread-safe; operations are started on the thread that
+ * enqueues or completes, or on the timeout thread.
+ */
+public final class GattOperationQueue {
+
+    public enum Type {
+        REQUEST_MTU,
+        DISCOVER_SERVICES,
+        WRITE_DESCRIPTOR,
+        WRITE,
+        WRITE_WITHOUT_RESPONSE,
+        READ,
+        /** Anything else that completes through a callback. */
+        OTHER
+    }
+
+    public abstract static class Operation {
+        final Type type;
+        final long timeoutMillis;
+        long enqueuedNanos;
+        ScheduledFuture<?> timeout;
+        boolean succeeded;
+
+        protected Operation(Type type, long timeoutMillis) {
+            this.type = type;
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        /** Issues the GATT request. Returns false if the stack refused it. */
+        protected abstract boolean start();
+
+        /**
+         * Called once: when the callback arrived, the start was refused, it
+         * timed out or the queue was cleared. Called without the queue's lock
+         * held, so it may enqueue the next operation.
+         */
+        protected void onFinished(boolean success) {
+        }
+
+        public Type getType() {
+            return type;
+        }
+    }
+
+    private final ScheduledExecutorService timer;
+    private final int writeWindow;
+    private final ArrayDeque<Operation> pending = new ArrayDeque<>();
+    private final ArrayDeque<Operation> inFlight = new ArrayDeque<>();
+    // Finished under the lock, reported once it is released
+    private final ArrayDeque<Operation> finished = new ArrayDeque<>();
+    private final RunningStats latency = new RunningStats();
+    private long completed;
+    private long failed;
+    private long timedOut;
+
+    /**
+     * @param timer       fires operation timeouts
+     * @param writeWindow writes without response allowed in flight at once
+     */
+    public GattOperationQueue(ScheduledExecutorService timer, int writeWindow) {
+        if (writeWindow < 1) throw new IllegalArgumentException("writeWindow must be positive");
+        this.timer = timer;
+        this.writeWindow = writeWindow;
+    }
+
+    public void enqueue(Operation operation) {
+        synchronized (this) {
+            operation.enqueuedNanos = System.nanoTime();
+            pending.add(operation);
+            startNext();
+        }
+        reportFinished();
+    }
+
+    /**
+     * Reports the callback of the oldest in-flight operation of the given
+     * type. Returns false if no such operation was waiting, e.g. because it
+     * already timed out.
+     */
+    public boolean complete(Type type, boolean success) {
+        boolean found = false;
+        synchronized (this) {
+            for (Operation operation : inFlight) {
+                if (operation.type == type) {
+                    finish(operation, success);
+                    startNext();
+                    found = true;
+                    break;
+                }
+            }
+        }
+        reportFinished();
+        return found;
+    }
+
+    /** Fails every pending and in-flight operation, e.g. after a disconnect. */
+    public void clear() {
+        synchronized (this) {
+            while (!inFlight.isEmpty()) {
+                finish(inFlight.peek(), false);
+            }
+            while (!pending.isEmpty()) {
+                Operation operation = pending.poll();
+                failed++;
+                operation.succeeded = false;
+                finished.add(operation);
+            }
+        }
+        reportFinished();
+    }
+
+    public synchronized int size() {
+        return pending.size() + inFlight.size();
+    }
+
+    public synchronized boolean isIdle() {
+        return pending.isEmpty() && inFlight.isEmpty();
+    }
+
+    public synchronized long getCompleted() {
+        return completed;
+    }
+
+    public synchronized long getFailed() {
+        return failed;
+    }
+
+    public synchronized long getTimedOut() {
+        return timedOut;
+    }
+
+    /** Milliseconds from enqueue to completion of every successful operation. Copy; safe to keep. */
+    public synchronized RunningStats getLatency() {
+        RunningStats copy = new RunningStats();
+        copy.merge(latency);
+        return copy;
+    }
+
+    private void startNext() {
+        while (!pending.isEmpty()) {
+            Operation next = pending.peek();
+            if (!canStart(next)) return;
+            pending.poll();
+            inFlight.add(next);
+            boolean started;
+            try {
+                started = next.start();
+            } catch (RuntimeException e) {
+                started = false;
+            }
+            if (!started) {
+                if (next.type == Type.WRITE_WITHOUT_RESPONSE && inFlight.size() > 1) {
+                    // The stack's buffer is full; try again when one of the others completes
+                    inFlight.removeLast();
+                    pending.addFirst(next);
+                    return;
+                }
+                finish(next, false);
+                continue;
+            }
+            if (next.timeoutMillis > 0 && inFlight.contains(next)) {
+                next.timeout = timer.schedule(() -> onTimeout(next), next.timeoutMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private boolean canStart(Operation next) {
+        if (inFlight.isEmpty()) return true;
+        if (next.type != Type.WRITE_WITHOUT_RESPONSE || inFlight.size() >= writeWindow) return false;
+        for (Operation operation : inFlight) {
+            if (operation.type != Type.WRITE_WITHOUT_RESPONSE) return false;
+        }
+        return true;
+    }
+
+    private void onTimeout(Operation operation) {
+        synchronized (this) {
+            if (!inFlight.contains(operation)) return;
+            timedOut++;
+            finish(operation, false);
+            startNext();
+        }
+        reportFinished();
+    }
+
+    // Called with the lock held; the operation is reported by reportFinished
+    private void finish(Operation operation, boolean success) {
+        inFlight.remove(operation);
+        if (operation.timeout != null) {
+            operation.timeout.cancel(false);
+            operation.timeout = null;
+        }
+        if (success) {
+            completed++;
+            latency.add((System.nanoTime() - operation.enqueuedNanos) / 1e6);
+        } else {
+            failed++;
+        }
+        operation.succeeded = success;
+        finished.add(operation);
+    }
+
+    // Called after every change that may have finished operations
+    private void reportFinished() {
+        // An operation that completes from inside start() is reported by the outer call
+        if (Thread.holdsLock(this)) return;
+        while (true) {
+            Operation operation;
+            synchronized (this) {
+                operation = finished.poll();
+            }
+            if (operation == null) return;
+            operation.onFinished(operation.succeeded);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.dashpod.transport;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Devices the user connected to recently, so they can be listed and
+ * connected to at launch without scanning first. Holds at most a fixed number
+ * of devices, evicting the least recently connected, and forgets devices not
+ * connected to within the time to live.
+ *
+ * The cache is saved as a small binary file: a magic number, a version, the
+ * entry count and then each entry, least recently connected first.
+ *
+ * All methods are thread-safe.
+ */
+public final class KnownDevices {
+
+    /** Passed to {@link #remember} when no new RSSI reading is available. */
+    public static final int RSSI_UNKNOWN = Integer.MIN_VALUE;
+
+    private static final int MAGIC = 0x4B444450; // "PDDK"
+    private static final int VERSION = 1;
+
+    public static final class Device {
+        private final String address;
+        private final String name;
+        private final int rssi;
+        private final long lastConnected;
+
+        Device(String address, String name, int rssi, long lastConnected) {
+            this.address = address;
+            this.name = name;
+            this.rssi = rssi;
+            this.lastConnected = lastConnected;
+        }
+
+        public String getAddress() {
+            return address;
+        }
+
+        /** Name last seen for the device, or null. */
+        public String getName() {
+            return name;
+        }
+
+        /** RSSI of the last sighting before connecting, or {@link #RSSI_UNKNOWN}. */
+        public int getRssi() {
+            return rssi;
+        }
+
+        /** Wall-clock millis of the last connection. */
+        public long getLastConnected() {
+            return lastConnected;
+        }
+    }
+
+    private final int capacity;
+    private final long ttlMillis;
+    // Insertion order is connection order: the eldest entry is evicted first
+    private final LinkedHashMap<String, Device> devices = new LinkedHashMap<>();
+
+    /**
+     * @param capacity  devices kept at most
+     * @param ttlMillis how long a device is kept after its last connection
+     */
+    public KnownDevices(int capacity, long ttlMillis) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be positive");
+        this.capacity = capacity;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Records a connection to the device at wall-clock time {@code now}. A
+     * null name or {@link #RSSI_UNKNOWN} keeps the value already known.
+     */
+    public synchronized void remember(String address, String name, int rssi, long now) {
+        Device previous = devices.remove(address);
+        if (previous != null) {
+            if (name == null) name = previous.name;
+            if (rssi == RSSI_UNKNOWN) rssi = previous.rssi;
+        }
+        devices.put(address, new Device(address, name, rssi, now));
+        Iterator<Device> eldest = devices.values().iterator();
+        while (devices.size() > capacity) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    public synchronized boolean forget(String address) {
+        return devices.remove(address) != null;
+    }
+
+    /** The devices still within their time to live, most recently connected first. */
+    public synchronized List<Device> list(long now) {
+        evictExpired(now);
+        List<Device> list = new ArrayList<>(devices.values());
+        for (int i = 0, j = list.size() - 1; i < j; i++, j--) {
+            Device swap = list.get(i);
+            list.set(i, list.get(j));
+            list.set(j, swap);
+        }
+        return list;
+    }
+
+    public synchronized Device find(String address) {
+        return devices.get(address);
+    }
+
+    public synchronized int size() {
+        return devices.size();
+    }
+
+    public synchronized void save(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(devices.size());
+        for (Device device : devices.values()) {
+            data.writeUTF(device.address);
+            data.writeBoolean(device.name != null);
+            if (device.name != null) data.writeUTF(device.name);
+            data.writeInt(device.rssi);
+            data.writeLong(device.lastConnected);
+        }
+        data.flush();
+    }
+
+    /**
+     * Replaces the cache with a saved one. Devices past their time to live
+     * are dropped.
+     *
+     * @throws IOException if the stream is not a saved cache
+     */
+    public synchronized void load(InputStream in, long now) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) throw new IOException("Not a known devices file");
+        int version = data.readInt();
+        if (version != VERSION) throw new IOException("Unsupported known devices version " + version);
+        int count = data.readInt();
+        Map<String, Device> loaded = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            String address = data.readUTF();
+            String name = data.readBoolean() ? data.readUTF() : null;
+            int rssi = data.readInt();
+            long lastConnected = data.readLong();
+            loaded.put(address, new Device(address, name, rssi, lastConnected));
+        }
+        devices.clear();
+        for (Device device : loaded.values()) {
+            remember(device.address, device.name, device.rssi, device.lastConnected);
+        }
+        evictExpired(now);
+    }
+
+    private void evictExpired(long now) {
+        devices.values().removeIf(device -> now - device.lastConnected > ttlMillis);
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.dashpod.transport;
+
+import com.example.dashpod.telemetry.RateMeter;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Picks the {@link Transport.LinkProfile} for a screen's link from what it
+ * receives: high throughput while a stream arrives at or above the streaming
+ * rate, balanced for slower traffic such as BPM summaries, and low power
+ * while the screen is hidden.
+ *
+ * Moving to a more demanding profile happens at once, so a stream that
+ * starts is not throttled. Moving down waits until the lower profile has been
+ * wanted for the hold time, so a pause in the stream or a screen rotation does
+ * not renegotiate the connection twice.
+ *
+ * Call {@link #tick} periodically from one thread.
+ */
+public final class LinkTuner {
+
+    private final Transport transport;
+    private final LongSupplier notifications;
+    private final double streamingRate;
+    private final long holdNanos;
+    private final RateMeter rate = new RateMeter(0.5);
+    private boolean visible = true;
+    private Transport.LinkProfile profile;
+    private long lowerSinceNanos = -1;
+    private long changes;
+
+    /**
+     * @param notifications counter of notifications received on the link
+     * @param streamingRate notifications per second from which the link is tuned for throughput
+     * @param holdNanos     how long a less demanding profile must be wanted before it is applied
+     */
+    public LinkTuner(Transport transport, LongSupplier notifications, double streamingRate, long holdNanos) {
+        this.transport = transport;
+        this.notifications = notifications;
+        this.streamingRate = streamingRate;
+        this.holdNanos = holdNanos;
+    }
+
+    public void setVisible(boolean visible, long nowNanos) {
+        this.visible = visible;
+        tick(nowNanos);
+    }
+
+    /** Samples the notification rate and updates the link's profile if needed. Returns the profile in force. */
+    public Transport.LinkProfile tick(long nowNanos) {
+        double perSecond = rate.update(notifications.getAsLong(), nowNanos);
+        Transport.LinkProfile wanted;
+        if (!visible) {
+            wanted = Transport.LinkProfile.LOW_POWER;
+        } else if (perSecond >= streamingRate) {
+            wanted = Transport.LinkProfile.HIGH_THROUGHPUT;
+        } else {
+            wanted = Transport.LinkProfile.BALANCED;
+        }
+
+        if (profile == null || wanted.compareTo(profile) > 0) {
+            apply(wanted);
+        } else if (wanted.compareTo(profile) < 0) {
+            if (lowerSinceNanos < 0) {
+                lowerSinceNanos = nowNanos;
+            } else if (nowNanos - lowerSinceNanos >= holdNanos) {
+                apply(wanted);
+            }
+        } else {
+            lowerSinceNanos = -1;
+        }
+        return profile;
+    }
+
+    /** Smoothed notifications per second at the last tick. */
+    public double getRate() {
+        return rate.getRate();
+    }
+
+    /** Profile in force, or null before the first tick. */
+    public Transport.LinkProfile getProfile() {
+        return profile;
+    }
+
+    /** Profiles applied so far, the first one included. */
+    public long getChanges() {
+        return changes;
+    }
+
+    private void apply(Transport.LinkProfile wanted) {
+        profile = wanted;
+        lowerSinceNanos = -1;
+        changes++;
+        transport.setLinkProfile(wanted);
+    }
+}
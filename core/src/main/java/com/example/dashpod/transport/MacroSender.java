@@ -0,0 +1,56 @@
+package com.example.dashpod.transport;
+
+import com.example.dashpod.telemetry.Hex;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Sends the macros typed in the macro editor: hex byte strings such as
+ * "01 04 02" or plain text, written to the device's receive characteristic.
+ * A macro longer than one write is split into consecutive writes; larger
+ * payloads belong on a {@link BulkWriter}.
+ */
+public final class MacroSender {
+
+    public enum Encoding {
+        HEX,
+        TEXT
+    }
+
+    private final Transport transport;
+    private long sentMacros;
+
+    public MacroSender(Transport transport) {
+        this.transport = transport;
+    }
+
+    public static byte[] encode(String value, Encoding encoding) {
+        if (encoding == Encoding.HEX) {
+            return Hex.decode(value.replaceAll("\\s", ""));
+        }
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Encodes and writes a macro. Returns false if the transport is not ready
+     * or refused a write.
+     */
+    public boolean send(String value, Encoding encoding) {
+        if (transport.getState() != Transport.State.READY) return false;
+        byte[] data = encode(value, encoding);
+        int chunk = Math.max(1, transport.getMaxWriteLength());
+        if (data.length <= chunk) {
+            if (!transport.write(data)) return false;
+        } else {
+            for (int offset = 0; offset < data.length; offset += chunk) {
+                if (!transport.write(data, offset, Math.min(chunk, data.length - offset), null)) return false;
+            }
+        }
+        sentMacros++;
+        return true;
+    }
+
+    public long getSentMacros() {
+        return sentMacros;
+    }
+}
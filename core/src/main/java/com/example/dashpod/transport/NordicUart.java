@@ -0,0 +1,17 @@
+package com.example.dashpod.transport;
+
+import java.util.UUID;
+
+/** Identifiers of the Nordic UART Service the DashPod firmware exposes. */
+public final class NordicUart {
+
+    public static final UUID SERVICE = UUID.fromString("6e400001-b5a3-f393-e0a9-e50e24dcca9e");
+    /** Written by the phone. */
+    public static final UUID RX_CHARACTERISTIC = UUID.fromString("6e400002-b5a3-f393-e0a9-e50e24dcca9e");
+    /** Notified by the device. */
+    public static final UUID TX_CHARACTERISTIC = UUID.fromString("6e400003-b5a3-f393-e0a9-e50e24dcca9e");
+    public static final UUID CLIENT_CONFIG_DESCRIPTOR = UUID.fromString("00002902-0000-1000-8000-00805f9b34fb");
+
+    private NordicUart() {
+    }
+}
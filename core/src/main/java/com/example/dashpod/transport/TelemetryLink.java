@@ -0,0 +1,83 @@
+package com.example.dashpod.transport;
+
+import com.example.dashpod.telemetry.MacAddress;
+import com.example.dashpod.telemetry.SessionRecorder;
+import com.example.dashpod.telemetry.TelemetryPipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connects a {@link Transport} to the receive path: every notification is
+ * recorded, if a recorder is set, and offered to the telemetry pipeline.
+ * State changes are passed on unchanged; on becoming ready the pipeline is
+ * reset first, so nothing decoded from the previous connection carries over.
+ *
+ * A paused link stays connected but neither records nor decodes, e.g. while
+ * another screen's link handles the same device.
+ */
+public final class TelemetryLink implements Transport.Listener {
+
+    public interface StateListener {
+        void onStateChanged(Transport.State state);
+    }
+
+    private final Transport transport;
+    private final TelemetryPipeline<?> pipeline;
+    private final SessionRecorder recorder;
+    private final StateListener stateListener;
+    private final AtomicLong notifications = new AtomicLong();
+    private final AtomicLong droppedNotifications = new AtomicLong();
+    private long address = -1;
+    private volatile boolean paused;
+
+    /** @param recorder records every notification, or null to not record */
+    public TelemetryLink(Transport transport, TelemetryPipeline<?> pipeline,
+                         SessionRecorder recorder, StateListener stateListener) {
+        this.transport = transport;
+        this.pipeline = pipeline;
+        this.recorder = recorder;
+        this.stateListener = stateListener;
+    }
+
+    @Override
+    public void onStateChanged(Transport.State state) {
+        if (state == Transport.State.READY) pipeline.reset();
+        stateListener.onStateChanged(state);
+    }
+
+    @Override
+    public void onNotification(byte[] data, int offset, int length, long timestampNanos) {
+        if (length <= 0 || paused) return;
+        notifications.incrementAndGet();
+        if (recorder != null) {
+            if (address < 0) address = MacAddress.parse(transport.getAddress());
+            recorder.record(timestampNanos, address,
+                    NordicUart.TX_CHARACTERISTIC.getMostSignificantBits(),
+                    NordicUart.TX_CHARACTERISTIC.getLeastSignificantBits(),
+                    data, offset, length);
+        }
+        if (!pipeline.offer(data, offset, length, System.currentTimeMillis())) {
+            droppedNotifications.incrementAndGet();
+        }
+    }
+
+    /** Drops notifications while paused; on resuming the pipeline is reset, as a frame may have been cut. */
+    public void setPaused(boolean paused) {
+        if (!paused && this.paused) pipeline.reset();
+        this.paused = paused;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /** Notifications recorded and offered, not counting those arriving while paused. */
+    public long getNotifications() {
+        return notifications.get();
+    }
+
+    /** Notifications the pipeline had no room for. */
+    public long getDroppedNotifications() {
+        return droppedNotifications.get();
+    }
+}
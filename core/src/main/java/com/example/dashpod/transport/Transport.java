@@ -0,0 +1,82 @@
+package com.example.dashpod.transport;
+
+/**
+ * A link to one DashPod: connect, write to the device and receive its
+ * notifications. On a phone this is GATT over the Nordic UART Service; in
+ * tests and benchmarks it is a {@link FakeTransport}.
+ */
+public interface Transport {
+
+    /** Payload bytes per write before the MTU is negotiated: the default ATT MTU of 23 less the 3-byte header. */
+    int DEFAULT_MAX_WRITE_LENGTH = 20;
+
+    enum State {
+        DISCONNECTED,
+        CONNECTING,
+        /** Connected, services discovered and notifications enabled. */
+        READY
+    }
+
+    /** How the link trades power for throughput and latency, from the most frugal. */
+    enum LinkProfile {
+        LOW_POWER,
+        BALANCED,
+        HIGH_THROUGHPUT
+    }
+
+    interface Listener {
+        /** May be called on any thread. */
+        void onStateChanged(State state);
+
+        /**
+         * Called for every notification, serially and on one thread at a time.
+         * The array may be reused after this returns.
+         *
+         * @param timestampNanos monotonic receive time
+         */
+        void onNotification(byte[] data, int offset, int length, long timestampNanos);
+    }
+
+    interface WriteCallback {
+        /**
+         * Called once the stack has sent the payload, or failed to. May be
+         * called on any thread, including the writing one.
+         */
+        void onWritten(boolean success);
+    }
+
+    /** Starts connecting; progress is reported to the listener. */
+    void connect(String address, Listener listener);
+
+    /**
+     * Writes a payload to the device's receive characteristic without waiting
+     * for a response. Returns false if the transport is not ready or the write
+     * could not be started.
+     */
+    boolean write(byte[] data);
+
+    /**
+     * Writes data[offset, offset + length) like {@link #write(byte[])} and
+     * reports to the callback, if not null, when the write has gone out. The
+     * data is copied before this returns. Writes go out in order.
+     */
+    boolean write(byte[] data, int offset, int length, WriteCallback callback);
+
+    /** Largest payload of a single write on the current connection. */
+    int getMaxWriteLength();
+
+    /**
+     * Asks for the link to be tuned for the traffic ahead. This is a hint: it
+     * takes effect once the transport is ready, carries over to reconnects, and
+     * is ignored by transports that cannot tune their link.
+     */
+    void setLinkProfile(LinkProfile profile);
+
+    /** Disconnects and releases the link. The transport cannot be reused. */
+    void disconnect();
+
+    State getState();
+
+    /** Address passed to {@link #connect}, or null before that. */
+    String getAddress();
+}
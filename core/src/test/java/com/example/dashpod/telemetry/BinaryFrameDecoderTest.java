@@ -0,0 +1,113 @@
+package com.example.dashpod.telemetry;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class BinaryFrameDecoderTest {
+
+    private final BinaryFrameDecoder decoder = new BinaryFrameDecoder();
+    private final OrientationBatch batch = new OrientationBatch(64, 1);
+
+    @Test
+    public void decodesSeveralRecordsFromOneNotification() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        record(out, BinaryFrameDecoder.TYPE_EULER, 1, 5760, -32, 8);
+        record(out, BinaryFrameDecoder.TYPE_QUATERNION, 2, 16384, 0, -8192, 4096);
+        record(out, BinaryFrameDecoder.TYPE_EULER_QUATERNION, 3, 16, 32, 48, 0, 16384, 0, 0);
+        byte[] data = out.toByteArray();
+
+        assertTrue(BinaryFrameDecoder.isBinary(data, 0, data.length));
+        assertEquals(3, decoder.decode(data, 0, data.length, 1234L, batch));
+        assertEquals(3, batch.size());
+
+        assertEquals(OrientationFrameDecoder.EULER, batch.recordsAt(0));
+        assertEquals(360f, batch.yawAt(0), 0f);
+        assertEquals(-2f, batch.pitchAt(0), 0f);
+        assertEquals(0.5f, batch.rollAt(0), 0f);
+
+        assertEquals(OrientationFrameDecoder.QUATERNION, batch.recordsAt(1));
+        assertEquals(1f, batch.qwAt(1), 0f);
+        assertEquals(-0.5f, batch.qyAt(1), 0f);
+        assertEquals(0.25f, batch.qzAt(1), 0f);
+
+        assertEquals(OrientationFrameDecoder.EULER | OrientationFrameDecoder.QUATERNION, batch.recordsAt(2));
+        assertEquals(3f, batch.rollAt(2), 0f);
+        assertEquals(1f, batch.qxAt(2), 0f);
+        assertEquals(1234L, batch.timestampAt(2));
+        assertEquals(0, decoder.getLostSamples());
+    }
+
+    @Test
+    public void fourteenCombinedSamplesFitOneMtu() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < 14; i++) {
+            record(out, BinaryFrameDecoder.TYPE_EULER_QUATERNION, i, i, i, i, i, i, i, i);
+        }
+        byte[] data = out.toByteArray();
+        assertTrue(data.length <= 247 - 3);
+        assertEquals(14, decoder.decode(data, 0, data.length, 0L, batch));
+    }
+
+    @Test
+    public void countsSequenceGapsAcrossWraparound() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        record(out, BinaryFrameDecoder.TYPE_EULER, 65534, 0, 0, 0);
+        record(out, BinaryFrameDecoder.TYPE_EULER, 1, 0, 0, 0);
+        byte[] data = out.toByteArray();
+        decoder.decode(data, 0, data.length, 0L, batch);
+        assertEquals(2, decoder.getLostSamples());
+    }
+
+    @Test
+    public void repeatedAndReorderedRecordsAreNotLoss() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        record(out, BinaryFrameDecoder.TYPE_EULER, 10, 0, 0, 0);
+        record(out, BinaryFrameDecoder.TYPE_EULER, 10, 0, 0, 0);
+        record(out, BinaryFrameDecoder.TYPE_EULER, 12, 0, 0, 0);
+        record(out, BinaryFrameDecoder.TYPE_EULER, 11, 0, 0, 0);
+        record(out, BinaryFrameDecoder.TYPE_EULER, 13, 0, 0, 0);
+        byte[] data = out.toByteArray();
+        assertEquals(5, decoder.decode(data, 0, data.length, 0L, batch));
+        assertEquals(1, decoder.getLostSamples());
+        assertEquals(2, decoder.getLateRecords());
+
+        decoder.reset();
+        out.reset();
+        record(out, BinaryFrameDecoder.TYPE_EULER, 3, 0, 0, 0);
+        data = out.toByteArray();
+        decoder.decode(data, 0, data.length, 0L, batch);
+        assertEquals(1, decoder.getLostSamples());
+        assertEquals(2, decoder.getLateRecords());
+    }
+
+    @Test
+    public void stopsAtTruncatedRecord() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        record(out, BinaryFrameDecoder.TYPE_EULER, 1, 1, 2, 3);
+        record(out, BinaryFrameDecoder.TYPE_QUATERNION, 2, 1, 2, 3, 4);
+        byte[] data = out.toByteArray();
+        assertEquals(1, decoder.decode(data, 0, data.length - 1, 0L, batch));
+        assertEquals(1, decoder.getMalformedFrames());
+    }
+
+    @Test
+    public void jsonFramesAreNotBinary() {
+        byte[] json = "{\"EX\":1,\"EY\":2,\"EZ\":3}".getBytes(StandardCharsets.US_ASCII);
+        assertFalse(BinaryFrameDecoder.isBinary(json, 0, json.length));
+        assertFalse(BinaryFrameDecoder.isBinary(json, 0, 0));
+    }
+
+    private static void record(ByteArrayOutputStream out, int type, int sequence, int... values) {
+        out.write(type);
+        out.write(sequence & 0xFF);
+        out.write((sequence >> 8) & 0xFF);
+        for (int value : values) {
+            out.write(value & 0xFF);
+            out.write((value >> 8) & 0xFF);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.dashpod.telemetry;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class BpmHistoryWriterTest {
+
+    @Test
+    public void writesSessionsInOrderWithBatchedSamples() {
+        RecordingStore store = new RecordingStore();
+        BpmHistoryWriter writer = new BpmHistoryWriter(store, 60_000);
+
+        BpmStatistics statistics = new BpmStatistics(60_000, 2);
+        writer.startSession("C0:FF:EE:12:34:56", 1000);
+        for (int i = 0; i < 120; i++) {
+            assertTrue(writer.add(1000 + i * 1000L, 12 + i % 3));
+            statistics.add(i * 1000L, 12 + i % 3);
+        }
+        writer.finishSession(BpmSessionSummary.of("C0:FF:EE:12:34:56", 1000, 121_000, statistics));
+        assertFalse(writer.add(200_000, 15f));
+
+        writer.startSession("C0:FF:EE:12:34:57", 300_000);
+        writer.add(301_000, 20f);
+        writer.close();
+
+        assertEquals(List.of(
+                "session 1 C0:FF:EE:12:34:56 1000",
+                "samples 1 120 from 1000 to 120000",
+                "finish 1 120 windows 2",
+                "session 2 C0:FF:EE:12:34:57 300000",
+                "samples 2 1 from 301000 to 301000"), store.calls);
+        assertEquals(2, store.summary.getWindows().size());
+        assertEquals(60, store.summary.getWindows().get(1).getSampleCount());
+        assertEquals(13.0, store.summary.getAverage(), 1e-9);
+        assertEquals(121, writer.getWrittenSamples());
+        assertEquals(2, writer.getTransactions());
+        assertNull(writer.getFailure());
+    }
+
+    @Test
+    public void flushesCollectedSamplesEveryInterval() throws Exception {
+        RecordingStore store = new RecordingStore();
+        BpmHistoryWriter writer = new BpmHistoryWriter(store, 20);
+        writer.startSession("C0:FF:EE:12:34:56", 0);
+        for (int i = 0; i < 5; i++) {
+            writer.add(i, i);
+            writer.add(i, i);
+            Thread.sleep(100);
+        }
+        writer.close();
+
+        // Each pause leaves time for a flush, so samples arrive in small batches
+        assertTrue(writer.getTransactions() >= 3);
+        assertEquals(10, writer.getWrittenSamples());
+    }
+
+    @Test
+    public void keepsWritingAfterStoreError() {
+        RecordingStore store = new RecordingStore();
+        store.failSamples = true;
+        BpmHistoryWriter writer = new BpmHistoryWriter(store, 60_000);
+        writer.startSession("C0:FF:EE:12:34:56", 0);
+        writer.add(1, 12f);
+        writer.add(2, 13f);
+        writer.finishSession(new BpmSessionSummary(-1, "C0:FF:EE:12:34:56", 0, 3, 2, 12.5, 12, 13, List.of()));
+        writer.close();
+
+        assertEquals(2, writer.getDroppedSamples());
+        assertEquals(0, writer.getWrittenSamples());
+        assertNotNull(writer.getFailure());
+        assertEquals("finish 1 2 windows 0", store.calls.get(store.calls.size() - 1));
+    }
+
+    @Test
+    public void closeAsyncReturnsBeforeQueuedWritesFinish() throws Exception {
+        CountDownLatch storing = new CountDownLatch(1);
+        CountDownLatch closed = new CountDownLatch(1);
+        RecordingStore store = new RecordingStore() {
+            @Override
+            public void insertSamples(long sessionId, long[] times, float[] bpm, int count) {
+                try {
+                    storing.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.insertSamples(sessionId, times, bpm, count);
+            }
+        };
+        BpmHistoryWriter writer = new BpmHistoryWriter(store, 60_000);
+        writer.startSession("C0:FF:EE:12:34:56", 0);
+        writer.add(1, 12f);
+        writer.closeAsync(closed::countDown);
+        assertFalse(writer.add(2, 13f));
+        assertEquals(1, closed.getCount());
+
+        storing.countDown();
+        assertTrue(closed.await(2, TimeUnit.SECONDS));
+        assertEquals(1, writer.getWrittenSamples());
+    }
+
+    private static class RecordingStore implements BpmHistoryWriter.Store {
+        final List<String> calls = new ArrayList<>();
+        BpmSessionSummary summary;
+        boolean failSamples;
+        long nextId = 1;
+
+        @Override
+        public long insertSession(String deviceAddress, long startTime) {
+            long id = nextId++;
+            calls.add("session " + id + " " + deviceAddress + " " + startTime);
+            return id;
+        }
+
+        @Override
+        public void insertSamples(long sessionId, long[] times, float[] bpm, int count) {
+            if (failSamples) throw new IllegalStateException("disk full");
+            calls.add("samples " + sessionId + " " + count + " from " + times[0] + " to " + times[count - 1]);
+        }
+
+        @Override
+        public void finishSession(long sessionId, BpmSessionSummary summary) {
+            this.summary = summary;
+            calls.add("finish " + sessionId + " " + summary.getSampleCount() + " windows " + summary.getWindows().size());
+        }
+    }
+}
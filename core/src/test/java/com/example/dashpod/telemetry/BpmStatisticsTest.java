@@ -0,0 +1,102 @@
+package com.example.dashpod.telemetry;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BpmStatisticsTest {
+
+    @Test
+    public void runningStatsMatchTwoPassComputation() {
+        Random random = new Random(7);
+        double[] values = new double[5000];
+        RunningStats stats = new RunningStats();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 12 + random.nextGaussian() * 4;
+            stats.add(values[i]);
+        }
+
+        double sum = 0, min = Double.MAX_VALUE, max = -Double.MAX_VALUE;
+        for (double v : values) {
+            sum += v;
+            min = Math.min(min, v);
+            max = Math.max(max, v);
+        }
+        double mean = sum / values.length;
+        double squares = 0;
+        for (double v : values) {
+            squares += (v - mean) * (v - mean);
+        }
+
+        assertEquals(values.length, stats.getCount());
+        assertEquals(mean, stats.getMean(), 1e-9);
+        assertEquals(squares / values.length, stats.getVariance(), 1e-9);
+        assertEquals(min, stats.getMin(), 0);
+        assertEquals(max, stats.getMax(), 0);
+    }
+
+    @Test
+    public void mergedStatsMatchSingleStream() {
+        Random random = new Random(11);
+        RunningStats all = new RunningStats();
+        RunningStats first = new RunningStats();
+        RunningStats second = new RunningStats();
+        for (int i = 0; i < 3000; i++) {
+            double value = random.nextGaussian() * 3 + (i < 1000 ? 10 : 20);
+            all.add(value);
+            (i < 1000 ? first : second).add(value);
+        }
+        RunningStats merged = new RunningStats();
+        merged.merge(first);
+        merged.merge(second);
+        merged.merge(new RunningStats());
+
+        assertEquals(all.getCount(), merged.getCount());
+        assertEquals(all.getMean(), merged.getMean(), 1e-9);
+        assertEquals(all.getVariance(), merged.getVariance(), 1e-9);
+        assertEquals(all.getMin(), merged.getMin(), 0);
+        assertEquals(all.getMax(), merged.getMax(), 0);
+    }
+
+    @Test
+    public void emptyStatsAreZeroMeanAndNaNRange() {
+        RunningStats stats = new RunningStats();
+        assertTrue(stats.isEmpty());
+        assertEquals(0, stats.getMean(), 0);
+        assertEquals(0, stats.getVariance(), 0);
+        assertTrue(Double.isNaN(stats.getMin()));
+    }
+
+    @Test
+    public void splitsSamplesIntoTumblingWindows() {
+        BpmStatistics statistics = new BpmStatistics(60_000, 4);
+        statistics.add(1_000, 10f);
+        statistics.add(59_999, 20f);
+        statistics.add(60_000, 30f);
+        statistics.add(119_000, 50f);
+
+        assertEquals(1, statistics.getCurrentWindow());
+        assertEquals(15.0, statistics.getWindow(0).getMean(), 1e-9);
+        assertEquals(40.0, statistics.getWindow(1).getMean(), 1e-9);
+        assertEquals(27.5, statistics.getOverall().getMean(), 1e-9);
+        assertNull(statistics.getWindow(2));
+    }
+
+    @Test
+    public void keepsOnlyRecentWindowsAndClearsSkippedOnes() {
+        BpmStatistics statistics = new BpmStatistics(1_000, 3);
+        for (int second = 0; second < 10; second++) {
+            statistics.add(second * 1_000L, second);
+        }
+        assertNull(statistics.getWindow(6));
+        assertEquals(7.0, statistics.getWindow(7).getMean(), 0);
+
+        statistics.add(12_500, 99f);
+        assertTrue(statistics.getWindow(11).isEmpty());
+        assertTrue(statistics.getWindow(10).isEmpty());
+        assertNull(statistics.getWindow(9));
+        assertEquals(11, statistics.getOverall().getCount());
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.dashpod.telemetry;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CompressedSeriesStoreTest {
+
+    @Test
+    public void roundTripsRowsExactlyAcrossChunks() {
+        CompressedSeriesStore store = new CompressedSeriesStore(4, 100);
+        Random random = new Random(7);
+        List<long[]> expected = new ArrayList<>();
+        long time = 1_700_000_000_000L;
+        float[] values = new float[4];
+        for (int i = 0; i < 1050; i++) {
+            // Steady rate with jitter, repeated timestamps and the odd long gap
+            time += i % 97 == 0 ? 250_000 : i % 3 == 0 ? 0 : 10 + random.nextInt(5);
+            values[0] = (float) Math.sin(i / 50.0) * 180;
+            values[1] = random.nextFloat();
+            values[2] = i % 10 == 0 ? Float.NaN : -values[0];
+            values[3] = i < 500 ? 0f : Float.MAX_VALUE;
+            store.append(time, values);
+            expected.add(row(time, values));
+        }
+
+        assertEquals(1050, store.size());
+        assertEquals(10, store.getSealedChunks());
+        assertTrue(store.chunkData(0).isReadOnly());
+        List<long[]> rows = collect(store, Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(expected.size(), rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            assertArrayEquals("row " + i, expected.get(i), rows.get(i));
+        }
+    }
+
+    @Test
+    public void queriesOnlyRowsInRangeIncludingOpenChunk() {
+        CompressedSeriesStore store = new CompressedSeriesStore(3, 64);
+        for (int i = 0; i < 1000; i++) {
+            store.append(i * 10L, i, i * 2f, i * 3f);
+        }
+
+        List<long[]> rows = collect(store, 5000, 5100);
+        assertEquals(10, rows.size());
+        assertEquals(5000, rows.get(0)[0]);
+        assertEquals(5090, rows.get(9)[0]);
+        assertEquals(Float.floatToRawIntBits(509f * 3), rows.get(9)[3]);
+
+        // The last 40 rows have not been sealed yet
+        assertEquals(15, collect(store, 9845, Long.MAX_VALUE).size());
+        assertEquals(0, collect(store, 10_000, 20_000).size());
+        assertEquals(1000, store.queryAll((time, values) -> { }));
+
+        // By row index, across a chunk boundary and into the open chunk
+        List<long[]> byRow = new ArrayList<>();
+        assertEquals(20, store.queryRows(630, 650, (time, values) -> byRow.add(row(time, values))));
+        assertEquals(6300, byRow.get(0)[0]);
+        assertEquals(6490, byRow.get(19)[0]);
+        assertEquals(10, store.queryRows(990, 2000, (time, values) -> { }));
+    }
+
+    @Test
+    public void storesEarlierTimestampAsLatest() {
+        CompressedSeriesStore store = new CompressedSeriesStore(3, 2);
+        store.append(100, 1f, 2f, 3f);
+        store.append(200, 1f, 2f, 3f);
+        store.append(150, 4f, 5f, 6f);
+        store.append(90, 7f, 8f, 9f);
+
+        List<long[]> rows = collect(store, Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(200, rows.get(2)[0]);
+        assertEquals(200, rows.get(3)[0]);
+        assertEquals(200, store.lastTime());
+    }
+
+    @Test
+    public void compressesAnHourOfImuDataToAFewMegabytes() {
+        CompressedSeriesStore euler = new CompressedSeriesStore(3);
+        CompressedSeriesStore quaternion = new CompressedSeriesStore(4);
+        Random random = new Random(1);
+        long time = 1_700_000_000_000L;
+        for (int i = 0; i < 360_000; i++) {
+            time += 10;
+            double angle = i / 3000.0;
+            // The BNO055 reports Euler angles in 1/16 degree and quaternions in 1/16384
+            euler.append(time, quantize(180 + 170 * Math.sin(angle), 16),
+                    quantize(20 * Math.sin(angle * 3) + random.nextGaussian() * 0.2, 16),
+                    quantize(10 * Math.cos(angle * 2) + random.nextGaussian() * 0.2, 16));
+            quaternion.append(time, quantize(Math.cos(angle), 16384),
+                    quantize(0.1 * Math.sin(angle * 3), 16384),
+                    quantize(0.05 * Math.cos(angle * 2), 16384),
+                    quantize(Math.sin(angle), 16384));
+        }
+
+        long bytes = euler.getCompressedBytes() + quaternion.getCompressedBytes();
+        assertTrue("compressed to " + bytes, bytes < 5 * 1024 * 1024);
+        assertEquals(100, collect(euler, time - 1000, time).size());
+    }
+
+    private static float quantize(double value, int steps) {
+        return Math.round(value * steps) / (float) steps;
+    }
+
+    private static List<long[]> collect(CompressedSeriesStore store, long from, long to) {
+        List<long[]> rows = new ArrayList<>();
+        store.query(from, to, (time, values) -> rows.add(row(time, values)));
+        return rows;
+    }
+
+    private static long[] row(long time, float[] values) {
+        long[] row = new long[values.length + 1];
+        row[0] = time;
+        for (int c = 0; c < values.length; c++) {
+            row[c + 1] = Float.floatToRawIntBits(values[c]);
+        }
+        return row;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.dashpod.telemetry;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FloatSeriesBufferTest {
+
+    @Test
+    public void keepsRowsInOrderBeforeWrapping() {
+        FloatSeriesBuffer series = new FloatSeriesBuffer(3, 4);
+        series.append(100L, 1f, 2f, 3f);
+        series.append(200L, 4f, 5f, 6f);
+
+        assertEquals(2, series.size());
+        assertEquals(100L, series.timeAt(0));
+        assertEquals(3f, series.get(2, 0), 0f);
+        assertEquals(4f, series.get(0, 1), 0f);
+    }
+
+    @Test
+    public void overwritesOldestRowWhenFull() {
+        FloatSeriesBuffer series = new FloatSeriesBuffer(4, 3);
+        for (int i = 0; i < 7; i++) {
+            series.append(i, i, -i, i * 2f, i * 3f);
+        }
+
+        assertEquals(3, series.size());
+        assertEquals(7L, series.getTotalAppended());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(4L + i, series.timeAt(i));
+            assertEquals(4f + i, series.get(0, i), 0f);
+            assertEquals(-(4f + i), series.get(1, i), 0f);
+            assertEquals((4f + i) * 3f, series.get(3, i), 0f);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsWrongChannelCount() {
+        new FloatSeriesBuffer(3, 4).append(0L, 1f, 2f, 3f, 4f);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rejectsIndexPastSize() {
+        FloatSeriesBuffer series = new FloatSeriesBuffer(1, 4);
+        series.append(0L, new float[]{1f});
+        series.get(0, 1);
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.dashpod.telemetry;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MacAddressTest {
+
+    private static final String ADDRESS = "C0:FF:EE:12:34:56";
+
+    @Test
+    public void packsIntoTheLow48Bits() {
+        assertEquals(0xC0FFEE123456L, MacAddress.parse(ADDRESS));
+        assertEquals(ADDRESS, MacAddress.format(MacAddress.parse("c0:ff:ee:12:34:56")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsShortAddresses() {
+        MacAddress.parse("C0:FF:EE:12:34");
+    }
+}
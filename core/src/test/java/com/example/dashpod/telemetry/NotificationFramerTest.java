@@ -0,0 +1,96 @@
+package com.example.dashpod.telemetry;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class NotificationFramerTest {
+
+    private final NotificationFramer framer = new NotificationFramer(64);
+    private final List<String> frames = new ArrayList<>();
+    private final NotificationFramer.FrameSink sink = (data, offset, length, timestamp) ->
+            frames.add(new String(data, offset, length, StandardCharsets.ISO_8859_1));
+
+    @Test
+    public void passesUnterminatedNotificationsThroughWhole() {
+        push("{\"EX\":1,\"EY\":2,\"EZ\":3}");
+        push("  14 bpm ");
+        assertEquals(Arrays.asList("{\"EX\":1,\"EY\":2,\"EZ\":3}", "14 bpm"), frames);
+    }
+
+    @Test
+    public void splitsCoalescedLines() {
+        push("{\"EX\":1,\"EY\":2,\"EZ\":3}\r\n{\"EX\":4,\"EY\":5,\"EZ\":6}\r\n\r\n15 bpm\n");
+        assertEquals(Arrays.asList("{\"EX\":1,\"EY\":2,\"EZ\":3}", "{\"EX\":4,\"EY\":5,\"EZ\":6}", "15 bpm"), frames);
+    }
+
+    @Test
+    public void reassemblesLineSplitAcrossNotifications() {
+        push("first\n{\"QW\":1,\"QX\"");
+        push(":0,\"QY\":0,");
+        push("\"QZ\":0}\nsec");
+        push("ond\n");
+        assertEquals(Arrays.asList("first", "{\"QW\":1,\"QX\":0,\"QY\":0,\"QZ\":0}", "second"), frames);
+        assertEquals(3, framer.getFrames());
+    }
+
+    @Test
+    public void reassemblesBinaryRecordSplitAcrossNotifications() {
+        byte[] record = new byte[BinaryFrameDecoder.recordLength(BinaryFrameDecoder.TYPE_EULER_QUATERNION)];
+        record[0] = (byte) BinaryFrameDecoder.TYPE_EULER_QUATERNION;
+        for (int i = 1; i < record.length; i++) record[i] = (byte) i;
+
+        byte[] twoAndAHalf = new byte[record.length * 2 + 5];
+        System.arraycopy(record, 0, twoAndAHalf, 0, record.length);
+        System.arraycopy(record, 0, twoAndAHalf, record.length, record.length);
+        System.arraycopy(record, 0, twoAndAHalf, record.length * 2, 5);
+        framer.push(twoAndAHalf, 0, twoAndAHalf.length, 0L, sink);
+        assertEquals(2, frames.size());
+
+        framer.push(record, 5, record.length - 5, 0L, sink);
+        assertEquals(3, frames.size());
+        for (String frame : frames) {
+            assertArrayEquals(record, frame.getBytes(StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    @Test
+    public void newlineByteInsideBinaryRecordKeepsUnterminatedText() {
+        byte[] record = new byte[BinaryFrameDecoder.recordLength(BinaryFrameDecoder.TYPE_EULER)];
+        record[0] = (byte) BinaryFrameDecoder.TYPE_EULER;
+        record[3] = '\n';
+        framer.push(record, 0, record.length, 0L, sink);
+        push("14 bpm");
+        assertEquals(2, frames.size());
+        assertEquals("14 bpm", frames.get(1));
+    }
+
+    @Test
+    public void resetDropsPartialLine() {
+        push("first\nhalf a li");
+        framer.reset();
+        push("14 bpm");
+        assertEquals(Arrays.asList("first", "14 bpm"), frames);
+    }
+
+    @Test
+    public void dropsOversizedLineAndResynchronises() {
+        push("ok\n");
+        char[] longLine = new char[100];
+        Arrays.fill(longLine, 'x');
+        push(new String(longLine));
+        push("still too long\nnext\n");
+        assertEquals(Arrays.asList("ok", "next"), frames);
+        assertTrue(framer.getDiscardedBytes() > 100);
+    }
+
+    private void push(String text) {
+        byte[] data = text.getBytes(StandardCharsets.ISO_8859_1);
+        framer.push(data, 0, data.length, 0L, sink);
+    }
+}
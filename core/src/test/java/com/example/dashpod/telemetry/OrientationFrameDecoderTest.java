@@ -0,0 +1,134 @@
+package com.example.dashpod.telemetry;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks OrientationFrameDecoder against the regexes DeviceActivity used before it.
+ */
+public class OrientationFrameDecoderTest {
+
+    private static final Pattern EULER_PATTERN = Pattern.compile("\\{\"EX\"\\s*:\\s*([-]?\\d*\\.?\\d+),\\s*\"EY\"\\s*:\\s*([-]?\\d*\\.?\\d+),\\s*\"EZ\"\\s*:\\s*([-]?\\d*\\.?\\d+)\\}");
+    private static final Pattern QUAT_PATTERN = Pattern.compile("\\{\"QW\"\\s*:\\s*([-]?\\d*\\.?\\d+),\\s*\"QX\"\\s*:\\s*([-]?\\d*\\.?\\d+),\\s*\"QY\"\\s*:\\s*([-]?\\d*\\.?\\d+),\\s*\"QZ\"\\s*:\\s*([-]?\\d*\\.?\\d+)\\}");
+
+    private final OrientationFrameDecoder decoder = new OrientationFrameDecoder();
+
+    @Test
+    public void decodesEulerRecord() {
+        int found = decode("{\"EX\":359.9375,\"EY\":-2.5,\"EZ\":0.0625}");
+        assertEquals(OrientationFrameDecoder.EULER, found);
+        assertEquals(359.9375f, decoder.getYaw(), 0f);
+        assertEquals(-2.5f, decoder.getPitch(), 0f);
+        assertEquals(0.0625f, decoder.getRoll(), 0f);
+    }
+
+    @Test
+    public void decodesQuaternionRecord() {
+        int found = decode("{\"QW\":0.7071,\"QX\":-0.0012,\"QY\":0.7071,\"QZ\":.5}");
+        assertEquals(OrientationFrameDecoder.QUATERNION, found);
+        assertEquals(0.7071f, decoder.getQw(), 0f);
+        assertEquals(-0.0012f, decoder.getQx(), 0f);
+        assertEquals(0.7071f, decoder.getQy(), 0f);
+        assertEquals(0.5f, decoder.getQz(), 0f);
+    }
+
+    @Test
+    public void decodesBothRecordsInOneNotification() {
+        int found = decode("{\"EX\":1,\"EY\":2,\"EZ\":3}\n{\"QW\":1,\"QX\":0,\"QY\":0,\"QZ\":0}\r\n");
+        assertEquals(OrientationFrameDecoder.EULER | OrientationFrameDecoder.QUATERNION, found);
+        assertEquals(3f, decoder.getRoll(), 0f);
+        assertEquals(1f, decoder.getQw(), 0f);
+    }
+
+    @Test
+    public void matchesRegexOnEdgeCases() {
+        String[] messages = {
+                "",
+                "BPM: 14 bpm",
+                "{\"EX\" : 1.5 ,\"EY\":2,\"EZ\":3}",
+                "{\"EX\" :\t1.5,\n\"EY\"  :  -0.0,  \"EZ\":3}",
+                "{\"EX\":1.,\"EY\":2,\"EZ\":3}",
+                "{\"EX\":1.2.3,\"EY\":2,\"EZ\":3}",
+                "{\"EX\":--1,\"EY\":2,\"EZ\":3}",
+                "{\"EX\":+1,\"EY\":2,\"EZ\":3}",
+                "{\"EX\":1e3,\"EY\":2,\"EZ\":3}",
+                "{\"EX\":1,\"EY\":2,\"EZ\":3 }",
+                "{\"EX\":1,\"EY\":2}",
+                "{\"EX\":1,\"EY\":2,\"EZ\":3",
+                "{{\"EX\":-.25,\"EY\":00012.50,\"EZ\":3}",
+                "{\"EX\":x,\"EY\":2,\"EZ\":3} {\"EX\":4,\"EY\":5,\"EZ\":6}",
+                "{\"EX\":123456789.123456789,\"EY\":0.00000000001,\"EZ\":16777217}",
+                "{\"QW\":1,\"QX\":2,\"QY\":3}",
+                "noise{\"QW\":0.1,\"QX\":0.2,\"QY\":0.3,\"QZ\":0.4}noise",
+        };
+        for (String message : messages) {
+            assertMatchesRegex(message);
+        }
+    }
+
+    @Test
+    public void matchesRegexOnRandomFirmwareValues() {
+        Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            String euler = String.format(Locale.US, "{\"EX\":%s,\"EY\":%s,\"EZ\":%s}",
+                    randomNumber(random, 360), randomNumber(random, 180), randomNumber(random, 90));
+            String quat = String.format(Locale.US, "{\"QW\":%s,\"QX\":%s,\"QY\":%s,\"QZ\":%s}",
+                    randomNumber(random, 1), randomNumber(random, 1), randomNumber(random, 1), randomNumber(random, 1));
+            assertMatchesRegex(euler);
+            assertMatchesRegex(quat);
+            assertMatchesRegex(euler + quat);
+        }
+    }
+
+    @Test
+    public void decodesWithinSlice() {
+        byte[] data = "xx{\"EX\":1,\"EY\":2,\"EZ\":3}xx".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(OrientationFrameDecoder.NONE, decoder.decode(data, 0, data.length - 4));
+        assertEquals(OrientationFrameDecoder.EULER, decoder.decode(data, 2, data.length - 4));
+    }
+
+    private static String randomNumber(Random random, float range) {
+        float value = (random.nextFloat() * 2f - 1f) * range;
+        int decimals = random.nextInt(7);
+        String formatted = String.format(Locale.US, "%." + decimals + "f", value);
+        if (random.nextInt(20) == 0) {
+            formatted = Float.toString(value);
+        }
+        return formatted;
+    }
+
+    private int decode(String message) {
+        byte[] data = message.getBytes(StandardCharsets.UTF_8);
+        return decoder.decode(data, 0, data.length);
+    }
+
+    private void assertMatchesRegex(String message) {
+        int found = decode(message);
+
+        Matcher euler = EULER_PATTERN.matcher(message);
+        boolean eulerFound = euler.find();
+        assertEquals(message, eulerFound, (found & OrientationFrameDecoder.EULER) != 0);
+        if (eulerFound) {
+            assertEquals(message, Float.parseFloat(euler.group(1)), decoder.getYaw(), 0f);
+            assertEquals(message, Float.parseFloat(euler.group(2)), decoder.getPitch(), 0f);
+            assertEquals(message, Float.parseFloat(euler.group(3)), decoder.getRoll(), 0f);
+        }
+
+        Matcher quat = QUAT_PATTERN.matcher(message);
+        boolean quatFound = quat.find();
+        assertEquals(message, quatFound, (found & OrientationFrameDecoder.QUATERNION) != 0);
+        if (quatFound) {
+            assertEquals(message, Float.parseFloat(quat.group(1)), decoder.getQw(), 0f);
+            assertEquals(message, Float.parseFloat(quat.group(2)), decoder.getQx(), 0f);
+            assertEquals(message, Float.parseFloat(quat.group(3)), decoder.getQy(), 0f);
+            assertEquals(message, Float.parseFloat(quat.group(4)), decoder.getQz(), 0f);
+        }
+    }
+}
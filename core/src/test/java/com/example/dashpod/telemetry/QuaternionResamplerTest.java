@@ -0,0 +1,107 @@
+package com.example.dashpod.telemetry;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class QuaternionResamplerTest {
+
+    private final List<long[]> timestamps = new ArrayList<>();
+    private final List<float[]> samples = new ArrayList<>();
+    private final QuaternionResampler.Sink sink = (timestamp, qw, qx, qy, qz) -> {
+        timestamps.add(new long[]{timestamp});
+        samples.add(new float[]{qw, qx, qy, qz});
+    };
+
+    @Test
+    public void upsamplesAlongTheArc() {
+        QuaternionResampler resampler = new QuaternionResampler(10, 1f);
+        resampler.push(0, 1, 0, 0, 0, sink);
+        resampler.push(40, (float) Math.cos(Math.toRadians(45)), 0, 0, (float) Math.sin(Math.toRadians(45)), sink);
+        assertEquals(1, timestamps.size());
+        // The 40 ms sample is emitted once a later timestamp shows it is complete
+        assertEquals(4, resampler.push(50, 1, 0, 0, 0, sink));
+
+        float[] euler = new float[3];
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i * 10L, timestamps.get(i)[0]);
+            float[] q = samples.get(i);
+            Quaternions.toEuler(q[0], q[1], q[2], q[3], euler);
+            assertEquals(i * 22.5f, euler[0], 0.01f);
+        }
+    }
+
+    @Test
+    public void downsamplesAndFoldsSharedTimestamps() {
+        QuaternionResampler resampler = new QuaternionResampler(20, 1f);
+        for (int t = 0; t <= 100; t += 5) {
+            resampler.push(t, 1, 0, 0, 0, sink);
+            // A second record in the same notification
+            resampler.push(t, 1, 0, 0, 0, sink);
+        }
+        assertEquals(5, timestamps.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i * 20L, timestamps.get(i)[0]);
+        }
+    }
+
+    @Test
+    public void smoothsWithoutFillingLongGaps() {
+        QuaternionResampler resampler = new QuaternionResampler(0, 0.5f);
+        float[] turned = {0, 0, 0, 1}; // 180 degrees about z
+        resampler.push(0, 1, 0, 0, 0, sink);
+        resampler.push(10, turned[0], turned[1], turned[2], turned[3], sink);
+        resampler.push(20, turned[0], turned[1], turned[2], turned[3], sink);
+        resampler.push(30, 1, 0, 0, 0, sink);
+        assertEquals(3, samples.size());
+        float[] euler = new float[3];
+        float[] q = samples.get(1);
+        Quaternions.toEuler(q[0], q[1], q[2], q[3], euler);
+        assertEquals(90f, euler[0], 0.01f);
+        q = samples.get(2);
+        Quaternions.toEuler(q[0], q[1], q[2], q[3], euler);
+        assertEquals(135f, euler[0], 0.01f);
+
+        timestamps.clear();
+        QuaternionResampler gridded = new QuaternionResampler(10, 1f);
+        gridded.push(0, 1, 0, 0, 0, sink);
+        gridded.push(10_000, 1, 0, 0, 0, sink);
+        gridded.push(10_010, 1, 0, 0, 0, sink);
+        assertEquals(2, timestamps.size());
+        assertEquals(10_000L, timestamps.get(1)[0]);
+    }
+
+    @Test
+    public void decoderDerivesEulerFromQuaternionOnlyRecords() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // Quaternion-only binary record: 90 degrees about z
+        int half = Math.round(16384 * (float) Math.sqrt(0.5));
+        out.write(BinaryFrameDecoder.TYPE_QUATERNION);
+        out.write(1);
+        out.write(0);
+        for (int value : new int[]{half, 0, 0, half}) {
+            out.write(value & 0xFF);
+            out.write((value >> 8) & 0xFF);
+        }
+        byte[] data = out.toByteArray();
+        OrientationTelemetryDecoder decoder = new OrientationTelemetryDecoder();
+        OrientationBatch batch = new OrientationBatch(8, 1);
+
+        decoder.decode(data, 0, data.length, 1000L, batch);
+        assertEquals(1, batch.size());
+        assertEquals(OrientationFrameDecoder.EULER | OrientationFrameDecoder.QUATERNION, batch.recordsAt(0));
+        assertEquals(90f, batch.yawAt(0), 0.01f);
+        assertEquals(0f, batch.pitchAt(0), 0.01f);
+        assertEquals(1, decoder.getDerivedSamples());
+
+        // Firmware Euler angles are kept when no resampler is set
+        byte[] json = "{\"EX\":10,\"EY\":0,\"EZ\":0}{\"QW\":1,\"QX\":0,\"QY\":0,\"QZ\":0}".getBytes();
+        decoder.decode(json, 0, json.length, 1010L, batch);
+        assertEquals(10f, batch.yawAt(1), 0f);
+        assertEquals(1, decoder.getDerivedSamples());
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.dashpod.telemetry;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class QuaternionsTest {
+
+    private static final float HALF = (float) Math.sqrt(0.5);
+
+    private final float[] euler = new float[3];
+
+    @Test
+    public void derivesEulerAnglesOfSingleAxisTurns() {
+        Quaternions.toEuler(1, 0, 0, 0, euler);
+        assertEuler(0, 0, 0);
+
+        // 90 degrees about z, heading wraps into [0, 360)
+        Quaternions.toEuler(HALF, 0, 0, HALF, euler);
+        assertEuler(90, 0, 0);
+        Quaternions.toEuler(HALF, 0, 0, -HALF, euler);
+        assertEuler(270, 0, 0);
+
+        Quaternions.toEuler(HALF, 0, HALF / 2, 0, euler); // Not normalised, a 53.13 degree turn about y
+        assertEuler(0, 53.13f, 0);
+        Quaternions.toEuler(HALF, -HALF, 0, 0, euler);
+        assertEuler(0, 0, -90);
+    }
+
+    @Test
+    public void foldsGimbalLockIntoYaw() {
+        // 90 degrees pitch after 30 degrees yaw: roll is ambiguous and reported as 0
+        float[] yaw = {(float) Math.cos(Math.toRadians(15)), 0, 0, (float) Math.sin(Math.toRadians(15))};
+        float[] pitch = {HALF, 0, HALF, 0};
+        float[] q = multiply(yaw, pitch);
+        Quaternions.toEuler(q[0], q[1], q[2], q[3], euler);
+        assertEuler(30, 90, 0);
+    }
+
+    @Test
+    public void slerpsAlongShorterArc() {
+        float[] identity = {1, 0, 0, 0};
+        float[] quarterTurn = {HALF, 0, 0, HALF};
+        float[] out = new float[4];
+
+        Quaternions.slerp(identity, quarterTurn, 0.5f, out);
+        Quaternions.toEuler(out[0], out[1], out[2], out[3], euler);
+        assertEuler(45, 0, 0);
+        assertEquals(1f, norm(out), 1e-6f);
+
+        // The same quarter turn with the opposite sign must not take the long way round
+        float[] negated = {-HALF, 0, 0, -HALF};
+        Quaternions.slerp(identity, negated, 0.5f, out);
+        Quaternions.toEuler(out[0], out[1], out[2], out[3], euler);
+        assertEuler(45, 0, 0);
+
+        Quaternions.slerp(quarterTurn, quarterTurn, 0.3f, out);
+        assertArrayEquals(quarterTurn, out, 1e-6f);
+    }
+
+    private void assertEuler(float yaw, float pitch, float roll) {
+        assertEquals(yaw, euler[0], 0.01f);
+        assertEquals(pitch, euler[1], 0.01f);
+        assertEquals(roll, euler[2], 0.01f);
+    }
+
+    private static float norm(float[] q) {
+        return (float) Math.sqrt(q[0] * q[0] + q[1] * q[1] + q[2] * q[2] + q[3] * q[3]);
+    }
+
+    private static float[] multiply(float[] a, float[] b) {
+        return new float[]{
+                a[0] * b[0] - a[1] * b[1] - a[2] * b[2] - a[3] * b[3],
+                a[0] * b[1] + a[1] * b[0] + a[2] * b[3] - a[3] * b[2],
+                a[0] * b[2] - a[1] * b[3] + a[2] * b[0] + a[3] * b[1],
+                a[0] * b[3] + a[1] * b[2] - a[2] * b[1] + a[3] * b[0]
+        };
+    }
+}
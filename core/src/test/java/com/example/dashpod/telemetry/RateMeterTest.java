@@ -0,0 +1,26 @@
+package com.example.dashpod.telemetry;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RateMeterTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    public void smoothsIrregularIntervals() {
+        RateMeter meter = new RateMeter(0.5);
+        assertEquals(0, meter.update(0, 0), 0);
+        assertEquals(100, meter.update(100, SECOND), 1e-9);
+        // 100 packets over half a second is 200/s, blended halfway
+        assertEquals(150, meter.update(200, SECOND + SECOND / 2), 1e-9);
+        // A repeated reading at the same time changes nothing
+        assertEquals(150, meter.update(250, SECOND + SECOND / 2), 1e-9);
+
+        meter.reset();
+        assertEquals(0, meter.getRate(), 0);
+        meter.update(1000, 5 * SECOND);
+        assertEquals(10, meter.update(1010, 6 * SECOND), 1e-9);
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.dashpod.telemetry;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SeriesDecimatorTest {
+
+    @Test
+    public void lttbKeepsEndsAndSpikesWithinBudget() {
+        FloatSeriesBuffer series = sine(10_000);
+        // A one-sample spike, e.g. a knock on the sensor
+        series.append(10_000, 50f, 0f, 0f);
+        for (int i = 0; i < 1000; i++) {
+            series.append(10_001 + i, (float) Math.sin(i / 100.0), 0f, 0f);
+        }
+        int spike = 10_000;
+
+        int[] rows = new int[300];
+        int count = SeriesDecimator.decimate(series, 0, 0, series.size(), 300, SeriesDecimator.Mode.LTTB, rows, 0);
+        assertEquals(300, count);
+        assertEquals(0, rows[0]);
+        assertEquals(series.size() - 1, rows[count - 1]);
+        assertAscending(rows, count);
+        assertTrue(contains(rows, count, spike));
+    }
+
+    @Test
+    public void minMaxKeepsExtremesOfEveryBucket() {
+        FloatSeriesBuffer series = sine(10_000);
+        int[] rows = new int[102];
+        int count = SeriesDecimator.decimate(series, 0, 1000, 9000, 102, SeriesDecimator.Mode.MIN_MAX, rows, 0);
+        assertTrue(count <= 102);
+        assertEquals(1000, rows[0]);
+        assertEquals(8999, rows[count - 1]);
+        assertAscending(rows, count);
+
+        float min = Float.MAX_VALUE, max = -Float.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            min = Math.min(min, series.get(0, rows[i]));
+            max = Math.max(max, series.get(0, rows[i]));
+        }
+        assertEquals(-1f, min, 1e-3f);
+        assertEquals(1f, max, 1e-3f);
+    }
+
+    @Test
+    public void copiesShortRangesAndWritesAtOffset() {
+        FloatSeriesBuffer series = sine(50);
+        int[] rows = new int[64];
+        assertEquals(10, SeriesDecimator.decimate(series, 1, 20, 30, 32, SeriesDecimator.Mode.LTTB, rows, 4));
+        for (int i = 0; i < 10; i++) {
+            assertEquals(20 + i, rows[4 + i]);
+        }
+        assertEquals(0, SeriesDecimator.decimate(series, 1, 30, 30, 32, SeriesDecimator.Mode.MIN_MAX, rows, 0));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rejectsRangeBeyondSeries() {
+        SeriesDecimator.decimate(sine(10), 0, 0, 11, 4, SeriesDecimator.Mode.LTTB, new int[4], 0);
+    }
+
+    private static FloatSeriesBuffer sine(int rows) {
+        FloatSeriesBuffer series = new FloatSeriesBuffer(3, 20_000);
+        for (int i = 0; i < rows; i++) {
+            series.append(i, (float) Math.sin(i / 100.0), (float) Math.cos(i / 100.0), i);
+        }
+        return series;
+    }
+
+    private static boolean contains(int[] rows, int count, int row) {
+        for (int i = 0; i < count; i++) {
+            if (rows[i] == row) return true;
+        }
+        return false;
+    }
+
+    private static void assertAscending(int[] rows, int count) {
+        for (int i = 1; i < count; i++) {
+            assertTrue(rows[i] > rows[i - 1]);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.dashpod.telemetry;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SeriesHistoryTest {
+
+    private static final int ROWS = 10_000;
+    private static final int SPIKE = 1234;
+
+    private final SeriesHistory history = filled();
+    private final float[] xs = new float[512];
+    private final float[] ys = new float[512];
+
+    @Test
+    public void keepsOnlyTheNewestRowsRaw() {
+        assertEquals(ROWS, history.size());
+        assertEquals(ROWS - 100, history.liveStart());
+        assertEquals(100, history.live().size());
+        assertEquals(1000L + 42 * 10L, history.timeAt(42));
+        assertEquals(1000L + (ROWS - 1) * 10L, history.timeAt(ROWS - 1));
+    }
+
+    @Test
+    public void wholeSessionFitsThePointsAndKeepsPeaks() {
+        int count = history.decimate(0, 0, ROWS, 200, SeriesDecimator.Mode.LTTB, xs, ys, 0);
+        assertTrue(count <= 200);
+        assertAscendingWithin(count, 0, ROWS);
+        assertContains(count, 1000f);
+        assertEquals(ROWS - 1, xs[count - 1], 0f);
+
+        // The negated channel's spike is a minimum
+        count = history.decimate(1, 0, ROWS, 200, SeriesDecimator.Mode.LTTB, xs, ys, 0);
+        assertContains(count, -1000f);
+    }
+
+    @Test
+    public void shortOlderRangesAreDecodedExactly() {
+        int count = history.decimate(2, 1200, 1300, 100, SeriesDecimator.Mode.LTTB, xs, ys, 0);
+        assertEquals(100, count);
+        for (int i = 0; i < count; i++) {
+            assertEquals(1200 + i, xs[i], 0f);
+            assertEquals(1200 + i, ys[i], 0f);
+        }
+
+        count = history.decimate(0, 1000, 1400, 100, SeriesDecimator.Mode.LTTB, xs, ys, 0);
+        assertTrue(count <= 100);
+        assertAscendingWithin(count, 1000, 1400);
+        assertContains(count, 1000f);
+    }
+
+    @Test
+    public void rangeAcrossTheLiveWindowJoinsBothParts() {
+        int count = history.decimate(2, ROWS - 300, ROWS, 60, SeriesDecimator.Mode.LTTB, xs, ys, 0);
+        assertTrue(count <= 60);
+        assertAscendingWithin(count, ROWS - 300, ROWS);
+        assertEquals(ROWS - 1, xs[count - 1], 0f);
+        assertEquals(ROWS - 1, ys[count - 1], 0f);
+        assertTrue(xs[0] < history.liveStart());
+    }
+
+    // Keeps the last 100 of 10,000 rows raw
+    private static SeriesHistory filled() {
+        SeriesHistory history = new SeriesHistory(3, 100);
+        for (int i = 0; i < ROWS; i++) {
+            history.append(1000L + i * 10L, value(i), -value(i), i);
+        }
+        return history;
+    }
+
+    private static float value(int i) {
+        return i == SPIKE ? 1000f : (float) Math.sin(i / 100.0) * 90;
+    }
+
+    private void assertAscendingWithin(int count, long from, long to) {
+        assertTrue(count > 0);
+        for (int i = 0; i < count; i++) {
+            assertTrue(xs[i] >= from && xs[i] < to);
+            if (i > 0) assertTrue("x " + i, xs[i] >= xs[i - 1]);
+        }
+    }
+
+    private void assertContains(int count, float value) {
+        for (int i = 0; i < count; i++) {
+            if (ys[i] == value) return;
+        }
+        fail("No point with value " + value);
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.dashpod.telemetry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SessionExporterTest {
+
+    private static final UUID TX = UUID.fromString("6e400003-b5a3-f393-e0a9-e50e24dcca9e");
+    private static final String ADDRESS = "C0:FF:EE:12:34:56";
+    private static final long SESSION_START = TimeUnit.SECONDS.toNanos(500);
+    private static final int MAX_FRAME_LENGTH = 512;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void exportsBpmSessionAsCsv() throws Exception {
+        recordBpmSession("bpm", 120);
+        File target = folder.newFolder("exports");
+
+        SessionExporter.Result result = SessionExporter.bpm(MAX_FRAME_LENGTH)
+                .export(folder.getRoot(), "bpm", SessionExporter.Format.CSV, target);
+
+        List<String> lines = Files.readAllLines(new File(target, "bpm.csv").toPath(), StandardCharsets.US_ASCII);
+        assertEquals(121, lines.size());
+        assertEquals("time_ms,bpm", lines.get(0));
+        assertEquals("0,12.5", lines.get(1));
+        assertEquals("119000,16.5", lines.get(120));
+        assertEquals(120, result.getRows());
+        assertEquals(121, result.getRecords());
+        assertEquals(new File(target, "bpm.csv").length(), result.getBytes());
+        assertFalse(new File(target, "bpm.csv.part").exists());
+    }
+
+    @Test
+    public void exportsOrientationSessionAsColumnarBlocks() throws Exception {
+        int samples = SessionExporter.BLOCK_ROWS + 100;
+        recordOrientationSession("imu", samples);
+        File target = folder.newFolder("exports");
+
+        SessionExporter.Result result = SessionExporter.orientation(MAX_FRAME_LENGTH)
+                .export(folder.getRoot(), "imu", SessionExporter.Format.COLUMNAR, target);
+        assertEquals(samples, result.getRows());
+        assertEquals(0, result.getLostRows());
+
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(new File(target, "imu.dpcx").toPath()))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(SessionExporter.MAGIC, data.getInt());
+        assertEquals(SessionExporter.VERSION, data.getShort());
+        assertEquals(7, data.getShort());
+        for (String name : new String[]{"yaw", "pitch", "roll", "qw", "qx", "qy", "qz"}) {
+            byte[] bytes = new byte[data.getShort()];
+            data.get(bytes);
+            assertEquals(name, new String(bytes, StandardCharsets.US_ASCII));
+        }
+
+        int rows = data.getInt();
+        assertEquals(SessionExporter.BLOCK_ROWS, rows);
+        int times = data.position();
+        int yaw = times + rows * 8;
+        int qw = yaw + 3 * rows * 4;
+        // Even samples are Euler text records, odd ones binary quaternions
+        assertEquals(0, data.getLong(times));
+        assertEquals(10, data.getLong(times + 8));
+        assertEquals(1f, data.getFloat(yaw), 0f);
+        assertTrue(Float.isNaN(data.getFloat(qw)));
+        assertEquals(1f, data.getFloat(qw + 4), 0f);
+        data.position(qw + 4 * rows * 4);
+
+        assertEquals(100, data.getInt());
+        data.position(data.position() + 100 * (8 + 7 * 4));
+        assertEquals(0, data.getInt());
+        assertFalse(data.hasRemaining());
+    }
+
+    @Test
+    public void exportsSessionsInParallel() throws Exception {
+        recordBpmSession("first", 300);
+        recordBpmSession("second", 200);
+        File target = folder.newFolder("exports");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<SessionExporter.Result>> exports = SessionExporter.bpm(MAX_FRAME_LENGTH).exportAll(
+                    folder.getRoot(), Arrays.asList("first", "second"), SessionExporter.Format.CSV, target, executor);
+            assertEquals(300, exports.get(0).get(5, TimeUnit.SECONDS).getRows());
+            assertEquals(200, exports.get(1).get(5, TimeUnit.SECONDS).getRows());
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(301, Files.readAllLines(new File(target, "first.csv").toPath()).size());
+        assertEquals(201, Files.readAllLines(new File(target, "second.csv").toPath()).size());
+    }
+
+    @Test
+    public void leavesNoFileForMissingSession() throws Exception {
+        File target = folder.newFolder("exports");
+        try {
+            SessionExporter.bpm(MAX_FRAME_LENGTH).export(folder.getRoot(), "missing", SessionExporter.Format.CSV, target);
+            fail();
+        } catch (FileNotFoundException expected) {
+            // The session has no segments
+        }
+        assertEquals(0, target.list().length);
+    }
+
+    private void recordBpmSession(String name, int samples) throws IOException {
+        try (SessionRecorder recorder = new SessionRecorder(folder.getRoot(), name,
+                SessionRecorder.DEFAULT_SEGMENT_SIZE, SESSION_START, 0)) {
+            for (int i = 0; i < samples; i++) {
+                byte[] line = ((12 + i % 5) + ".5 bpm\n").getBytes(StandardCharsets.US_ASCII);
+                recorder.record(SESSION_START + i * TimeUnit.SECONDS.toNanos(1), ADDRESS, TX, line, 0, line.length);
+            }
+            byte[] invalid = "-- bpm\n".getBytes(StandardCharsets.US_ASCII);
+            recorder.record(SESSION_START + TimeUnit.SECONDS.toNanos(samples), ADDRESS, TX, invalid, 0, invalid.length);
+        }
+    }
+
+    // Euler angles as JSON lines and quaternions as binary records, alternating every 10 ms
+    private void recordOrientationSession(String name, int samples) throws IOException {
+        try (SessionRecorder recorder = new SessionRecorder(folder.getRoot(), name,
+                64 * 1024, SESSION_START, 0)) {
+            for (int i = 0; i < samples; i++) {
+                long time = SESSION_START + i * TimeUnit.MILLISECONDS.toNanos(10);
+                if (i % 2 == 0) {
+                    byte[] line = ("{\"EX\":" + (1 + i) + ",\"EY\":2,\"EZ\":3}\n").getBytes(StandardCharsets.US_ASCII);
+                    recorder.record(time, ADDRESS, TX, line, 0, line.length);
+                } else {
+                    byte[] record = new byte[BinaryFrameDecoder.recordLength(BinaryFrameDecoder.TYPE_QUATERNION)];
+                    record[0] = (byte) BinaryFrameDecoder.TYPE_QUATERNION;
+                    record[1] = (byte) i;
+                    record[2] = (byte) (i >> 8);
+                    // qw of 1.0 in the BNO055's 1/16384 units
+                    record[3] = 0;
+                    record[4] = 0x40;
+                    recorder.record(time, ADDRESS, TX, record, 0, record.length);
+                }
+            }
+        }
+    }
+}
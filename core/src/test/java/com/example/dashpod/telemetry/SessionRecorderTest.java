@@ -0,0 +1,75 @@
+package com.example.dashpod.telemetry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class SessionRecorderTest {
+
+    private static final UUID TX = UUID.fromString("6e400003-b5a3-f393-e0a9-e50e24dcca9e");
+    private static final String ADDRESS = "C0:FF:EE:12:34:56";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsBackRecordsAcrossSegments() throws IOException {
+        File directory = folder.getRoot();
+        int segmentSize = SessionRecorder.SEGMENT_HEADER_LENGTH + 10 * (SessionRecorder.RECORD_HEADER_LENGTH + 20);
+        byte[] data = new byte[20];
+        try (SessionRecorder recorder = new SessionRecorder(directory, "imu", segmentSize, 1234L, 0)) {
+            for (int i = 0; i < 95; i++) {
+                data[0] = (byte) i;
+                assertTrue(recorder.record(1000L + i, ADDRESS, TX, data, 0, 1 + i % 20));
+            }
+            assertEquals(95, recorder.getRecordedFrames());
+            assertTrue(recorder.getSegmentCount() > 1);
+        }
+
+        try (SessionReader reader = new SessionReader(directory, "imu")) {
+            int count = 0;
+            while (reader.next()) {
+                assertEquals(1000L + count, reader.getTimestampNanos());
+                assertEquals(ADDRESS, MacAddress.format(reader.getAddress()));
+                assertEquals(TX, new UUID(reader.getCharacteristicMsb(), reader.getCharacteristicLsb()));
+                assertEquals(1 + count % 20, reader.getPayloadLength());
+                assertEquals((byte) count, reader.getPayload()[0]);
+                assertEquals(1234L, reader.getSessionStartNanos());
+                count++;
+            }
+            assertEquals(95, count);
+        }
+    }
+
+    @Test
+    public void closeTrimsLastSegment() throws IOException {
+        File directory = folder.getRoot();
+        byte[] data = {1, 2, 3};
+        try (SessionRecorder recorder = new SessionRecorder(directory, "bpm",
+                SessionRecorder.DEFAULT_SEGMENT_SIZE, 0L, 10)) {
+            recorder.record(1L, ADDRESS, TX, data, 0, data.length);
+            recorder.flush();
+        }
+        File segment = SessionRecorder.segmentFile(directory, "bpm", 0);
+        assertEquals(SessionRecorder.SEGMENT_HEADER_LENGTH + SessionRecorder.RECORD_HEADER_LENGTH + data.length,
+                segment.length());
+    }
+
+    @Test
+    public void dropsRecordsThatCannotFit() throws IOException {
+        int segmentSize = SessionRecorder.SEGMENT_HEADER_LENGTH + SessionRecorder.RECORD_HEADER_LENGTH + 8;
+        SessionRecorder recorder = new SessionRecorder(folder.getRoot(), "small", segmentSize, 0L, 0);
+        assertFalse(recorder.record(1L, ADDRESS, TX, new byte[9], 0, 9));
+        assertTrue(recorder.record(2L, ADDRESS, TX, new byte[8], 0, 8));
+        recorder.close();
+        assertFalse(recorder.record(3L, ADDRESS, TX, new byte[1], 0, 1));
+        assertEquals(2, recorder.getDroppedFrames());
+        assertEquals(1, recorder.getRecordedFrames());
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.dashpod.telemetry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SessionReplayTest {
+
+    private static final UUID TX = UUID.fromString("6e400003-b5a3-f393-e0a9-e50e24dcca9e");
+    private static final String ADDRESS = "C0:FF:EE:12:34:56";
+    private static final long SESSION_START = TimeUnit.SECONDS.toNanos(500);
+    private static final long FRAME_INTERVAL = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void replaysOrientationSessionDeterministically() throws Exception {
+        recordOrientationSession("imu", 2000);
+
+        List<String> first = replayOrientation("imu", 2000);
+        List<String> second = replayOrientation("imu", 2000);
+        assertEquals(2000, first.size());
+        assertEquals(first, second);
+        assertEquals("0 1 1.0 2.0 3.0", first.get(0));
+        assertEquals("19990 2 0.0 0.0 0.0", first.get(first.size() - 1));
+    }
+
+    @Test
+    public void pacesReplayRelativeToRecording() throws Exception {
+        int notifications = recordOrientationSession("paced", 50);
+        long recorded = 49 * FRAME_INTERVAL;
+
+        try (SessionReader reader = new SessionReader(folder.getRoot(), "paced")) {
+            List<Long> timestamps = new ArrayList<>();
+            SessionReplay.Report report = new SessionReplay(10).run(reader, (data, offset, length, timestamp) -> {
+                timestamps.add(timestamp);
+                return true;
+            });
+            assertEquals(notifications, report.getFrames());
+            assertEquals(recorded, report.getRecordedNanos());
+            assertTrue(report.getElapsedNanos() >= recorded / 10);
+            assertEquals(notifications, report.getSchedulingLag().getCount());
+            assertEquals(Long.valueOf(0), timestamps.get(0));
+            assertEquals(Long.valueOf(490), timestamps.get(notifications - 1));
+        }
+    }
+
+    @Test
+    public void replaysBpmSessionThroughPipeline() throws Exception {
+        try (SessionRecorder recorder = new SessionRecorder(folder.getRoot(), "bpm",
+                SessionRecorder.DEFAULT_SEGMENT_SIZE, SESSION_START, 0)) {
+            for (int i = 0; i < 120; i++) {
+                byte[] line = ((12 + i % 5) + ".5 bpm\n").getBytes(StandardCharsets.US_ASCII);
+                recorder.record(SESSION_START + i * TimeUnit.SECONDS.toNanos(1), ADDRESS, TX, line, 0, line.length);
+            }
+            byte[] invalid = "-- bpm\n".getBytes(StandardCharsets.US_ASCII);
+            recorder.record(SESSION_START + TimeUnit.SECONDS.toNanos(121), ADDRESS, TX, invalid, 0, invalid.length);
+        }
+
+        BpmTelemetryDecoder decoder = new BpmTelemetryDecoder();
+        BpmStatistics statistics = new BpmStatistics(60000, 2);
+        Holder<TelemetryPipeline<BpmBatch>> holder = new Holder<>();
+        holder.value = new TelemetryPipeline<>("replay-bpm", 64, 512,
+                () -> new BpmBatch(64, 64), new NotificationFramer(512), decoder, () -> {
+            BpmBatch batch = holder.value.acquireSnapshot();
+            for (int i = 0; i < batch.size(); i++) {
+                statistics.add(batch.timestampAt(i), batch.bpmAt(i));
+            }
+            holder.value.releaseSnapshot(batch);
+        });
+        TelemetryPipeline<BpmBatch> pipeline = holder.value;
+        pipeline.setStageTimingEnabled(true);
+        pipeline.start();
+        try (SessionReader reader = new SessionReader(folder.getRoot(), "bpm")) {
+            new SessionReplay(SessionReplay.AS_FAST_AS_POSSIBLE).run(reader, pipeline::offer);
+        }
+        awaitDecoded(pipeline, 121);
+        pipeline.stop();
+
+        assertEquals(120, statistics.getOverall().getCount());
+        assertEquals(14.5, statistics.getOverall().getMean(), 1e-9);
+        assertEquals(60, statistics.getWindow(1).getCount());
+        assertEquals(1, decoder.getInvalidLines());
+        assertEquals(121, pipeline.getQueueLatency().getCount());
+        assertEquals(121, pipeline.getDecodeTime().getCount());
+    }
+
+    /**
+     * Alternates JSON lines split over two notifications with binary records,
+     * one sample per 10 ms. Returns the number of notifications recorded.
+     */
+    private int recordOrientationSession(String name, int samples) throws IOException {
+        int notifications = 0;
+        try (SessionRecorder recorder = new SessionRecorder(folder.getRoot(), name,
+                64 * 1024, SESSION_START, 0)) {
+            for (int i = 0; i < samples; i++) {
+                long time = SESSION_START + i * FRAME_INTERVAL;
+                if (i % 2 == 0) {
+                    byte[] line = ("{\"EX\":" + (1 + i) + ",\"EY\":2,\"EZ\":3}\n").getBytes(StandardCharsets.US_ASCII);
+                    // The framer only reassembles once it has seen a newline, so the first line arrives whole
+                    int split = i == 0 ? line.length : 5;
+                    recorder.record(time, ADDRESS, TX, line, 0, split);
+                    if (split < line.length) {
+                        recorder.record(time, ADDRESS, TX, line, split, line.length - split);
+                        notifications++;
+                    }
+                } else {
+                    byte[] record = new byte[BinaryFrameDecoder.recordLength(BinaryFrameDecoder.TYPE_QUATERNION)];
+                    record[0] = (byte) BinaryFrameDecoder.TYPE_QUATERNION;
+                    record[1] = (byte) i;
+                    record[2] = (byte) (i >> 8);
+                    recorder.record(time, ADDRESS, TX, record, 0, record.length);
+                }
+                notifications++;
+            }
+        }
+        return notifications;
+    }
+
+    private List<String> replayOrientation(String name, int expectedFrames) throws Exception {
+        List<String> samples = new ArrayList<>();
+        Holder<TelemetryPipeline<OrientationBatch>> holder = new Holder<>();
+        holder.value = new TelemetryPipeline<>("replay-orientation", 256, 512,
+                () -> new OrientationBatch(4096, 16), new NotificationFramer(512),
+                new OrientationTelemetryDecoder(), () -> {
+            OrientationBatch batch = holder.value.acquireSnapshot();
+            synchronized (samples) {
+                for (int i = 0; i < batch.size(); i++) {
+                    boolean euler = (batch.recordsAt(i) & OrientationFrameDecoder.EULER) != 0;
+                    samples.add(batch.timestampAt(i) + " " + batch.recordsAt(i) + " "
+                            + (euler ? batch.yawAt(i) : batch.qxAt(i)) + " "
+                            + (euler ? batch.pitchAt(i) : batch.qyAt(i)) + " "
+                            + (euler ? batch.rollAt(i) : batch.qzAt(i)));
+                }
+            }
+            holder.value.releaseSnapshot(batch);
+        });
+        TelemetryPipeline<OrientationBatch> pipeline = holder.value;
+        pipeline.start();
+        SessionReplay.Report report;
+        try (SessionReader reader = new SessionReader(folder.getRoot(), name)) {
+            report = new SessionReplay(SessionReplay.AS_FAST_AS_POSSIBLE).run(reader, pipeline::offer);
+        }
+        assertEquals(0, report.getDroppedFrames());
+        assertTrue(report.toString(), report.getFramesPerSecond() > 0);
+        awaitDecoded(pipeline, expectedFrames);
+        pipeline.stop();
+        synchronized (samples) {
+            return new ArrayList<>(samples);
+        }
+    }
+
+    private static void awaitDecoded(TelemetryPipeline<?> pipeline, long frames) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (pipeline.getDecodedFrames() < frames || pipeline.getPublishedSnapshots() == 0) {
+            assertTrue("Timed out at " + pipeline.getDecodedFrames() + " frames", System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+        // Let the worker publish whatever it decoded last
+        Thread.sleep(100);
+    }
+
+    private static final class Holder<T> {
+        T value;
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.dashpod.telemetry;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TelemetryPipelineTest {
+
+    @Test
+    public void ringBufferDropsNewestWhenFull() {
+        FrameRingBuffer ring = new FrameRingBuffer(4, 8);
+        byte[] frame = new byte[8];
+        for (int i = 0; i < 6; i++) {
+            frame[0] = (byte) i;
+            ring.offer(frame, 0, 1, i);
+        }
+        assertEquals(4, ring.size());
+        assertEquals(2, ring.getDroppedFrames());
+        assertFalse(ring.offer(new byte[9], 0, 9, 0));
+
+        StringBuilder order = new StringBuilder();
+        ring.drain((data, length, timestamp) -> order.append(data[0]), 16);
+        assertEquals("0123", order.toString());
+        assertTrue(ring.isEmpty());
+    }
+
+    @Test
+    public void batchKeepsMostRecentSamples() {
+        BpmBatch batch = new BpmBatch(3, 2);
+        for (int i = 0; i < 5; i++) {
+            batch.add(i, i * 10f);
+            batch.addLine("line " + i);
+        }
+        assertEquals(3, batch.size());
+        assertEquals(2, batch.getOverwritten());
+        assertEquals(20f, batch.bpmAt(0), 0f);
+        assertEquals(4L, batch.timestampAt(2));
+        assertEquals("line 3", batch.lineAt(0));
+        assertEquals("line 4", batch.lineAt(1));
+        batch.clear();
+        assertTrue(batch.isEmpty());
+    }
+
+    @Test
+    public void deliversEveryFrameInOrderWhileConsumerIsSlow() throws InterruptedException {
+        Semaphore ready = new Semaphore(0);
+        TelemetryPipeline<BpmBatch> pipeline = new TelemetryPipeline<>("test-pipeline", 1024, 32,
+                () -> new BpmBatch(4096, 1),
+                (data, offset, length, timestamp, batch) -> {
+                    float bpm = BpmParser.parse(new String(data, offset, length, StandardCharsets.US_ASCII));
+                    batch.add(timestamp, bpm);
+                },
+                ready::release);
+        pipeline.start();
+
+        int frames = 2000;
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < frames; i++) {
+                byte[] data = (i + " bpm").getBytes(StandardCharsets.US_ASCII);
+                while (!pipeline.offer(data, 0, data.length, i)) {
+                    Thread.yield();
+                }
+            }
+        });
+        producer.start();
+
+        int expected = 0;
+        while (expected < frames) {
+            assertTrue(ready.tryAcquire(5, TimeUnit.SECONDS));
+            BpmBatch batch = pipeline.acquireSnapshot();
+            assertNotNull(batch);
+            for (int i = 0; i < batch.size(); i++) {
+                assertEquals(expected, batch.timestampAt(i));
+                assertEquals(expected, batch.bpmAt(i), 0f);
+                expected++;
+            }
+            Thread.sleep(1);
+            pipeline.releaseSnapshot(batch);
+        }
+        producer.join();
+        pipeline.stop();
+
+        assertEquals(frames, pipeline.getDecodedFrames());
+        assertTrue(pipeline.getPublishedSnapshots() <= frames);
+    }
+}
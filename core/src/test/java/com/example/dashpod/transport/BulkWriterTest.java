@@ -0,0 +1,125 @@
+package com.example.dashpod.transport;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BulkWriterTest {
+
+    @Test
+    public void keepsCreditWindowAndSendsMtuSizedChunks() {
+        FakeTransport transport = new FakeTransport();
+        transport.connect("C0:FF:EE:12:34:56", null);
+        transport.setMaxWriteLength(244); // MTU 247
+        transport.setManualWriteCompletion(true);
+        byte[] blob = blob(1000);
+        Recorder recorder = new Recorder();
+        BulkWriter writer = new BulkWriter(transport, 3);
+
+        assertTrue(writer.start(blob, recorder));
+        assertFalse(writer.start(blob, new Recorder()));
+        assertEquals(3, transport.getPendingWrites());
+
+        transport.completeWrites(1, true);
+        assertEquals(3, transport.getPendingWrites());
+        assertEquals(Arrays.asList(244L), recorder.progress);
+        while (transport.completeWrites(1, true) > 0) {
+            assertTrue(transport.getPendingWrites() <= 3);
+        }
+
+        assertFalse(writer.isRunning());
+        assertNotNull(recorder.result);
+        assertTrue(recorder.result.isSuccess());
+        assertEquals(1000, recorder.result.getBytes());
+        assertEquals(5, recorder.result.getChunks());
+        assertEquals(244, recorder.result.getChunkLength());
+        assertTrue(recorder.result.getBytesPerSecond() > 0);
+        assertEquals(Long.valueOf(1000), recorder.progress.get(recorder.progress.size() - 1));
+
+        List<byte[]> writes = transport.getWrites();
+        assertEquals(5, writes.size());
+        assertEquals(24, writes.get(4).length);
+        ByteArrayOutputStream joined = new ByteArrayOutputStream();
+        for (byte[] write : writes) {
+            joined.write(write, 0, write.length);
+        }
+        assertArrayEquals(blob, joined.toByteArray());
+    }
+
+    @Test
+    public void failedChunkEndsTransfer() {
+        FakeTransport transport = new FakeTransport();
+        transport.connect("C0:FF:EE:12:34:56", null);
+        transport.setManualWriteCompletion(true);
+        Recorder recorder = new Recorder();
+        BulkWriter writer = new BulkWriter(transport, 2);
+
+        assertTrue(writer.start(blob(100), recorder));
+        transport.completeWrites(1, true);
+        transport.completeWrites(1, false);
+        // The chunk sent after the first credit came back is still in flight
+        assertNull(recorder.result);
+        transport.completeWrites(1, true);
+
+        assertFalse(recorder.result.isSuccess());
+        assertEquals(40, recorder.result.getBytes());
+        assertEquals(3, transport.getWrites().size());
+        assertEquals(0, transport.getPendingWrites());
+        assertTrue(writer.start(blob(10), new Recorder()));
+    }
+
+    @Test
+    public void completesSynchronousWritesAndRefusesWhenNotReady() {
+        FakeTransport transport = new FakeTransport();
+        Recorder recorder = new Recorder();
+        BulkWriter writer = new BulkWriter(transport, 4);
+        assertFalse(writer.start(blob(50), recorder));
+
+        transport.connect("C0:FF:EE:12:34:56", null);
+        assertTrue(writer.start(blob(50), recorder));
+        assertTrue(recorder.result.isSuccess());
+        assertEquals(3, recorder.result.getChunks());
+        assertEquals(Arrays.asList(20L, 40L, 50L), recorder.progress);
+    }
+
+    @Test
+    public void synchronousWritesDoNotRecursePerChunk() {
+        FakeTransport transport = new FakeTransport();
+        transport.connect("C0:FF:EE:12:34:56", null);
+        transport.setMaxWriteLength(1);
+        Recorder recorder = new Recorder();
+        // One chunk per byte; a nested call per chunk would overflow the stack
+        assertTrue(new BulkWriter(transport, 4).start(blob(200_000), recorder));
+        assertTrue(recorder.result.isSuccess());
+        assertEquals(200_000, recorder.result.getChunks());
+    }
+
+    private static byte[] blob(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        return data;
+    }
+
+    private static final class Recorder implements BulkWriter.Listener {
+        final List<Long> progress = new ArrayList<>();
+        BulkWriter.Result result;
+
+        @Override
+        public void onProgress(long written, long total) {
+            progress.add(written);
+        }
+
+        @Override
+        public void onFinished(BulkWriter.Result result) {
+            assertNull(this.result);
+            this.result = result;
+        }
+    }
+}
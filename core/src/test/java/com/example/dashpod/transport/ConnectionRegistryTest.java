@@ -0,0 +1,147 @@
+package com.example.dashpod.transport;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ConnectionRegistryTest {
+
+    private static final String ADDRESS = "C0:FF:EE:12:34:56";
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private final List<FakeTransport> created = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        timer.shutdownNow();
+    }
+
+    @Test
+    public void sharesOneLinkBetweenLeases() {
+        ConnectionRegistry registry = new ConnectionRegistry(this::create, timer, 0, null);
+        List<String> observed = new ArrayList<>();
+        registry.setStateObserver((address, state) -> observed.add(address + " " + state));
+        Recorder device = new Recorder();
+        Recorder bpm = new Recorder();
+        Transport deviceLease = registry.open();
+        Transport bpmLease = registry.open();
+
+        deviceLease.connect(ADDRESS, device);
+        bpmLease.connect(ADDRESS, bpm);
+        assertEquals(1, created.size());
+        assertEquals(1, registry.getLinksReused());
+        // The second screen joins an already ready link
+        assertEquals(Arrays.asList(Transport.State.CONNECTING, Transport.State.READY), device.states);
+        assertEquals(Arrays.asList(Transport.State.READY), bpm.states);
+        assertEquals(Arrays.asList(ADDRESS + " CONNECTING", ADDRESS + " READY"), observed);
+
+        created.get(0).notify(new byte[]{1, 2}, 0, 2);
+        assertTrue(bpmLease.write(new byte[]{0x01, 0x0A}));
+        assertEquals(1, created.get(0).getWrites().size());
+        assertEquals(1, device.notifications);
+        assertEquals(1, bpm.notifications);
+
+        bpmLease.disconnect();
+        assertEquals(Transport.State.DISCONNECTED, bpmLease.getState());
+        assertFalse(bpmLease.write(new byte[]{3}));
+        assertEquals(Transport.State.READY, deviceLease.getState());
+        created.get(0).notify(new byte[]{3}, 0, 1);
+        assertEquals(2, device.notifications);
+        assertEquals(1, bpm.notifications);
+
+        deviceLease.disconnect();
+        assertEquals(Transport.State.DISCONNECTED, created.get(0).getState());
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void lingeringLinkIsPickedUpByRecreatedScreen() throws Exception {
+        CountDownLatch idle = new CountDownLatch(1);
+        ConnectionRegistry registry = new ConnectionRegistry(this::create, timer, 200, idle::countDown);
+        Transport first = registry.open();
+        first.connect(ADDRESS, new Recorder());
+        first.disconnect();
+
+        Transport recreated = registry.open();
+        recreated.connect(ADDRESS, new Recorder());
+        assertEquals(1, created.size());
+        assertEquals(Transport.State.READY, recreated.getState());
+        Thread.sleep(300);
+        assertEquals(Transport.State.READY, created.get(0).getState());
+
+        recreated.disconnect();
+        assertTrue(idle.await(5, TimeUnit.SECONDS));
+        assertEquals(Transport.State.DISCONNECTED, created.get(0).getState());
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void replacesDroppedLinkAndKeepsSubscribers() {
+        ConnectionRegistry registry = new ConnectionRegistry(this::create, timer, 0, null);
+        Recorder device = new Recorder();
+        registry.open().connect(ADDRESS, device);
+        created.get(0).dropConnection();
+        assertEquals(Transport.State.DISCONNECTED, device.states.get(device.states.size() - 1));
+
+        registry.open().connect(ADDRESS, new Recorder());
+        assertEquals(2, created.size());
+        assertEquals(2, registry.getLinksOpened());
+        created.get(1).notify(new byte[]{1}, 0, 1);
+        assertEquals(1, device.notifications);
+        assertEquals(Transport.State.READY, device.states.get(device.states.size() - 1));
+    }
+
+    @Test
+    public void tunesLinkForMostDemandingLease() {
+        ConnectionRegistry registry = new ConnectionRegistry(this::create, timer, 0, null);
+        Transport device = registry.open();
+        Transport bpm = registry.open();
+        device.setLinkProfile(Transport.LinkProfile.HIGH_THROUGHPUT);
+        device.connect(ADDRESS, new Recorder());
+        assertEquals(Transport.LinkProfile.HIGH_THROUGHPUT, created.get(0).getLinkProfile());
+
+        // The device screen is hidden behind the BPM screen
+        bpm.connect(ADDRESS, new Recorder());
+        bpm.setLinkProfile(Transport.LinkProfile.BALANCED);
+        device.setLinkProfile(Transport.LinkProfile.LOW_POWER);
+        assertEquals(Transport.LinkProfile.BALANCED, created.get(0).getLinkProfile());
+
+        bpm.disconnect();
+        assertEquals(Transport.LinkProfile.LOW_POWER, created.get(0).getLinkProfile());
+
+        // A replacement for a dropped link is tuned before it connects
+        created.get(0).dropConnection();
+        registry.open().connect(ADDRESS, new Recorder());
+        assertEquals(Transport.LinkProfile.LOW_POWER, created.get(1).getLinkProfile());
+    }
+
+    private Transport create(String address) {
+        FakeTransport transport = new FakeTransport();
+        created.add(transport);
+        return transport;
+    }
+
+    private static final class Recorder implements Transport.Listener {
+        final List<Transport.State> states = new ArrayList<>();
+        int notifications;
+
+        @Override
+        public void onStateChanged(Transport.State state) {
+            states.add(state);
+        }
+
+        @Override
+        public void onNotification(byte[] data, int offset, int length, long timestampNanos) {
+            notifications++;
+        }
+    }
+}
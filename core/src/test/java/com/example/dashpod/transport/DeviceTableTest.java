@@ -0,0 +1,56 @@
+package com.example.dashpod.transport;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DeviceTableTest {
+
+    @Test
+    public void keepsDiscoveryOrderAndLatestSighting() {
+        DeviceTable<Object> table = new DeviceTable<>();
+        Object first = new Object();
+        assertTrue(table.update("C0:FF:EE:00:00:01", first, "DashPod-1", -70, 100));
+        assertTrue(table.update("C0:FF:EE:00:00:02", new Object(), null, -80, 110));
+        // Only the time changed, nothing to redraw
+        assertFalse(table.update("C0:FF:EE:00:00:01", first, "DashPod-1", -70, 200));
+        assertTrue(table.update("C0:FF:EE:00:00:01", first, "DashPod-1", -60, 300));
+        // A sighting without a name keeps the one already known
+        assertFalse(table.update("C0:FF:EE:00:00:01", first, null, -60, 400));
+
+        assertEquals(2, table.size());
+        DeviceTable.Entry<Object> entry = table.get(0);
+        assertEquals("C0:FF:EE:00:00:01", entry.getAddress());
+        assertSame(first, entry.getDevice());
+        assertEquals("DashPod-1", entry.getName());
+        assertEquals(-60, entry.getRssi());
+        assertEquals(400, entry.getLastSeen());
+        assertEquals(4, entry.getSightings());
+        assertSame(table.get(1), table.find("C0:FF:EE:00:00:02"));
+        assertNull(table.find("C0:FF:EE:00:00:03"));
+
+        table.clear();
+        assertTrue(table.isEmpty());
+        assertNull(table.find("C0:FF:EE:00:00:01"));
+    }
+
+    @Test
+    public void snapshotsChangeOnlyWithShownValues() {
+        DeviceTable<Object> table = new DeviceTable<>();
+        table.update("C0:FF:EE:00:00:01", null, "DashPod-1", -70, 100);
+        table.update("C0:FF:EE:00:00:02", null, "DashPod-2", -80, 100);
+        List<DeviceTable.Snapshot> before = table.snapshot();
+        assertEquals(0xC0FFEE000001L, before.get(0).getId());
+
+        table.update("C0:FF:EE:00:00:01", null, "DashPod-1", -70, 200);
+        table.update("C0:FF:EE:00:00:02", null, "DashPod-2", -75, 200);
+        List<DeviceTable.Snapshot> after = table.snapshot();
+        assertSame(before.get(0), after.get(0));
+        assertNotEquals(before.get(1), after.get(1));
+        assertEquals(before.get(1).getId(), after.get(1).getId());
+        assertEquals(-75, after.get(1).getRssi());
+        assertEquals(new DeviceTable.Snapshot("C0:FF:EE:00:00:02", "DashPod-2", -75), after.get(1));
+    }
+}
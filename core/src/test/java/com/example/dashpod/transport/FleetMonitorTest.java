@@ -0,0 +1,99 @@
+package com.example.dashpod.transport;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class FleetMonitorTest {
+
+    private static final String[] ADDRESSES = {"C0:FF:EE:00:00:01", "C0:FF:EE:00:00:02", "C0:FF:EE:00:00:03"};
+
+    private final List<FakeTransport> created = new ArrayList<>();
+    private final FleetMonitor fleet = new FleetMonitor(() -> {
+        FakeTransport transport = new FakeTransport();
+        created.add(transport);
+        return transport;
+    });
+
+    @After
+    public void tearDown() {
+        fleet.close();
+    }
+
+    @Test
+    public void keepsLatestValuesPerDevice() throws Exception {
+        for (String address : ADDRESSES) {
+            assertTrue(fleet.add(address));
+        }
+        assertFalse(fleet.add(ADDRESSES[0]));
+        assertEquals(3, fleet.broadcast(new byte[]{0x01, 0x0A}));
+
+        notifyLine(0, "12.5 bpm\n");
+        notifyLine(0, "14.5 bpm\n");
+        notifyLine(1, "{\"EX\":90,\"EY\":-2.5,\"EZ\":1}\n");
+        // Binary Euler record: yaw 20 degrees in 1/16 units
+        byte[] binary = {(byte) 0xE1, 1, 0, 0x40, 0x01, 0, 0, 0, 0};
+        created.get(2).notify(binary, 0, binary.length);
+
+        List<FleetMonitor.DeviceStatus> statuses = awaitSamples();
+        assertEquals(ADDRESSES[0], statuses.get(0).getAddress());
+        assertEquals(Transport.State.READY, statuses.get(0).getState());
+        assertEquals(14.5f, statuses.get(0).getBpm(), 0);
+        assertFalse(statuses.get(0).hasOrientation());
+        assertEquals(2, statuses.get(0).getNotifications());
+
+        assertTrue(Float.isNaN(statuses.get(1).getBpm()));
+        assertTrue(statuses.get(1).hasOrientation());
+        assertEquals(90f, statuses.get(1).getYaw(), 0);
+        assertEquals(-2.5f, statuses.get(1).getPitch(), 0);
+        assertEquals(20f, statuses.get(2).getYaw(), 0);
+
+        created.get(1).dropConnection();
+        assertEquals(Transport.State.DISCONNECTED, fleet.sample(System.nanoTime()).get(1).getState());
+        assertTrue(fleet.remove(ADDRESSES[1]));
+        assertEquals(Transport.State.DISCONNECTED, created.get(1).getState());
+        assertEquals(ADDRESSES[2], fleet.sample(System.nanoTime()).get(1).getAddress());
+    }
+
+    @Test
+    public void reportsPacketRatePerDevice() {
+        fleet.add(ADDRESSES[0]);
+        fleet.add(ADDRESSES[1]);
+        long start = System.nanoTime();
+        fleet.sample(start);
+        for (int i = 0; i < 50; i++) {
+            notifyLine(0, "12.5 bpm\n");
+        }
+        for (int i = 0; i < 10; i++) {
+            notifyLine(1, "12.5 bpm\n");
+        }
+        List<FleetMonitor.DeviceStatus> statuses = fleet.sample(start + TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(100, statuses.get(0).getPacketsPerSecond(), 1e-9);
+        assertEquals(20, statuses.get(1).getPacketsPerSecond(), 1e-9);
+        assertEquals(120, fleet.getPacketsPerSecond(), 1e-9);
+    }
+
+    private void notifyLine(int device, String line) {
+        byte[] data = line.getBytes(StandardCharsets.US_ASCII);
+        assertTrue(created.get(device).notify(data, 0, data.length));
+    }
+
+    private List<FleetMonitor.DeviceStatus> awaitSamples() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (true) {
+            List<FleetMonitor.DeviceStatus> statuses = fleet.sample(System.nanoTime());
+            if (statuses.get(0).getBpm() == 14.5f && statuses.get(1).hasOrientation()
+                    && statuses.get(2).hasOrientation()) {
+                return statuses;
+            }
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.dashpod.transport;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class GattOperationQueueTest {
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private final List<String> started = new ArrayList<>();
+    private final List<String> finished = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        timer.shutdownNow();
+    }
+
+    @Test
+    public void runsOneOperationAtATimeInOrder() {
+        GattOperationQueue queue = new GattOperationQueue(timer, 4);
+        queue.enqueue(operation("mtu", GattOperationQueue.Type.REQUEST_MTU, true));
+        queue.enqueue(operation("discover", GattOperationQueue.Type.DISCOVER_SERVICES, true));
+        queue.enqueue(operation("cccd", GattOperationQueue.Type.WRITE_DESCRIPTOR, true));
+        assertEquals(Arrays.asList("mtu"), started);
+
+        // A callback for an operation that is not in flight is ignored
+        assertFalse(queue.complete(GattOperationQueue.Type.WRITE_DESCRIPTOR, true));
+        assertTrue(queue.complete(GattOperationQueue.Type.REQUEST_MTU, true));
+        assertEquals(Arrays.asList("mtu", "discover"), started);
+        assertTrue(queue.complete(GattOperationQueue.Type.DISCOVER_SERVICES, true));
+        assertTrue(queue.complete(GattOperationQueue.Type.WRITE_DESCRIPTOR, false));
+
+        assertEquals(Arrays.asList("mtu:true", "discover:true", "cccd:false"), finished);
+        assertTrue(queue.isIdle());
+        assertEquals(2, queue.getCompleted());
+        assertEquals(1, queue.getFailed());
+        assertEquals(2, queue.getLatency().getCount());
+    }
+
+    @Test
+    public void pipelinesWritesWithoutResponseUpToWindow() {
+        GattOperationQueue queue = new GattOperationQueue(timer, 2);
+        for (int i = 0; i < 4; i++) {
+            queue.enqueue(operation("w" + i, GattOperationQueue.Type.WRITE_WITHOUT_RESPONSE, true));
+        }
+        queue.enqueue(operation("read", GattOperationQueue.Type.READ, true));
+        assertEquals(Arrays.asList("w0", "w1"), started);
+
+        queue.complete(GattOperationQueue.Type.WRITE_WITHOUT_RESPONSE, true);
+        assertEquals(Arrays.asList("w0", "w1", "w2"), started);
+        queue.complete(GattOperationQueue.Type.WRITE_WITHOUT_RESPONSE, true);
+        queue.complete(GattOperationQueue.Type.WRITE_WITHOUT_RESPONSE, true);
+        // The read waits until the last write is done
+        assertEquals(Arrays.asList("w0", "w1", "w2", "w3"), started);
+        queue.complete(GattOperationQueue.Type.WRITE_WITHOUT_RESPONSE, true);
+        assertEquals("read", started.get(started.size() - 1));
+        assertEquals(Arrays.asList("w0:true", "w1:true", "w2:true", "w3:true"), finished);
+    }
+
+    @Test
+    public void refusedWriteWaitsForBufferSpace() {
+        GattOperationQueue queue = new GattOperationQueue(timer, 8);
+        boolean[] full = {false};
+        queue.enqueue(operation("w0", GattOperationQueue.Type.WRITE_WITHOUT_RESPONSE, true));
+        full[0] = true;
+        queue.enqueue(new GattOperationQueue.Operation(GattOperationQueue.Type.WRITE_WITHOUT_RESPONSE, 1000) {
+            @Override
+            protected boolean start() {
+                started.add("w1");
+                return !full[0];
+            }
+
+            @Override
+            protected void onFinished(boolean success) {
+                finished.add("w1:" + success);
+            }
+        });
+        assertEquals(2, queue.size());
+        assertTrue(finished.isEmpty());
+
+        full[0] = false;
+        queue.complete(GattOperationQueue.Type.WRITE_WITHOUT_RESPONSE, true);
+        queue.complete(GattOperationQueue.Type.WRITE_WITHOUT_RESPONSE, true);
+        assertEquals(Arrays.asList("w0:true", "w1:true"), finished);
+    }
+
+    @Test
+    public void refusedOperationFailsAndQueueMovesOn() {
+        GattOperationQueue queue = new GattOperationQueue(timer, 1);
+        queue.enqueue(operation("refused", GattOperationQueue.Type.WRITE, false));
+        queue.enqueue(operation("next", GattOperationQueue.Type.READ, true));
+        assertEquals(Arrays.asList("refused:false"), finished);
+        assertEquals(Arrays.asList("refused", "next"), started);
+    }
+
+    @Test
+    public void timesOutMissingCallback() throws InterruptedException {
+        GattOperationQueue queue = new GattOperationQueue(timer, 1);
+        CountDownLatch done = new CountDownLatch(1);
+        queue.enqueue(new GattOperationQueue.Operation(GattOperationQueue.Type.DISCOVER_SERVICES, 50) {
+            @Override
+            protected boolean start() {
+                return true;
+            }
+
+            @Override
+            protected void onFinished(boolean success) {
+                assertFalse(success);
+                done.countDown();
+            }
+        });
+        queue.enqueue(operation("after", GattOperationQueue.Type.READ, true));
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        synchronized (queue) {
+            assertEquals(1, queue.getTimedOut());
+            assertEquals("after", started.get(0));
+        }
+        assertFalse(queue.complete(GattOperationQueue.Type.DISCOVER_SERVICES, true));
+    }
+
+    @Test
+    public void clearFailsEverything() {
+        GattOperationQueue queue = new GattOperationQueue(timer, 1);
+        queue.enqueue(operation("a", GattOperationQueue.Type.WRITE, true));
+        queue.enqueue(operation("b", GattOperationQueue.Type.WRITE, true));
+        queue.clear();
+        assertEquals(Arrays.asList("a:false", "b:false"), finished);
+        assertTrue(queue.isIdle());
+    }
+
+    @Test
+    public void reportsFinishedOperationsOutsideTheLock() {
+        GattOperationQueue queue = new GattOperationQueue(timer, 1);
+        queue.enqueue(new GattOperationQueue.Operation(GattOperationQueue.Type.WRITE, 1000) {
+            @Override
+            protected boolean start() {
+                return true;
+            }
+
+            @Override
+            protected void onFinished(boolean success) {
+                assertFalse(Thread.holdsLock(queue));
+                queue.enqueue(operation("chained", GattOperationQueue.Type.READ, true));
+            }
+        });
+        queue.complete(GattOperationQueue.Type.WRITE, true);
+        assertEquals(Arrays.asList("chained"), started);
+        queue.clear();
+        assertEquals(Arrays.asList("chained:false"), finished);
+    }
+
+    private GattOperationQueue.Operation operation(String name, GattOperationQueue.Type type, boolean accept) {
+        return new GattOperationQueue.Operation(type, 1000) {
+            @Override
+            protected boolean start() {
+                started.add(name);
+                return accept;
+            }
+
+            @Override
+            protected void onFinished(boolean success) {
+                finished.add(name + ":" + success);
+            }
+        };
+    }
+}
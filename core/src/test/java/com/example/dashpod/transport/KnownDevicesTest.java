@@ -0,0 +1,64 @@
+package com.example.dashpod.transport;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class KnownDevicesTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    @Test
+    public void evictsLeastRecentlyConnectedAndExpired() {
+        KnownDevices devices = new KnownDevices(2, 7 * DAY);
+        devices.remember("C0:FF:EE:00:00:01", "DashPod-1", -60, 0);
+        devices.remember("C0:FF:EE:00:00:02", "DashPod-2", -70, DAY);
+        // Reconnecting keeps the name and RSSI when none are given
+        devices.remember("C0:FF:EE:00:00:01", null, KnownDevices.RSSI_UNKNOWN, 2 * DAY);
+        devices.remember("C0:FF:EE:00:00:03", "DashPod-3", -80, 3 * DAY);
+
+        List<KnownDevices.Device> list = devices.list(3 * DAY);
+        assertEquals(2, list.size());
+        assertEquals("C0:FF:EE:00:00:03", list.get(0).getAddress());
+        assertEquals("C0:FF:EE:00:00:01", list.get(1).getAddress());
+        assertEquals("DashPod-1", list.get(1).getName());
+        assertEquals(-60, list.get(1).getRssi());
+        assertEquals(2 * DAY, list.get(1).getLastConnected());
+
+        list = devices.list(9 * DAY + 1);
+        assertEquals(1, list.size());
+        assertEquals("C0:FF:EE:00:00:03", list.get(0).getAddress());
+        assertTrue(devices.forget("C0:FF:EE:00:00:03"));
+        assertEquals(0, devices.size());
+    }
+
+    @Test
+    public void savesAndLoadsInConnectionOrder() throws IOException {
+        KnownDevices devices = new KnownDevices(8, 7 * DAY);
+        devices.remember("C0:FF:EE:00:00:01", "DashPod-1", -60, DAY);
+        devices.remember("C0:FF:EE:00:00:02", null, -70, 2 * DAY);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        devices.save(out);
+
+        KnownDevices loaded = new KnownDevices(8, 7 * DAY);
+        loaded.load(new ByteArrayInputStream(out.toByteArray()), 8 * DAY + 1);
+        // The first device expired while the app was closed
+        List<KnownDevices.Device> list = loaded.list(8 * DAY + 1);
+        assertEquals(1, list.size());
+        assertEquals("C0:FF:EE:00:00:02", list.get(0).getAddress());
+        assertNull(list.get(0).getName());
+        assertEquals(-70, list.get(0).getRssi());
+
+        try {
+            loaded.load(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}), 0);
+            fail();
+        } catch (IOException expected) {
+            assertEquals(1, loaded.size());
+        }
+    }
+}
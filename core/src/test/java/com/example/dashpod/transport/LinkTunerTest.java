@@ -0,0 +1,53 @@
+package com.example.dashpod.transport;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class LinkTunerTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    public void tunesForStreamAndHoldsBeforeSlowingDown() {
+        FakeTransport transport = new FakeTransport();
+        AtomicLong received = new AtomicLong();
+        LinkTuner tuner = new LinkTuner(transport, received::get, 20, 3 * SECOND);
+
+        assertEquals(Transport.LinkProfile.BALANCED, tuner.tick(0));
+        assertEquals(Transport.LinkProfile.BALANCED, transport.getLinkProfile());
+
+        // 100 Hz orientation stream
+        received.addAndGet(100);
+        assertEquals(Transport.LinkProfile.HIGH_THROUGHPUT, tuner.tick(SECOND));
+        assertEquals(Transport.LinkProfile.HIGH_THROUGHPUT, transport.getLinkProfile());
+
+        // The stream stops; the rate decays below the threshold but the hold time has to pass first
+        long now = SECOND;
+        for (int i = 0; i < 5; i++) {
+            now += SECOND;
+            tuner.tick(now);
+        }
+        assertEquals(Transport.LinkProfile.HIGH_THROUGHPUT, tuner.getProfile());
+        now += 2 * SECOND;
+        assertEquals(Transport.LinkProfile.BALANCED, tuner.tick(now));
+        assertEquals(3, tuner.getChanges());
+    }
+
+    @Test
+    public void hiddenScreenDropsToLowPowerAndComesBackAtOnce() {
+        FakeTransport transport = new FakeTransport();
+        LinkTuner tuner = new LinkTuner(transport, () -> 0, 20, SECOND);
+        tuner.tick(0);
+
+        tuner.setVisible(false, SECOND);
+        assertEquals(Transport.LinkProfile.BALANCED, tuner.getProfile());
+        tuner.tick(2 * SECOND);
+        assertEquals(Transport.LinkProfile.LOW_POWER, transport.getLinkProfile());
+
+        tuner.setVisible(true, 2 * SECOND + 1);
+        assertEquals(Transport.LinkProfile.BALANCED, transport.getLinkProfile());
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.dashpod.transport;
+
+import com.example.dashpod.telemetry.BpmBatch;
+import com.example.dashpod.telemetry.BpmStatistics;
+import com.example.dashpod.telemetry.BpmTelemetryDecoder;
+import com.example.dashpod.telemetry.MacAddress;
+import com.example.dashpod.telemetry.NotificationFramer;
+import com.example.dashpod.telemetry.SessionReader;
+import com.example.dashpod.telemetry.SessionRecorder;
+import com.example.dashpod.telemetry.TelemetryPipeline;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TelemetryLinkTest {
+
+    private static final String ADDRESS = "C0:FF:EE:12:34:56";
+    private static final byte[] BPM_START = {0x01, 0x0A};
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final BpmTelemetryDecoder decoder = new BpmTelemetryDecoder();
+    private final BpmStatistics statistics = new BpmStatistics(60000, 2);
+    private final List<Transport.State> states = new ArrayList<>();
+    private TelemetryPipeline<BpmBatch> pipeline;
+
+    @Test
+    public void sendsEncodedMacrosOnlyWhenReady() {
+        FakeTransport transport = new FakeTransport();
+        MacroSender sender = new MacroSender(transport);
+        assertFalse(sender.send("01 0A", MacroSender.Encoding.HEX));
+
+        transport.connect(ADDRESS, link(transport, null));
+        assertTrue(sender.send("01 04 02", MacroSender.Encoding.HEX));
+        assertTrue(sender.send("hi", MacroSender.Encoding.TEXT));
+        assertEquals(2, sender.getSentMacros());
+        assertArrayEquals(new byte[]{1, 4, 2}, transport.getWrites().get(0));
+        assertArrayEquals(new byte[]{'h', 'i'}, transport.getWrites().get(1));
+
+        transport.dropConnection();
+        assertFalse(sender.send("03", MacroSender.Encoding.HEX));
+        assertEquals(Arrays.asList(Transport.State.CONNECTING, Transport.State.READY, Transport.State.DISCONNECTED),
+                states);
+    }
+
+    @Test
+    public void recordsNotificationsWithDeviceAddress() throws Exception {
+        FakeTransport transport = new FakeTransport();
+        try (SessionRecorder recorder = new SessionRecorder(folder.getRoot(), "link",
+                SessionRecorder.DEFAULT_SEGMENT_SIZE, 0L, 0)) {
+            transport.connect(ADDRESS, link(transport, recorder));
+            byte[] line = "15 bpm\n".getBytes(StandardCharsets.US_ASCII);
+            transport.notify(line, 0, line.length, 42L);
+        }
+
+        try (SessionReader reader = new SessionReader(folder.getRoot(), "link")) {
+            assertTrue(reader.next());
+            assertEquals(42L, reader.getTimestampNanos());
+            assertEquals(ADDRESS, MacAddress.format(reader.getAddress()));
+            assertEquals(NordicUart.TX_CHARACTERISTIC,
+                    new UUID(reader.getCharacteristicMsb(), reader.getCharacteristicLsb()));
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    public void pausedLinkNeitherRecordsNorDecodes() throws Exception {
+        FakeTransport transport = new FakeTransport();
+        byte[] line = "15 bpm\n".getBytes(StandardCharsets.US_ASCII);
+        TelemetryLink link;
+        try (SessionRecorder recorder = new SessionRecorder(folder.getRoot(), "paused",
+                SessionRecorder.DEFAULT_SEGMENT_SIZE, 0L, 0)) {
+            link = link(transport, recorder);
+            transport.connect(ADDRESS, link);
+            link.setPaused(true);
+            transport.notify(line, 0, line.length, 1L);
+            link.setPaused(false);
+            transport.notify(line, 0, line.length, 2L);
+        }
+
+        assertEquals(1, link.getNotifications());
+        try (SessionReader reader = new SessionReader(folder.getRoot(), "paused")) {
+            assertTrue(reader.next());
+            assertEquals(2L, reader.getTimestampNanos());
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    public void partialLineDoesNotCarryOverToNextConnection() throws Exception {
+        FakeTransport transport = new FakeTransport();
+        TelemetryLink link = link(transport, null);
+        pipeline.start();
+        transport.connect(ADDRESS, link);
+        byte[] first = "15 bpm\n1".getBytes(StandardCharsets.US_ASCII);
+        transport.notify(first, 0, first.length);
+        awaitDecodedFrames(1);
+
+        transport.dropConnection();
+        transport.connect(ADDRESS, link);
+        byte[] second = "6 bpm\n".getBytes(StandardCharsets.US_ASCII);
+        transport.notify(second, 0, second.length);
+        awaitDecodedFrames(2);
+        pipeline.stop();
+
+        synchronized (statistics) {
+            assertEquals(2, statistics.getOverall().getCount());
+            assertEquals(6, statistics.getOverall().getMin(), 0);
+        }
+    }
+
+    @Test
+    public void aggregatesFloodOfNotificationsWithoutDevice() throws Exception {
+        int notifications = 50_000;
+        CountDownLatch streamed = new CountDownLatch(1);
+        FakeTransport transport = new FakeTransport((data, device) -> {
+            if (!Arrays.equals(BPM_START, data)) return;
+            // Firmware answers the start macro with a burst, two lines per notification
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < notifications; i++) {
+                    byte[] lines = ("1" + (i % 5) + ".5 bpm\n1" + (i % 5) + ".5 bpm\n").getBytes(StandardCharsets.US_ASCII);
+                    device.notify(lines, 0, lines.length);
+                }
+                streamed.countDown();
+            });
+            thread.start();
+        });
+        TelemetryLink link = link(transport, null);
+        pipeline.start();
+        transport.connect(ADDRESS, link);
+        assertTrue(new MacroSender(transport).send("01 0A", MacroSender.Encoding.HEX));
+
+        assertTrue(streamed.await(10, TimeUnit.SECONDS));
+        long expectedFrames = 2 * (link.getNotifications() - link.getDroppedNotifications());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (pipeline.getDecodedFrames() < expectedFrames) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+        Thread.sleep(100);
+        pipeline.stop();
+
+        assertEquals(notifications, link.getNotifications());
+        synchronized (statistics) {
+            assertEquals(expectedFrames, statistics.getOverall().getCount());
+            assertEquals(10.5, statistics.getOverall().getMin(), 0);
+            assertEquals(14.5, statistics.getOverall().getMax(), 0);
+        }
+    }
+
+    private void awaitDecodedFrames(long frames) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (pipeline.getDecodedFrames() < frames) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private TelemetryLink link(Transport transport, SessionRecorder recorder) {
+        pipeline = new TelemetryPipeline<>("link-test", 1024, 512,
+                () -> new BpmBatch(4096, 16), new NotificationFramer(512), decoder, this::drain);
+        return new TelemetryLink(transport, pipeline, recorder, states::add);
+    }
+
+    // Runs on the pipeline worker, standing in for the UI thread
+    private void drain() {
+        BpmBatch batch = pipeline.acquireSnapshot();
+        synchronized (statistics) {
+            for (int i = 0; i < batch.size(); i++) {
+                statistics.add(0, batch.bpmAt(i));
+            }
+        }
+        pipeline.releaseSnapshot(batch);
+    }
+}
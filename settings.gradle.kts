@@ -22,4 +22,6 @@ dependencyResolutionManagement {
 }
 
 rootProject.name = "dashpod"
-include(":app")
\ No newline at end of file
+include(":app")
+include(":core")
+include(":benchmarks")
\ No newline at end of file